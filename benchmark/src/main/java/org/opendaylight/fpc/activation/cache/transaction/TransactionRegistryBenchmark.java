@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.cache.transaction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.benchmark.AgentFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TransactionRegistry operations under contention.
+ *
+ * Each thread keeps a window of registered operations; an invocation registers a new operation,
+ * looks it up as a DPN reply would and removes the oldest one.  lookup only reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class TransactionRegistryBenchmark {
+    private static final int WINDOW = 4096;
+
+    /**
+     * Registry shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"64"})
+        int stripes;
+        TransactionRegistry registry;
+        Transaction tx;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            AgentFixture.init();
+            registry = new TransactionRegistry(stripes);
+            tx = Transaction.newTransaction(AgentFixture.emptyDeleteInput(1L), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Operations registered by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Window {
+        long client;
+        long next;
+
+        @Setup(Level.Trial)
+        public void setup(Shared shared) {
+            client = Thread.currentThread().getId();
+            for (next = 0; next < WINDOW; next++) {
+                shared.registry.put(client, next, shared.tx);
+            }
+        }
+    }
+
+    @Benchmark
+    public Transaction putGetRemove(Shared shared, Window w) {
+        long op = w.next++;
+        shared.registry.put(w.client, op, shared.tx);
+        Transaction t = shared.registry.get(w.client, op);
+        shared.registry.remove(w.client, op - WINDOW, null);
+        return t;
+    }
+
+    @Benchmark
+    public Transaction lookup(Shared shared, Window w) {
+        return shared.registry.get(w.client, (w.next++) & (WINDOW - 1));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.workers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.benchmark.AgentFixture;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CONF Create processing by a ConfigureWorker, from the dequeued Transaction through the
+ * session checks, cache updates and DPN encoding up to the hand off to the southbound socket.
+ *
+ * Every invocation creates a new session with a new operation so no request is rejected as a
+ * duplicate; the Transaction is purged afterwards.  The socket publishes to an address nobody is
+ * bound to, so messages are dropped by ZMQ.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigureWorkerBenchmark {
+    private ConfigureWorker worker;
+    private Method configure;
+    private Map<?, ?> sessionContexts;
+    private long next = 10000000L;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        AgentFixture.init();
+        worker = new ConfigureWorker(AgentFixture.getDataBroker(), new MpscArrayQueue<Object>(1024));
+        configure = ConfigureWorker.class.getDeclaredMethod("configure", Transaction.class, ConfigureInput.class);
+        configure.setAccessible(true);
+        Field f = ConfigureWorker.class.getDeclaredField("sessionContextsMap");
+        f.setAccessible(true);
+        sessionContexts = (Map<?, ?>) f.get(worker);
+    }
+
+    /**
+     * Drops the sessions created during the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void clearSessions() {
+        sessionContexts.clear();
+    }
+
+    @Benchmark
+    public Transaction create() throws Exception {
+        long id = next++;
+        ConfigureInput input = AgentFixture.createInput(id, id);
+        Transaction tx = Transaction.newTransaction(input, System.currentTimeMillis());
+        configure.invoke(worker, tx, input);
+        Transaction.purgeOperation(input.getClientId(), input.getOpId());
+        return tx;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.fpc.activation.ActivatorFactory;
+import org.opendaylight.fpc.activation.cache.transaction.Metrics;
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpdkImplFactory;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPIListener;
+import org.opendaylight.fpc.impl.FpcProvider;
+import org.opendaylight.fpc.impl.zeromq.ZMQSBListener;
+import org.opendaylight.fpc.tenant.TenantManager;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.RefScope;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.InstructionsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.instructions.instr.type.Instr3gppMobBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdateBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.DeleteOrQueryBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.topology.DpnsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.topology.DpnsKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDirection;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnControlProtocol;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.Dpns;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.DpnsKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.UlBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.profile.MobilityTunnelParametersBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.mobility.info.mobprofile.parameters.ThreegppTunnelBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.Targets;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.EbiType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ImsiType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ThreegppInstr;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.fpc.config.rev160927.FpcConfig;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.fpc.rev150105.ZmqDpnControlProtocol;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+import org.zeromq.ZContext;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Agent environment shared by the benchmarks.
+ *
+ * The Agent is brought up outside of Karaf against a stubbed DataBroker (reads return nothing,
+ * commits succeed immediately).  A single tenant, client and DPN are registered; DPN messages are
+ * published to a ZMQ address that nothing subscribes to and are therefore dropped by ZMQ.
+ */
+public final class AgentFixture {
+    public static final String TENANT_ID = "default";
+    public static final long CLIENT_ID = 1L;
+    public static final String DPN_ID = "dpn1";
+    public static final String NODE_ID = "node1";
+    public static final String NETWORK_ID = "network1";
+    public static final short DPN_TOPIC = 3;
+    public static final short CONTROLLER_TOPIC = 4;
+    public static final String SB_ADDRESS = "tcp://127.0.0.1:5559";
+
+    private static DataBroker dataBroker;
+    private static TenantManager tenant;
+
+    private AgentFixture() {
+    }
+
+    /**
+     * Initializes the Agent environment (once per JVM).
+     * @return Tenant Manager of the benchmark tenant
+     * @throws Exception - if the environment cannot be created
+     */
+    public static synchronized TenantManager init() throws Exception {
+        if (tenant != null) {
+            return tenant;
+        }
+        dataBroker = stubDataBroker();
+
+        FpcConfig config = mock(FpcConfig.class);
+        when(config.getDefaultTenantId()).thenReturn(TENANT_ID);
+        FpcProvider provider = mock(FpcProvider.class);
+        when(provider.getDataBroker()).thenReturn(dataBroker);
+        when(provider.getConfig()).thenReturn(config);
+        setStatic(FpcProvider.class, "_instance", provider);
+        setStatic(ZMQSBListener.class, "subscriberId", Short.valueOf(CONTROLLER_TOPIC));
+
+        ZMQClientPool.createInstance(new ZContext(), SB_ADDRESS, 1);
+        ZMQClientPool.getInstance().start();
+        ZMQClientPool.getInstance().run();
+        Metrics.init(dataBroker, Long.MAX_VALUE);
+        Transaction.setTimeToLive(0L);
+
+        Map<Class<? extends FpcDpnControlProtocol>, ActivatorFactory> factories =
+                new HashMap<Class<? extends FpcDpnControlProtocol>, ActivatorFactory>();
+        factories.put(ZmqDpnControlProtocol.class, new DpdkImplFactory());
+        FpcIdentity tenantId = new FpcIdentity(TENANT_ID);
+        TenantManager tm = TenantManager.populateTenant(tenantId, factories);
+        TenantManager.registerClient(new ClientIdentifier(CLIENT_ID), tenantId);
+
+        DpnAPIListener.setTopicToNodeMapping(NODE_ID + "/" + NETWORK_ID, DPN_TOPIC);
+        FpcDpnId dpnId = new FpcDpnId(DPN_ID);
+        tm.getActivationManager().addDpn(new DpnsBuilder()
+                .setDpnId(dpnId)
+                .setKey(new DpnsKey(dpnId))
+                .setAbstract(false)
+                .setNodeId(NODE_ID)
+                .setNetworkId(NETWORK_ID)
+                .build());
+
+        tenant = tm;
+        return tenant;
+    }
+
+    /**
+     * Returns the stubbed DataBroker.
+     * @return DataBroker
+     */
+    public static synchronized DataBroker getDataBroker() {
+        if (dataBroker == null) {
+            dataBroker = stubDataBroker();
+        }
+        return dataBroker;
+    }
+
+    /**
+     * Creates a DataBroker whose reads find nothing and whose commits succeed immediately.  The
+     * stub is a plain dynamic proxy (rather than a mock) so that it records nothing however many
+     * transactions a benchmark issues.
+     * @return DataBroker
+     */
+    public static DataBroker stubDataBroker() {
+        return stub(DataBroker.class);
+    }
+
+    /**
+     * Creates a stub of a DataBroker or one of its transaction types.
+     * @param iface - interface to stub
+     * @param <T> - interface type
+     * @return stub
+     */
+    private static <T> T stub(Class<T> iface) {
+        return iface.cast(Proxy.newProxyInstance(AgentFixture.class.getClassLoader(),
+                new Class<?>[] { iface }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "newReadOnlyTransaction":
+                                return stub(ReadOnlyTransaction.class);
+                            case "newWriteOnlyTransaction":
+                                return stub(WriteTransaction.class);
+                            case "newReadWriteTransaction":
+                                return stub(ReadWriteTransaction.class);
+                            case "read":
+                                return Futures.<Optional<DataObject>, ReadFailedException>immediateCheckedFuture(
+                                        Optional.<DataObject>absent());
+                            case "submit":
+                                return Futures.<Void, TransactionCommitFailedException>immediateCheckedFuture(null);
+                            case "cancel":
+                                return Boolean.TRUE;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "Stub " + iface.getSimpleName();
+                            default:
+                                return null;
+                        }
+                    }
+                }));
+    }
+
+    /**
+     * Builds a session Context on the benchmark DPN.
+     * @param contextId - Context Id (also used to derive the IMSI, UE address and TEID)
+     * @return Context
+     */
+    public static Contexts context(long contextId) {
+        FpcContextId id = new FpcContextId(new FpcIdentity(contextId));
+        FpcDpnId dpnId = new FpcDpnId(DPN_ID);
+        Dpns dpn = new org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.DpnsBuilder()
+                .setDpnId(dpnId)
+                .setDirection(FpcDirection.Uplink)
+                .setKey(new DpnsKey(dpnId, FpcDirection.Uplink))
+                .build();
+        long teid = (contextId & 0x7FFFFFFFL) + 1L;
+        return new ContextsBuilder()
+                .setContextId(id)
+                .setImsi(new ImsiType(BigInteger.valueOf(310150000000000L + contextId)))
+                .setEbi(new EbiType((short) 5))
+                .setDelegatingIpPrefixes(Collections.singletonList(new IpPrefix(
+                        new Ipv4Prefix(ipv4(0x0A000000L | (contextId & 0xFFFFFFL)) + "/32"))))
+                .setUl(new UlBuilder()
+                        .setTunnelLocalAddress(new IpAddress(new Ipv4Address("192.168.1.1")))
+                        .setMobilityTunnelParameters(new MobilityTunnelParametersBuilder()
+                                .setMobprofileParameters(new ThreegppTunnelBuilder()
+                                        .setTunnelIdentifier(teid)
+                                        .build())
+                                .build())
+                        .build())
+                .setDpns(Collections.singletonList(dpn))
+                .setInstructions(new InstructionsBuilder()
+                        .setInstrType(new Instr3gppMobBuilder()
+                                .setInstr3gppMob(ThreegppInstr.getDefaultInstance("session"))
+                                .build())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Builds a CONF Create of a single session Context.
+     * @param contextId - Context Id
+     * @param opId - Operation Id
+     * @return ConfigureInput
+     */
+    public static ConfigureInput createInput(long contextId, long opId) {
+        return new ConfigureInputBuilder()
+                .setClientId(new ClientIdentifier(CLIENT_ID))
+                .setOpId(new OpIdentifier(BigInteger.valueOf(opId)))
+                .setOpType(OpType.Create)
+                .setOpRefScope(RefScope.Op)
+                .setOpBody(new CreateOrUpdateBuilder()
+                        .setContexts(Collections.singletonList(context(contextId)))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Builds a CONF Delete without targets (its completion only issues a Config Result).
+     * @param opId - Operation Id
+     * @return ConfigureInput
+     */
+    public static ConfigureInput emptyDeleteInput(long opId) {
+        return new ConfigureInputBuilder()
+                .setClientId(new ClientIdentifier(CLIENT_ID))
+                .setOpId(new OpIdentifier(BigInteger.valueOf(opId)))
+                .setOpType(OpType.Delete)
+                .setOpRefScope(RefScope.Op)
+                .setOpBody(new DeleteOrQueryBuilder()
+                        .setTargets(Collections.<Targets>emptyList())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Dotted quad of an IPv4 address.
+     * @param address - address (Uint32)
+     * @return address text
+     */
+    public static String ipv4(long address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "." +
+                ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * Sets a private static field.
+     * @param clazz - declaring class
+     * @param name - field name
+     * @param value - value
+     * @throws ReflectiveOperationException - if the field cannot be set
+     */
+    public static void setStatic(Class<?> clazz, String name, Object value) throws ReflectiveOperationException {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.activation.cache.HierarchicalCache;
+import org.opendaylight.fpc.activation.cache.StorageCache;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.RefScope;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdateBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HierarchicalCache Context lookups.
+ *
+ * opCacheHit resolves a Context carried by the operation, storageHit one of the tenant's stored
+ * Contexts (through the Storage Cache and its off-heap store when enabled) and storageMiss an
+ * unknown Context.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+    private static final int STORED = 1024;
+    private static final int PER_OP = 16;
+
+    private StorageCache sc;
+    private HierarchicalCache opCache;
+    private HierarchicalCache storageCache;
+    private FpcIdentity[] opIds;
+    private FpcIdentity[] storedIds;
+    private FpcIdentity unknownId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        sc = AgentFixture.init().getSc();
+        storedIds = new FpcIdentity[STORED];
+        for (int i = 0; i < STORED; i++) {
+            Contexts c = AgentFixture.context(2000000L + i);
+            sc.addContext(c);
+            storedIds[i] = c.getContextId();
+        }
+
+        List<Contexts> contexts = new ArrayList<Contexts>();
+        opIds = new FpcIdentity[PER_OP];
+        for (int i = 0; i < PER_OP; i++) {
+            Contexts c = AgentFixture.context(3000000L + i);
+            contexts.add(c);
+            opIds[i] = c.getContextId();
+        }
+        opCache = new HierarchicalCache(RefScope.Op, sc, true);
+        opCache.newOpCache(new CreateOrUpdateBuilder().setContexts(contexts).build());
+        storageCache = new HierarchicalCache(RefScope.Storage, sc, true);
+        unknownId = new FpcContextId(new FpcIdentity(4000000L));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public FpcContext opCacheHit(Cursor c) {
+        return opCache.getContext(opIds[(c.next++) & (PER_OP - 1)]);
+    }
+
+    @Benchmark
+    public FpcContext storageHit(Cursor c) {
+        return storageCache.getContext(storedIds[(c.next++) & (STORED - 1)]);
+    }
+
+    @Benchmark
+    public FpcContext storageMiss() {
+        return storageCache.getContext(unknownId);
+    }
+}
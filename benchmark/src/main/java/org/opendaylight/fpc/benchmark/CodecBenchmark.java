@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.notification.NotificationJsonWriter;
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.JsonOutput;
+import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotificationBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotificationId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotifyBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpStatusValue.OpStatus;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.config.result.notification.value.ConfigResultBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotificationBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Northbound codecs: RESTCONF path resolution and notification serialization, through the YANG
+ * JSON codec (the *ToJson benchmarks) and through the precompiled writers (*Compiled).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+    private static final String CONTEXT_PATH_PREFIX = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/";
+    private static final String DPN_PATH = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-topology/dpns/dpn1";
+    private static final int PATHS = 1024;
+
+    private NameResolver resolver;
+    private FpcCodecUtils codecs;
+    private String[] contextPaths;
+    private ConfigResultNotification notification;
+    private Notify ddn;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        resolver = NameResolver.get();
+        codecs = FpcCodecUtils.get(ConfigResultNotification.class,
+                YangInstanceIdentifier.of(ConfigResultNotification.QNAME));
+        contextPaths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            contextPaths[i] = CONTEXT_PATH_PREFIX + (1000000 + i);
+        }
+        notification = new ConfigResultNotificationBuilder()
+                .setNotificationId(new NotificationId(1L))
+                .setTimestamp(BigInteger.valueOf(System.currentTimeMillis()))
+                .setValue(new ConfigResultBuilder()
+                        .setOpId(new OpIdentifier(BigInteger.valueOf(12345L)))
+                        .setOpStatus(OpStatus.Ok)
+                        .setCauseValue(Long.valueOf(16L))
+                        .build())
+                .build();
+        ddn = new NotifyBuilder()
+                .setNotificationId(new NotificationId(2L))
+                .setTimestamp(BigInteger.valueOf(System.currentTimeMillis()))
+                .setValue(new DownlinkDataNotificationBuilder()
+                        .setMessageType("Downlink-Data-Notification")
+                        .setDpnId(new FpcDpnId(AgentFixture.DPN_ID))
+                        .setSessionId(BigInteger.valueOf(310150123456789L))
+                        .setClientId(new ClientIdentifier(AgentFixture.CLIENT_ID))
+                        .setOpId(new OpIdentifier(BigInteger.valueOf(12346L)))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Per thread position and output buffer.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        JsonOutput out = new JsonOutput(512);
+    }
+
+    @Benchmark
+    public YangInstanceIdentifier contextPathToInstanceIdentifier(Cursor c) {
+        return resolver.toInstanceIdentifier(contextPaths[(c.next++) & (PATHS - 1)]);
+    }
+
+    @Benchmark
+    public YangInstanceIdentifier dpnPathToInstanceIdentifier() {
+        return resolver.toInstanceIdentifier(DPN_PATH);
+    }
+
+    @Benchmark
+    public String configResultToJson() {
+        return codecs.notificationToJsonString(Notify.class, (DataObject) notification, true);
+    }
+
+    @Benchmark
+    public String configResultToCompactJson() {
+        return codecs.notificationToJsonString(Notify.class, (DataObject) notification, false);
+    }
+
+    @Benchmark
+    public int configResultCompiled(Cursor c) throws IOException {
+        c.out.reset();
+        NotificationJsonWriter.write(codecs, notification, c.out);
+        return c.out.length();
+    }
+
+    @Benchmark
+    public String ddnToJson() {
+        return codecs.notificationToJsonString(Notify.class, (DataObject) ddn, false);
+    }
+
+    @Benchmark
+    public int ddnCompiled(Cursor c) throws IOException {
+        c.out.reset();
+        NotificationJsonWriter.write(codecs, ddn, c.out);
+        return c.out.length();
+    }
+}
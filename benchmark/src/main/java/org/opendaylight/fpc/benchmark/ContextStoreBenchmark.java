@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.activation.cache.OffHeapContextStore;
+import org.opendaylight.fpc.utils.CompactNodeCodec;
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Tenants;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.Tenant;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.TenantKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.FpcMobility;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Off-heap Context storage.
+ *
+ * Covers the CompactNodeCodec on its own and the OffHeapContextStore operations used by the
+ * Storage Cache: replacing a stored Context, reading its Normalized Node and rebuilding the
+ * binding Context from it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContextStoreBenchmark {
+    private static final int CONTEXTS = 4096;
+
+    private CompactNodeCodec codec;
+    private OffHeapContextStore store;
+    private MapEntryNode[] nodes;
+    private String[] keys;
+    private FpcIdentity[] ids;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        FpcCodecUtils codecs = FpcCodecUtils.get();
+        InstanceIdentifier<FpcMobility> mobilityIid = InstanceIdentifier.builder(Tenants.class)
+                .child(Tenant.class, new TenantKey(new FpcIdentity(AgentFixture.TENANT_ID)))
+                .child(FpcMobility.class).build();
+        codec = new CompactNodeCodec();
+        store = new OffHeapContextStore(codecs, mobilityIid, OffHeapContextStore.DEFAULT_SLAB_SIZE);
+        nodes = new MapEntryNode[CONTEXTS];
+        keys = new String[CONTEXTS];
+        ids = new FpcIdentity[CONTEXTS];
+        for (int i = 0; i < CONTEXTS; i++) {
+            Contexts ctxt = new ContextsBuilder((FpcContext) AgentFixture.context(5000000L + i)).build();
+            nodes[i] = (MapEntryNode) codecs.getCodecRegistry().toNormalizedNode(
+                    mobilityIid.child(Contexts.class, ctxt.getKey()), ctxt).getValue();
+            ids[i] = ctxt.getContextId();
+            keys[i] = OffHeapContextStore.keyOf(ids[i]);
+            store.put(keys[i], nodes[i]);
+        }
+        CompactNodeCodec.Output out = new CompactNodeCodec.Output(1024);
+        codec.encode(nodes[0], out);
+        encoded = Arrays.copyOf(out.array(), out.length());
+    }
+
+    /**
+     * Per thread position and codec output buffer.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        CompactNodeCodec.Output out = new CompactNodeCodec.Output(1024);
+
+        int next() {
+            return (next++) & (CONTEXTS - 1);
+        }
+    }
+
+    @Benchmark
+    public int codecEncode(Cursor c) {
+        c.out.reset();
+        codec.encode(nodes[c.next()], c.out);
+        return c.out.length();
+    }
+
+    @Benchmark
+    public NormalizedNode<?, ?> codecDecode() {
+        return codec.decode(encoded, 0);
+    }
+
+    @Benchmark
+    public boolean storeReplace(Cursor c) {
+        int i = c.next();
+        return store.put(keys[i], nodes[i]);
+    }
+
+    @Benchmark
+    public MapEntryNode storeGetNode(Cursor c) {
+        return store.getNode(keys[c.next()]);
+    }
+
+    @Benchmark
+    public FpcContext storeGetContext(Cursor c) {
+        return store.getContext(ids[c.next()]);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.utils.Counter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TEID allocation with the Counter shared by 16 threads over a range of 10M values.
+ *
+ * allocateRecycle returns each value right away (the thread's cached word serves it again).
+ * churn keeps a window of live values per thread and recycles the oldest, so recycled values
+ * land in words owned by the shared bitmap as they do when sessions end in a different order.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class CounterBenchmark {
+
+    /**
+     * Counter shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"10000000"})
+        int range;
+        Counter counter;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            counter = new Counter(0, range);
+        }
+    }
+
+    /**
+     * Live values of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Window {
+        @Param({"4096"})
+        int live;
+        int[] values;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setup(Shared shared) {
+            values = new int[live];
+            for (int i = 0; i < live; i++) {
+                values[i] = shared.counter.nextValue();
+            }
+            next = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(Shared shared) {
+            for (int value : values) {
+                shared.counter.recycle(value);
+            }
+            shared.counter.releaseCache();
+        }
+    }
+
+    @Benchmark
+    public int allocateRecycle(Shared shared) {
+        int value = shared.counter.nextValue();
+        shared.counter.recycle(value);
+        return value;
+    }
+
+    @Benchmark
+    public int churn(Shared shared, Window w) {
+        int slot = w.next;
+        w.next = (slot + 1 == w.values.length) ? 0 : slot + 1;
+        shared.counter.recycle(w.values[slot]);
+        int value = shared.counter.nextValue();
+        w.values[slot] = value;
+        return value;
+    }
+}
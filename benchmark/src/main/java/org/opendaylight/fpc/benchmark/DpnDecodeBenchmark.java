@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPIListener;
+import org.opendaylight.fpc.utils.eventStream.NotificationService;
+import org.opendaylight.fpc.utils.eventStream.SseFanout;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DPN message decoding.
+ *
+ * decodeDdn measures DpnAPIListener.decode of a Downlink Data Notification from a known DPN.
+ * ackCompletion measures the acknowledgement path of an operation: decoding the DPN Reply, the
+ * Transaction lookup and status update and the Config Result notification up to the point it is
+ * handed to the notification stream engine (the benchmark client has no stream, so the event is
+ * counted as unrouted).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DpnDecodeBenchmark {
+    private static final long NOTIFICATION_TIMEOUT_MS = 1000;
+
+    /**
+     * Listener and encoded DPN messages.
+     */
+    @State(Scope.Thread)
+    public static class Messages {
+        DpnAPIListener listener;
+        byte[] ddn;
+        byte[] reply;
+        long opId = 1L << 40;
+        long timeouts;
+        SseFanout streams;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            AgentFixture.init();
+            if (NotificationService.getNotificationStreams() == null) {
+                new NotificationService().contextInitialized(null);
+            }
+            streams = NotificationService.getNotificationStreams();
+            listener = new DpnAPIListener();
+            String key = AgentFixture.NODE_ID + "/" + AgentFixture.NETWORK_ID;
+            DpnAPIListener.setUlDpnMapping(key, new FpcDpnId(AgentFixture.DPN_ID));
+
+            byte[] node = AgentFixture.NODE_ID.getBytes(StandardCharsets.US_ASCII);
+            byte[] network = AgentFixture.NETWORK_ID.getBytes(StandardCharsets.US_ASCII);
+            ddn = ByteBuffer.allocate(20 + node.length + network.length)
+                    .put((byte) AgentFixture.CONTROLLER_TOPIC)
+                    .put((byte) 0b0000_0101)
+                    .putLong(42L)
+                    .putInt((int) AgentFixture.CLIENT_ID)
+                    .putInt(7)
+                    .put((byte) node.length)
+                    .put(node)
+                    .put((byte) network.length)
+                    .put(network)
+                    .array();
+            reply = new byte[11];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (timeouts > 0) {
+                System.err.println("DpnDecodeBenchmark - " + timeouts + " acknowledgements were not notified");
+            }
+        }
+
+        /**
+         * Writes a DPN Reply for an operation into the reply buffer.
+         * @param op - Operation Id (Uint32)
+         */
+        void encodeReply(long op) {
+            ByteBuffer.wrap(reply)
+                .put((byte) AgentFixture.CONTROLLER_TOPIC)
+                .put((byte) 0b0000_0100)
+                .put((byte) 0)
+                .putInt((int) AgentFixture.CLIENT_ID)
+                .putInt((int) op);
+        }
+    }
+
+    @Benchmark
+    public Map.Entry<FpcDpnId, Object> decodeDdn(Messages m) {
+        return m.listener.decode(m.ddn);
+    }
+
+    @Benchmark
+    public Object ackCompletion(Messages m) throws Exception {
+        long op = (m.opId++) & 0xFFFFFFFFL;
+        Transaction tx = Transaction.newTransaction(AgentFixture.emptyDeleteInput(op), System.currentTimeMillis());
+        tx.setResponseSent();
+        long before = m.streams.getUnrouted();
+        m.encodeReply(op);
+        Object decoded = m.listener.decode(m.reply);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NOTIFICATION_TIMEOUT_MS);
+        while (m.streams.getUnrouted() == before) {
+            if (System.nanoTime() > deadline) {
+                m.timeouts++;
+                break;
+            }
+            Thread.yield();
+        }
+        Transaction.purgeOperation(new ClientIdentifier(AgentFixture.CLIENT_ID), new OpIdentifier(BigInteger.valueOf(op)));
+        return decoded;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPI2;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnMessageEncoder;
+import org.opendaylight.fpc.impl.zeromq.ZMQSBListener;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+/**
+ * DPN message encoding.
+ *
+ * The encoder benchmarks write into a reused buffer.  The DpnAPI2 benchmarks take the full
+ * producer path (buffer pool, encoding and the socket queue hand off); the queued buffer is taken
+ * back and released to the pool, standing in for the socket thread.  Run with -prof gc to check
+ * that the steady state does not allocate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DpnEncodeBenchmark {
+    private static final short DPN = 3;
+    private static final long IMSI = 310150123456789L;
+    private static final BigInteger IMSI_BIG = BigInteger.valueOf(IMSI);
+    private static final Ipv4Address SGW = new Ipv4Address("192.168.1.1");
+    private static final Ipv4Address ENB = new Ipv4Address("192.168.2.1");
+
+    private ByteBuffer bb;
+    private ZMQClientSocket sock;
+    private BlockingQueue<ByteBuffer> queue;
+    private DpnAPI2 api;
+    private long opId;
+
+    /**
+     * Creates the buffers and a DPN API whose socket is never started.
+     * @throws Exception - if the environment cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        AgentFixture.setStatic(ZMQSBListener.class, "subscriberId", Short.valueOf(AgentFixture.CONTROLLER_TOPIC));
+        bb = ByteBuffer.allocate(64);
+        queue = new ArrayBlockingQueue<ByteBuffer>(16);
+        sock = new ZMQClientSocket(new ZContext(), AgentFixture.SB_ADDRESS, ZMQ.PUB,
+                new CountDownLatch(1), queue);
+        api = new DpnAPI2(sock);
+    }
+
+    private ByteBuffer recycle() {
+        ByteBuffer out = queue.poll();
+        sock.getBufferPool().release(out);
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeCreateSession() {
+        bb.clear();
+        opId++;
+        return DpnMessageEncoder.encodeCreateSession(bb, DPN, IMSI, 0x0A000001L, (short) 5, opId,
+                0xC0A80101L, opId, AgentFixture.CONTROLLER_TOPIC, AgentFixture.CLIENT_ID, opId);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeModifyBearerDl() {
+        bb.clear();
+        opId++;
+        return DpnMessageEncoder.encodeModifyBearerDl(bb, DPN, 0xC0A80201L, opId, opId,
+                AgentFixture.CLIENT_ID, opId);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDeleteSession() {
+        bb.clear();
+        opId++;
+        return DpnMessageEncoder.encodeDeleteSession(bb, DPN, opId, AgentFixture.CONTROLLER_TOPIC,
+                AgentFixture.CLIENT_ID, opId);
+    }
+
+    @Benchmark
+    public ByteBuffer apiCreateSession() {
+        opId++;
+        api.create_session(DPN, IMSI_BIG, Long.valueOf(0x0A000001L), (short) 5, SGW, opId,
+                AgentFixture.CLIENT_ID, BigInteger.valueOf(opId), opId);
+        return recycle();
+    }
+
+    @Benchmark
+    public ByteBuffer apiModifyBearerDl() {
+        opId++;
+        api.modify_bearer_dl(DPN, opId, ENB, opId, AgentFixture.CLIENT_ID, BigInteger.valueOf(opId));
+        return recycle();
+    }
+
+    @Benchmark
+    public ByteBuffer apiDeleteSession() {
+        opId++;
+        api.delete_session(DPN, (short) 5, opId, AgentFixture.CLIENT_ID, BigInteger.valueOf(opId), opId);
+        return recycle();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.utils.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LatencyHistogram recording by several worker threads while a reporter reads percentiles, as
+ * Metrics does when it publishes a report.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class LatencyHistogramBenchmark {
+    private LatencyHistogram histogram;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        histogram = new LatencyHistogram(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    /**
+     * Pseudo random latencies of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Values {
+        long seed = System.nanoTime();
+
+        long next() {
+            seed ^= (seed << 13);
+            seed ^= (seed >>> 7);
+            seed ^= (seed << 17);
+            return (seed & 0x3FF) + ((seed & 0xF000) == 0 ? (seed >>> 40) & 0xFFFF : 0);
+        }
+    }
+
+    @Benchmark
+    @Group("report")
+    @GroupThreads(8)
+    public void record(Values v) {
+        histogram.record(v.next());
+    }
+
+    @Benchmark
+    @Group("report")
+    @GroupThreads(1)
+    public long p99() {
+        return histogram.getValueAtPercentile(99.0);
+    }
+}
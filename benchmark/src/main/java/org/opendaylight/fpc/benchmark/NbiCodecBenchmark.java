@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.impl.zeromq.ZMQNBICodec;
+import org.opendaylight.fpc.utils.IPToDecimal;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binary Northbound codec: decode of a single session CONF Create and of a CONF_BUNDLES of
+ * BUNDLE_SIZE Creates, and encode of the reply, as ZMQNBIServerPool does per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NbiCodecBenchmark {
+    private static final int BUNDLE_SIZE = 16;
+    // session | downlink
+    private static final int INSTRUCTIONS = (1 << 3) | (1 << 5);
+
+    private byte[] configure;
+    private byte[] bundles;
+    private ConfigureOutput output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ByteBuffer bb = ByteBuffer.allocate(256);
+        bb.put(ZMQNBICodec.MAGIC).put(ZMQNBICodec.VERSION).put(ZMQNBICodec.CONFIGURE)
+          .putLong(AgentFixture.CLIENT_ID);
+        putCreate(bb, 1L, 1L);
+        configure = copy(bb);
+
+        bb = ByteBuffer.allocate(256 * BUNDLE_SIZE);
+        bb.put(ZMQNBICodec.MAGIC).put(ZMQNBICodec.VERSION).put(ZMQNBICodec.CONFIGURE_BUNDLES)
+          .putLong(AgentFixture.CLIENT_ID)
+          .put((byte) 1)
+          .putShort((short) BUNDLE_SIZE);
+        for (int i = 0; i < BUNDLE_SIZE; i++) {
+            putCreate(bb, 100L + i, 1000L + i);
+        }
+        bundles = copy(bb);
+
+        output = new ConfigureOutputBuilder()
+                .setOpId(new OpIdentifier(BigInteger.ONE))
+                .setResult(Result.Ok)
+                .build();
+    }
+
+    /**
+     * Writes a CONF Create of a session Context with UL and DL tunnels.
+     */
+    private static void putCreate(ByteBuffer bb, long opId, long contextId) {
+        byte[] dpnId = AgentFixture.DPN_ID.getBytes(StandardCharsets.UTF_8);
+        bb.putLong(opId)
+          .put((byte) 0)
+          .put((byte) 1)
+          .putInt(INSTRUCTIONS)
+          .putShort((short) 1)
+          .putLong(contextId)
+          .putLong(310150000000000L + contextId)
+          .put((byte) 5)
+          .put((byte) 0)
+          .putShort((short) dpnId.length).put(dpnId)
+          .put((byte) 0)
+          .putInt((int) (0x0A000000L | contextId))
+          .put((byte) 32)
+          .put((byte) (ZMQNBICodec.FLAG_UL | ZMQNBICodec.FLAG_DL))
+          .putInt((int) IPToDecimal.ipv4ToLong("192.168.1.1"))
+          .putInt(0)
+          .putInt((int) contextId + 1)
+          .putInt((int) IPToDecimal.ipv4ToLong("192.168.2.1"))
+          .putInt((int) IPToDecimal.ipv4ToLong("192.168.1.1"))
+          .putInt((int) contextId + 2);
+    }
+
+    private static byte[] copy(ByteBuffer bb) {
+        byte[] retVal = new byte[bb.position()];
+        System.arraycopy(bb.array(), 0, retVal, 0, retVal.length);
+        return retVal;
+    }
+
+    @Benchmark
+    public ConfigureInput decodeConfigure() {
+        return ZMQNBICodec.decodeConfigure(configure);
+    }
+
+    @Benchmark
+    public ConfigureBundlesInput decodeConfigureBundles() {
+        return ZMQNBICodec.decodeConfigureBundles(bundles);
+    }
+
+    @Benchmark
+    public byte[] encodeReply() {
+        return ZMQNBICodec.encodeReply(ZMQNBICodec.CONFIGURE, Collections.singletonList(output));
+    }
+}
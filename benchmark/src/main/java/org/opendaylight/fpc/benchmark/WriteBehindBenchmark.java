@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.fpc.activation.cache.WriteBehindQueue;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Tenants;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.Tenant;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.TenantKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.FpcMobility;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * WriteBehindQueue producers against a DataBroker whose commits complete immediately.
+ *
+ * putDistinct queues writes of different Contexts (every write ends up in a transaction);
+ * putSame rewrites a small set of Contexts so most writes are coalesced in the queue.  The
+ * transactions committed and the writes coalesced or blocked are reported as JMH counters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+    private static final int CONTEXTS = 65536;
+    private static final int HOT_CONTEXTS = 16;
+
+    @Param({"64", "512"})
+    int maxBatch;
+
+    @Param({"5"})
+    long maxDelayMs;
+
+    private WriteBehindQueue queue;
+    private InstanceIdentifier<Contexts>[] iids;
+    private Contexts[] contexts;
+    private long commits;
+    private long coalesced;
+    private long blocked;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setup() {
+        WriteBehindQueue.init(AgentFixture.stubDataBroker(), maxBatch, maxDelayMs);
+        queue = WriteBehindQueue.getInstance();
+        InstanceIdentifier<FpcMobility> mobilityIid = InstanceIdentifier.builder(Tenants.class)
+                .child(Tenant.class, new TenantKey(new FpcIdentity(AgentFixture.TENANT_ID)))
+                .child(FpcMobility.class).build();
+        iids = new InstanceIdentifier[CONTEXTS];
+        contexts = new Contexts[CONTEXTS];
+        for (int i = 0; i < CONTEXTS; i++) {
+            contexts[i] = new ContextsBuilder((FpcContext) AgentFixture.context(6000000L + i)).build();
+            iids[i] = mobilityIid.child(Contexts.class, contexts[i].getKey());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) (Thread.currentThread().getId() * 7919);
+    }
+
+    /**
+     * Queue activity during an iteration.  The queue is shared, so the thread that collects first
+     * claims the activity since the last collection and the others add nothing.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long commits;
+        public long coalesced;
+        public long blocked;
+
+        @TearDown(Level.Iteration)
+        public void collect(WriteBehindBenchmark b) {
+            b.claim(this);
+        }
+    }
+
+    /**
+     * Moves the queue activity not yet claimed into a thread's counters.
+     * @param c - Counters of the calling thread
+     */
+    synchronized void claim(Counters c) {
+        c.commits = queue.getCommits() - commits;
+        c.coalesced = queue.getCoalesced() - coalesced;
+        c.blocked = queue.getBlocked() - blocked;
+        commits += c.commits;
+        coalesced += c.coalesced;
+        blocked += c.blocked;
+    }
+
+    @Benchmark
+    public void putDistinct(Cursor c, Counters counters) {
+        int i = (c.next++) & (CONTEXTS - 1);
+        queue.put(LogicalDatastoreType.OPERATIONAL, iids[i], contexts[i]);
+    }
+
+    @Benchmark
+    public void putSame(Cursor c, Counters counters) {
+        int i = (c.next++) & (HOT_CONTEXTS - 1);
+        queue.put(LogicalDatastoreType.OPERATIONAL, iids[i], contexts[i]);
+    }
+}
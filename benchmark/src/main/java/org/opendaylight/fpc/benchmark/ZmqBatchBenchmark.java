@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchPolicy;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+/**
+ * Southbound ZMQ publishing with and without per topic batching.
+ *
+ * The benchmark thread queues DPN sized messages to a running ZMQClientSocket that publishes to a
+ * local subscriber.  The socket queue is bounded so the measured rate is the rate at which the
+ * socket thread drains it.  Frames and messages sent are reported as JMH counters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZmqBatchBenchmark {
+    private static final String ADDRESS = "tcp://127.0.0.1:5571";
+    private static final int MESSAGE_SIZE = 40;
+
+    /**
+     * Maximum messages per frame; 1 disables batching.
+     */
+    @Param({"1", "16", "64"})
+    int maxMessages;
+
+    @Param({"100"})
+    long maxDelayMicros;
+
+    private ZContext subContext;
+    private ZMQ.Socket subscriber;
+    private ZMQClientSocket sock;
+    private BlockingQueue<ByteBuffer> queue;
+    private Thread sender;
+    private long frames;
+    private long messages;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        subContext = new ZContext();
+        subscriber = subContext.createSocket(ZMQ.SUB);
+        subscriber.setRcvHWM(0);
+        subscriber.bind(ADDRESS);
+        subscriber.subscribe(new byte[0]);
+
+        ZMQBatchPolicy policy = (maxMessages > 1) ?
+                new ZMQBatchPolicy(maxMessages, maxDelayMicros, ZMQBatchPolicy.DEFAULT_MAX_FRAME_BYTES) :
+                ZMQBatchPolicy.DISABLED;
+        // The DPN announced the batched frame capability in its Hello
+        policy.setAccepted(AgentFixture.DPN_TOPIC, true);
+        queue = new ArrayBlockingQueue<ByteBuffer>(4096);
+        sock = new ZMQClientSocket(new ZContext(), ADDRESS, ZMQ.PUB, new CountDownLatch(0), queue, policy);
+        sock.open();
+        sender = new Thread(sock, "zmq-batch-benchmark");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        sock.stop();
+        // Wakes the socket thread if it is waiting on an empty queue
+        queue.offer(ByteBuffer.allocate(MESSAGE_SIZE));
+        sender.join(1000);
+        sock.close();
+        subContext.destroy();
+    }
+
+    /**
+     * Socket activity during an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long frames;
+        public long messages;
+
+        @TearDown(Level.Iteration)
+        public void collect(ZmqBatchBenchmark b) {
+            b.claim(this);
+        }
+    }
+
+    /**
+     * Moves the socket activity since the last iteration into the counters.
+     * @param c - Counters of the benchmark thread
+     */
+    synchronized void claim(Counters c) {
+        c.frames = sock.getFramesSent() - frames;
+        c.messages = sock.getMessagesSent() - messages;
+        frames += c.frames;
+        messages += c.messages;
+    }
+
+    @Benchmark
+    public void publish(Counters counters) throws InterruptedException {
+        ByteBuffer bb = sock.getBufferPool().acquire(MESSAGE_SIZE);
+        bb.put((byte) AgentFixture.DPN_TOPIC);
+        queue.put(bb);
+    }
+}
@@ -8,14 +8,15 @@
 package org.opendaylight.fpc.activation;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.fpc.activation.cache.transaction.ContextInfoHolder;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.dpn.DpnHolder;
 import org.opendaylight.fpc.dpn.DpnResourceManager;
+import org.opendaylight.fpc.impl.VdpnReplicator;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
@@ -100,12 +101,14 @@ public class ActivationManager extends DpnResourceManager implements AutoCloseab
         		if(TenantManager.vdpnDpnsMap.get(dpn.getDpnId()) == null)
         			TenantManager.vdpnDpnsMap.put(dpn.getDpnId(), new ArrayList<FpcDpnId>());
         		if(TenantManager.vdpnContextsMap.get(dpn.getDpnId()) == null)
-        			TenantManager.vdpnContextsMap.put(dpn.getDpnId(), new HashMap<Contexts, ContextInfoHolder>());
+        			TenantManager.vdpnContextsMap.put(dpn.getDpnId(), new ConcurrentHashMap<Contexts, ContextInfoHolder>());
         	}else{
 	            DpnHolder dpnHolder = tenantMgr.getDpnInfo().get(dpn.getDpnId().toString());
 	            if (dpnHolder == null) {
 	                dpnHolder = new DpnHolder(dpn);
 	                tenantMgr.getDpnInfo().put(dpn.getDpnId().toString(), dpnHolder);
+	            } else {
+	                dpnHolder.setWeight(dpn);
 	            }
 	            if (dpnHolder.activator != null) {
 	                LOG.info("Activation Manager - Applying Configuration for Dpn-ID: " +  dpn.getDpnId().getString());
@@ -122,8 +125,9 @@ public class ActivationManager extends DpnResourceManager implements AutoCloseab
 	                            ZmqDpnControlProtocol.class);
 	                }
 	            }
-	            if (dpnHolder.activator != null) {
-
+	            if (dpnHolder.activator != null && VdpnReplicator.getInstance() != null) {
+	                // Continue the VDPN replications that stopped when the DPN left
+	                VdpnReplicator.getInstance().resume(dpn.getDpnId());
 	            }
         	}
 
@@ -137,9 +141,11 @@ public class ActivationManager extends DpnResourceManager implements AutoCloseab
     public void removeDpn(Dpns dpn) {
         if (dpn != null) {
             LOG.info("Activation Manager - Removing Dpn " + dpn.getDpnId());
-            if(!dpn.isAbstract())
+            if(!dpn.isAbstract()){
+            	if(VdpnReplicator.getInstance() != null)
+            		VdpnReplicator.getInstance().interrupt(dpn.getDpnId());
             	tenantMgr.getDpnInfo().get(dpn.getDpnId().toString()).activator.shutdown();
-            else{
+            }else{
             	tenantMgr.getDpnInfo().remove(dpn.getDpnId().toString());
             	TenantManager.vdpnDpnsMap.remove(dpn.getDpnId());
             	TenantManager.vdpnContextsMap.remove(dpn.getDpnId());
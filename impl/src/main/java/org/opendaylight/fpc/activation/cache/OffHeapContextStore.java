@@ -0,0 +1,686 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.opendaylight.fpc.utils.CompactNodeCodec;
+import org.opendaylight.fpc.utils.CompactNodeCodec.UnsupportedNodeException;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.FpcMobility;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.ContextsKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcPort;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Off-heap Context Store.
+ *
+ * Contexts are kept as compact binary records (see {@link CompactNodeCodec}) in direct memory
+ * slabs and indexed by Context Id through an off-heap open addressing table, so the heap cost of a
+ * stored Context is independent of its size.  Binding objects are only rebuilt when a Context is
+ * read.
+ *
+ * Record layout (within a slab):
+ * <pre>
+ * | size class (4) | key hash (4) | key length (4) | body length (4) | key (UTF-8) | body |
+ * </pre>
+ *
+ * Records are placed in power of two blocks; released blocks are reused through per size class
+ * free lists whose links are stored in the released blocks.  The index holds the address
+ * (slab &lt;&lt; 32 | offset) of each record.
+ *
+ * The store is thread safe; readers copy a record out under a read lock and decode it without
+ * holding any lock.  Direct memory is bounded by -XX:MaxDirectMemorySize.
+ */
+public class OffHeapContextStore implements Cache {
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapContextStore.class);
+
+    /**
+     * Default slab size.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER = 16;
+    private static final int MIN_BLOCK_EXPONENT = 5;
+    private static final int SLAB_START = 8;
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    private static final int INITIAL_TABLE_SIZE = 1024;
+    private static final int MAX_TABLE_SIZE = 1 << 27;
+
+    private final FpcCodecUtils codecs;
+    private final CompactNodeCodec codec;
+    private final YangInstanceIdentifier contextsPath;
+    private final int slabSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    private final long[] freeLists;
+    private final ThreadLocal<CompactNodeCodec.Output> outputs;
+
+    private ByteBuffer table;
+    private int tableMask;
+    private int used;
+    private int tombstones;
+    private int slabPos;
+    private long liveBytes;
+    private int generation;
+
+    /**
+     * Constructor.
+     * @param codecs - Codec utilities used to rebuild binding objects
+     * @param mobilityIid - Mobility tree the Contexts belong to
+     * @param slabSize - size (bytes) of each direct memory slab
+     */
+    public OffHeapContextStore(FpcCodecUtils codecs,
+            InstanceIdentifier<FpcMobility> mobilityIid,
+            int slabSize) {
+        this.codecs = codecs;
+        this.codec = new CompactNodeCodec();
+        this.slabSize = Math.max(slabSize, 1 << 16);
+        this.contextsPath = codecs.getCodecRegistry().toYangInstanceIdentifier(
+                mobilityIid.child(Contexts.class, new ContextsKey(new FpcContextId("0")))).getParent();
+        int classes = 1;
+        while ((1L << (MIN_BLOCK_EXPONENT + classes - 1)) < this.slabSize) {
+            classes++;
+        }
+        this.freeLists = new long[classes];
+        this.outputs = new ThreadLocal<CompactNodeCodec.Output>() {
+            @Override
+            protected CompactNodeCodec.Output initialValue() {
+                return new CompactNodeCodec.Output(1024);
+            }
+        };
+        this.table = ByteBuffer.allocateDirect(INITIAL_TABLE_SIZE * 8);
+        this.tableMask = INITIAL_TABLE_SIZE - 1;
+        this.slabPos = this.slabSize;
+    }
+
+    /**
+     * Returns the store key of a Context Id.
+     * @param contextId - Context Id
+     * @return key
+     */
+    public static String keyOf(FpcIdentity contextId) {
+        return NameResolver.extractString(contextId);
+    }
+
+    /**
+     * Returns the store key of a Yang Instance Identifier if it addresses a stored Context.
+     * @param iid - Yang Instance Identifier
+     * @return key or null if the identifier does not address a single Context
+     */
+    public String keyOfPath(YangInstanceIdentifier iid) {
+        if (iid == null) {
+            return null;
+        }
+        PathArgument last = iid.getLastPathArgument();
+        if (!(last instanceof NodeIdentifierWithPredicates) || !contextsPath.equals(iid.getParent())) {
+            return null;
+        }
+        Map<QName, Object> keys =
+                ((NodeIdentifierWithPredicates) last).getKeyValues();
+        if (keys.size() != 1) {
+            return null;
+        }
+        Object value = keys.values().iterator().next();
+        return (value instanceof String || value instanceof Long) ? value.toString() : null;
+    }
+
+    /**
+     * Stores a Context.
+     * @param key - store key of the Context
+     * @param node - Context in Normalized Node form
+     * @return false if the Context cannot be represented off-heap (it was not stored)
+     */
+    public boolean put(String key, MapEntryNode node) {
+        CompactNodeCodec.Output out = outputs.get();
+        out.reset();
+        try {
+            codec.encode(node, out);
+        } catch (UnsupportedNodeException e) {
+            LOG.debug("Context {} kept on heap - {}", key, e.getMessage());
+            return false;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER + keyBytes.length + out.length();
+        if (blockSize(sizeClassFor(recordSize)) > slabSize - SLAB_START) {
+            LOG.debug("Context {} kept on heap - record size {} exceeds the slab size", key, recordSize);
+            return false;
+        }
+        int hash = hash(key);
+        lock.writeLock().lock();
+        long addr = EMPTY;
+        boolean indexed = false;
+        try {
+            int slot = find(hash, keyBytes);
+            long existing = (slot >= 0) ? table.getLong(slot << 3) : EMPTY;
+            if ((existing != EMPTY) && (blockSize(sizeClass(existing)) >= recordSize)) {
+                // Update in place
+                addr = existing;
+                writeRecord(addr, hash, keyBytes, out.array(), out.length());
+                indexed = true;
+                return true;
+            }
+            addr = allocate(recordSize);
+            writeRecord(addr, hash, keyBytes, out.array(), out.length());
+            if (existing != EMPTY) {
+                table.putLong(slot << 3, addr);
+                release(existing);
+            } else {
+                insert(hash, addr);
+            }
+            indexed = true;
+            return true;
+        } catch (OutOfMemoryError e) {
+            ErrorLog.logError("OffHeapContextStore - direct memory exhausted storing Context " + key);
+            if ((addr != EMPTY) && !indexed) {
+                release(addr);
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a Context in Normalized Node form.
+     * @param key - store key of the Context
+     * @return Context or null if not present
+     */
+    public MapEntryNode getNode(String key) {
+        byte[] body = readBody(key);
+        return (body != null) ? (MapEntryNode) codec.decode(body, 0) : null;
+    }
+
+    /**
+     * Indicates if a Context is present.
+     * @param key - store key of the Context
+     * @return true if the Context is stored
+     */
+    public boolean contains(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return find(hash(key), keyBytes) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a Context.
+     * @param key - store key of the Context
+     * @return true if the Context was present
+     */
+    public boolean remove(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = find(hash(key), keyBytes);
+            if (slot < 0) {
+                return false;
+            }
+            release(table.getLong(slot << 3));
+            table.putLong(slot << 3, TOMBSTONE);
+            used--;
+            tombstones++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of stored Contexts.
+     * @return Context count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Direct memory reserved by the store (slabs and index).
+     * @return size in bytes
+     */
+    public long getReservedBytes() {
+        lock.readLock().lock();
+        try {
+            return ((long) slabs.size() * slabSize) + table.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held by live records (including block rounding).
+     * @return size in bytes
+     */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all Contexts and releases the direct memory to the garbage collector.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slabs.clear();
+            for (int i = 0; i < freeLists.length; i++) {
+                freeLists[i] = EMPTY;
+            }
+            table = ByteBuffer.allocateDirect(INITIAL_TABLE_SIZE * 8);
+            tableMask = INITIAL_TABLE_SIZE - 1;
+            used = 0;
+            tombstones = 0;
+            slabPos = slabSize;
+            liveBytes = 0;
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the Yang Instance Identifier of a stored Context.
+     * @param node - Context in Normalized Node form
+     * @return Yang Instance Identifier
+     */
+    public YangInstanceIdentifier pathOf(MapEntryNode node) {
+        return contextsPath.node(node.getIdentifier());
+    }
+
+    /**
+     * Rebuilds the binding object of a stored Context.
+     * @param node - Context in Normalized Node form
+     * @return Context
+     */
+    protected Contexts toContext(MapEntryNode node) {
+        return (Contexts) codecs.dataObjectFromNormalizedNode(pathOf(node), node);
+    }
+
+    @Override
+    public FpcContext getContext(FpcIdentity key) {
+        String k = keyOf(key);
+        if (k == null) {
+            return null;
+        }
+        MapEntryNode node = getNode(k);
+        return (node != null) ? toContext(node) : null;
+    }
+
+    /**
+     * Weakly consistent, lazily decoded view of the stored Contexts.  Iteration does not hold a
+     * lock between elements.  It walks the records in the slabs rather than the index, so a rehash
+     * of the index during the iteration has no effect: every Context that is stored for the whole
+     * iteration is reported exactly once.  Contexts added or removed concurrently may or may not be
+     * reported, and a Context relocated by a concurrent update (see put) may be reported twice or
+     * not at all.  Iteration ends if the store is cleared.
+     */
+    @Override
+    public Map<FpcIdentity, FpcContext> getContexts() {
+        return new ContextMap();
+    }
+
+    @Override
+    public Map<FpcIdentity, FpcPort> getPorts() {
+        return Collections.emptyMap();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    public Map<FpcIdentity, Object> getUnifiedHashmap() {
+        return (Map) getContexts();
+    }
+
+    @Override
+    public FpcPort getPort(FpcIdentity key) {
+        return null;
+    }
+
+    // Internals - callers hold the appropriate lock
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int sizeClassFor(int size) {
+        int c = 0;
+        while ((1 << (MIN_BLOCK_EXPONENT + c)) < size) {
+            c++;
+        }
+        return c;
+    }
+
+    private static int blockSize(int sizeClass) {
+        return 1 << (MIN_BLOCK_EXPONENT + sizeClass);
+    }
+
+    private ByteBuffer slab(long addr) {
+        return slabs.get((int) (addr >>> 32));
+    }
+
+    private static int offset(long addr) {
+        return (int) addr;
+    }
+
+    private int sizeClass(long addr) {
+        return slab(addr).getInt(offset(addr));
+    }
+
+    /**
+     * Locates the index slot of a key.
+     * @param hash - key hash
+     * @param keyBytes - UTF-8 key
+     * @return slot or -1 if absent
+     */
+    private int find(int hash, byte[] keyBytes) {
+        int slot = hash & tableMask;
+        while (true) {
+            long addr = table.getLong(slot << 3);
+            if (addr == EMPTY) {
+                return -1;
+            }
+            if ((addr != TOMBSTONE) && matches(addr, hash, keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    private boolean matches(long addr, int hash, byte[] keyBytes) {
+        ByteBuffer slab = slab(addr);
+        int off = offset(addr);
+        if ((slab.getInt(off + 4) != hash) || (slab.getInt(off + 8) != keyBytes.length)) {
+            return false;
+        }
+        off += HEADER;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(off + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int hash, long addr) {
+        if ((used + tombstones + 1) > ((tableMask + 1) >>> 1)) {
+            rehash();
+        }
+        int slot = hash & tableMask;
+        long existing;
+        while ((existing = table.getLong(slot << 3)) != EMPTY && existing != TOMBSTONE) {
+            slot = (slot + 1) & tableMask;
+        }
+        if (existing == TOMBSTONE) {
+            tombstones--;
+        }
+        table.putLong(slot << 3, addr);
+        used++;
+    }
+
+    /**
+     * Rebuilds the index, growing it if more than a quarter of it is in use.
+     */
+    private void rehash() {
+        int size = tableMask + 1;
+        if (((used + 1) > (size >>> 2)) && (size < MAX_TABLE_SIZE)) {
+            size <<= 1;
+        }
+        ByteBuffer old = table;
+        int oldSize = tableMask + 1;
+        table = ByteBuffer.allocateDirect(size * 8);
+        tableMask = size - 1;
+        tombstones = 0;
+        for (int i = 0; i < oldSize; i++) {
+            long addr = old.getLong(i << 3);
+            if (addr != EMPTY && addr != TOMBSTONE) {
+                int slot = slab(addr).getInt(offset(addr) + 4) & tableMask;
+                while (table.getLong(slot << 3) != EMPTY) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table.putLong(slot << 3, addr);
+            }
+        }
+    }
+
+    private long allocate(int recordSize) {
+        int sizeClass = sizeClassFor(recordSize);
+        int block = blockSize(sizeClass);
+        long addr = freeLists[sizeClass];
+        if (addr != EMPTY) {
+            freeLists[sizeClass] = slab(addr).getLong(offset(addr) + HEADER);
+        } else {
+            if (slabPos + block > slabSize) {
+                carveRemainder();
+                slabs.add(ByteBuffer.allocateDirect(slabSize));
+                slabPos = SLAB_START;
+                LOG.info("OffHeapContextStore - slab {} allocated", slabs.size());
+            }
+            addr = ((long) (slabs.size() - 1) << 32) | slabPos;
+            slabPos += block;
+        }
+        slab(addr).putInt(offset(addr), sizeClass);
+        liveBytes += block;
+        return addr;
+    }
+
+    /**
+     * Places the unused tail of the current slab on the free lists.
+     */
+    private void carveRemainder() {
+        if (slabs.isEmpty()) {
+            return;
+        }
+        long slabIndex = slabs.size() - 1;
+        ByteBuffer slab = slabs.get((int) slabIndex);
+        for (int c = freeLists.length - 1; c >= 0; c--) {
+            int block = blockSize(c);
+            while (slabPos + block <= slabSize) {
+                slab.putInt(slabPos, c);
+                slab.putLong(slabPos + HEADER, freeLists[c]);
+                freeLists[c] = (slabIndex << 32) | slabPos;
+                slabPos += block;
+            }
+        }
+    }
+
+    private void release(long addr) {
+        ByteBuffer slab = slab(addr);
+        int off = offset(addr);
+        int sizeClass = slab.getInt(off);
+        slab.putLong(off + HEADER, freeLists[sizeClass]);
+        freeLists[sizeClass] = addr;
+        liveBytes -= blockSize(sizeClass);
+    }
+
+    private void writeRecord(long addr, int hash, byte[] keyBytes, byte[] body, int bodyLength) {
+        ByteBuffer slab = slab(addr).duplicate();
+        int off = offset(addr);
+        slab.putInt(off + 4, hash);
+        slab.putInt(off + 8, keyBytes.length);
+        slab.putInt(off + 12, bodyLength);
+        slab.position(off + HEADER);
+        slab.put(keyBytes);
+        slab.put(body, 0, bodyLength);
+    }
+
+    private byte[] readBody(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = find(hash(key), keyBytes);
+            return (slot >= 0) ? readBody(table.getLong(slot << 3)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indicates if a block holds the live record of its key, i.e. the index maps the key to it.
+     * Released blocks fail the check as the index never holds their address.
+     */
+    private boolean isLive(long addr) {
+        ByteBuffer slab = slab(addr).duplicate();
+        int off = offset(addr);
+        int keyLength = slab.getInt(off + 8);
+        if ((keyLength < 0) || (HEADER + keyLength > blockSize(slab.getInt(off)))) {
+            return false;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        slab.position(off + HEADER);
+        slab.get(keyBytes);
+        int slot = find(slab.getInt(off + 4), keyBytes);
+        return (slot >= 0) && (table.getLong(slot << 3) == addr);
+    }
+
+    private byte[] readBody(long addr) {
+        ByteBuffer slab = slab(addr).duplicate();
+        int off = offset(addr);
+        byte[] body = new byte[slab.getInt(off + 12)];
+        slab.position(off + HEADER + slab.getInt(off + 8));
+        slab.get(body);
+        return body;
+    }
+
+    /**
+     * Lazily decoded Map view of the store.
+     */
+    private class ContextMap extends AbstractMap<FpcIdentity, FpcContext> {
+        @Override
+        public FpcContext get(Object key) {
+            return (key instanceof FpcIdentity) ? getContext((FpcIdentity) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            String k = (key instanceof FpcIdentity) ? keyOf((FpcIdentity) key) : null;
+            return (k != null) && contains(k);
+        }
+
+        @Override
+        public int size() {
+            return OffHeapContextStore.this.size();
+        }
+
+        @Override
+        public Set<Map.Entry<FpcIdentity, FpcContext>> entrySet() {
+            return new AbstractSet<Map.Entry<FpcIdentity, FpcContext>>() {
+                @Override
+                public Iterator<Map.Entry<FpcIdentity, FpcContext>> iterator() {
+                    return new ContextIterator();
+                }
+
+                @Override
+                public int size() {
+                    return OffHeapContextStore.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Slab scan that decodes one Context at a time.  Blocks never change size class and records do
+     * not move when the index is rehashed, so the scan position (slab, offset) stays valid across
+     * any change of the store other than clear().
+     */
+    private class ContextIterator implements Iterator<Map.Entry<FpcIdentity, FpcContext>> {
+        private final int startGeneration;
+        private int slabIndex = 0;
+        private int offset = SLAB_START;
+        private byte[] nextBody;
+
+        ContextIterator() {
+            lock.readLock().lock();
+            try {
+                startGeneration = generation;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextBody != null) {
+                return true;
+            }
+            lock.readLock().lock();
+            try {
+                if (startGeneration != generation) {
+                    return false;
+                }
+                while (slabIndex < slabs.size()) {
+                    ByteBuffer slab = slabs.get(slabIndex);
+                    // The tail of the current slab is not carved into blocks yet
+                    int end = (slabIndex == slabs.size() - 1) ? slabPos : slabSize;
+                    while (offset + blockSize(0) <= end) {
+                        long addr = ((long) slabIndex << 32) | offset;
+                        offset += blockSize(slab.getInt(offset));
+                        if (isLive(addr)) {
+                            nextBody = readBody(addr);
+                            return true;
+                        }
+                    }
+                    slabIndex++;
+                    offset = SLAB_START;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<FpcIdentity, FpcContext> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            NormalizedNode<?, ?> node = codec.decode(nextBody, 0);
+            nextBody = null;
+            Contexts ctxt = toContext((MapEntryNode) node);
+            return new AbstractMap.SimpleImmutableEntry<FpcIdentity, FpcContext>(ctxt.getContextId(), ctxt);
+        }
+    }
+}
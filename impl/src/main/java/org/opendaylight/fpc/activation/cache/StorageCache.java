@@ -75,7 +75,9 @@ import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
 import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.slf4j.Logger;
@@ -90,9 +92,26 @@ import javassist.bytecode.Descriptor.Iterator;
 
 /**
  * In-memory Storage Cache.
+ *
+ * When enabled (see {@link #setOffHeapContexts(boolean, int)}, off by default) Contexts are held
+ * in an {@link OffHeapContextStore} instead of the in-memory data store.  Change listeners
+ * registered through {@link #watch(YangInstanceIdentifier, DOMDataTreeChangeListener)} are not
+ * notified of changes to off-heap Contexts, so the store must stay off when Context changes are
+ * monitored.  Off-heap Contexts are written to the OPERATIONAL datastore page by page (see
+ * {@link #writeOffHeapContexts(DataBroker)}) rather than as part of the Mobility tree.
+ *
+ * When the {@link WriteBehindQueue} is enabled, Context and Port changes are mirrored to the
+ * OPERATIONAL datastore through it as they happen instead of periodic Mobility tree snapshots
+ * written by the {@link StorageWriter}.
  */
 public class StorageCache implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(StorageCache.class);
+    private static boolean offHeapContexts = false;
+    /**
+     * Off-heap Contexts written per OPERATIONAL write transaction.
+     */
+    public static final int CONTEXT_PAGE_SIZE = 512;
+    private static int contextSlabSize = OffHeapContextStore.DEFAULT_SLAB_SIZE;
 
     private final NameResolver resolver;
     private DataBroker db;
@@ -109,8 +128,22 @@ public class StorageCache implements AutoCloseable {
     private final ActionsBuilder ab;
     private final DescriptorsBuilder descb;
     private final TenantManager mgr;
+    private final OffHeapContextStore contextStore;
+    private final WriteBehindQueue writeBehind;
+    private final YangInstanceIdentifier mobilityYiid;
     protected boolean isDirty;
 
+    /**
+     * Sets the Context storage of Storage Caches created afterwards.  Change listeners are not
+     * notified of changes to off-heap Contexts.
+     * @param enabled - keep Contexts off-heap
+     * @param slabSizeMb - size (MB) of the direct memory slabs of the off-heap store
+     */
+    public static void setOffHeapContexts(boolean enabled, int slabSizeMb) {
+        offHeapContexts = enabled;
+        contextSlabSize = (slabSizeMb > 0) ? slabSizeMb * 1024 * 1024 : OffHeapContextStore.DEFAULT_SLAB_SIZE;
+    }
+
     /**
      * Storage Cache Constructor
      * @param db - DataBroker
@@ -135,11 +168,16 @@ public class StorageCache implements AutoCloseable {
         // Inmemory Cache instantiation
         codecs = FpcCodecUtils.get();
         OsgiBundleScanningSchemaService schemaService = OsgiBundleScanningSchemaService.getInstance();
-        if (schemaService == null) {
-            BundleContext ctxt = FrameworkUtil.getBundle(StorageCache.class).getBundleContext();
+        Bundle bundle = FrameworkUtil.getBundle(StorageCache.class);
+        if ((schemaService == null) && (bundle != null)) {
+            BundleContext ctxt = bundle.getBundleContext();
             schemaService = OsgiBundleScanningSchemaService.createInstance(ctxt);
         }
         memoryCache = InMemoryDOMDataStoreFactory.create("fpccache", (DOMSchemaService)schemaService);
+        if (schemaService == null) {
+            // Outside of an OSGi container (e.g. benchmarks) the cache uses the Agent's own schema
+            memoryCache.onGlobalContextUpdated(codecs.getSchemaContext());
+        }
 
         mobilityIid = InstanceIdentifier.builder(Tenants.class)
                 .child(Tenant.class, mgr.getTenant().getKey() ).child(FpcMobility.class).build();
@@ -148,6 +186,10 @@ public class StorageCache implements AutoCloseable {
           .child(Tenant.class, mgr.getTenant().getKey() ).child(
             org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.FpcPolicy.class).build();
 
+        contextStore = (offHeapContexts) ? new OffHeapContextStore(codecs, mobilityIid, contextSlabSize) : null;
+        writeBehind = WriteBehindQueue.getInstance();
+        mobilityYiid = codecs.getCodecRegistry().toYangInstanceIdentifier(mobilityIid);
+
         //Mobility Cache Preparation
         TenantBuilder tb = new TenantBuilder(mgr.getTenant());
 
@@ -222,6 +264,14 @@ public class StorageCache implements AutoCloseable {
         return isDirty;
     }
 
+    /**
+     * Indicates if changes are mirrored to storage through the write-behind queue.
+     * @return true if the write-behind queue is used
+     */
+    public boolean isWriteBehind() {
+        return writeBehind != null;
+    }
+
     /**
      * Sets the dirty state to false.
      */
@@ -423,9 +473,13 @@ public class StorageCache implements AutoCloseable {
      * @param port - Port to be added.
      */
     protected void write(Ports port) {
+        InstanceIdentifier<Ports> iid = mobilityIid.child(Ports.class, port.getKey());
         Map.Entry<YangInstanceIdentifier,NormalizedNode<?,?>> node = codecs.getCodecRegistry().toNormalizedNode(
-                mobilityIid.child(Ports.class, port.getKey()), port);
-        write(NameResolver.extractString(port.getPortId()), node.getKey(), node.getValue());
+                iid, port);
+        String identKey = NameResolver.extractString(port.getPortId());
+        boolean isUpdate = identities.contains(identKey);
+        write(identKey, node.getKey(), node.getValue());
+        writeBehind(iid, port, isUpdate);
     }
 
     /**
@@ -467,9 +521,79 @@ public class StorageCache implements AutoCloseable {
      * @param ctxt - Context to be added.
      */
     protected void write(Contexts ctxt) {
+        InstanceIdentifier<Contexts> iid = mobilityIid.child(Contexts.class, ctxt.getKey());
         Map.Entry<YangInstanceIdentifier,NormalizedNode<?,?>> node = codecs.getCodecRegistry().toNormalizedNode(
-                mobilityIid.child(Contexts.class, ctxt.getKey()), ctxt);
-        write(NameResolver.extractString(ctxt.getContextId()), node.getKey(), node.getValue());
+                iid, ctxt);
+        String identKey = NameResolver.extractString(ctxt.getContextId());
+        boolean isUpdate = hasIdentity(identKey);
+        if (contextStore != null) {
+            if (writeOffHeap(identKey, node.getKey(), node.getValue())) {
+                writeBehind(iid, ctxt, isUpdate);
+                return;
+            }
+            contextStore.remove(identKey);
+        }
+        write(identKey, node.getKey(), node.getValue());
+        writeBehind(iid, ctxt, isUpdate);
+    }
+
+    /**
+     * Mirrors a Mobility tree write to the OPERATIONAL datastore through the write-behind queue.
+     * @param iid - Instance Identifier
+     * @param data - Data written to the Cache
+     * @param isUpdate - true if the data was merged with an existing entry
+     * @param <T> - DataObject type
+     */
+    protected <T extends DataObject> void writeBehind(InstanceIdentifier<T> iid, T data, boolean isUpdate) {
+        if (writeBehind == null) {
+            return;
+        }
+        if (isUpdate) {
+            writeBehind.merge(LogicalDatastoreType.OPERATIONAL, iid, data);
+        } else {
+            writeBehind.put(LogicalDatastoreType.OPERATIONAL, iid, data);
+        }
+    }
+
+    /**
+     * Writes a Context to the off-heap store.  An update is merged with the stored Context.
+     * @param identKey - Context Identity
+     * @param key - Yang Instance Identifier of the Context
+     * @param value - Context
+     * @return false if the Context could not be stored off-heap
+     */
+    protected boolean writeOffHeap(String identKey, YangInstanceIdentifier key, NormalizedNode<?,?> value) {
+        if (!(value instanceof MapEntryNode)) {
+            return false;
+        }
+        MapEntryNode entry = (MapEntryNode) value;
+        MapEntryNode existing = contextStore.getNode(identKey);
+        if (existing != null) {
+            // Merge through an uncommitted transaction; the in-memory store is left untouched
+            DOMStoreReadWriteTransaction trans = memoryCache.newReadWriteTransaction();
+            try {
+                trans.write(key, existing);
+                trans.merge(key, value);
+                Optional<NormalizedNode<?,?>> merged = trans.read(key).get();
+                if (merged.isPresent() && (merged.get() instanceof MapEntryNode)) {
+                    entry = (MapEntryNode) merged.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                ErrorLog.logError(e.getStackTrace());
+                return false;
+            } finally {
+                trans.close();
+            }
+        }
+        if (!contextStore.put(identKey, entry)) {
+            return false;
+        }
+        if (identities.remove(identKey)) {
+            // A previous version was kept in the in-memory store
+            removeFromMemory(key);
+        }
+        isDirty = true;
+        return true;
     }
 
     /**
@@ -478,6 +602,12 @@ public class StorageCache implements AutoCloseable {
      * @return A Context for the corresponding Identity or null if not present.
      */
     public FpcContext getContext(FpcIdentity key) {
+        if (contextStore != null) {
+            FpcContext ctxt = contextStore.getContext(key);
+            if (ctxt != null) {
+                return ctxt;
+            }
+        }
         DataObject dObj = read( codecs.getCodecRegistry().toYangInstanceIdentifier( mobilityIid
                 .child(Contexts.class, new ContextsKey(new FpcContextId(key)))) );
         return (dObj != null) ? (FpcContext) dObj : null;
@@ -489,6 +619,9 @@ public class StorageCache implements AutoCloseable {
      * @param ctxt - Context to be removed.
      */
     public void remove(Contexts ctxt) {
+        if (contextStore != null) {
+            contextStore.remove(NameResolver.extractString(ctxt.getContextId()));
+        }
         remove(mobilityIid.child(Contexts.class, ctxt.getKey()));
         identities.remove(NameResolver.extractString(ctxt.getContextId()));
     }
@@ -500,6 +633,10 @@ public class StorageCache implements AutoCloseable {
      * @return A Map Entry (pair) that holds the Instance Identifier / DataObject pair.
      */
     public Map.Entry<InstanceIdentifier<?>, DataObject> readAsPair(YangInstanceIdentifier iid) {
+        MapEntryNode ctxt = readOffHeap(iid);
+        if (ctxt != null) {
+            return codecs.getCodecRegistry().fromNormalizedNode(iid, ctxt);
+        }
         DOMStoreReadTransaction rTrans = memoryCache.newReadOnlyTransaction();
         try {
             Optional<NormalizedNode<?,?>> val =
@@ -519,6 +656,10 @@ public class StorageCache implements AutoCloseable {
      * @return DataObject
      */
     public DataObject read(YangInstanceIdentifier iid) {
+        MapEntryNode ctxt = readOffHeap(iid);
+        if (ctxt != null) {
+            return codecs.dataObjectFromNormalizedNode(iid, ctxt);
+        }
         DOMStoreReadTransaction rTrans = memoryCache.newReadOnlyTransaction();
         try {
             Optional<NormalizedNode<?,?>> val =
@@ -532,6 +673,19 @@ public class StorageCache implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Reads a Context from the off-heap store.
+     * @param iid - Yang Instance ID
+     * @return Context or null if the identifier does not address an off-heap Context
+     */
+    protected MapEntryNode readOffHeap(YangInstanceIdentifier iid) {
+        if (contextStore == null) {
+            return null;
+        }
+        String key = contextStore.keyOfPath(iid);
+        return (key != null) ? contextStore.getNode(key) : null;
+    }
+
     /**
      * Reads Cache.
      * @param instanceId - String (Yang Instance ID)
@@ -615,6 +769,11 @@ public class StorageCache implements AutoCloseable {
     public void remove(String instanceId) {
         Map.Entry<FixedType, String> entityInfo = this.resolver.extractTypeAndKey(instanceId);
         remove(resolver.toInstanceIdentifier(instanceId));
+        if ((contextStore != null) && (contextStore.remove(instanceId) ||
+                ((entityInfo != null) && (entityInfo.getKey() == FixedType.CONTEXT) &&
+                  contextStore.remove(entityInfo.getValue())))) {
+            isDirty = true;
+        }
         if ((!identities.remove(instanceId)) && (entityInfo != null)) {
         	identities.remove(entityInfo.getValue());
         }
@@ -634,12 +793,32 @@ public class StorageCache implements AutoCloseable {
      */
     protected void remove(YangInstanceIdentifier iiCtxt) {
         if (iiCtxt != null) {
-            DOMStoreWriteTransaction wtrans = memoryCache.newWriteOnlyTransaction();
-            wtrans.delete(iiCtxt);
-            commitTrans(wtrans);
+            if ((writeBehind != null) && !iiCtxt.equals(mobilityYiid) && mobilityYiid.contains(iiCtxt)) {
+                InstanceIdentifier<?> iid = codecs.getCodecRegistry().fromYangInstanceIdentifier(iiCtxt);
+                if (iid != null) {
+                    writeBehind.delete(LogicalDatastoreType.OPERATIONAL, iid);
+                }
+            }
+            if (contextStore != null) {
+                String key = contextStore.keyOfPath(iiCtxt);
+                if ((key != null) && contextStore.remove(key)) {
+                    isDirty = true;
+                }
+            }
+            removeFromMemory(iiCtxt);
         }
     }
 
+    /**
+     * Removes an Object from the in-memory store only.
+     * @param iiCtxt - Yang Instance Identifier
+     */
+    private void removeFromMemory(YangInstanceIdentifier iiCtxt) {
+        DOMStoreWriteTransaction wtrans = memoryCache.newWriteOnlyTransaction();
+        wtrans.delete(iiCtxt);
+        commitTrans(wtrans);
+    }
+
     /**
      * Commits the Transaction
      * @param wtrans - write transaction
@@ -664,6 +843,9 @@ public class StorageCache implements AutoCloseable {
     @Override
     public void close() {
         memoryCache.close();
+        if (contextStore != null) {
+            contextStore.clear();
+        }
         StorageWriter writer = StorageWriter.getInstance();
         if (writer != null) {
             writer.removeCache(this);
@@ -671,7 +853,8 @@ public class StorageCache implements AutoCloseable {
     }
 
     /**
-     * Returns the Mobility Tree within the cache.
+     * Returns the Mobility Tree within the cache.  Off-heap Contexts are not part of the tree;
+     * see {@link #writeOffHeapContexts(DataBroker)}.
      * @return A pair (Map Entry) with the FPC Mobility Instance Identifier and value.
      */
     public Map.Entry<InstanceIdentifier<FpcMobility>, FpcMobility> getMobilityTree() {
@@ -679,6 +862,45 @@ public class StorageCache implements AutoCloseable {
                 (FpcMobility)read(mobilityIid));
     }
 
+    /**
+     * Writes the off-heap Contexts to the OPERATIONAL datastore, CONTEXT_PAGE_SIZE Contexts per
+     * write transaction.  Contexts are decoded one at a time from the store, so they are never
+     * all copied to the heap.  Called after the Mobility tree has been written.
+     * @param dataBroker - Data Broker
+     * @return number of Contexts written
+     */
+    public int writeOffHeapContexts(DataBroker dataBroker) {
+        if ((contextStore == null) || (contextStore.size() == 0)) {
+            return 0;
+        }
+        int retVal = 0;
+        WriteTransaction wtrans = null;
+        for (FpcContext ctxt : contextStore.getContexts().values()) {
+            if (wtrans == null) {
+                wtrans = dataBroker.newWriteOnlyTransaction();
+            }
+            Contexts context = (Contexts) ctxt;
+            wtrans.put(LogicalDatastoreType.OPERATIONAL, mobilityIid.child(Contexts.class, context.getKey()),
+                    context, true);
+            if (++retVal % CONTEXT_PAGE_SIZE == 0) {
+                wtrans.submit();
+                wtrans = null;
+            }
+        }
+        if (wtrans != null) {
+            wtrans.submit();
+        }
+        return retVal;
+    }
+
+    /**
+     * Returns the off-heap Context store.
+     * @return OffHeapContextStore or null if Contexts are kept in the in-memory store
+     */
+    public OffHeapContextStore getContextStore() {
+        return contextStore;
+    }
+
     /**
      * Registers a Change Listener with the Cache.
      * @param iid - Instance Identifier to Monitor
@@ -687,6 +909,9 @@ public class StorageCache implements AutoCloseable {
      */
     public ListenerRegistration<DOMDataTreeChangeListener> watch(YangInstanceIdentifier iid,
             DOMDataTreeChangeListener listener) {
+        if (contextStore != null) {
+            LOG.warn("Storage Cache - Contexts are kept off-heap; {} is not notified of Context changes", iid);
+        }
         return memoryCache.registerTreeChangeListener(iid, listener);
     }
 
@@ -696,6 +921,7 @@ public class StorageCache implements AutoCloseable {
 	 * @return - true if exists, false otherwise
 	 */
 	public boolean hasIdentity(String identifier) {
-		return identities.contains(identifier);
+		return identities.contains(identifier) ||
+				((contextStore != null) && contextStore.contains(identifier));
 	}
 }
@@ -149,7 +149,8 @@ public class StorageWriter implements AutoCloseable {
                     StorageWriter sw = StorageWriter.getInstance();
                     if (sw != null) {
                         for (StorageCache sc : sw.caches) {
-                            if (sc.isDirty) {
+                            // Caches using the write-behind queue are mirrored as they change
+                            if (sc.isDirty && !sc.isWriteBehind()) {
                                 // Write to Mobility Tree to OPERATIONAL
                                 LOG.info("Writing cache update for tenant");
                                 WriteTransaction wtrans0 = dataBroker.newWriteOnlyTransaction();
@@ -159,6 +160,7 @@ public class StorageWriter implements AutoCloseable {
                                     wtrans0.put(LogicalDatastoreType.OPERATIONAL, mobTree.getKey(),
                                             mobTree.getValue(), true);
                                     wtrans0.submit();
+                                    sc.writeOffHeapContexts(dataBroker);
                                 }
                             }
                         }
@@ -0,0 +1,461 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Write-behind pipeline for datastore writes.
+ *
+ * Writes are queued per (datastore, Instance Identifier) and coalesced: a put or delete replaces
+ * every queued write of the same identifier, a merge is appended to them.  A flush thread
+ * submits the queued writes in batches of at most maxBatch identifiers, one datastore transaction
+ * per batch, when maxBatch identifiers are queued or maxDelayMs after the first queued write,
+ * whichever comes first.
+ *
+ * At most MAX_PENDING_BATCHES * maxBatch identifiers are queued.  A write of an identifier that is
+ * not queued yet blocks while the queue is full, until the flush thread takes the queued writes;
+ * writes coalesced with a queued identifier never block.
+ *
+ * Queue depth and flush latency (time from the start of a flush until the transaction commit
+ * completes) are available through the getters of this class.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindQueue.class);
+    /**
+     * Batches of queued Instance Identifiers above which writers block.
+     */
+    public static final int MAX_PENDING_BATCHES = 16;
+    static private WriteBehindQueue _instance;
+    static private Thread _flushThread;
+
+    /**
+     * Initialization.
+     * @param dataBroker - DataBroker
+     * @param maxBatch - maximum Instance Identifiers per transaction (0 disables write-behind)
+     * @param maxDelayMs - maximum time a write is queued before it is flushed
+     */
+    static public void init(DataBroker dataBroker, int maxBatch, long maxDelayMs) {
+        if (_instance != null) {
+            _instance.close();
+        }
+        if (maxBatch <= 0) {
+            _instance = null;
+            LOG.info("WriteBehindQueue - disabled");
+            return;
+        }
+        _instance = new WriteBehindQueue(dataBroker, maxBatch, maxDelayMs);
+        _flushThread = new Thread(_instance.new Flusher(), "fpc-write-behind");
+        _flushThread.setDaemon(true);
+        _flushThread.start();
+    }
+
+    /**
+     * Provides the Class Instance
+     * @return WriteBehindQueue instance or null if write-behind is disabled
+     */
+    static public WriteBehindQueue getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Write Operation.
+     */
+    private enum OpType {
+        PUT,
+        MERGE,
+        DELETE
+    }
+
+    /**
+     * A queued write.
+     */
+    private static class Op {
+        final OpType type;
+        final DataObject data;
+
+        Op(OpType type, DataObject data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Coalescing key.
+     */
+    private static class Key {
+        final LogicalDatastoreType store;
+        final InstanceIdentifier<?> iid;
+        private final int hash;
+
+        Key(LogicalDatastoreType store, InstanceIdentifier<?> iid) {
+            this.store = store;
+            this.iid = iid;
+            this.hash = 31 * store.hashCode() + iid.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (store == other.store) && iid.equals(other.iid);
+        }
+    }
+
+    private final DataBroker dataBroker;
+    private final int maxBatch;
+    private final int maxPending;
+    private final long maxDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private LinkedHashMap<Key, List<Op>> pending = new LinkedHashMap<Key, List<Op>>();
+    private long firstPendingNanos;
+    private volatile boolean run = true;
+
+    private final AtomicLong writes = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong blocked = new AtomicLong(0L);
+    private final AtomicLong commits = new AtomicLong(0L);
+    private final AtomicLong failures = new AtomicLong(0L);
+    private final AtomicLong totalFlushNanos = new AtomicLong(0L);
+    private final AtomicLong maxFlushNanos = new AtomicLong(0L);
+    private volatile long lastFlushNanos = 0L;
+
+    /**
+     * Constructor.
+     * @param dataBroker - DataBroker
+     * @param maxBatch - maximum Instance Identifiers per transaction
+     * @param maxDelayMs - maximum time a write is queued before it is flushed
+     */
+    protected WriteBehindQueue(DataBroker dataBroker, int maxBatch, long maxDelayMs) {
+        this.dataBroker = dataBroker;
+        this.maxBatch = maxBatch;
+        this.maxPending = (int) Math.min(Integer.MAX_VALUE, (long) maxBatch * MAX_PENDING_BATCHES);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, maxDelayMs));
+    }
+
+    /**
+     * Queues a put.
+     * @param store - Datastore
+     * @param iid - Instance Identifier
+     * @param data - Data to write
+     * @param <T> - DataObject type
+     */
+    public <T extends DataObject> void put(LogicalDatastoreType store, InstanceIdentifier<T> iid, T data) {
+        enqueue(new Key(store, iid), new Op(OpType.PUT, data));
+    }
+
+    /**
+     * Queues a merge.
+     * @param store - Datastore
+     * @param iid - Instance Identifier
+     * @param data - Data to merge
+     * @param <T> - DataObject type
+     */
+    public <T extends DataObject> void merge(LogicalDatastoreType store, InstanceIdentifier<T> iid, T data) {
+        enqueue(new Key(store, iid), new Op(OpType.MERGE, data));
+    }
+
+    /**
+     * Queues a delete.
+     * @param store - Datastore
+     * @param iid - Instance Identifier
+     */
+    public void delete(LogicalDatastoreType store, InstanceIdentifier<?> iid) {
+        enqueue(new Key(store, iid), new Op(OpType.DELETE, null));
+    }
+
+    private void enqueue(Key key, Op op) {
+        writes.incrementAndGet();
+        lock.lock();
+        try {
+            List<Op> ops = pending.get(key);
+            if (ops == null && run && pending.size() >= maxPending) {
+                blocked.incrementAndGet();
+                ready.signal();
+                while (run && pending.size() >= maxPending) {
+                    notFull.awaitUninterruptibly();
+                }
+                ops = pending.get(key);
+            }
+            if (ops == null) {
+                ops = new ArrayList<Op>(1);
+                if (pending.isEmpty()) {
+                    firstPendingNanos = System.nanoTime();
+                }
+                pending.put(key, ops);
+            } else {
+                coalesced.incrementAndGet();
+                if (op.type != OpType.MERGE) {
+                    ops.clear();
+                }
+            }
+            ops.add(op);
+            if (pending.size() >= maxBatch) {
+                ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes all queued writes.
+     */
+    public void flush() {
+        LinkedHashMap<Key, List<Op>> batch;
+        lock.lock();
+        try {
+            batch = pending;
+            pending = new LinkedHashMap<Key, List<Op>>();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        submit(batch);
+    }
+
+    /**
+     * Submits writes, one transaction per maxBatch Instance Identifiers.
+     * @param batch - writes to submit
+     */
+    private void submit(LinkedHashMap<Key, List<Op>> batch) {
+        Iterator<Map.Entry<Key, List<Op>>> it = batch.entrySet().iterator();
+        while (it.hasNext()) {
+            final long start = System.nanoTime();
+            WriteTransaction wtrans = dataBroker.newWriteOnlyTransaction();
+            for (int i = 0; (i < maxBatch) && it.hasNext(); i++) {
+                Map.Entry<Key, List<Op>> entry = it.next();
+                apply(wtrans, entry.getKey(), entry.getValue());
+            }
+            CheckedFuture<Void,TransactionCommitFailedException> future = wtrans.submit();
+            Futures.addCallback(future, new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    recordFlush(start);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    recordFlush(start);
+                    failures.incrementAndGet();
+                    ErrorLog.logError("WriteBehindQueue - batch commit failed " + t.getLocalizedMessage(),
+                            t.getStackTrace());
+                }
+            });
+            commits.incrementAndGet();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void apply(WriteTransaction wtrans, Key key, List<Op> ops) {
+        for (Op op : ops) {
+            switch (op.type) {
+                case PUT:
+                    wtrans.put(key.store, (InstanceIdentifier) key.iid, op.data, true);
+                    break;
+                case MERGE:
+                    wtrans.merge(key.store, (InstanceIdentifier) key.iid, op.data, true);
+                    break;
+                case DELETE:
+                    wtrans.delete(key.store, key.iid);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void recordFlush(long start) {
+        long latency = System.nanoTime() - start;
+        lastFlushNanos = latency;
+        totalFlushNanos.addAndGet(latency);
+        long max;
+        while (latency > (max = maxFlushNanos.get())) {
+            if (maxFlushNanos.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Number of Instance Identifiers waiting to be flushed.
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of writes received.
+     * @return write count
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * Number of writes coalesced with a queued write of the same Instance Identifier.
+     * @return coalesced write count
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Number of writes that blocked because the queue was full.
+     * @return blocked write count
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * Number of datastore transactions submitted.
+     * @return transaction count
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * Number of datastore transactions that failed.
+     * @return failure count
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Latency of the most recently completed flush.
+     * @return latency in microseconds
+     */
+    public long getLastFlushLatencyUs() {
+        return TimeUnit.NANOSECONDS.toMicros(lastFlushNanos);
+    }
+
+    /**
+     * Largest flush latency.
+     * @return latency in microseconds
+     */
+    public long getMaxFlushLatencyUs() {
+        return TimeUnit.NANOSECONDS.toMicros(maxFlushNanos.get());
+    }
+
+    /**
+     * Average flush latency.
+     * @return latency in microseconds
+     */
+    public long getAverageFlushLatencyUs() {
+        long count = commits.get();
+        return (count > 0) ? TimeUnit.NANOSECONDS.toMicros(totalFlushNanos.get() / count) : 0L;
+    }
+
+    @Override
+    public void close() {
+        run = false;
+        lock.lock();
+        try {
+            ready.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (_flushThread != null) {
+            _flushThread.interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindQueue [depth=" + getQueueDepth() + ", writes=" + writes.get() + ", coalesced=" +
+                coalesced.get() + ", blocked=" + blocked.get() + ", commits=" + commits.get() + ", failures=" + failures.get() +
+                ", avgFlushUs=" + getAverageFlushLatencyUs() + ", maxFlushUs=" + getMaxFlushLatencyUs() + "]";
+    }
+
+    /**
+     * Thread that flushes the queue when a batch is full or the oldest write reaches the maximum delay.
+     */
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            LOG.info("WriteBehindQueue RUN started - maxBatch {}, maxDelayMs {}", maxBatch,
+                    TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+            while (run) {
+                LinkedHashMap<Key, List<Op>> batch = null;
+                lock.lock();
+                try {
+                    while (run && (batch == null)) {
+                        if (pending.isEmpty()) {
+                            ready.await(maxDelayNanos, TimeUnit.NANOSECONDS);
+                            continue;
+                        }
+                        long wait = maxDelayNanos - (System.nanoTime() - firstPendingNanos);
+                        if ((pending.size() >= maxBatch) || (wait <= 0)) {
+                            batch = pending;
+                            pending = new LinkedHashMap<Key, List<Op>>();
+                            notFull.signalAll();
+                        } else {
+                            ready.awaitNanos(wait);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    if (run) {
+                        ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (batch != null) {
+                    try {
+                        submit(batch);
+                    } catch (Exception e) {
+                        ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+                    }
+                }
+            }
+            LOG.info("WriteBehindQueue RUN stopped");
+        }
+    }
+}
@@ -8,7 +8,6 @@
 package org.opendaylight.fpc.activation.cache.transaction;
 
 import static java.lang.Double.doubleToLongBits;
-import static java.lang.Double.longBitsToDouble;
 
 import java.math.BigInteger;
 import java.text.DateFormat;
@@ -22,13 +21,20 @@ import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnCommandWindow;
+import org.opendaylight.fpc.activation.workers.AdmissionController;
 import org.opendaylight.fpc.dpn.DpnHolder;
+import org.opendaylight.fpc.impl.VdpnReplicator;
+import org.opendaylight.fpc.impl.memcached.MemcachedThreadPool;
+import org.opendaylight.fpc.monitor.ScheduledMonitors;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.LatencyHistogram;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.fpc.rev150105.TxStats;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.fpc.rev150105.TxStatsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.fpc.rev150105.tx.stats.States;
@@ -42,8 +48,22 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Utility that stores Metrics and writes them to Storage.
+ *
+ * Besides entry counts and total times, every Transaction state keeps a {@link LatencyHistogram}
+ * of the time spent in it, and end to end completion times are kept overall and per Client.
+ * Activation call times are kept per DPN and Northbound request times per processing stage.  All
+ * recording is lock and allocation free; the histograms of a Client, DPN or stage are created on
+ * first lookup and should be cached by the caller.
  */
 public class Metrics implements AutoCloseable {
+    /**
+     * Highest Transaction time (ms) tracked with full histogram precision
+     */
+    public static final long HIGHEST_TRACKABLE_MS = 3600000L;
+    /**
+     * Highest DPN activation time (us) tracked with full histogram precision
+     */
+    public static final long HIGHEST_TRACKABLE_US = 60000000L;
     static private Metrics _instance;
     static private Thread _writerThread;
     static private MetricsWriter _writer;
@@ -73,14 +93,19 @@ public class Metrics implements AutoCloseable {
      * Resets all metrics.
      */
     static public void clear() {
-        _instance.init();
+        _instance.reset();
     }
 
     AtomicLong numTxs;
     Map<String,AtomicInteger> stampTotals;
     Map<Transaction.OperationStatus, AtomicLong> stateEntrants;
-    Map<Transaction.OperationStatus, AtomicLong> stateRuntimes;
-    AtomicLong completionRuntimes;
+    Map<Transaction.OperationStatus, DoubleAdder> stateRuntimes;
+    Map<Transaction.OperationStatus, LatencyHistogram> stateLatencies;
+    LatencyHistogram completionLatency;
+    Map<Long, LatencyHistogram> clientLatencies;
+    Map<String, LatencyHistogram> dpnLatencies;
+    Map<String, LatencyHistogram> dpnRoundTrips;
+    Map<String, LatencyHistogram> nbiLatencies;
 
     /**
      * Initializes metrics.
@@ -89,12 +114,44 @@ public class Metrics implements AutoCloseable {
         numTxs = new AtomicLong(0);
         stampTotals = new ConcurrentHashMap<String,AtomicInteger>();
         stateEntrants = new ConcurrentHashMap<Transaction.OperationStatus, AtomicLong>();
-        stateRuntimes = new ConcurrentHashMap<Transaction.OperationStatus, AtomicLong>();
+        stateRuntimes = new ConcurrentHashMap<Transaction.OperationStatus, DoubleAdder>();
+        stateLatencies = new ConcurrentHashMap<Transaction.OperationStatus, LatencyHistogram>();
         for(Transaction.OperationStatus stat : Transaction.OperationStatus.values()) {
             stateEntrants.put(stat, new AtomicLong(0));
-            stateRuntimes.put(stat, new AtomicLong(0));
+            stateRuntimes.put(stat, new DoubleAdder());
+            stateLatencies.put(stat, new LatencyHistogram(HIGHEST_TRACKABLE_MS));
+        }
+        completionLatency = new LatencyHistogram(HIGHEST_TRACKABLE_MS);
+        clientLatencies = new ConcurrentHashMap<Long, LatencyHistogram>();
+        dpnLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+        dpnRoundTrips = new ConcurrentHashMap<String, LatencyHistogram>();
+        nbiLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    }
+
+    /**
+     * Resets metrics in place so that histograms cached by callers remain valid.
+     */
+    protected void reset() {
+        numTxs.set(0);
+        stampTotals.clear();
+        for(Transaction.OperationStatus stat : Transaction.OperationStatus.values()) {
+            stateEntrants.get(stat).set(0);
+            stateRuntimes.get(stat).reset();
+            stateLatencies.get(stat).reset();
+        }
+        completionLatency.reset();
+        for (LatencyHistogram h : clientLatencies.values()) {
+            h.reset();
+        }
+        for (LatencyHistogram h : dpnLatencies.values()) {
+            h.reset();
+        }
+        for (LatencyHistogram h : dpnRoundTrips.values()) {
+            h.reset();
+        }
+        for (LatencyHistogram h : nbiLatencies.values()) {
+            h.reset();
         }
-        completionRuntimes = new AtomicLong(0);
     }
 
     /**
@@ -122,12 +179,71 @@ public class Metrics implements AutoCloseable {
     public void addData(Transaction.OperationStatus newState, Transaction.OperationStatus oldState, double runtime,
             long totalRutime) {
         stateEntrants.get(newState).incrementAndGet();
-        stateRuntimes.get(oldState).set(doubleToLongBits (
-                    longBitsToDouble(stateRuntimes.get(oldState).get()) + runtime)
-                );
+        stateRuntimes.get(oldState).add(runtime);
+        stateLatencies.get(oldState).record((long) runtime);
         if (newState == Transaction.OperationStatus.COMPLETED) {
-            this.completionRuntimes.addAndGet(totalRutime);
+            completionLatency.record(totalRutime);
+        }
+    }
+
+    /**
+     * Returns the completion time histogram (ms) of a Client.
+     * @param clientKey - registry key of the Client Identifier
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getClientHistogram(long clientKey) {
+        LatencyHistogram h = clientLatencies.get(clientKey);
+        if (h == null) {
+            h = new LatencyHistogram(HIGHEST_TRACKABLE_MS);
+            LatencyHistogram prior = clientLatencies.putIfAbsent(clientKey, h);
+            h = (prior != null) ? prior : h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the activation time histogram (us) of a DPN.
+     * @param dpnId - DPN Identifier
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getDpnHistogram(String dpnId) {
+        LatencyHistogram h = dpnLatencies.get(dpnId);
+        if (h == null) {
+            h = new LatencyHistogram(HIGHEST_TRACKABLE_US);
+            LatencyHistogram prior = dpnLatencies.putIfAbsent(dpnId, h);
+            h = (prior != null) ? prior : h;
         }
+        return h;
+    }
+
+    /**
+     * Returns the command round trip histogram (us) of a DPN.
+     * @param dpnId - DPN Identifier
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getDpnRoundTripHistogram(String dpnId) {
+        LatencyHistogram h = dpnRoundTrips.get(dpnId);
+        if (h == null) {
+            h = new LatencyHistogram(HIGHEST_TRACKABLE_US);
+            LatencyHistogram prior = dpnRoundTrips.putIfAbsent(dpnId, h);
+            h = (prior != null) ? prior : h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the time histogram (us) of a Northbound request processing stage.
+     * @param stage - stage name
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getNbiHistogram(String stage) {
+        LatencyHistogram h = nbiLatencies.get(stage);
+        if (h == null) {
+            h = new LatencyHistogram(HIGHEST_TRACKABLE_US);
+            LatencyHistogram prior = nbiLatencies.putIfAbsent(stage, h);
+            h = (prior != null) ? prior : h;
+        }
+        return h;
     }
 
     /**
@@ -141,8 +257,9 @@ public class Metrics implements AutoCloseable {
         for (Transaction.OperationStatus status : stateEntrants.keySet()) {
             if (stateEntrants.get(status) != null) {
                 States someState  = createState(new StatesBuilder(), status.toString(),
-                    stateEntrants.get(status).get(), (stateRuntimes.get(status) != null) ? stateRuntimes.get(status)
-                        .get() : null);
+                    stateEntrants.get(status).get(), (stateRuntimes.get(status) != null) ?
+                        doubleToLongBits(stateRuntimes.get(status).sum()) : null,
+                    stateLatencies.get(status), "ms");
                 if (someState != null) {
                     retVal.add(someState);
                 }
@@ -153,12 +270,52 @@ public class Metrics implements AutoCloseable {
         AtomicLong completions = stateEntrants.get(Transaction.OperationStatus.COMPLETED);
         if (completions != null) {
             States completionState  = createState(new StatesBuilder(), "Total Runtime for Completed Transactions",
-                    completions.longValue(), completionRuntimes.get());
+                    completions.longValue(), doubleToLongBits(completionLatency.getSum()), completionLatency, "ms");
             if (completionState != null) {
                 retVal.add(completionState);
             }
         }
 
+        // Per Client Completion Runtimes
+        for (Entry<Long, LatencyHistogram> entry : clientLatencies.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            retVal.add(createState(new StatesBuilder(), "Completion Runtime for Client " + entry.getKey(),
+                    h.getCount(), doubleToLongBits(h.getSum()), h, "ms"));
+        }
+
+        // Per DPN Activation Runtimes
+        for (Entry<String, LatencyHistogram> entry : dpnLatencies.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            retVal.add(createState(new StatesBuilder(), "Activation Runtime for DPN " + entry.getKey(),
+                    h.getCount(), doubleToLongBits(h.getSum()), h, "us"));
+        }
+
+        // Per DPN Command Round Trips
+        for (Entry<String, LatencyHistogram> entry : dpnRoundTrips.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            retVal.add(createState(new StatesBuilder(), "Command Round Trip for DPN " + entry.getKey(),
+                    h.getCount(), doubleToLongBits(h.getSum()), h, "us"));
+        }
+        for (DpnCommandWindow window : DpnCommandWindow.getWindows()) {
+            retVal.add(createState(new StatesBuilder(), "Commands In Flight for DPN " + window.getDpnKey(),
+                    (long) window.getInFlight(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Commands Retransmitted for DPN " + window.getDpnKey(),
+                    window.getRetransmitted(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Commands Expired for DPN " + window.getDpnKey(),
+                    window.getExpired(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Commands Rejected for DPN " + window.getDpnKey(),
+                    window.getRejected(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Commands Cancelled for DPN " + window.getDpnKey(),
+                    window.getCancelled(), 0L, null, null));
+        }
+
+        // Northbound Stage Runtimes
+        for (Entry<String, LatencyHistogram> entry : nbiLatencies.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            retVal.add(createState(new StatesBuilder(), "Northbound " + entry.getKey(),
+                    h.getCount(), doubleToLongBits(h.getSum()), h, "us"));
+        }
+
         // Activation Statistics
         Long rx = 0L, tx = 0L;
         for (TenantManager tmgrs : ((TenantManager.getTenantsState() != null) ? TenantManager.getTenantsState().values() :
@@ -173,16 +330,67 @@ public class Metrics implements AutoCloseable {
             }
         }
         States activatorRx  = createState(new StatesBuilder(), "Total Activator Rx Transactions",
-                rx, 0L);
+                rx, 0L, null, null);
         if (activatorRx != null) {
             retVal.add(activatorRx);
         }
         States activatorTx  = createState(new StatesBuilder(), "Total Activator Tx Transactions",
-                rx, 0L);
+                tx, 0L, null, null);
         if (activatorTx != null) {
             retVal.add(activatorTx);
         }
 
+        // Admission Control
+        AdmissionController admission = AdmissionController.getInstance();
+        if (admission != null) {
+            retVal.add(createState(new StatesBuilder(), "Activation Queue Depth",
+                    admission.getQueueDepth(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Admission Admitted",
+                    admission.getAdmitted(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Admission Rejected (DPN Overload)",
+                    admission.getShedOverload(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Admission Rejected (DPN In Flight)",
+                    admission.getShedInFlight(), 0L, null, null));
+            for (TenantManager tmgrs : ((TenantManager.getTenantsState() != null) ? TenantManager.getTenantsState().values() :
+                    Collections.<TenantManager>emptyList()) ) {
+                for (Entry<String, DpnHolder> item : ((tmgrs.getDpnInfo() != null) ? tmgrs.getDpnInfo().entrySet() :
+                    Collections.<String, DpnHolder>emptyMap().entrySet())) {
+                    retVal.add(createState(new StatesBuilder(), "In Flight Operations for DPN " + item.getKey(),
+                            (long) item.getValue().inFlight.get(), 0L, null, null));
+                }
+            }
+        }
+
+        // Session Mirroring
+        MemcachedThreadPool memcached = MemcachedThreadPool.getInstance();
+        if (memcached != null) {
+            retVal.add(createState(new StatesBuilder(), "Memcached Mirrored Contexts",
+                    memcached.getWritten(), 0L, null, null));
+            retVal.add(createState(new StatesBuilder(), "Memcached Dropped Contexts",
+                    memcached.getDropped(), 0L, null, null));
+        }
+
+        // Scheduled Monitors
+        retVal.add(createState(new StatesBuilder(), "Scheduled Monitor Groups",
+                (long) ScheduledMonitors.getGroupCount(), 0L, null, null));
+        retVal.add(createState(new StatesBuilder(), "Scheduled Monitor Reads",
+                ScheduledMonitors.getReads(), 0L, null, null));
+        retVal.add(createState(new StatesBuilder(), "Scheduled Monitor Serializations",
+                ScheduledMonitors.getSerializations(), 0L, null, null));
+
+        // VDPN Replication
+        VdpnReplicator replicator = VdpnReplicator.getInstance();
+        if (replicator != null) {
+            retVal.add(createState(new StatesBuilder(), "VDPN Replication Pending Acks",
+                    (long) replicator.getPendingAcks(), 0L, null, null));
+            for (VdpnReplicator.Job job : replicator.getJobs()) {
+                retVal.add(createState(new StatesBuilder(), "VDPN Replication " + job.getName() + " Remaining",
+                        job.getRemaining(), 0L, null, null));
+                retVal.add(createState(new StatesBuilder(), "VDPN Replication " + job.getName() + " Acked",
+                        job.getAcked(), 0L, null, null));
+            }
+        }
+
         return retVal;
     }
 
@@ -192,9 +400,12 @@ public class Metrics implements AutoCloseable {
      * @param stateName - State Name
      * @param entries - Number of Entries
      * @param runtime - Runtime
+     * @param latency - Latency histogram or null
+     * @param units - Units of the latency histogram
      * @return State
      */
-    private States createState(StatesBuilder sb, String stateName, Long entries, Long runtime) {
+    private States createState(StatesBuilder sb, String stateName, Long entries, Long runtime,
+            LatencyHistogram latency, String units) {
         sb.setState(stateName)
           .setKey(new StatesKey(stateName))
           .setEntries(BigInteger.valueOf(entries));
@@ -210,7 +421,7 @@ public class Metrics implements AutoCloseable {
                     .setExponent(exponent)
                     .setMantissa(BigInteger.valueOf((long)mantissa))
                     .build());
-            val = (entries > 0) ? runtime / entries: 0;
+            val = (entries > 0) ? val / entries: 0;
             exponent = Math.getExponent(val);
             mantissa = val / Math.scalb(1.0, exponent);
             if (mantissa < 0) {
@@ -221,6 +432,13 @@ public class Metrics implements AutoCloseable {
                     .setMantissa(BigInteger.valueOf((long)mantissa))
                     .build());
         }
+        if (latency != null) {
+            sb.setUnits(units)
+              .setP50(BigInteger.valueOf(latency.getValueAtPercentile(50.0)))
+              .setP99(BigInteger.valueOf(latency.getValueAtPercentile(99.0)))
+              .setP999(BigInteger.valueOf(latency.getValueAtPercentile(99.9)))
+              .setMax(BigInteger.valueOf(latency.getMax()));
+        }
         return sb.build();
     }
 
@@ -7,14 +7,17 @@
  */
 package org.opendaylight.fpc.activation.cache.transaction;
 
-import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -22,11 +25,17 @@ import org.opendaylight.fpc.activation.cache.Cache;
 import org.opendaylight.fpc.activation.cache.OpCache;
 import org.opendaylight.fpc.activation.cache.PayloadCache;
 import org.opendaylight.fpc.activation.cache.StorageCache;
+import org.opendaylight.fpc.activation.workers.AdmissionController;
 import org.opendaylight.fpc.notification.Notifier;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.ErrorTypeIndex;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
+import org.opendaylight.fpc.utils.LatencyHistogram;
 import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.fpc.utils.NamedThreadFactory;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ErrorTypeId;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpInput;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpStatusValue.OpStatus;
@@ -36,6 +45,7 @@ import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev1608
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.ResultType;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.CommonSuccessBuilder;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.DeleteSuccessBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.ErrBuilder;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcPort;
@@ -49,11 +59,144 @@ import org.slf4j.LoggerFactory;
  */
 public class Transaction {
     private static final Logger LOG = LoggerFactory.getLogger(Transaction.class);
-    private static Map<String, Transaction> transactions = new ConcurrentHashMap<String, Transaction>();
-
-    private static Map<Long, Map.Entry<LongAdder,List<Transaction>>> bundles =
-            new HashMap<Long, Map.Entry<LongAdder,List<Transaction>>>();
+    private static final TransactionRegistry transactions = new TransactionRegistry(64);
+    private static final ConcurrentHashMap<Long, Bundle> bundles = new ConcurrentHashMap<Long, Bundle>();
     private static AtomicLong bundleLinkId = new AtomicLong(0L);
+    private static final int NOTIFICATION_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long SHUTDOWN_WAIT_MS = 1000L;
+
+    /**
+     * Default time a Transaction is kept after its creation.
+     */
+    public static final long DEFAULT_TTL_MS = 60000L;
+    private static final long EVICTION_TICK_MS = 100L;
+    private static final int EVICTION_WHEEL_SIZE = 1024;
+    private static volatile long ttlMs = DEFAULT_TTL_MS;
+    private static final AtomicLong evicted = new AtomicLong(0L);
+    // Recreated by init after a shutdown, e.g. when the bundle is restarted
+    private static volatile ExecutorService notificationExecutor = newNotificationExecutor();
+    private static volatile HashedTimingWheel<Transaction> evictionWheel = newEvictionWheel();
+    private static boolean stopped = false;
+
+    /**
+     * Transactions of a Bundle.
+     */
+    private static final class Bundle {
+        final LongAdder count = new LongAdder();
+        final Queue<Transaction> members = new ConcurrentLinkedQueue<Transaction>();
+    }
+
+    /**
+     * Sets the time Transactions created afterwards are kept before they are evicted.
+     * @param ttl - time to live in milliseconds (0 disables eviction)
+     */
+    public static void setTimeToLive(long ttl) {
+        ttlMs = Math.max(0L, ttl);
+    }
+
+    /**
+     * Number of registered Transactions.
+     * @return Transaction count
+     */
+    public static int getTransactionCount() {
+        return transactions.size();
+    }
+
+    /**
+     * Number of Transactions evicted because their time to live elapsed.
+     * @return evicted Transaction count
+     */
+    public static long getEvictedCount() {
+        return evicted.get();
+    }
+
+    /**
+     * Creates the executor Ok and Err Config Result notifications are issued on.
+     */
+    private static ExecutorService newNotificationExecutor() {
+        return Executors.newFixedThreadPool(NOTIFICATION_THREADS, new NamedThreadFactory("fpc-tx-notification"));
+    }
+
+    /**
+     * Creates the timing wheel Transactions are evicted by.
+     */
+    private static HashedTimingWheel<Transaction> newEvictionWheel() {
+        return new HashedTimingWheel<Transaction>(
+                "fpc-tx-eviction", EVICTION_TICK_MS, TimeUnit.MILLISECONDS, EVICTION_WHEEL_SIZE,
+                new HashedTimingWheel.ExpiryHandler<Transaction>() {
+                    @Override
+                    public void expired(List<Transaction> items) {
+                        evict(items);
+                    }
+                });
+    }
+
+    /**
+     * Starts the eviction wheel and the notification executor again if they were stopped by
+     * shutdown.
+     */
+    public static synchronized void init() {
+        if (stopped) {
+            notificationExecutor = newNotificationExecutor();
+            evictionWheel = newEvictionWheel();
+            stopped = false;
+        }
+    }
+
+    /**
+     * Stops the eviction wheel and the notification executor.  Notifications already queued are
+     * given a short time to be issued before the notification services are closed; later ones
+     * are dropped.
+     */
+    public static synchronized void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        ExecutorService executor = notificationExecutor;
+        evictionWheel.close();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes expired Transactions.  Transactions that have not reached a final state are failed
+     * with an Err Config Result.
+     * @param expired - Transactions whose time to live elapsed
+     */
+    private static void evict(List<Transaction> expired) {
+        for (Transaction t : expired) {
+            if (transactions.remove(t.clientKey, t.opKey, t) == null) {
+                continue;
+            }
+            evicted.incrementAndGet();
+            t.releaseAdmission();
+            if (t.bundleLink != null) {
+                Bundle bundle = bundles.get(t.bundleLink);
+                if (bundle != null) {
+                    bundle.members.remove(t);
+                    if (bundle.members.isEmpty()) {
+                        bundles.remove(t.bundleLink, bundle);
+                    }
+                }
+            }
+            OperationStatus status = t.status;
+            // OK_RESPONSE_SENT only means the client got ok-notify-follows; the DPN never
+            // answered, so the client is still owed a Config Result
+            if ((status != OperationStatus.COMPLETED) && (status != OperationStatus.FAILED)) {
+                LOG.debug("Evicting stale Transaction {}/{} in state {}", t.getClientId(), t.getOpId(), status);
+                t.expire(status);
+            }
+        }
+    }
+
     /**
      * Provides a unique Bundle Identifier
      * @return Long - Unique Bundle Identifier
@@ -66,40 +209,40 @@ public class Transaction {
     }
 
     /**
-     * Creates a Transaction for given Client / Operation Identity
+     * Retrieves the Transaction for given Client / Operation Identity
      * @param clientId - Client Identifier
      * @param opId - Operation Identifier
-     * @return Transaction
+     * @return Transaction or null if not present
      */
     public static Transaction get(ClientIdentifier clientId,
             OpIdentifier opId) {
-        return get(clientId.toString() + "/" + opId.toString());
+        return transactions.get(TransactionRegistry.clientKey(clientId), TransactionRegistry.opKey(opId));
     }
 
     /**
-     * Creates a Transaction for the given Client / Operation information that is part of a
+     * Retrieves the Transaction for the given Client / Operation information that is part of a
      * bundle.
      * @param clientId - Client Identifier
      * @param bundleId - Bundle Unique Identifier
      * @param opId - Operation Identifier
-     * @return Transaction
+     * @return Transaction or null if not present
      */
     public static Transaction get(ClientIdentifier clientId,
             long bundleId,
             OpIdentifier opId) {
-        return transactions.get(clientId.toString() + "/" + bundleId + "/" + opId.toString());
+        Transaction t = get(clientId, opId);
+        return ((t != null) && (t.bundleLink != null) && (t.bundleLink == bundleId)) ? t : null;
     }
 
     /**
-     * Provides Transaction based upon provided key.
-     * Keys should be
-     * - {@code <client id> + <operation id>} for simple Transactions
-     * - {@code <client id> + <bundle id> + <operation id>} for Bundle operations
-     * @param key - String key to identify the Transaction
+     * Retrieves a Transaction by its numeric Client / Operation identifiers (as carried in DPN
+     * messages).
+     * @param clientId - numeric Client Identifier
+     * @param opId - Operation Identifier (low 64 bits)
      * @return Transaction or null if not present
      */
-    public static Transaction get(String key) {
-        return transactions.get(key);
+    public static Transaction get(long clientId, long opId) {
+        return transactions.get(clientId, opId);
     }
 
     /**
@@ -108,16 +251,11 @@ public class Transaction {
      * @param opId - Operation Identifier
      */
     public static void purgeOperation(ClientIdentifier clientId, OpIdentifier opId) {
-        purgeOperation(clientId.toString() + "/" + opId.toString());
-    }
-
-    /**
-     * Purge an Operation.
-     * The key follows the same convention as key in {@link #get(String)}.
-     * @param key - Key of the operation to purge
-     */
-    private static void purgeOperation(String key) {
-            transactions.remove(key);
+        Transaction t = transactions.remove(TransactionRegistry.clientKey(clientId),
+                TransactionRegistry.opKey(opId), null);
+        if (t != null) {
+            t.cancelEviction();
+        }
     }
 
     /**
@@ -128,16 +266,15 @@ public class Transaction {
         if (bundleid == null) {
             return;
         }
-        Map.Entry<LongAdder,List<Transaction>> bundleInfo =  bundles.get(bundleid);
+        Bundle bundleInfo = bundles.remove(bundleid);
         if (bundleInfo == null) {
             return;
         }
         long ts = System.currentTimeMillis();
-        for(Transaction t : bundleInfo.getValue()) {
+        for(Transaction t : bundleInfo.members) {
             t.setStatusTs(OperationStatus.FAILED, ts);
-            purgeOperation(t.getClientId().toString() + "/" + bundleid + "/" + t.getOpId().toString());
+            t.unregister();
         }
-        bundles.remove(bundleid);
     }
 
     /**
@@ -207,9 +344,15 @@ public class Transaction {
     private long firstTs;
     private long lastTs;
     private TenantManager tenantMgr;
-    private boolean responseSent; //flag is set to true after response to original request is sent
+    private final CompletableFuture<Void> responseSent = new CompletableFuture<Void>(); //completed after response to original request is sent
     private boolean notificationReady; //flag is set to true if notification is ready to be sent
     private boolean notifEnqueued;
+    private long clientKey;
+    private LatencyHistogram clientLatency;
+    private long opKey;
+    private HashedTimingWheel.Timeout<Transaction> evictionTimeout;
+    private volatile AdmissionController.Ticket admission;
+    private volatile boolean expired; //set once the Transaction is evicted before reaching a final state
     /**
      * Creates a new Operation.
      * @param input - Operation Input
@@ -232,14 +375,18 @@ public class Transaction {
      */
     static public Transaction newTransaction(OpInput input, Long bundleLink, long startTime)
             throws EmptyBodyException {
-        Map.Entry<LongAdder,List<Transaction>> bundleInfo =  (bundleLink != null) ? bundles.get(bundleLink) : null;
+        if (bundleLink == null) {
+            return new Transaction(input, startTime);
+        }
+        Bundle bundleInfo = bundles.get(bundleLink);
         if (bundleInfo == null) {
-            bundleInfo = new AbstractMap.SimpleEntry<LongAdder,List<Transaction>>(new LongAdder(),
-                    new ArrayList<Transaction>());
-            bundles.put(bundleLink, bundleInfo);
+            Bundle created = new Bundle();
+            bundleInfo = bundles.putIfAbsent(bundleLink, created);
+            if (bundleInfo == null) {
+                bundleInfo = created;
+            }
         }
-        return (bundleLink != null) ? new Transaction(input, bundleLink, startTime, bundleInfo) :
-                    new Transaction(input, startTime);
+        return new Transaction(input, bundleLink, startTime, bundleInfo);
     }
 
     /**
@@ -283,8 +430,8 @@ public class Transaction {
      */
     protected Transaction(OpInput input, long startTime) throws EmptyBodyException {
         init(input, null, startTime);
-    	LOG.info(input.getClientId() + "/" + input.getOpId().toString());
-        transactions.put(input.getClientId() + "/" + input.getOpId().toString(), this);
+        LOG.debug("New Transaction {}/{}", input.getClientId(), input.getOpId());
+        register();
     }
 
     /**
@@ -296,11 +443,66 @@ public class Transaction {
      * @throws EmptyBodyException - when input is null
      */
     protected Transaction(OpInput input, Long bundleLink, long startTime,
-            Map.Entry<LongAdder,List<Transaction>> bundleInfo) throws EmptyBodyException {
+            Bundle bundleInfo) throws EmptyBodyException {
         init(input, bundleLink, startTime);
-        transactions.put(input.getClientId() + "/" + input.getOpId().toString(), this);
-        bundleInfo.getKey().add(1);;
-        ((ArrayList<Transaction>)bundleInfo.getValue()).add(this);
+        register();
+        bundleInfo.count.add(1);
+        bundleInfo.members.add(this);
+    }
+
+    /**
+     * Adds the Transaction to the registry and schedules its eviction.
+     */
+    private void register() {
+        clientKey = TransactionRegistry.clientKey(input.getClientId());
+        opKey = TransactionRegistry.opKey(input.getOpId());
+        clientLatency = Metrics.getInstance().getClientHistogram(clientKey);
+        Transaction replaced = transactions.put(clientKey, opKey, this);
+        if (replaced != null) {
+            replaced.cancelEviction();
+        }
+        long ttl = ttlMs;
+        if (ttl > 0) {
+            evictionTimeout = evictionWheel.schedule(this, ttl, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Removes the Transaction from the registry.
+     */
+    private void unregister() {
+        if (transactions.remove(clientKey, opKey, this) != null) {
+            cancelEviction();
+        }
+        releaseAdmission();
+    }
+
+    /**
+     * Attaches the admission of the operation.  It is released when the Transaction closes or is evicted.
+     * @param ticket - admission ticket
+     */
+    public void setAdmission(AdmissionController.Ticket ticket) {
+        this.admission = ticket;
+    }
+
+    /**
+     * Releases the admission of the operation, if any.
+     */
+    private void releaseAdmission() {
+        AdmissionController.Ticket ticket = admission;
+        if (ticket != null) {
+            ticket.release();
+        }
+    }
+
+    /**
+     * Cancels the scheduled eviction.
+     */
+    private void cancelEviction() {
+        HashedTimingWheel.Timeout<Transaction> timeout = evictionTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
     /**
@@ -470,29 +672,47 @@ public class Transaction {
     }
 
     /**
-     * Set the response sent flag to True so that a notification maybe created and sent
+     * Marks the response to the original request as sent so that a pending notification may be dispatched
      */
     public void setResponseSent(){
-    	this.responseSent = true;
     	this.setStatusTs(OperationStatus.OK_RESPONSE_SENT, System.currentTimeMillis());
+    	this.responseSent.complete(null);
     }
 
     /**
-     * Prepares and enqueues a notification to be sent to a client
+     * Indicates if the response to the original request has been sent.
+     * @return true if the response has been sent
      */
-    public void sendNotification() {
-    	while(!this.responseSent){
-    		try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
+    public boolean isResponseSent() {
+    	return this.responseSent.isDone();
+    }
+
+    /**
+     * Prepares and enqueues a notification to be sent to a client.
+     * The notification is dispatched on the notification executor once the response to
+     * the original request has been sent; the calling thread never blocks.
+     * @return a future that completes when the notification has been issued
+     */
+    public CompletableFuture<Void> sendNotification() {
+    	return this.responseSent.thenRunAsync(new Runnable() {
+			@Override
+			public void run() {
+				if (expired) {
+					return;
+				}
+				try {
+					dispatchNotification();
+				} catch (Exception e) {
+					ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
+				}
 			}
-    	}
-    	try {
-			Thread.sleep(1);
-		} catch (InterruptedException e) {
-			ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
-		}
+    	}, notificationExecutor);
+    }
+
+    /**
+     * Issues the Ok Config Result notification and completes the Transaction.
+     */
+    private void dispatchNotification() {
     	this.setStatusTs(OperationStatus.DISPATCHING_NOTIFICATION, System.currentTimeMillis());
         switch (input.getOpType()) {
         	case Create:
@@ -536,7 +756,9 @@ public class Transaction {
      * @param duration - duration spent in the previous state
      */
     public void setStatus(OperationStatus nextState, long duration) {
-        Metrics.getInstance().addData(nextState, this.status, duration, lastTs - firstTs);
+        long total = lastTs - firstTs;
+        Metrics.getInstance().addData(nextState, this.status, duration, total);
+        recordCompletion(nextState, total);
         this.status = nextState;
     }
 
@@ -546,11 +768,24 @@ public class Transaction {
      * @param ts - Timestamp of the state transition
      */
     public void setStatusTs(OperationStatus nextState, long ts) {
-        Metrics.getInstance().addData(nextState, this.status, ts - lastTs, lastTs - firstTs);
+        long total = ts - firstTs;
+        Metrics.getInstance().addData(nextState, this.status, ts - lastTs, total);
+        recordCompletion(nextState, total);
         this.status = nextState;
         this.lastTs = ts;
     }
 
+    /**
+     * Records the end to end runtime of a completed transaction against its Client.
+     * @param nextState - The new transaction state
+     * @param total - Total Transaction Runtime
+     */
+    private void recordCompletion(OperationStatus nextState, long total) {
+        if (nextState == OperationStatus.COMPLETED && clientLatency != null) {
+            clientLatency.record(total);
+        }
+    }
+
     /**
      * Fails the transaction.
      */
@@ -578,6 +813,74 @@ public class Transaction {
         close();
     }
 
+    /**
+     * Fails the Transaction if it is still open, e.g. when the DPN did not acknowledge it.  The
+     * error Config Result is issued once the response to the original request has been sent.
+     * @param err - Error result, or null to report the current result
+     * @return a future that completes when the notification has been issued
+     */
+    public CompletableFuture<Void> failAsync(final ResultType err) {
+        return this.responseSent.thenRunAsync(new Runnable() {
+            @Override
+            public void run() {
+                if (transactions.get(clientKey, opKey) != Transaction.this) {
+                    return;
+                }
+                try {
+                    dispatchFailure(err);
+                } catch (Exception e) {
+                    ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+                }
+            }
+        }, notificationExecutor);
+    }
+
+    /**
+     * Fails an evicted Transaction.  It is no longer registered, so the Err Config Result is issued
+     * right away rather than after the response to the original request, which may never be sent.
+     * @param status - state the Transaction was evicted in
+     */
+    private void expire(OperationStatus status) {
+        this.expired = true;
+        final ResultType err = new ErrBuilder()
+                .setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.TRANSACTION_EXPIRED))
+                .setErrorInfo("PROTOCOL - operation failed - ERROR - Transaction expired in state " + status)
+                .build();
+        try {
+            notificationExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dispatchFailure(err);
+                    } catch (Exception e) {
+                        ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            setStatusTs(OperationStatus.FAILED, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Issues the Err Config Result notification and closes the Transaction.
+     * @param err - Error result, or null to report the current result
+     */
+    private void dispatchFailure(ResultType err) {
+        if (err != null) {
+            rt = err;
+        }
+        setStatusTs(OperationStatus.DISPATCHING_NOTIFICATION, System.currentTimeMillis());
+        Notifier.issueConfigResult(this.getClientId(),
+                this.getOpId(),
+                OpStatus.Err,
+                rt,
+                true,
+                this.causeValue);
+        setStatusTs(OperationStatus.FAILED, System.currentTimeMillis());
+        close();
+    }
+
     /**
      * Fails the transaction.
      * @param duration - Time spent in the previous state.
@@ -592,12 +895,15 @@ public class Transaction {
      */
     private void close() {
         if (bundleLink == null) {
-            LOG.debug("Closing Transaction: " +  this.getOpId());
-            purgeOperation(this.getClientId(), this.getOpId());
+            LOG.debug("Closing Transaction: {}", this.getOpId());
         } else {
-            LOG.debug("Closing Transaction: " +  this.bundleLink + "/" + this.getOpId());
-            purgeOperation(this.getClientId().toString() + "/" + this.bundleLink + "/" + this.getOpId().toString());
+            LOG.debug("Closing Transaction: {}/{}", this.bundleLink, this.getOpId());
+            Bundle bundle = bundles.get(bundleLink);
+            if (bundle != null) {
+                bundle.members.remove(this);
+            }
         }
+        unregister();
     }
 
     /**
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.cache.transaction;
+
+import java.nio.charset.StandardCharsets;
+
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+
+/**
+ * Lock striped map of Transactions keyed by a (client, operation) pair of primitive longs.
+ *
+ * Each stripe is an open addressing table of parallel arrays guarded by its own monitor, so no
+ * key objects or Strings are created on lookup and contention is limited to Transactions that
+ * hash to the same stripe.
+ */
+class TransactionRegistry {
+    private static final int INITIAL_STRIPE_CAPACITY = 256;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Constructor.
+     * @param stripeCount - number of stripes (rounded up to a power of two)
+     */
+    TransactionRegistry(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount));
+        size = (size < stripeCount) ? size << 1 : size;
+        stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = size - 1;
+    }
+
+    /**
+     * Returns the registry key of a Client Identifier.  Numeric identities are used as is; other
+     * identities are reduced to a 64 bit FNV-1a hash of their text.
+     * @param clientId - Client Identifier
+     * @return client key
+     */
+    static long clientKey(ClientIdentifier clientId) {
+        if (clientId == null) {
+            return 0L;
+        }
+        if (clientId.getInt64() != null) {
+            return clientId.getInt64();
+        }
+        String value = (clientId.getString() != null) ? clientId.getString() :
+            String.valueOf(clientId.getInstanceIdentifier());
+        return textKey(value);
+    }
+
+    /**
+     * Returns the registry key of an Operation Identifier.
+     * @param opId - Operation Identifier
+     * @return operation key (the low 64 bits of the identifier)
+     */
+    static long opKey(OpIdentifier opId) {
+        return (opId == null || opId.getValue() == null) ? 0L : opId.getValue().longValue();
+    }
+
+    /**
+     * Key of a textual identity.  Decimal text maps to its numeric value so that a client
+     * registered as "5" and a DPN reply carrying client 5 resolve to the same key.
+     * @param value - identity text
+     * @return key
+     */
+    private static long textKey(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                h ^= (b & 0xFF);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+
+    private static int hash(long client, long op) {
+        long h = (client * 0x9E3779B97F4A7C15L) ^ op;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[(hash >>> 16) & stripeMask];
+    }
+
+    /**
+     * Adds or replaces a Transaction.
+     * @param client - client key
+     * @param op - operation key
+     * @param t - Transaction
+     * @return the replaced Transaction or null
+     */
+    Transaction put(long client, long op, Transaction t) {
+        int h = hash(client, op);
+        Stripe s = stripe(h);
+        synchronized (s) {
+            return s.put(h, client, op, t);
+        }
+    }
+
+    /**
+     * Retrieves a Transaction.
+     * @param client - client key
+     * @param op - operation key
+     * @return Transaction or null
+     */
+    Transaction get(long client, long op) {
+        int h = hash(client, op);
+        Stripe s = stripe(h);
+        synchronized (s) {
+            int slot = s.find(h, client, op);
+            return (slot >= 0) ? s.values[slot] : null;
+        }
+    }
+
+    /**
+     * Removes a Transaction.
+     * @param client - client key
+     * @param op - operation key
+     * @param expected - Transaction to remove or null to remove any Transaction with the key
+     * @return the removed Transaction or null
+     */
+    Transaction remove(long client, long op, Transaction expected) {
+        int h = hash(client, op);
+        Stripe s = stripe(h);
+        synchronized (s) {
+            int slot = s.find(h, client, op);
+            if (slot < 0 || ((expected != null) && (s.values[slot] != expected))) {
+                return null;
+            }
+            return s.removeSlot(slot);
+        }
+    }
+
+    /**
+     * Number of registered Transactions.
+     * @return Transaction count
+     */
+    int size() {
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Open addressing table with linear probing and backward shift deletion.
+     */
+    private static final class Stripe {
+        long[] clients = new long[INITIAL_STRIPE_CAPACITY];
+        long[] ops = new long[INITIAL_STRIPE_CAPACITY];
+        Transaction[] values = new Transaction[INITIAL_STRIPE_CAPACITY];
+        int size;
+
+        int find(int h, long client, long op) {
+            int mask = values.length - 1;
+            int slot = h & mask;
+            while (values[slot] != null) {
+                if (clients[slot] == client && ops[slot] == op) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        Transaction put(int h, long client, long op, Transaction t) {
+            int slot = find(h, client, op);
+            if (slot >= 0) {
+                Transaction old = values[slot];
+                values[slot] = t;
+                return old;
+            }
+            if ((size + 1) > (values.length >>> 1)) {
+                resize();
+            }
+            insert(h, client, op, t);
+            size++;
+            return null;
+        }
+
+        private void insert(int h, long client, long op, Transaction t) {
+            int mask = values.length - 1;
+            int slot = h & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            clients[slot] = client;
+            ops[slot] = op;
+            values[slot] = t;
+        }
+
+        Transaction removeSlot(int slot) {
+            Transaction old = values[slot];
+            int mask = values.length - 1;
+            // Backward shift so that probe sequences stay unbroken without tombstones
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (values[next] != null) {
+                int ideal = hash(clients[next], ops[next]) & mask;
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    clients[hole] = clients[next];
+                    ops[hole] = ops[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            values[hole] = null;
+            size--;
+            if ((values.length > INITIAL_STRIPE_CAPACITY) && (size < (values.length >>> 3))) {
+                rebuild(values.length >>> 1);
+            }
+            return old;
+        }
+
+        private void resize() {
+            rebuild(values.length << 1);
+        }
+
+        private void rebuild(int capacity) {
+            long[] oldClients = clients;
+            long[] oldOps = ops;
+            Transaction[] oldValues = values;
+            clients = new long[capacity];
+            ops = new long[capacity];
+            values = new Transaction[capacity];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(hash(oldClients[i], oldOps[i]), oldClients[i], oldOps[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
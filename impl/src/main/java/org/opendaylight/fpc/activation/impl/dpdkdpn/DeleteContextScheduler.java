@@ -8,35 +8,52 @@
 package org.opendaylight.fpc.activation.impl.dpdkdpn;
 
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
+import org.opendaylight.fpc.utils.HashedTimingWheel.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
  * Deletes a context scheduler
+ *
+ * Bearer lifetimes are kept on a hashed timing wheel rather than as one ScheduledFuture per
+ * bearer.  A pending delete is keyed by its (DPN Topic, TEID) pair so that it can be cancelled
+ * when the context is deleted (or its lifetime replaced) before it expires.  A delete is only sent
+ * if it is still the pending delete of its bearer when it expires.  Deletes expiring in the same
+ * tick are grouped per DPN and handed to the DPN API as a single batch.
  */
 public final class DeleteContextScheduler {
 
 	private static volatile DeleteContextScheduler instance;
-	private final ScheduledExecutorService scheduledExecutorService;
-	private final int POOL_SIZE = 5;
+	private static final long TICK_MS = 100L;
+	private static final int TICKS_PER_WHEEL = 1024;
 	private static final Logger LOG = LoggerFactory.getLogger(DeleteContextScheduler.class);
 
+	private final HashedTimingWheel<DeleteBearerCall> wheel;
+	private final ConcurrentHashMap<Long, DeleteBearerCall> pending;
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+
 	/**
 	 * Class that deletes a bearer call
 	 */
-	class DeleteBearerCall implements Callable<DeleteBearerCall>{
+	class DeleteBearerCall {
 	    private final Short dpnTopic;
-	    private DpnAPI2 api;
-	    private Long s1u_sgw_gtpu_teid;
-	    ScheduledFuture<DeleteBearerCall> schedFuture = null;
+	    private final DpnAPI2 api;
+	    private final Long s1u_sgw_gtpu_teid;
+	    private final long key;
+	    volatile Timeout<DeleteBearerCall> timeout = null;
 
 	    /**
 	     * Constructor
@@ -48,31 +65,44 @@ public final class DeleteContextScheduler {
 	        this.dpnTopic = dpnTopic2;
 	        this.s1u_sgw_gtpu_teid = s1u_sgw_gtpu_teid;
 	        this.api = api;
-	    }
-	    /**
-	     * Deletes the bearer
-	     */
-	    public DeleteBearerCall call() {
-
-	    	api.delete_bearer(dpnTopic, s1u_sgw_gtpu_teid);
-	    	DeleteContextScheduler.logNotifification(schedFuture);
-			return this;
+	        this.key = key(dpnTopic2, s1u_sgw_gtpu_teid);
 	    }
 
 	    /**
-	     * Sets the future value
-	     * @param future - future value to be set
+	     * Cancel's the scheduled call
 	     */
-	    protected void setFuture(ScheduledFuture<DeleteBearerCall> future) {
-            this.schedFuture = (ScheduledFuture<DeleteBearerCall>) future;
+	    public void close() {
+	    	if (pending.remove(key, this)) {
+	    		cancelTimeout();
+	    		cancelled.increment();
+	    	}
         }
 
 	    /**
-	     * Cancel's the scheduled future call
+	     * Removes the call from the wheel.  A call that already left the pending map is skipped on
+	     * expiry, so a timeout that is not cancelled yet is harmless.
 	     */
-	    public void close() {
-            schedFuture.cancel(false);
-        }
+	    void cancelTimeout() {
+	    	Timeout<DeleteBearerCall> t = timeout;
+	    	if (t != null) {
+	    		t.cancel();
+	    	}
+	    }
+	}
+
+	/**
+	 * TEIDs of one DPN expiring in the same tick.
+	 */
+	private static final class Batch {
+		long[] teids = new long[16];
+		int count;
+
+		void add(long teid) {
+			if (count == teids.length) {
+				teids = Arrays.copyOf(teids, count << 1);
+			}
+			teids[count++] = teid;
+		}
 	}
 
 	/**
@@ -80,23 +110,75 @@ public final class DeleteContextScheduler {
 	 */
 	private DeleteContextScheduler()
 	{
-		scheduledExecutorService = Executors.newScheduledThreadPool(POOL_SIZE);
+		pending = new ConcurrentHashMap<Long, DeleteBearerCall>();
+		wheel = new HashedTimingWheel<DeleteBearerCall>("DeleteContextScheduler", TICK_MS,
+				TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, new HashedTimingWheel.ExpiryHandler<DeleteBearerCall>() {
+					@Override
+					public void expired(List<DeleteBearerCall> items) {
+						dispatch(items);
+					}
+				});
+	}
 
+	/**
+	 * Packs a (DPN Topic, TEID) pair into a pending delete key.
+	 * @param dpnTopic - ZMQ Topic of the DPN
+	 * @param s1u_sgw_gtpu_teid - GTPU TEID of the bearer (Uint32)
+	 * @return key
+	 */
+	private static long key(Short dpnTopic, Long s1u_sgw_gtpu_teid) {
+		return ((dpnTopic.longValue() & 0xFFFFL) << 32) | (s1u_sgw_gtpu_teid.longValue() & 0xFFFFFFFFL);
 	}
 
 	/**
-	 * Logs the deletion of the bearer
-	 * @param schedFuture
+	 * Sends the deletes of a tick, one batch per DPN API and Topic.  Runs on the wheel thread.
+	 * @param items - expired delete calls
 	 */
-	private static void logNotifification(ScheduledFuture<DeleteBearerCall> schedFuture)
+	private void dispatch(List<DeleteBearerCall> items) {
+		Map<DpnAPI2, Map<Short, Batch>> batches = new IdentityHashMap<DpnAPI2, Map<Short, Batch>>();
+		for (DeleteBearerCall call : items) {
+			if (!pending.remove(call.key, call)) {
+				// Cancelled or replaced after it was taken off the wheel
+				continue;
+			}
+			Map<Short, Batch> byTopic = batches.get(call.api);
+			if (byTopic == null) {
+				byTopic = new HashMap<Short, Batch>();
+				batches.put(call.api, byTopic);
+			}
+			Batch batch = byTopic.get(call.dpnTopic);
+			if (batch == null) {
+				batch = new Batch();
+				byTopic.put(call.dpnTopic, batch);
+			}
+			batch.add(call.s1u_sgw_gtpu_teid);
+		}
+		for (Map.Entry<DpnAPI2, Map<Short, Batch>> apiEntry : batches.entrySet()) {
+			for (Map.Entry<Short, Batch> entry : apiEntry.getValue().entrySet()) {
+				Batch batch = entry.getValue();
+				try {
+					apiEntry.getKey().delete_bearers(entry.getKey(), batch.teids, batch.count);
+					deleted.add(batch.count);
+					logNotifification(entry.getKey(), batch);
+				} catch (Exception e) {
+					ErrorLog.logError(e.getMessage(), e.getStackTrace());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Logs the deletion of the bearers
+	 * @param dpnTopic - ZMQ Topic of the DPN
+	 * @param batch - deleted TEIDs
+	 */
+	private static void logNotifification(Short dpnTopic, Batch batch)
 	{
-		DeleteBearerCall bearerInstance = null;
-		try {
-			bearerInstance = schedFuture.get();
-			LOG.info("Context delete success for  DPNTopic: {}, teid: {}", bearerInstance.dpnTopic, bearerInstance.s1u_sgw_gtpu_teid);
-		} catch (InterruptedException | ExecutionException e) {
-			ErrorLog.logError(e.getStackTrace());
-        }
+		if (LOG.isDebugEnabled()) {
+			for (int i = 0; i < batch.count; i++) {
+				LOG.debug("Context delete success for  DPNTopic: {}, teid: {}", dpnTopic, batch.teids[i]);
+			}
+		}
 
 		/*** North bound cache notification code here**/
 
@@ -119,19 +201,76 @@ public final class DeleteContextScheduler {
 	}
 
 	/**
-	 * Delete a bearer after specified time
+	 * Delete a bearer after specified time.  A delete already pending for the bearer is replaced.
 	 * @param api - DPN API object
 	 * @param dpnTopic - ZMQ Topic of the DPN
 	 * @param s1u_sgw_gtpu_teid - GTPU TEID of the bearer
-	 * @param time - Time after which the delete should occur
+	 * @param time - Time (in seconds) after which the delete should occur
 	 */
 	public void delete(DpnAPI2 api, Short dpnTopic, Long s1u_sgw_gtpu_teid, Long time) {
 
 		DeleteBearerCall deleteBearerInstance = new DeleteBearerCall(api, dpnTopic, s1u_sgw_gtpu_teid);
-		ScheduledFuture<DeleteBearerCall> futureValue = (ScheduledFuture<DeleteBearerCall>) scheduledExecutorService.schedule(deleteBearerInstance, time, TimeUnit.SECONDS);
-		deleteBearerInstance.setFuture(futureValue);
+		// Registered before it is scheduled so that an early expiry always finds it
+		DeleteBearerCall replaced = pending.put(deleteBearerInstance.key, deleteBearerInstance);
+		if (replaced != null) {
+			replaced.cancelTimeout();
+			cancelled.increment();
+		}
+		deleteBearerInstance.timeout = wheel.schedule(deleteBearerInstance, time, TimeUnit.SECONDS);
+	}
 
+	/**
+	 * Cancels the pending delete of a bearer.
+	 * @param dpnTopic - ZMQ Topic of the DPN
+	 * @param s1u_sgw_gtpu_teid - GTPU TEID of the bearer
+	 * @return true if a pending delete was cancelled
+	 */
+	public boolean cancel(Short dpnTopic, Long s1u_sgw_gtpu_teid) {
+		DeleteBearerCall call = pending.remove(key(dpnTopic, s1u_sgw_gtpu_teid));
+		if (call != null) {
+			call.cancelTimeout();
+			cancelled.increment();
+			return true;
+		}
+		return false;
 	}
 
+	/**
+	 * Cancels the pending delete of a bearer if the scheduler has been started.  Used by the
+	 * immediate delete paths so that a context deleted early is not deleted again on expiry.
+	 * @param dpnTopic - ZMQ Topic of the DPN
+	 * @param s1u_sgw_gtpu_teid - GTPU TEID of the bearer
+	 * @return true if a pending delete was cancelled
+	 */
+	public static boolean cancelScheduled(Short dpnTopic, Long s1u_sgw_gtpu_teid) {
+		DeleteContextScheduler scheduler = instance;
+		if (scheduler == null || dpnTopic == null || s1u_sgw_gtpu_teid == null) {
+			return false;
+		}
+		return scheduler.cancel(dpnTopic, s1u_sgw_gtpu_teid);
+	}
 
-}
\ No newline at end of file
+	/**
+	 * Number of pending deletes.
+	 * @return pending count
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Number of bearers deleted on expiry.
+	 * @return delete count
+	 */
+	public long getDeletedCount() {
+		return deleted.sum();
+	}
+
+	/**
+	 * Number of pending deletes that were cancelled or replaced.
+	 * @return cancel count
+	 */
+	public long getCancelledCount() {
+		return cancelled.sum();
+	}
+}
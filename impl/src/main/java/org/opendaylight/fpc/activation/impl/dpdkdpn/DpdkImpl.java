@@ -20,6 +20,7 @@ import org.opendaylight.fpc.policy.BasePolicyManager;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.IPToDecimal;
+import org.opendaylight.fpc.utils.NameResolver;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
@@ -67,6 +68,7 @@ public class DpdkImpl implements Activator {
 	DpnHolder dpnHolder;
 	Short dpnTopic;
 	DpnAPI2 api;
+	DpnCommandWindow window;
 
 	/**
 	 * Default Constructor.
@@ -85,6 +87,7 @@ public class DpdkImpl implements Activator {
 	public DpdkImpl(DpnHolder dpnHolder) {
 		this.dpnHolder = dpnHolder;
 		if (dpnHolder.dpn != null) {
+			this.window = DpnCommandWindow.forDpn(NameResolver.extractString(dpnHolder.dpn.getDpnId()));
 			this.start();
 			//DpnAPIListener.setUlDpnMapping((short) dpnHolder.dpn.getTopic().getBytes()[0], dpnHolder.dpn.getDpnId());
 			DpnAPIListener.setUlDpnMapping(dpnHolder.dpn.getNodeId().toString()+"/"+dpnHolder.dpn.getNetworkId().toString(), dpnHolder.dpn.getDpnId());
@@ -181,7 +184,12 @@ public class DpdkImpl implements Activator {
 		// Look for 3GPP Command Instructions or Error out
 		if (instructions != null) {
 			if (instructions.getInstrType() instanceof ThreegppCommandset) {
-				activate(api, clientIdentifier, opIdentifier, opType, (ThreegppCommandset) instructions.getInstrType(), context, cache);
+				DpnCommandWindow.Command command = begin(api, clientIdentifier, opIdentifier, context);
+				try {
+					activate(api, command, clientIdentifier, opIdentifier, opType, (ThreegppCommandset) instructions.getInstrType(), context, cache);
+				} finally {
+					end(command);
+				}
 				return;
 			}
 		}
@@ -189,9 +197,56 @@ public class DpdkImpl implements Activator {
 		throw new Exception("3GPP Commnnd Instructions MUST be provided for this Activator!");
 	}
 
+	/**
+	 * Opens a command of the DPN Command Window for the acknowledged messages of an operation.
+	 * @param api - DPN API the messages are sent with
+	 * @param clientIdentifier - Client Identifier
+	 * @param opIdentifier - Operation Identifier
+	 * @param context - Context of the operation
+	 * @return command or null if the operation is not windowed
+	 * @throws DpnCommandWindow.WindowFullException - if the DPN has too many unacknowledged commands
+	 */
+	private DpnCommandWindow.Command begin(DpnAPI2 api, ClientIdentifier clientIdentifier, OpIdentifier opIdentifier,
+			FpcContext context) throws DpnCommandWindow.WindowFullException {
+		if (window == null || clientIdentifier == null || clientIdentifier.getInt64() == null || opIdentifier == null) {
+			return null;
+		}
+		return window.begin(api, clientIdentifier.getInt64(), opIdentifier.getValue().longValue(), contextId(context));
+	}
+
+	/**
+	 * Cancels the unacknowledged commands of a Context ahead of its deletion so that none of them
+	 * is retransmitted after the delete.
+	 * @param context - Context being deleted
+	 */
+	private void cancel(FpcContext context) {
+		if (window != null) {
+			window.cancel(contextId(context));
+		}
+	}
+
+	private static long contextId(FpcContext context) {
+		return (context != null && context.getContextId() != null && context.getContextId().getInt64() != null) ?
+				context.getContextId().getInt64() : DpnCommandWindow.NO_CONTEXT;
+	}
+
+	/**
+	 * Closes a command opened with begin.
+	 * @param command - command, may be null
+	 */
+	private void end(DpnCommandWindow.Command command) {
+		if (command != null) {
+			window.end(command);
+		}
+	}
+
 	/**
 	 * Context Activation.
 	 *
+	 * @param api
+	 *            - DPN API the messages are sent with
+	 * @param command
+	 *            - DPN Command Window command of the operation, may be null
 	 * @param opType
 	 *            - Operation Type
 	 * @param commands
@@ -204,7 +259,7 @@ public class DpdkImpl implements Activator {
 	 * @throws Exception
 	 *             - If an error occurs during the Activation
 	 */
-	private void activate(DpnAPI2 api, ClientIdentifier clientIdentifier, OpIdentifier opIdentifier, OpType opType, ThreegppCommandset commands, Contexts context, Cache cache) throws Exception {
+	private void activate(DpnAPI2 api, DpnCommandWindow.Command command, ClientIdentifier clientIdentifier, OpIdentifier opIdentifier, OpType opType, ThreegppCommandset commands, Contexts context, Cache cache) throws Exception {
 		this.dpnTopic = DpnAPIListener.getTopicFromNode(this.dpnHolder.dpn.getNodeId().toString()+"/"+this.dpnHolder.dpn.getNetworkId().toString());
 		rxMessages.incrementAndGet();
 		IpPrefix assignedPrefix = (context.getDelegatingIpPrefixes() == null) ? null
@@ -227,7 +282,8 @@ public class DpdkImpl implements Activator {
 				try{
 					api.create_session(dpnTopic, threeProps.getImsi().getValue(),
 						IPToDecimal.cidrBase(assignedPrefix.getIpv4Prefix().getValue()), threeProps.getEbi().getValue(),
-						context.getUl().getTunnelLocalAddress().getIpv4Address(), s1u_sgw_gtpu_teid,clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64());
+						context.getUl().getTunnelLocalAddress().getIpv4Address(), s1u_sgw_gtpu_teid,clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64(), command);
+					dpnHolder.sessionCreated();
 				} catch (Exception e) {
 					ErrorLog.logError("Illegal Arguments - Check Configure Input values",e.getStackTrace());
 				}
@@ -246,7 +302,7 @@ public class DpdkImpl implements Activator {
 						throw new Exception(
 								"Session Create with implied DL information but no DL Tunnel Info provided");
 					api.modify_bearer_dl(dpnTopic, s1u_sgw_gtpu_teid,
-							context.getDl().getTunnelRemoteAddress().getIpv4Address(), s1u_enb_gtpu_teid,clientIdentifier.getInt64(), opIdentifier.getValue());
+							context.getDl().getTunnelRemoteAddress().getIpv4Address(), s1u_enb_gtpu_teid,clientIdentifier.getInt64(), opIdentifier.getValue(), command);
 					txMessages.incrementAndGet();
 				}
 			} else if (commands.getInstr3gppMob().isIndirectForward()) {
@@ -291,7 +347,7 @@ public class DpdkImpl implements Activator {
 							.getMobprofileParameters()).getTunnelIdentifier();
 					try {
 						api.modify_bearer_dl(dpnTopic, context.getDl().getTunnelRemoteAddress().getIpv4Address(),
-							s1u_enb_gtpu_teid, context.getDl().getTunnelLocalAddress().getIpv4Address(), null, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64());
+							s1u_enb_gtpu_teid, context.getDl().getTunnelLocalAddress().getIpv4Address(), null, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64(), command);
 					} catch (Exception e) {
 						ErrorLog.logError(e.getMessage(),e.getStackTrace());
 					}
@@ -343,8 +399,10 @@ public class DpdkImpl implements Activator {
 			} else {
 				// Bearer Delete seems odd - how does DL get deleted
 				// LOG.info("Sending Message");
+				DeleteContextScheduler.cancelScheduled(dpnTopic, s1u_sgw_gtpu_teid);
 				try {
-					api.delete_session(dpnTopic, threeProps.getLbi().getValue(), s1u_sgw_gtpu_teid, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64());
+					api.delete_session(dpnTopic, threeProps.getLbi().getValue(), s1u_sgw_gtpu_teid, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64(), command);
+					dpnHolder.sessionDeleted();
 				} catch (Exception e) {
 					ErrorLog.logError("Illegal Arguments - Check Configure Input values",e.getStackTrace());
 				}
@@ -376,15 +434,21 @@ public class DpdkImpl implements Activator {
 			throw new Exception("Downlink Create Requested but no UL Tunnel Info provided");
 		}
 
+		cancel(context);
 		if (target!=null && (target.getTarget().toString().endsWith("ul") || target.getTarget().toString().endsWith("dl"))) {
 			api.delete_bearer(dpnTopic, teid);
 			txMessages.incrementAndGet();
 		} else {
 			if (context.getLbi() != null) {
+				DeleteContextScheduler.cancelScheduled(dpnTopic, teid);
+				DpnCommandWindow.Command command = begin(api, clientIdentifier, opIdentifier, context);
 				try{
-					api.delete_session(dpnTopic, context.getLbi().getValue(), teid, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64());
+					api.delete_session(dpnTopic, context.getLbi().getValue(), teid, clientIdentifier.getInt64(), opIdentifier.getValue(), context.getContextId().getInt64(), command);
+					dpnHolder.sessionDeleted();
 				} catch (Exception e) {
 					ErrorLog.logError("Illegal Arguments - Check Configure Input values",e.getStackTrace());
+				} finally {
+					end(command);
 				}
 				txMessages.incrementAndGet();
 			}
@@ -17,6 +17,8 @@ import org.json.JSONObject;
 import org.opendaylight.fpc.impl.zeromq.ZMQSBListener;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.IPToDecimal;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchPolicy;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
@@ -30,13 +32,13 @@ import org.slf4j.LoggerFactory;
  * DPDK DPN API over ZeroMQ.
  */
 public class DpnAPI2 {
-    private static byte CREATE_SESSION_TYPE = 0b0000_0001;
-    private static byte MODIFY_DL_BEARER_TYPE = 0b0000_0010;
-    private static byte DELETE_SESSION_TYPE = 0b0000_0011;
+    static final byte CREATE_SESSION_TYPE = 0b0000_0001;
+    static final byte MODIFY_DL_BEARER_TYPE = 0b0000_0010;
+    static final byte DELETE_SESSION_TYPE = 0b0000_0011;
     private static byte MODIFY_UL_BEARER_TYPE = 0b0000_0100;
     private static byte CREATE_UL_BEARER_TYPE = 0b0000_0101;
     private static byte CREATE_DL_BEARER_TYPE = 0b0000_0110;
-    private static byte DELETE_BEARER_TYPE = 0b0000_0110;
+    static final byte DELETE_BEARER_TYPE = 0b0000_0110;
     private static byte HELLO = 0b0000_1000;
     private static byte BYE = 0b0000_1001;
     private static byte SEND_ADC_TYPE = 0b001_0001;
@@ -59,6 +61,37 @@ public class DpnAPI2 {
         this.sock = sock;
     }
 
+    /**
+     * Queues a message the DPN acknowledges with a DPN Reply.
+     * @param bb - message
+     * @param command - DPN Command Window command the message belongs to, may be null
+     */
+    private void sendAcknowledged(ByteBuffer bb, DpnCommandWindow.Command command) {
+        if (command != null) {
+            command.add(bb);
+        }
+        try {
+            sock.getBlockingQueue().put(bb);
+        } catch (InterruptedException e) {
+        	ErrorLog.logError(e.getStackTrace());
+        };
+    }
+
+    /**
+     * Queues a copy of a previously encoded message.
+     * @param frame - message
+     * @return true if the message was queued
+     */
+    boolean resend(byte[] frame) {
+        ByteBuffer bb = sock.getBufferPool().acquire(frame.length);
+        bb.put(frame, 0, frame.length);
+        if (!sock.getBlockingQueue().offer(bb)) {
+            sock.getBufferPool().release(bb);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Creates Mobility Session
      * @param dpn - DPN
@@ -113,25 +146,50 @@ public class DpnAPI2 {
             //UlTftTable ul_tft_table
             )
     {
-        //Create byte[] from arguments
-        ByteBuffer bb = ByteBuffer.allocate(41);
-        bb.put(toUint8(dpn))
-            .put(CREATE_SESSION_TYPE)
-            .put(toUint64(imsi))
-            .put(toUint8(lbi))
-            .put(toUint32(ue_ip))
-            .put(toUint32(s1u_sgw_gtpu_teid))
-            .put(toUint32(IPToDecimal.ipv4ToLong(s1u_sgw_gtpu_ipv4.getValue())))
-            .put(toUint64(BigInteger.valueOf(sessionId)))
-            .put(toUint8(ZMQSBListener.getControllerTopic()))
-            .put(toUint32(clientIdentifier))
-            .put(toUint32(opIdentifier.longValue()));
+        create_session(dpn, imsi, ue_ip, lbi, s1u_sgw_gtpu_ipv4, s1u_sgw_gtpu_teid, clientIdentifier,
+                opIdentifier, sessionId, null);
+    }
 
-        try {
-            sock.getBlockingQueue().put(bb);
-        } catch (InterruptedException e) {
-        	ErrorLog.logError(e.getStackTrace());
-        };
+    /**
+     * Create Mobility Session.
+     * @param dpn - DPN
+     * @param imsi - IMSI
+     * @param ue_ip - Session IPv4 Address
+     * @param lbi - Linked Bearer Identifier
+     * @param s1u_sgw_gtpu_ipv4 - SGW GTP-U IPv4 Address
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @param sessionId - Session Id
+     * @param command - DPN Command Window command the message belongs to, may be null
+     */
+    public void create_session(
+            Short dpn,
+            BigInteger imsi,
+            Long ue_ip,
+            Short lbi,
+            Ipv4Address s1u_sgw_gtpu_ipv4,
+            Long s1u_sgw_gtpu_teid,  // Although this is intended to be a Uint32
+            Long clientIdentifier,
+            BigInteger opIdentifier,
+            Long sessionId,
+            DpnCommandWindow.Command command
+            )
+    {
+        ByteBuffer bb = sock.getBufferPool().acquire(DpnMessageEncoder.CREATE_SESSION_LENGTH);
+        DpnMessageEncoder.encodeCreateSession(bb,
+                dpn,
+                imsi.longValue(),
+                ue_ip,
+                lbi,
+                s1u_sgw_gtpu_teid,
+                IPToDecimal.ipv4ToLong(s1u_sgw_gtpu_ipv4.getValue()),
+                sessionId,
+                ZMQSBListener.getControllerTopic(),
+                clientIdentifier,
+                opIdentifier.longValue());
+
+        sendAcknowledged(bb, command);
     }
 
     /**
@@ -152,19 +210,39 @@ public class DpnAPI2 {
             BigInteger opIdentifier
     		)
     {
-        ByteBuffer bb = ByteBuffer.allocate(23);
-        bb.put(toUint8(dpn))
-                .put(MODIFY_DL_BEARER_TYPE)
-                .put(toUint32(IPToDecimal.ipv4ToLong(s1u_enb_gtpu_ipv4.getValue())))
-                .put(toUint32(s1u_enb_gtpu_teid))
-                .put(toUint32(s1u_sgw_gtpu_teid))
-                .put(toUint32(clientIdentifier))
-                .put(toUint32(opIdentifier.longValue()));
-        try {
-            sock.getBlockingQueue().put(bb);
-        } catch (InterruptedException e) {
-        	ErrorLog.logError(e.getStackTrace());
-        };
+        modify_bearer_dl(dpn, s1u_sgw_gtpu_teid, s1u_enb_gtpu_ipv4, s1u_enb_gtpu_teid, clientIdentifier,
+                opIdentifier, null);
+    }
+
+    /**
+     * Modify Downlink Bearer
+     * @param dpn - DPN
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @param s1u_enb_gtpu_ipv4 - ENodeB GTP-U IPv4 Address
+     * @param s1u_enb_gtpu_teid - ENodeB GTP-U TEID
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @param command - DPN Command Window command the message belongs to, may be null
+     */
+    public void modify_bearer_dl(
+            Short dpn,
+            Long s1u_sgw_gtpu_teid,
+            Ipv4Address s1u_enb_gtpu_ipv4,
+            Long s1u_enb_gtpu_teid,
+            Long clientIdentifier,
+            BigInteger opIdentifier,
+            DpnCommandWindow.Command command
+    		)
+    {
+        ByteBuffer bb = sock.getBufferPool().acquire(DpnMessageEncoder.MODIFY_BEARER_DL_LENGTH);
+        DpnMessageEncoder.encodeModifyBearerDl(bb,
+                dpn,
+                IPToDecimal.ipv4ToLong(s1u_enb_gtpu_ipv4.getValue()),
+                s1u_enb_gtpu_teid,
+                s1u_sgw_gtpu_teid,
+                clientIdentifier,
+                opIdentifier.longValue());
+        sendAcknowledged(bb, command);
     }
 
     /**
@@ -185,18 +263,37 @@ public class DpnAPI2 {
             Long sessionId
     		)
     {
-        ByteBuffer bb = ByteBuffer.allocate(19);
-        bb.put(toUint8(dpn))
-            .put(DELETE_SESSION_TYPE)
-            .put(toUint64(BigInteger.valueOf(sessionId)))
-            .put(toUint8(ZMQSBListener.getControllerTopic()))
-            .put(toUint32(clientIdentifier))
-            .put(toUint32(opIdentifier.longValue()));
-        try {
-            sock.getBlockingQueue().put(bb);
-        } catch (InterruptedException e) {
-        	ErrorLog.logError(e.getStackTrace());
-        };
+        delete_session(dpn, del_default_ebi, s1u_sgw_gtpu_teid, clientIdentifier, opIdentifier, sessionId, null);
+    }
+
+    /**
+     * Delete Mobility Session.
+     * @param dpn - DPN
+     * @param del_default_ebi - Default EBI
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @param sessionId - Session Id
+     * @param command - DPN Command Window command the message belongs to, may be null
+     */
+    public void delete_session(
+            Short dpn,
+            Short del_default_ebi,
+            Long s1u_sgw_gtpu_teid,
+            Long clientIdentifier,
+            BigInteger opIdentifier,
+            Long sessionId,
+            DpnCommandWindow.Command command
+    		)
+    {
+        ByteBuffer bb = sock.getBufferPool().acquire(DpnMessageEncoder.DELETE_SESSION_LENGTH);
+        DpnMessageEncoder.encodeDeleteSession(bb,
+                dpn,
+                sessionId,
+                ZMQSBListener.getControllerTopic(),
+                clientIdentifier,
+                opIdentifier.longValue());
+        sendAcknowledged(bb, command);
     }
 
     /**
@@ -286,22 +383,45 @@ public class DpnAPI2 {
             BigInteger opIdentifier,
             Long sessionId)
     {
-        ByteBuffer bb = ByteBuffer.allocate(32);
-        bb.put(toUint8(dpn))
-            .put(MODIFY_DL_BEARER_TYPE)
-            .put(toUint32(IPToDecimal.ipv4ToLong(s1u_sgw_gtpu_ipv4.getValue())))
-            .put(toUint32(s1u_enb_gtpu_teid))
-            .put(toUint32(IPToDecimal.ipv4ToLong(s1u_enb_gtpu_ipv4.getValue())))
-            .put(toUint64(BigInteger.valueOf(sessionId)))
-            .put(toUint8(ZMQSBListener.getControllerTopic()))
-            .put(toUint32(clientIdentifier))
-            .put(toUint32(opIdentifier.longValue()));
+        modify_bearer_dl(dpn, s1u_enb_gtpu_ipv4, s1u_enb_gtpu_teid, s1u_sgw_gtpu_ipv4, dl_tft_table,
+                clientIdentifier, opIdentifier, sessionId, null);
+    }
 
-        try {
-            sock.getBlockingQueue().put(bb);
-        } catch (InterruptedException e) {
-        	ErrorLog.logError(e.getStackTrace());
-        };
+    /**
+     * Modify Downlink Bearer.
+     * @param dpn - DPN
+     * @param s1u_sgw_gtpu_ipv4 - SGW GTP-U IPv4 Address
+     * @param s1u_enb_gtpu_teid - ENodeB TEID
+     * @param s1u_enb_gtpu_ipv4 - ENodeB GTP-U IPv4 Address
+     * @param dl_tft_table - Downlink TFT
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @param sessionId - Session Id
+     * @param command - DPN Command Window command the message belongs to, may be null
+     */
+    public void modify_bearer_dl(
+            Short dpn,
+            Ipv4Address s1u_enb_gtpu_ipv4,
+            Long s1u_enb_gtpu_teid,
+            Ipv4Address s1u_sgw_gtpu_ipv4,
+            Object dl_tft_table,
+            Long clientIdentifier,
+            BigInteger opIdentifier,
+            Long sessionId,
+            DpnCommandWindow.Command command)
+    {
+        ByteBuffer bb = sock.getBufferPool().acquire(DpnMessageEncoder.MODIFY_BEARER_DL_SESSION_LENGTH);
+        DpnMessageEncoder.encodeModifyBearerDl(bb,
+                dpn,
+                IPToDecimal.ipv4ToLong(s1u_sgw_gtpu_ipv4.getValue()),
+                s1u_enb_gtpu_teid,
+                IPToDecimal.ipv4ToLong(s1u_enb_gtpu_ipv4.getValue()),
+                sessionId,
+                ZMQSBListener.getControllerTopic(),
+                clientIdentifier,
+                opIdentifier.longValue());
+
+        sendAcknowledged(bb, command);
     }
 
     /**
@@ -425,10 +545,10 @@ public class DpnAPI2 {
             Short dpnTopic,
             Long s1u_sgw_gtpu_teid)
     {
-        ByteBuffer bb = ByteBuffer.allocate(7);
-        bb.put(toUint8(dpnTopic))
-            .put(DELETE_BEARER_TYPE)
-            .put(toUint32(s1u_sgw_gtpu_teid));
+        // An explicit delete supersedes any lifetime still pending for the bearer
+        DeleteContextScheduler.cancelScheduled(dpnTopic, s1u_sgw_gtpu_teid);
+        ByteBuffer bb = sock.getBufferPool().acquire(DpnMessageEncoder.DELETE_BEARER_LENGTH);
+        DpnMessageEncoder.encodeDeleteBearer(bb, dpnTopic, s1u_sgw_gtpu_teid);
 
         try {
             sock.getBlockingQueue().put(bb);
@@ -436,6 +556,43 @@ public class DpnAPI2 {
         	ErrorLog.logError(e.getStackTrace());
         };
     }
+
+    /**
+     * Delete Bearers of a DPN.  When the socket batches for the DPN's topic (i.e. the DPN
+     * announced {@link ZMQBatchFrame#HELLO_CAPABILITY} in its Hello) the deletes are encoded into
+     * as few batched frames as its batch policy allows, otherwise one message is queued per
+     * bearer.
+     * @param dpnTopic - DPN
+     * @param s1u_sgw_gtpu_teids - SGW GTP-U TEIDs
+     * @param count - number of TEIDs to delete
+     */
+    public void delete_bearers(
+            Short dpnTopic,
+            long[] s1u_sgw_gtpu_teids,
+            int count)
+    {
+        ZMQBatchPolicy policy = sock.getBatchPolicy();
+        int perFrame = (policy != null && policy.isEnabled(dpnTopic)) ?
+                Math.min(policy.getMaxMessages(), (policy.getMaxFrameBytes() - ZMQBatchFrame.HEADER_LENGTH) /
+                        (ZMQBatchFrame.LENGTH_PREFIX + DpnMessageEncoder.DELETE_BEARER_LENGTH)) : 1;
+        try {
+            for (int i = 0; i < count; ) {
+                int n = Math.min(Math.max(1, perFrame), count - i);
+                ByteBuffer bb;
+                if (n == 1) {
+                    bb = sock.getBufferPool().acquire(DpnMessageEncoder.DELETE_BEARER_LENGTH);
+                    DpnMessageEncoder.encodeDeleteBearer(bb, dpnTopic, s1u_sgw_gtpu_teids[i]);
+                } else {
+                    bb = sock.getBufferPool().acquire(DpnMessageEncoder.deleteBearersLength(n));
+                    DpnMessageEncoder.encodeDeleteBearers(bb, dpnTopic, s1u_sgw_gtpu_teids, i, n);
+                }
+                sock.getBlockingQueue().put(bb);
+                i += n;
+            }
+        } catch (InterruptedException e) {
+        	ErrorLog.logError(e.getStackTrace());
+        };
+    }
     /**
      * Short to Byte
      * @param value - Short
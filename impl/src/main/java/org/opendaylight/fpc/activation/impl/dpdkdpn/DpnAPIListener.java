@@ -18,7 +18,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction.OperationStatus;
 import org.opendaylight.fpc.dpn.DPNStatusIndication;
+import org.opendaylight.fpc.impl.VdpnReplicator;
 import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotificationBuilder;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
@@ -34,13 +37,17 @@ public class DpnAPIListener {
     protected static final Logger LOG = LoggerFactory.getLogger(DpnAPIListener.class);
     private static byte DPN_HELLO = 0b0000_0001;
     private static byte DPN_BYE = 0b0000_0010;
-    private static byte DOWNLINK_DATA_NOTIFICATION = 0b0000_0101;
-    private static byte DPN_STATUS_INDICATION = 0b0000_1100;
+    static final byte DOWNLINK_DATA_NOTIFICATION = 0b0000_0101;
+    static final byte DPN_STATUS_INDICATION = 0b0000_1100;
     private static byte DPN_OVERLOAD_INDICATION = 0b0000_0101;
-    private static byte DPN_REPLY = 0b0000_0100;
+    static final byte DPN_REPLY = 0b0000_0100;
     private static String DOWNLINK_DATA_NOTIFICATION_STRING = "Downlink-Data-Notification";
+    private static final BigInteger UINT64_RANGE = BigInteger.ONE.shiftLeft(64);
     static private Map<String, FpcDpnId> uplinkDpnMap = new ConcurrentHashMap<String, FpcDpnId>();
     static private Map<String, Short> topicToNodeMap = new ConcurrentHashMap<String, Short>();
+    static private final DpnKeyIndex keyIndex = new DpnKeyIndex();
+
+    private final DpnMessageReader reader = new DpnMessageReader();
 
     /**
      * Sets the mapping of a node id / network id key to DPN Identities.
@@ -49,7 +56,9 @@ public class DpnAPIListener {
      */
     static public void setUlDpnMapping(String key, FpcDpnId dpnId) {
         LOG.info("Adding DPN Mapping {} => {}", key, dpnId);
-        uplinkDpnMap.put(key, dpnId);
+        synchronized (keyIndex) {
+            uplinkDpnMap.put(keyIndex.intern(key), dpnId);
+        }
     }
 
     /**
@@ -58,7 +67,10 @@ public class DpnAPIListener {
      */
     static public void removeUlDpnMapping(String key) {
         LOG.info("Removing DPN Mapping {}", key);
-        uplinkDpnMap.remove(key);
+        synchronized (keyIndex) {
+            uplinkDpnMap.remove(key);
+            releaseKey(key);
+        }
     }
 
     /** Sets the mapping of a node id / network id to ZMQ Topic
@@ -66,7 +78,9 @@ public class DpnAPIListener {
      * @param topic - ZMQ Topic
      */
     static public void setTopicToNodeMapping(String key, Short topic){
-    	topicToNodeMap.put(key, topic);
+    	synchronized (keyIndex) {
+    		topicToNodeMap.put(keyIndex.intern(key), topic);
+    	}
     }
 
     /**
@@ -74,7 +88,21 @@ public class DpnAPIListener {
      * @param key - Concatenation of node id + / + network id
      */
     static public void removeTopicToNodeMapping(String key){
-    	topicToNodeMap.remove(key);
+    	synchronized (keyIndex) {
+    		topicToNodeMap.remove(key);
+    		releaseKey(key);
+    	}
+    }
+
+    /**
+     * Releases an interned key once neither the DPN nor the Topic mapping uses it.  The caller
+     * holds the key index lock so a concurrent mapping cannot intern the key in between.
+     * @param key - Concatenation of node id + / + network id
+     */
+    static private void releaseKey(String key) {
+        if (!uplinkDpnMap.containsKey(key) && !topicToNodeMap.containsKey(key)) {
+            keyIndex.release(key);
+        }
     }
 
     /**
@@ -113,40 +141,57 @@ public class DpnAPIListener {
 
     /**
      * Decodes a DPN message.
+     * Fields are read in place and known DPN keys are resolved through the key index, so no
+     * objects are created unless a reply, notification or status indication is produced.
      * @param buf - message buffer
      * @return - A pair with the DPN Id and decoded Object
      */
     public Map.Entry<FpcDpnId, Object> decode(byte[] buf) {
-        if(buf[1] == DPN_REPLY){
-        	processReply(buf);
+        reader.wrap(buf);
+        if (reader.messageType() == DPN_REPLY) {
+        	processReply(reader);
         	return null;
-        }
-        else if (buf[1] == DOWNLINK_DATA_NOTIFICATION) {
-        	short nodeIdLen = buf[18];
-            short networkIdLen = buf[19+nodeIdLen];
-            String key = new String(Arrays.copyOfRange(buf, 19, 19+nodeIdLen)) +"/" + new String(Arrays.copyOfRange(buf, 20+nodeIdLen, 20+nodeIdLen+networkIdLen));
-            return uplinkDpnMap.get(key) == null? null : new AbstractMap.SimpleEntry<FpcDpnId, Object>(uplinkDpnMap.get(key), processDDN(buf,key));
-        } else if(buf[1] == DPN_STATUS_INDICATION) {
+        } else if (reader.messageType() == DOWNLINK_DATA_NOTIFICATION) {
+            String key = reader.lookupKey(keyIndex);
+            FpcDpnId dpnId = (key == null) ? null : uplinkDpnMap.get(key);
+            return (dpnId == null) ? null : new AbstractMap.SimpleEntry<FpcDpnId, Object>(dpnId, processDDN(reader, dpnId));
+        } else if (reader.messageType() == DPN_STATUS_INDICATION) {
             DPNStatusIndication.Status status = null;
 
-            short nodeIdLen = buf[8];
-            short networkIdLen = buf[9+nodeIdLen];
-            String key = new String(Arrays.copyOfRange(buf, 9, 9+nodeIdLen)) +"/" + new String(Arrays.copyOfRange(buf, 10+nodeIdLen, 10+nodeIdLen+networkIdLen));
-            LOG.info("Hello Key: "+key);
-            if (buf[3] ==  DPN_OVERLOAD_INDICATION) {
+            String key = reader.lookupKey(keyIndex);
+            if (key == null) {
+                key = reader.buildKey();
+            }
+            LOG.debug("Hello Key: {}", key);
+            if (reader.statusType() ==  DPN_OVERLOAD_INDICATION) {
                 status = DPNStatusIndication.Status.OVERLOAD_INDICATION;
-            } else if (buf[3] ==  DPN_HELLO) {
+            } else if (reader.statusType() ==  DPN_HELLO) {
                 status = DPNStatusIndication.Status.HELLO;
-                setTopicToNodeMapping(key,(short)buf[2]);
-            } else if (buf[3] ==  DPN_BYE) {
+                setTopicToNodeMapping(key,reader.statusTopic());
+                setBatchCapability(reader.statusTopic(),
+                        (reader.statusCapabilities() & ZMQBatchFrame.HELLO_CAPABILITY) != 0);
+            } else if (reader.statusType() ==  DPN_BYE) {
                 status = DPNStatusIndication.Status.BYE;
                 removeTopicToNodeMapping(key);
+                setBatchCapability(reader.statusTopic(), false);
             }
             return new AbstractMap.SimpleEntry<FpcDpnId, Object>(uplinkDpnMap.get(key), new DPNStatusIndication(status, key));
         }
         return null;
     }
 
+    /**
+     * Records whether a DPN accepts batched frames on its topic.
+     * @param topic - ZMQ Topic of the DPN
+     * @param accepts - true if the DPN announced the batched frame capability
+     */
+    private void setBatchCapability(short topic, boolean accepts) {
+        ZMQClientPool pool = ZMQClientPool.getInstance();
+        if (pool != null) {
+            pool.getBatchPolicy().setAccepted(topic, accepts);
+        }
+    }
+
     /**
      * Decodes a DownlinkDataNotification
      * @param buf - message buffer
@@ -154,13 +199,23 @@ public class DpnAPIListener {
      * @return DownlinkDataNotification or null if it could not be successfully decoded
      */
     public DownlinkDataNotification processDDN(byte[] buf,String key) {
+        return processDDN(new DpnMessageReader().wrap(buf), uplinkDpnMap.get(key));
+    }
+
+    /**
+     * Decodes a DownlinkDataNotification from a wrapped message.
+     * @param msg - reader wrapping the message buffer
+     * @param dpnId - DPN Identifier mapped to the message's node id / network id
+     * @return DownlinkDataNotification
+     */
+    private DownlinkDataNotification processDDN(DpnMessageReader msg, FpcDpnId dpnId) {
         DownlinkDataNotificationBuilder ddnB = new DownlinkDataNotificationBuilder();
 
-        return ddnB.setSessionId(checkSessionId(toBigInt(buf,2)))
+        return ddnB.setSessionId(toUnsignedBigInt(msg.ddnSessionId()))
         		.setMessageType(DOWNLINK_DATA_NOTIFICATION_STRING)
-        		.setClientId(new ClientIdentifier(fromIntToLong(buf, 10)))
-        		.setOpId(new OpIdentifier(BigInteger.valueOf(fromIntToLong(buf, 14))))
-        		.setDpnId(uplinkDpnMap.get(key))
+        		.setClientId(new ClientIdentifier(msg.ddnClientId()))
+        		.setOpId(new OpIdentifier(BigInteger.valueOf(msg.ddnOpId())))
+        		.setDpnId(dpnId)
         		.build();
     }
 
@@ -169,11 +224,9 @@ public class DpnAPIListener {
      * @param sessionId - session id received from the DPN
      * @return unsigned session id
      */
-    private BigInteger checkSessionId(BigInteger sessionId){
-    	if(sessionId.compareTo(BigInteger.ZERO) < 0){
-    		sessionId = sessionId.add(BigInteger.ONE.shiftLeft(64));
-    	}
-    	return sessionId;
+    private static BigInteger toUnsignedBigInt(long sessionId){
+    	BigInteger value = BigInteger.valueOf(sessionId);
+    	return (sessionId < 0) ? value.add(UINT64_RANGE) : value;
     }
 
     /**
@@ -181,16 +234,29 @@ public class DpnAPIListener {
      * @param buf - message buffer
      */
     public void processReply(byte[] buf){
-    	ClientIdentifier ClientId = new ClientIdentifier(fromIntToLong(buf, 3));
-		OpIdentifier OpId = new OpIdentifier(BigInteger.valueOf(fromIntToLong(buf, 7)));
-		LOG.info(ClientId+"/"+OpId);
-		Transaction t = Transaction.get(ClientId+"/"+OpId.toString());
+    	processReply(new DpnMessageReader().wrap(buf));
+    }
+
+    /**
+     * Completes the transaction acknowledged by a wrapped DPN Reply.
+     * @param msg - reader wrapping the message buffer
+     */
+    private void processReply(DpnMessageReader msg){
+    	long clientId = msg.replyClientId();
+    	long opId = msg.replyOpId();
+		LOG.debug("DPN Reply {}/{}", clientId, opId);
+		DpnCommandWindow.ack(clientId, opId);
+		VdpnReplicator replicator = VdpnReplicator.getInstance();
+		if(replicator != null && replicator.ack(clientId, opId)){
+			return;
+		}
+		Transaction t = Transaction.get(clientId, opId);
 		if(t != null){
 			t.setStatus(OperationStatus.DPN_RESPONSE_PROCESSED, System.currentTimeMillis());
-			t.setCauseValue(buf[2]);
+			t.setCauseValue(msg.replyCause());
 			t.sendNotification();
 		} else {
-			ErrorLog.logError("Transaction not found: "+ClientId+"/"+OpId);
+			ErrorLog.logError("Transaction not found: "+clientId+"/"+opId);
 		}
     }
 
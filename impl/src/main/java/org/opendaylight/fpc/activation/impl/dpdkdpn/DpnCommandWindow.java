@@ -0,0 +1,713 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+
+import org.opendaylight.fpc.activation.cache.transaction.Metrics;
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.ErrorTypeIndex;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
+import org.opendaylight.fpc.utils.HashedTimingWheel.Timeout;
+import org.opendaylight.fpc.utils.LatencyHistogram;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ErrorTypeId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.ErrBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sliding window of the commands sent to a DPN that the DPN acknowledges with a DPN Reply.
+ *
+ * A command is the set of frames sent for one (Client Identifier, Operation Identifier) pair to
+ * the DPN, e.g. the create_session and modify_bearer_dl of a session Create, and is given the
+ * next sequence number of the window.  At most size commands are in flight per DPN; a sender
+ * finding the window full waits up to DEFAULT_MAX_WAIT_MS for an acknowledgement and is then
+ * rejected with a WindowFullException, which fails its operation.
+ *
+ * DPN Replies only carry the (Client Identifier, Operation Identifier) pair, so outstanding
+ * commands of all DPNs are indexed by that pair.  Every frame of a command is answered with its
+ * own reply; a command is acknowledged once it has been closed and has received as many replies
+ * as it sent frames.  When the same pair was sent to several DPNs (the members of a Virtual DPN)
+ * a reply is counted against the oldest of them that still expects one.
+ *
+ * Unacknowledged commands are retransmitted from a hashed timing wheel after the retransmission
+ * timeout of the DPN (RFC 6298 smoothed round trip time plus four deviations, doubled on every
+ * retransmission).  A command is expired EXPIRY_MS after its last transmission and the Transaction
+ * it belongs to is failed.  Round trip samples of retransmitted commands are discarded.
+ *
+ * Retransmission is off by default (maxRetransmits of 0) and must only be enabled for DPNs that
+ * apply create_session, modify_bearer_dl and delete_session idempotently.  Retransmitted frames
+ * are queued on the socket the command was sent on, so they stay ordered with later commands of
+ * the same Context, and the outstanding commands of a Context are cancelled before it is deleted.
+ */
+public final class DpnCommandWindow {
+	/**
+	 * Default commands in flight per DPN.
+	 */
+	public static final int DEFAULT_SIZE = 4096;
+	/**
+	 * Default (and minimum) retransmission timeout.
+	 */
+	public static final long DEFAULT_RETRANSMIT_MS = 200L;
+	/**
+	 * Default retransmissions of a command before it expires.
+	 */
+	public static final int DEFAULT_MAX_RETRANSMITS = 0;
+	/**
+	 * Time a sender waits for room in a full window.
+	 */
+	public static final long DEFAULT_MAX_WAIT_MS = 5L;
+	/**
+	 * Time a command is kept after its last transmission before it is expired.
+	 */
+	public static final long EXPIRY_MS = 5000L;
+	/**
+	 * Context Identifier of commands that are not bound to a Context.
+	 */
+	public static final long NO_CONTEXT = Long.MIN_VALUE;
+	private static final long MAX_RETRANSMIT_MS = 5000L;
+	private static final long TICK_MS = 10L;
+	private static final int TICKS_PER_WHEEL = 512;
+	private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_WAIT_MS);
+	private static final long WAIT_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final Logger LOG = LoggerFactory.getLogger(DpnCommandWindow.class);
+
+	private static volatile int size = DEFAULT_SIZE;
+	private static volatile long minRetransmitUs = TimeUnit.MILLISECONDS.toMicros(DEFAULT_RETRANSMIT_MS);
+	private static volatile int maxRetransmits = DEFAULT_MAX_RETRANSMITS;
+	private static volatile HashedTimingWheel<Command> wheel;
+
+	private static final ConcurrentHashMap<String, DpnCommandWindow> windows =
+			new ConcurrentHashMap<String, DpnCommandWindow>();
+	private static final ConcurrentHashMap<Long, Command> outstanding = new ConcurrentHashMap<Long, Command>();
+
+	private final String dpnKey;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentHashMap<Long, Command> byContext = new ConcurrentHashMap<Long, Command>();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder acked = new LongAdder();
+	private final LongAdder retransmitted = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private final LongAdder stalled = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+	private final LatencyHistogram roundTrip;
+	private long smoothedRttUs;
+	private long rttVarianceUs;
+	private volatile long retransmitUs = minRetransmitUs;
+
+	/**
+	 * Raised when a DPN's window stays full; the command was not sent.
+	 */
+	public static class WindowFullException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor.
+		 * @param dpnKey - DPN Identifier
+		 * @param size - window size
+		 */
+		public WindowFullException(String dpnKey, int size) {
+			super("DPN " + dpnKey + " has " + size + " unacknowledged commands");
+		}
+	}
+
+	/**
+	 * Frames sent for one (Client Identifier, Operation Identifier) pair.
+	 */
+	public static final class Command {
+		private final DpnCommandWindow window;
+		private final DpnAPI2 api;
+		private final long key;
+		private final long contextId;
+		private final long seq;
+		private final List<byte[]> frames = new ArrayList<byte[]>(2);
+		private final AtomicBoolean done = new AtomicBoolean(false);
+		// Replies received and whether more frames may be added, only accessed while holding the command
+		private int replies;
+		private boolean ended;
+		private volatile Timeout<Command> timeout;
+		private long sentNanos;
+		private int retransmits;
+		// Next command of the same key, only accessed while the key is locked in outstanding
+		private Command next;
+		// Next command of the same Context, only accessed while the Context is locked in byContext
+		private Command sibling;
+
+		private Command(DpnCommandWindow window, DpnAPI2 api, long key, long contextId, long seq) {
+			this.window = window;
+			this.api = api;
+			this.key = key;
+			this.contextId = contextId;
+			this.seq = seq;
+		}
+
+		/**
+		 * Records a frame of the command ahead of it being queued for sending.  The first frame
+		 * makes the command outstanding.
+		 * @param bb - encoded frame
+		 */
+		void add(ByteBuffer bb) {
+			byte[] frame = Arrays.copyOf(bb.array(), bb.capacity());
+			synchronized (this) {
+				frames.add(frame);
+				if (frames.size() > 1) {
+					return;
+				}
+			}
+			sentNanos = System.nanoTime();
+			register(this);
+			window.track(this);
+			window.sent.increment();
+			HashedTimingWheel<Command> w = wheel;
+			if (w != null) {
+				timeout = w.schedule(this, window.nextDelayUs(this), TimeUnit.MICROSECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Initializer.
+	 * @param windowSize - commands in flight per DPN
+	 * @param retransmitMs - minimum retransmission timeout
+	 * @param retransmits - retransmissions of a command before it expires (0 disables retransmission)
+	 */
+	public static void init(int windowSize, long retransmitMs, int retransmits) {
+		size = Math.max(1, windowSize);
+		minRetransmitUs = TimeUnit.MILLISECONDS.toMicros(Math.max(TICK_MS, retransmitMs));
+		maxRetransmits = Math.max(0, retransmits);
+		wheel();
+	}
+
+	/**
+	 * Returns (creating) the window of a DPN.
+	 * @param dpnKey - DPN Identifier
+	 * @return window
+	 */
+	public static DpnCommandWindow forDpn(String dpnKey) {
+		DpnCommandWindow window = windows.get(dpnKey);
+		if (window == null) {
+			window = new DpnCommandWindow(dpnKey);
+			DpnCommandWindow prior = windows.putIfAbsent(dpnKey, window);
+			window = (prior != null) ? prior : window;
+			wheel();
+		}
+		return window;
+	}
+
+	/**
+	 * Windows of all DPNs.
+	 * @return windows
+	 */
+	public static Collection<DpnCommandWindow> getWindows() {
+		return windows.values();
+	}
+
+	/**
+	 * Stops retransmissions.
+	 */
+	public static void close() {
+		HashedTimingWheel<Command> w = wheel;
+		wheel = null;
+		if (w != null) {
+			w.close();
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param dpnKey - DPN Identifier
+	 */
+	private DpnCommandWindow(String dpnKey) {
+		this.dpnKey = dpnKey;
+		Metrics metrics = Metrics.getInstance();
+		this.roundTrip = (metrics != null) ? metrics.getDpnRoundTripHistogram(dpnKey) :
+			new LatencyHistogram(TimeUnit.MILLISECONDS.toMicros(MAX_RETRANSMIT_MS));
+	}
+
+	private static HashedTimingWheel<Command> wheel() {
+		HashedTimingWheel<Command> w = wheel;
+		if (w == null) {
+			synchronized (DpnCommandWindow.class) {
+				w = wheel;
+				if (w == null) {
+					w = new HashedTimingWheel<Command>("DpnCommandWindow", TICK_MS, TimeUnit.MILLISECONDS,
+							TICKS_PER_WHEEL, new HashedTimingWheel.ExpiryHandler<Command>() {
+								@Override
+								public void expired(List<Command> items) {
+									retransmit(items);
+								}
+							});
+					wheel = w;
+				}
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * Packs a (Client Identifier, Operation Identifier) pair; both are Uint32 on the wire.
+	 */
+	private static long key(long clientId, long opId) {
+		return ((clientId & 0xFFFFFFFFL) << 32) | (opId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Opens a command, waiting up to DEFAULT_MAX_WAIT_MS for room in the window.  Frames sent
+	 * with the DPN API that are given the command are part of it until {@link #end(Command)}.
+	 * @param api - DPN API the command is sent with
+	 * @param clientId - Client Identifier
+	 * @param opId - Operation Identifier
+	 * @param contextId - Context Identifier or NO_CONTEXT
+	 * @return command
+	 * @throws WindowFullException - if the window stayed full; nothing may be sent for the command
+	 */
+	public Command begin(DpnAPI2 api, long clientId, long opId, long contextId) throws WindowFullException {
+		if (!acquire()) {
+			stalled.increment();
+			long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+			boolean acquired = false;
+			while (!acquired && System.nanoTime() < deadline) {
+				LockSupport.parkNanos(WAIT_BACKOFF_NANOS);
+				acquired = acquire();
+			}
+			if (!acquired) {
+				rejected.increment();
+				throw new WindowFullException(dpnKey, size);
+			}
+		}
+		return new Command(this, api, key(clientId, opId), contextId, sequence.incrementAndGet());
+	}
+
+	/**
+	 * Takes a slot of the window if one is free.
+	 */
+	private boolean acquire() {
+		if (inFlight.incrementAndGet() > size) {
+			inFlight.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Cancels the outstanding commands of a Context, e.g. ahead of its deletion, so they are
+	 * neither retransmitted nor expired.
+	 * @param contextId - Context Identifier
+	 * @return number of commands cancelled
+	 */
+	public int cancel(long contextId) {
+		if (contextId == NO_CONTEXT) {
+			return 0;
+		}
+		int retVal = 0;
+		for (Command cmd = byContext.remove(contextId); cmd != null; cmd = cmd.sibling) {
+			boolean settled;
+			// A retransmission holds the command while it queues its frames
+			synchronized (cmd) {
+				settled = cmd.done.compareAndSet(false, true);
+			}
+			if (settled) {
+				Timeout<Command> t = cmd.timeout;
+				if (t != null) {
+					t.cancel();
+				}
+				remove(cmd);
+				inFlight.decrementAndGet();
+				cancelled.increment();
+				retVal++;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Closes a command; no more frames are added to it.  A command that sent no acknowledged frame
+	 * gives its slot back and one whose frames were all answered already is acknowledged.
+	 * @param cmd - command
+	 */
+	public void end(Command cmd) {
+		boolean empty;
+		boolean answered;
+		synchronized (cmd) {
+			cmd.ended = true;
+			empty = cmd.frames.isEmpty();
+			answered = !empty && cmd.replies >= cmd.frames.size();
+		}
+		if (empty && cmd.done.compareAndSet(false, true)) {
+			inFlight.decrementAndGet();
+		} else if (answered) {
+			remove(cmd);
+			settle(cmd);
+		}
+	}
+
+	/**
+	 * Counts a DPN Reply against its command and acknowledges the command if it was the last
+	 * reply expected.
+	 * @param clientId - Client Identifier of the reply
+	 * @param opId - Operation Identifier of the reply
+	 * @return true if the reply belonged to an outstanding command
+	 */
+	public static boolean ack(long clientId, long opId) {
+		Command[] retVal = countReply(key(clientId, opId));
+		if (retVal[0] == null) {
+			return false;
+		}
+		if (retVal[1] != null) {
+			settle(retVal[1]);
+		}
+		return true;
+	}
+
+	/**
+	 * Acknowledges a command that received all its replies.
+	 */
+	private static void settle(Command cmd) {
+		if (!cmd.done.compareAndSet(false, true)) {
+			return;
+		}
+		Timeout<Command> t = cmd.timeout;
+		if (t != null) {
+			t.cancel();
+		}
+		DpnCommandWindow window = cmd.window;
+		window.untrack(cmd);
+		window.inFlight.decrementAndGet();
+		window.acked.increment();
+		if (cmd.retransmits == 0) {
+			window.sample(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - cmd.sentNanos));
+		}
+	}
+
+	/**
+	 * Adds a round trip sample and updates the retransmission timeout.
+	 */
+	private void sample(long rttUs) {
+		roundTrip.record(rttUs);
+		synchronized (this) {
+			if (smoothedRttUs == 0L) {
+				smoothedRttUs = rttUs;
+				rttVarianceUs = rttUs >> 1;
+			} else {
+				rttVarianceUs = (3 * rttVarianceUs + Math.abs(smoothedRttUs - rttUs)) >> 2;
+				smoothedRttUs = (7 * smoothedRttUs + rttUs) >> 3;
+			}
+			retransmitUs = Math.min(TimeUnit.MILLISECONDS.toMicros(MAX_RETRANSMIT_MS),
+					Math.max(minRetransmitUs, smoothedRttUs + 4 * rttVarianceUs));
+		}
+	}
+
+	/**
+	 * Time until the next retransmission of a command or, after its last transmission, until it
+	 * expires.
+	 */
+	private long nextDelayUs(Command cmd) {
+		if (cmd.retransmits >= maxRetransmits) {
+			return TimeUnit.MILLISECONDS.toMicros(EXPIRY_MS);
+		}
+		return Math.min(TimeUnit.MILLISECONDS.toMicros(MAX_RETRANSMIT_MS), retransmitUs << cmd.retransmits);
+	}
+
+	/**
+	 * Retransmits or expires the commands whose timeout elapsed.  Runs on the wheel thread.
+	 * @param items - commands whose timeout elapsed
+	 */
+	private static void retransmit(List<Command> items) {
+		for (Command cmd : items) {
+			if (cmd.done.get()) {
+				continue;
+			}
+			DpnCommandWindow window = cmd.window;
+			if (cmd.retransmits >= maxRetransmits) {
+				if (cmd.done.compareAndSet(false, true)) {
+					remove(cmd);
+					window.untrack(cmd);
+					window.inFlight.decrementAndGet();
+					window.expired.increment();
+					LOG.warn("DPN {} did not acknowledge command {} after {} retransmissions", window.dpnKey,
+							cmd.seq, cmd.retransmits);
+					failTransaction(cmd);
+				}
+				continue;
+			}
+			synchronized (cmd) {
+				// Cancelled commands must not be queued behind the command that cancelled them
+				if (cmd.done.get()) {
+					continue;
+				}
+				cmd.retransmits++;
+				try {
+					for (byte[] frame : cmd.frames) {
+						cmd.api.resend(frame);
+					}
+					window.retransmitted.increment();
+				} catch (Exception e) {
+					ErrorLog.logError(e.getMessage(), e.getStackTrace());
+				}
+			}
+			HashedTimingWheel<Command> w = wheel;
+			if (w == null) {
+				return;
+			}
+			cmd.timeout = w.schedule(cmd, window.nextDelayUs(cmd), TimeUnit.MICROSECONDS);
+			if (cmd.done.get()) {
+				// Acknowledged while being retransmitted
+				cmd.timeout.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Fails the Transaction of an expired command, if it is still open.
+	 */
+	private static void failTransaction(Command cmd) {
+		Transaction tx = Transaction.get(cmd.key >>> 32, cmd.key & 0xFFFFFFFFL);
+		if (tx != null) {
+			tx.failAsync(new ErrBuilder()
+					.setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.DPN_TIMEOUT))
+					.setErrorInfo("PROTOCOL - operation failed - ERROR - DPN " + cmd.window.dpnKey
+							+ " did not acknowledge the operation")
+					.build());
+		}
+	}
+
+	/**
+	 * Indexes a command by its Context.
+	 */
+	private void track(final Command cmd) {
+		if (cmd.contextId == NO_CONTEXT) {
+			return;
+		}
+		byContext.compute(cmd.contextId, new BiFunction<Long, Command, Command>() {
+			@Override
+			public Command apply(Long k, Command head) {
+				cmd.sibling = head;
+				return cmd;
+			}
+		});
+	}
+
+	/**
+	 * Removes a settled command from the Context index.
+	 */
+	private void untrack(final Command cmd) {
+		if (cmd.contextId == NO_CONTEXT) {
+			return;
+		}
+		byContext.computeIfPresent(cmd.contextId, new BiFunction<Long, Command, Command>() {
+			@Override
+			public Command apply(Long k, Command head) {
+				if (head == cmd) {
+					return head.sibling;
+				}
+				for (Command c = head; c.sibling != null; c = c.sibling) {
+					if (c.sibling == cmd) {
+						c.sibling = cmd.sibling;
+						break;
+					}
+				}
+				return head;
+			}
+		});
+	}
+
+	private static void register(final Command cmd) {
+		outstanding.compute(cmd.key, new BiFunction<Long, Command, Command>() {
+			@Override
+			public Command apply(Long k, Command head) {
+				cmd.next = head;
+				return cmd;
+			}
+		});
+	}
+
+	/**
+	 * Counts a reply against the oldest command of a key that still expects one.  A command that
+	 * has been closed and received all its replies is removed.
+	 * @param key - packed (Client Identifier, Operation Identifier) pair
+	 * @return the command the reply was counted against and, as second element, the command if it
+	 *      must be acknowledged
+	 */
+	private static Command[] countReply(long key) {
+		final Command[] retVal = new Command[2];
+		outstanding.computeIfPresent(key, new BiFunction<Long, Command, Command>() {
+			@Override
+			public Command apply(Long k, Command head) {
+				// Newest first, so the last match is the oldest command
+				Command match = null;
+				for (Command c = head; c != null; c = c.next) {
+					synchronized (c) {
+						if (c.replies < c.frames.size()) {
+							match = c;
+						}
+					}
+				}
+				if (match == null) {
+					return head;
+				}
+				retVal[0] = match;
+				synchronized (match) {
+					match.replies++;
+					if (!match.ended || match.replies < match.frames.size()) {
+						return head;
+					}
+				}
+				retVal[1] = match;
+				if (head == match) {
+					return head.next;
+				}
+				for (Command c = head; c.next != null; c = c.next) {
+					if (c.next == match) {
+						c.next = match.next;
+						break;
+					}
+				}
+				return head;
+			}
+		});
+		return retVal;
+	}
+
+	private static void remove(final Command cmd) {
+		outstanding.computeIfPresent(cmd.key, new BiFunction<Long, Command, Command>() {
+			@Override
+			public Command apply(Long k, Command head) {
+				if (head == cmd) {
+					return head.next;
+				}
+				for (Command c = head; c.next != null; c = c.next) {
+					if (c.next == cmd) {
+						c.next = cmd.next;
+						break;
+					}
+				}
+				return head;
+			}
+		});
+	}
+
+	/**
+	 * DPN Identifier.
+	 * @return DPN Identifier
+	 */
+	public String getDpnKey() {
+		return dpnKey;
+	}
+
+	/**
+	 * Commands in flight.
+	 * @return count
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Sequence number of the last command.
+	 * @return sequence number
+	 */
+	public long getSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Commands sent.
+	 * @return count
+	 */
+	public long getSent() {
+		return sent.sum();
+	}
+
+	/**
+	 * Commands acknowledged.
+	 * @return count
+	 */
+	public long getAcked() {
+		return acked.sum();
+	}
+
+	/**
+	 * Command retransmissions.
+	 * @return count
+	 */
+	public long getRetransmitted() {
+		return retransmitted.sum();
+	}
+
+	/**
+	 * Commands dropped without acknowledgement.
+	 * @return count
+	 */
+	public long getExpired() {
+		return expired.sum();
+	}
+
+	/**
+	 * Commands that found the window full.
+	 * @return count
+	 */
+	public long getStalled() {
+		return stalled.sum();
+	}
+
+	/**
+	 * Commands rejected because the window stayed full.
+	 * @return count
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Commands cancelled by a deletion of their Context.
+	 * @return count
+	 */
+	public long getCancelled() {
+		return cancelled.sum();
+	}
+
+	/**
+	 * Smoothed round trip time.
+	 * @return time (us)
+	 */
+	public synchronized long getSmoothedRttUs() {
+		return smoothedRttUs;
+	}
+
+	/**
+	 * Current retransmission timeout.
+	 * @return time (us)
+	 */
+	public long getRetransmitUs() {
+		return retransmitUs;
+	}
+
+	@Override
+	public String toString() {
+		return "DpnCommandWindow [dpn=" + dpnKey + ", inFlight=" + getInFlight() + ", sequence=" + getSequence()
+				+ ", sent=" + getSent() + ", acked=" + getAcked() + ", retransmitted=" + getRetransmitted()
+				+ ", expired=" + getExpired() + ", stalled=" + getStalled() + ", rejected=" + getRejected()
+				+ ", cancelled=" + getCancelled() + ", srttUs=" + getSmoothedRttUs()
+				+ ", rtoUs=" + getRetransmitUs() + "]";
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Interning index of DPN keys (node id + "/" + network id).
+ *
+ * Lookups hash the node id and network id slices of a received frame in place and return the
+ * interned String key, so a known DPN can be resolved without copying the frame or building
+ * a String.  The table is copy-on-write; DPN keys are only added when a DPN is configured or
+ * says Hello and released when it is removed or says Bye, so writes are rare and reads never
+ * lock.
+ */
+public class DpnKeyIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final byte SEPARATOR = '/';
+
+    /**
+     * Index entry.
+     */
+    private static final class Entry {
+        final byte[] keyBytes;
+        final String key;
+        final int hash;
+        final Entry next;
+
+        Entry(byte[] keyBytes, String key, int hash, Entry next) {
+            this.keyBytes = keyBytes;
+            this.key = key;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Interns a key.
+     * @param key - Concatenation of node id + / + network id
+     * @return the interned key instance
+     */
+    public synchronized String intern(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = spread(hash(keyBytes, 0, keyBytes.length, 0));
+        Entry[] current = table;
+        for (Entry e = current[hash & (current.length - 1)]; e != null; e = e.next) {
+            if (e.hash == hash && e.key.equals(key)) {
+                return e.key;
+            }
+        }
+        Entry[] next = new Entry[(size + 1 > current.length / 2) ? current.length * 2 : current.length];
+        for (Entry head : current) {
+            for (Entry e = head; e != null; e = e.next) {
+                int idx = e.hash & (next.length - 1);
+                next[idx] = new Entry(e.keyBytes, e.key, e.hash, next[idx]);
+            }
+        }
+        int idx = hash & (next.length - 1);
+        next[idx] = new Entry(keyBytes, key, hash, next[idx]);
+        size++;
+        table = next;
+        return key;
+    }
+
+    /**
+     * Removes an interned key.
+     * @param key - Concatenation of node id + / + network id
+     * @return true if the key was interned
+     */
+    public synchronized boolean release(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = spread(hash(keyBytes, 0, keyBytes.length, 0));
+        Entry[] current = table;
+        boolean found = false;
+        for (Entry e = current[hash & (current.length - 1)]; e != null; e = e.next) {
+            if (e.hash == hash && e.key.equals(key)) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        Entry[] next = new Entry[current.length];
+        for (Entry head : current) {
+            for (Entry e = head; e != null; e = e.next) {
+                if (e.hash == hash && e.key.equals(key)) {
+                    continue;
+                }
+                int idx = e.hash & (next.length - 1);
+                next[idx] = new Entry(e.keyBytes, e.key, e.hash, next[idx]);
+            }
+        }
+        size--;
+        table = next;
+        return true;
+    }
+
+    /**
+     * Number of interned keys.
+     * @return key count
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the key formed by two slices of a frame.
+     * @param buf - frame
+     * @param nodeOffset - offset of the node id
+     * @param nodeLength - length of the node id
+     * @param networkOffset - offset of the network id
+     * @param networkLength - length of the network id
+     * @return the interned key or null if it has not been interned
+     */
+    public String lookup(byte[] buf, int nodeOffset, int nodeLength, int networkOffset, int networkLength) {
+        int hash = hash(buf, nodeOffset, nodeLength, 0);
+        hash = 31 * hash + SEPARATOR;
+        hash = spread(hash(buf, networkOffset, networkLength, hash));
+        Entry[] current = table;
+        for (Entry e = current[hash & (current.length - 1)]; e != null; e = e.next) {
+            if (e.hash == hash && matches(e.keyBytes, buf, nodeOffset, nodeLength, networkOffset, networkLength)) {
+                return e.key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares an entry with the frame slices.
+     */
+    private static boolean matches(byte[] keyBytes, byte[] buf, int nodeOffset, int nodeLength,
+            int networkOffset, int networkLength) {
+        if (keyBytes.length != nodeLength + 1 + networkLength || keyBytes[nodeLength] != SEPARATOR) {
+            return false;
+        }
+        for (int i = 0; i < nodeLength; i++) {
+            if (keyBytes[i] != buf[nodeOffset + i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < networkLength; i++) {
+            if (keyBytes[nodeLength + 1 + i] != buf[networkOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Polynomial hash over a byte slice.
+     */
+    private static int hash(byte[] buf, int offset, int length, int seed) {
+        int h = seed;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the higher hash bits into the bucket index bits.
+     */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
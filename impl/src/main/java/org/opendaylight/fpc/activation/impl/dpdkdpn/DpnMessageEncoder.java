@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import java.nio.ByteBuffer;
+
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
+
+/**
+ * Allocation free encoder for the DPDK DPN session messages.
+ *
+ * Each method writes a complete message into the provided buffer using primitive values only;
+ * unsigned fields are written as their low order bytes in network byte order.  The buffer
+ * MUST have at least the corresponding *_LENGTH bytes remaining.  Pad bytes are written too, as a
+ * pooled buffer still holds the bytes of its previous message.
+ */
+public class DpnMessageEncoder {
+    /**
+     * Create Session message length (including the trailing pad byte)
+     */
+    public static final int CREATE_SESSION_LENGTH = 41;
+    /**
+     * Modify Downlink Bearer message length (including the trailing pad byte)
+     */
+    public static final int MODIFY_BEARER_DL_LENGTH = 23;
+    /**
+     * Modify Downlink Bearer (with Session Id) message length (including the trailing pad byte)
+     */
+    public static final int MODIFY_BEARER_DL_SESSION_LENGTH = 32;
+    /**
+     * Delete Session message length
+     */
+    public static final int DELETE_SESSION_LENGTH = 19;
+    /**
+     * Delete Bearer message length (including the trailing pad byte)
+     */
+    public static final int DELETE_BEARER_LENGTH = 7;
+
+    /**
+     * Encodes a Create Session message.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param imsi - IMSI (Uint64)
+     * @param ue_ip - Session IPv4 Address
+     * @param lbi - Linked Bearer Identifier
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @param s1u_sgw_gtpu_ipv4 - SGW GTP-U IPv4 Address
+     * @param sessionId - Session Id
+     * @param controllerTopic - Controller Topic
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @return the buffer
+     */
+    public static ByteBuffer encodeCreateSession(ByteBuffer bb,
+            short dpn,
+            long imsi,
+            long ue_ip,
+            short lbi,
+            long s1u_sgw_gtpu_teid,
+            long s1u_sgw_gtpu_ipv4,
+            long sessionId,
+            short controllerTopic,
+            long clientIdentifier,
+            long opIdentifier) {
+        return bb.put((byte) dpn)
+            .put(DpnAPI2.CREATE_SESSION_TYPE)
+            .putLong(imsi)
+            .put((byte) lbi)
+            .putInt((int) ue_ip)
+            .putInt((int) s1u_sgw_gtpu_teid)
+            .putInt((int) s1u_sgw_gtpu_ipv4)
+            .putLong(sessionId)
+            .put((byte) controllerTopic)
+            .putInt((int) clientIdentifier)
+            .putInt((int) opIdentifier)
+            .put((byte) 0);
+    }
+
+    /**
+     * Encodes a Modify Downlink Bearer message.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param s1u_enb_gtpu_ipv4 - ENodeB GTP-U IPv4 Address
+     * @param s1u_enb_gtpu_teid - ENodeB GTP-U TEID
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @return the buffer
+     */
+    public static ByteBuffer encodeModifyBearerDl(ByteBuffer bb,
+            short dpn,
+            long s1u_enb_gtpu_ipv4,
+            long s1u_enb_gtpu_teid,
+            long s1u_sgw_gtpu_teid,
+            long clientIdentifier,
+            long opIdentifier) {
+        return bb.put((byte) dpn)
+            .put(DpnAPI2.MODIFY_DL_BEARER_TYPE)
+            .putInt((int) s1u_enb_gtpu_ipv4)
+            .putInt((int) s1u_enb_gtpu_teid)
+            .putInt((int) s1u_sgw_gtpu_teid)
+            .putInt((int) clientIdentifier)
+            .putInt((int) opIdentifier)
+            .put((byte) 0);
+    }
+
+    /**
+     * Encodes a Modify Downlink Bearer message that carries the Session Id.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param s1u_sgw_gtpu_ipv4 - SGW GTP-U IPv4 Address
+     * @param s1u_enb_gtpu_teid - ENodeB GTP-U TEID
+     * @param s1u_enb_gtpu_ipv4 - ENodeB GTP-U IPv4 Address
+     * @param sessionId - Session Id
+     * @param controllerTopic - Controller Topic
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @return the buffer
+     */
+    public static ByteBuffer encodeModifyBearerDl(ByteBuffer bb,
+            short dpn,
+            long s1u_sgw_gtpu_ipv4,
+            long s1u_enb_gtpu_teid,
+            long s1u_enb_gtpu_ipv4,
+            long sessionId,
+            short controllerTopic,
+            long clientIdentifier,
+            long opIdentifier) {
+        return bb.put((byte) dpn)
+            .put(DpnAPI2.MODIFY_DL_BEARER_TYPE)
+            .putInt((int) s1u_sgw_gtpu_ipv4)
+            .putInt((int) s1u_enb_gtpu_teid)
+            .putInt((int) s1u_enb_gtpu_ipv4)
+            .putLong(sessionId)
+            .put((byte) controllerTopic)
+            .putInt((int) clientIdentifier)
+            .putInt((int) opIdentifier)
+            .put((byte) 0);
+    }
+
+    /**
+     * Encodes a Delete Session message.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param sessionId - Session Id
+     * @param controllerTopic - Controller Topic
+     * @param clientIdentifier - Client Identifier
+     * @param opIdentifier - Operation Identifier
+     * @return the buffer
+     */
+    public static ByteBuffer encodeDeleteSession(ByteBuffer bb,
+            short dpn,
+            long sessionId,
+            short controllerTopic,
+            long clientIdentifier,
+            long opIdentifier) {
+        return bb.put((byte) dpn)
+            .put(DpnAPI2.DELETE_SESSION_TYPE)
+            .putLong(sessionId)
+            .put((byte) controllerTopic)
+            .putInt((int) clientIdentifier)
+            .putInt((int) opIdentifier);
+    }
+
+    /**
+     * Length of a batched frame of Delete Bearer messages.
+     * @param count - number of messages
+     * @return frame length
+     */
+    public static int deleteBearersLength(int count) {
+        return ZMQBatchFrame.HEADER_LENGTH + count * (ZMQBatchFrame.LENGTH_PREFIX + DELETE_BEARER_LENGTH);
+    }
+
+    /**
+     * Encodes a batched frame of Delete Bearer messages (see ZMQBatchFrame).  The buffer MUST have
+     * at least deleteBearersLength(count) bytes remaining.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param s1u_sgw_gtpu_teids - SGW GTP-U TEIDs
+     * @param offset - index of the first TEID
+     * @param count - number of TEIDs, at most ZMQBatchFrame.MAX_MESSAGES
+     * @return the buffer
+     */
+    public static ByteBuffer encodeDeleteBearers(ByteBuffer bb,
+            short dpn,
+            long[] s1u_sgw_gtpu_teids,
+            int offset,
+            int count) {
+        bb.put((byte) dpn)
+            .put(ZMQBatchFrame.BATCH_TYPE)
+            .putShort((short) count);
+        for (int i = offset; i < offset + count; i++) {
+            bb.putShort((short) DELETE_BEARER_LENGTH);
+            encodeDeleteBearer(bb, dpn, s1u_sgw_gtpu_teids[i]);
+        }
+        return bb;
+    }
+
+    /**
+     * Encodes a Delete Bearer message.
+     * @param bb - target buffer
+     * @param dpn - DPN Topic
+     * @param s1u_sgw_gtpu_teid - SGW GTP-U TEID
+     * @return the buffer
+     */
+    public static ByteBuffer encodeDeleteBearer(ByteBuffer bb,
+            short dpn,
+            long s1u_sgw_gtpu_teid) {
+        return bb.put((byte) dpn)
+            .put(DpnAPI2.DELETE_BEARER_TYPE)
+            .putInt((int) s1u_sgw_gtpu_teid)
+            .put((byte) 0);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+/**
+ * Flyweight reader over a DPN initiated message.
+ *
+ * The reader is bound to a received frame with {@link #wrap(byte[])} and reads each field in
+ * place, so no copies of the frame are made.  A reader instance is NOT thread safe and is meant
+ * to be owned by a single listener thread and re-wrapped for every frame.
+ */
+public class DpnMessageReader {
+    private static final int TOPIC_OFFSET = 0;
+    private static final int TYPE_OFFSET = 1;
+
+    // DPN Reply
+    private static final int REPLY_CAUSE_OFFSET = 2;
+    private static final int REPLY_CLIENT_ID_OFFSET = 3;
+    private static final int REPLY_OP_ID_OFFSET = 7;
+
+    // Downlink Data Notification
+    private static final int DDN_SESSION_ID_OFFSET = 2;
+    private static final int DDN_CLIENT_ID_OFFSET = 10;
+    private static final int DDN_OP_ID_OFFSET = 14;
+    private static final int DDN_NODE_ID_LENGTH_OFFSET = 18;
+
+    // DPN Status Indication
+    private static final int STATUS_TOPIC_OFFSET = 2;
+    private static final int STATUS_TYPE_OFFSET = 3;
+    private static final int STATUS_NODE_ID_LENGTH_OFFSET = 8;
+
+    private byte[] buf;
+    private int nodeIdOffset;
+    private int nodeIdLength;
+    private int networkIdOffset;
+    private int networkIdLength;
+
+    /**
+     * Binds the reader to a frame.
+     * @param buf - message buffer
+     * @return this reader
+     */
+    public DpnMessageReader wrap(byte[] buf) {
+        this.buf = buf;
+        this.nodeIdLength = -1;
+        if (buf.length > TYPE_OFFSET) {
+            if (buf[TYPE_OFFSET] == DpnAPIListener.DOWNLINK_DATA_NOTIFICATION) {
+                locateIds(DDN_NODE_ID_LENGTH_OFFSET);
+            } else if (buf[TYPE_OFFSET] == DpnAPIListener.DPN_STATUS_INDICATION) {
+                locateIds(STATUS_NODE_ID_LENGTH_OFFSET);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Locates the node id and network id fields.
+     * @param lengthOffset - offset of the node id length
+     */
+    private void locateIds(int lengthOffset) {
+        if (buf.length <= lengthOffset) {
+            return;
+        }
+        int nodeLength = buf[lengthOffset] & 0xFF;
+        int networkLengthOffset = lengthOffset + 1 + nodeLength;
+        if (buf.length <= networkLengthOffset) {
+            return;
+        }
+        int networkLength = buf[networkLengthOffset] & 0xFF;
+        if (buf.length < networkLengthOffset + 1 + networkLength) {
+            return;
+        }
+        this.nodeIdOffset = lengthOffset + 1;
+        this.nodeIdLength = nodeLength;
+        this.networkIdOffset = networkLengthOffset + 1;
+        this.networkIdLength = networkLength;
+    }
+
+    /**
+     * Returns the ZMQ Topic of the message.
+     * @return topic
+     */
+    public short topic() {
+        return (short) (buf[TOPIC_OFFSET] & 0xFF);
+    }
+
+    /**
+     * Returns the Message Type.
+     * @return message type
+     */
+    public byte messageType() {
+        return buf[TYPE_OFFSET];
+    }
+
+    /**
+     * Indicates if the node id / network id fields are present and well formed.
+     * @return true if the ids can be read
+     */
+    public boolean hasIds() {
+        return nodeIdLength >= 0;
+    }
+
+    /**
+     * Resolves the interned DPN key of the message.
+     * @param index - DPN key index
+     * @return interned key or null if the key is unknown or not present
+     */
+    public String lookupKey(DpnKeyIndex index) {
+        return hasIds() ? index.lookup(buf, nodeIdOffset, nodeIdLength, networkIdOffset, networkIdLength) : null;
+    }
+
+    /**
+     * Builds the DPN key of the message.  This allocates and should only be used for keys that
+     * are not yet known to the index.
+     * @return Concatenation of node id + / + network id or null if not present
+     */
+    public String buildKey() {
+        return hasIds() ? new String(buf, nodeIdOffset, nodeIdLength) + "/"
+                + new String(buf, networkIdOffset, networkIdLength) : null;
+    }
+
+    /**
+     * Returns the Cause Value of a DPN Reply.
+     * @return cause value
+     */
+    public byte replyCause() {
+        return buf[REPLY_CAUSE_OFFSET];
+    }
+
+    /**
+     * Returns the Client Identifier of a DPN Reply.
+     * @return unsigned 32 bit value
+     */
+    public long replyClientId() {
+        return uint32(REPLY_CLIENT_ID_OFFSET);
+    }
+
+    /**
+     * Returns the Operation Identifier of a DPN Reply.
+     * @return unsigned 32 bit value
+     */
+    public long replyOpId() {
+        return uint32(REPLY_OP_ID_OFFSET);
+    }
+
+    /**
+     * Returns the raw Session Identifier of a Downlink Data Notification.
+     * @return 64 bit value (to be interpreted as unsigned)
+     */
+    public long ddnSessionId() {
+        return int64(DDN_SESSION_ID_OFFSET);
+    }
+
+    /**
+     * Returns the Client Identifier of a Downlink Data Notification.
+     * @return unsigned 32 bit value
+     */
+    public long ddnClientId() {
+        return uint32(DDN_CLIENT_ID_OFFSET);
+    }
+
+    /**
+     * Returns the Operation Identifier of a Downlink Data Notification.
+     * @return unsigned 32 bit value
+     */
+    public long ddnOpId() {
+        return uint32(DDN_OP_ID_OFFSET);
+    }
+
+    /**
+     * Returns the Topic carried in a DPN Status Indication.
+     * @return topic
+     */
+    public short statusTopic() {
+        return (short) buf[STATUS_TOPIC_OFFSET];
+    }
+
+    /**
+     * Returns the Status Type of a DPN Status Indication.
+     * @return status type
+     */
+    public byte statusType() {
+        return buf[STATUS_TYPE_OFFSET];
+    }
+
+    /**
+     * Returns the optional capabilities byte that follows the network id of a DPN Status
+     * Indication.
+     * @return capabilities or 0 if the DPN did not send them
+     */
+    public byte statusCapabilities() {
+        if (!hasIds()) {
+            return 0;
+        }
+        int offset = networkIdOffset + networkIdLength;
+        return (buf.length > offset) ? buf[offset] : 0;
+    }
+
+    /**
+     * Reads an unsigned 32 bit value.
+     * @param offset - offset of the value
+     * @return value
+     */
+    private long uint32(int offset) {
+        return ((buf[offset] & 0xFFL) << 24) | ((buf[offset + 1] & 0xFFL) << 16)
+                | ((buf[offset + 2] & 0xFFL) << 8) | (buf[offset + 3] & 0xFFL);
+    }
+
+    /**
+     * Reads a 64 bit value.
+     * @param offset - offset of the value
+     * @return value
+     */
+    private long int64(int offset) {
+        return (uint32(offset) << 32) | uint32(offset + 4);
+    }
+}
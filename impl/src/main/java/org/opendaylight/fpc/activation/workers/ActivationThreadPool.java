@@ -8,22 +8,54 @@
 package org.opendaylight.fpc.activation.workers;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.utils.AbstractThreadPool;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
+import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.fpc.utils.NameResolver.FixedType;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.Bundles;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.OpBody;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdate;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.DeleteOrQuery;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.Targets;
 
 import com.google.common.base.Supplier;
 
 /**
  * Activation Threadpool Manager / Factory.
+ *
+ * Each worker owns a bounded queue (shard).  Session scoped work is always routed to the shard
+ * selected by the hash of its context id so that all operations of a session are executed in
+ * order by a single worker.  When a shard is full the caller is told to back off instead of the
+ * queue growing without limit.
+ *
+ * Each worker owns the session state of its shard; no session state is shared between workers.
+ * An operation that spans sessions of several shards (a multi-context CONF or a CONF_BUNDLES) is
+ * queued on every owning shard and each worker validates and activates only the contexts and
+ * context targets it owns.  Targets that are not session scoped belong to the shard of the
+ * operation's first session.
  */
 public class ActivationThreadPool extends AbstractThreadPool<ConfigureWorker> {
-    static private int DEFAULT_Q_SIZE = 2048;
+    /**
+     * Default shard queue capacity.
+     */
+    public static final int DEFAULT_Q_SIZE = 2048;
+    private static final long ENQUEUE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long ENQUEUE_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int queueSize;
 
     /**
      * Constructor.
@@ -31,7 +63,144 @@ public class ActivationThreadPool extends AbstractThreadPool<ConfigureWorker> {
      * @param poolSize - Thread pool size
      */
     public ActivationThreadPool(DataBroker db, int poolSize) {
+        this(db, poolSize, DEFAULT_Q_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param db - DataBroker
+     * @param poolSize - Thread pool size
+     * @param queueSize - Capacity of each worker queue
+     */
+    public ActivationThreadPool(DataBroker db, int poolSize, int queueSize) {
         super(db,poolSize);
+        this.queueSize = (queueSize > 0) ? queueSize : DEFAULT_Q_SIZE;
+    }
+
+    /**
+     * Returns the shard (worker index) that owns a session.
+     * @param sessionKey - context id of the session
+     * @return worker index
+     */
+    public int shardOf(String sessionKey) {
+        int h = sessionKey.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % poolSize;
+    }
+
+    /**
+     * Enqueues session scoped work on every worker that owns one of its sessions.  If an owning
+     * queue stays full the caller fails the Transaction; a part already queued on another worker
+     * is then skipped by that worker.
+     * @param sessionKeys - context ids of the sessions; if empty the work is not session scoped
+     * @param work - work item
+     * @return false if an owning queue stayed full, i.e. the caller should retry later
+     */
+    public boolean enqueue(List<String> sessionKeys, Object work) {
+        if (sessionKeys.isEmpty()) {
+            return enqueue(work);
+        }
+        boolean[] owners = new boolean[poolSize];
+        for (String sessionKey : sessionKeys) {
+            int shard = shardOf(sessionKey);
+            if (!owners[shard]) {
+                owners[shard] = true;
+                if (!offer(pool.get(shard).getQueue(), work)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Enqueues work that is not bound to a session on the next worker.
+     * @param work - work item
+     * @return false if the queue stayed full, i.e. the caller should retry later
+     */
+    public boolean enqueue(Object work) {
+        return offer(getWorker().getQueue(), work);
+    }
+
+    /**
+     * Offers work to a queue, briefly backing off while it is full.
+     * @param queue - worker queue
+     * @param work - work item
+     * @return true if the work was queued
+     */
+    private boolean offer(MpscArrayQueue<Object> queue, Object work) {
+        if (queue.offer(work)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + ENQUEUE_TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(ENQUEUE_BACKOFF_NANOS);
+            if (queue.offer(work)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the sessions (context ids) of an operation body.
+     * @param body - Operation Body
+     * @return context ids of the contexts or context targets, in order; empty if the body is not
+     * session scoped
+     */
+    public static List<String> sessionKeys(OpBody body) {
+        List<String> retVal = new ArrayList<String>(1);
+        if (body instanceof CreateOrUpdate) {
+            for (Contexts context : (((CreateOrUpdate) body).getContexts() != null) ?
+                    ((CreateOrUpdate) body).getContexts() : Collections.<Contexts>emptyList()) {
+                retVal.add(NameResolver.extractString(context.getContextId()));
+            }
+        } else if (body instanceof DeleteOrQuery) {
+            for (Targets target : (((DeleteOrQuery) body).getTargets() != null) ?
+                    ((DeleteOrQuery) body).getTargets() : Collections.<Targets>emptyList()) {
+                String key = sessionKey(target);
+                if (key != null) {
+                    retVal.add(key);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Determines the sessions (context ids) of the operations of a CONF_BUNDLES.
+     * @param bundles - Operations of the bundle
+     * @return context ids of all operations, in order; empty if no operation is session scoped
+     */
+    public static List<String> sessionKeys(List<Bundles> bundles) {
+        List<String> retVal = new ArrayList<String>();
+        for (Bundles op : bundles) {
+            retVal.addAll(sessionKeys(op.getOpBody()));
+        }
+        return retVal;
+    }
+
+    /**
+     * Determines the session (context id) of a target.
+     * @param target - Delete or Query target
+     * @return context id or null if the target is not a context
+     */
+    public static String sessionKey(Targets target) {
+        Matcher m = NameResolver.entityPatterns.get(FixedType.CONTEXT).getKey()
+                .matcher(NameResolver.extractString(target.getTarget()));
+        return m.matches() ? m.group(1) : null;
+    }
+
+    /**
+     * Returns the current depth of each worker queue.
+     * @return queue depths in worker order
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[poolSize];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = pool.get(i).getQueue().size();
+        }
+        return depths;
     }
 
     @Override
@@ -44,6 +213,7 @@ public class ActivationThreadPool extends AbstractThreadPool<ConfigureWorker> {
      */
     private class ConfigureFactory implements Supplier<ConfigureWorker> {
         protected DataBroker db;
+        private int shard = 0;
 
         /**
          * Constructor.
@@ -56,7 +226,7 @@ public class ActivationThreadPool extends AbstractThreadPool<ConfigureWorker> {
         @Override
         public ConfigureWorker get() {
             //return new ConfigureWorker(db, new PriorityBlockingQueue<Object>(DEFAULT_Q_SIZE, new QComparator()));
-            return new ConfigureWorker(db, new LinkedBlockingQueue<Object>());
+            return new ConfigureWorker(db, new MpscArrayQueue<Object>(queueSize), ActivationThreadPool.this, shard++);
         }
     }
 
@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.workers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.dpn.DpnHolder;
+import org.opendaylight.fpc.tenant.TenantManager;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.Dpns;
+
+/**
+ * Admission control of CONF operations ahead of the Activation Threadpool.
+ *
+ * Every admitted Create or Update counts as in flight on each DPN it targets until its Transaction
+ * closes or is evicted.  A new operation is
+ * <ul>
+ * <li>shed if it is a Create targeting a DPN that reported an overload; the caller is told to
+ * retry once the overload hold expires,</li>
+ * <li>shed with a retry after of retryAfterMs while a targeted DPN has maxInFlight operations
+ * in flight.</li>
+ * </ul>
+ * Admission never blocks; it runs on the RPC / NBI threads.
+ * Deletes and Queries are always admitted as they do not add load to a DPN.  Contexts assigned by
+ * the Assignment Manager are already redirected away from overloaded DPNs by the DPN selection.
+ */
+public class AdmissionController {
+    /**
+     * Default in flight operations per DPN.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    /**
+     * Default retry after returned when a DPN stays full.
+     */
+    public static final long DEFAULT_RETRY_AFTER_MS = 100L;
+    /**
+     * Returned by admit when the operation was admitted.
+     */
+    public static final long ADMITTED = 0L;
+    private static final DpnHolder[] NO_DPNS = new DpnHolder[0];
+
+    static private AdmissionController _instance;
+
+    private final ActivationThreadPool activationService;
+    private final int maxInFlight;
+    private final long retryAfterMs;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shedOverload = new LongAdder();
+    private final LongAdder shedInFlight = new LongAdder();
+
+    /**
+     * Operations admitted against a set of DPNs; released once when the Transaction ends.
+     */
+    public static final class Ticket {
+        private final DpnHolder[] dpns;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Ticket(DpnHolder[] dpns) {
+            this.dpns = dpns;
+        }
+
+        /**
+         * Releases the in flight slots of the DPNs.  Subsequent calls have no effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                for (DpnHolder dpn : dpns) {
+                    dpn.inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Initializer.
+     * @param activationService - Activation Threadpool the operations are queued to
+     * @param maxInFlight - operations in flight per DPN (0 disables the limit)
+     * @param retryAfterMs - retry after returned when a DPN is full
+     * @return the Admission Controller
+     */
+    static public AdmissionController init(ActivationThreadPool activationService, int maxInFlight,
+            long retryAfterMs) {
+        _instance = new AdmissionController(activationService, maxInFlight, retryAfterMs);
+        return _instance;
+    }
+
+    /**
+     * Returns Class Instance
+     * @return Admission Controller or null if it was not initialized
+     */
+    static public AdmissionController getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Constructor.
+     * @param activationService - Activation Threadpool the operations are queued to
+     * @param maxInFlight - operations in flight per DPN (0 disables the limit)
+     * @param retryAfterMs - retry after returned when a DPN is full
+     */
+    protected AdmissionController(ActivationThreadPool activationService, int maxInFlight,
+            long retryAfterMs) {
+        this.activationService = activationService;
+        this.maxInFlight = Math.max(0, maxInFlight);
+        this.retryAfterMs = Math.max(1L, retryAfterMs);
+    }
+
+    /**
+     * Admits an operation.  If admitted, the Transaction holds the in flight slots of the targeted
+     * DPNs until it closes.
+     * @param tx - Transaction of the operation
+     * @param opType - Operation Type
+     * @param contexts - Contexts of the operation (after assignment), may be null
+     * @return ADMITTED or the time (ms) after which the caller should retry
+     */
+    public long admit(Transaction tx, OpType opType, List<Contexts> contexts) {
+        if ((opType != OpType.Create && opType != OpType.Update) || contexts == null || contexts.isEmpty()) {
+            admitted.increment();
+            return ADMITTED;
+        }
+        DpnHolder[] dpns = targets(tx.getTenantContext().getDpnInfo(), contexts);
+        if (opType == OpType.Create) {
+            long now = System.currentTimeMillis();
+            long overloadedUntil = 0L;
+            for (DpnHolder dpn : dpns) {
+                overloadedUntil = Math.max(overloadedUntil, dpn.overloadedUntilMs);
+            }
+            if (overloadedUntil > now) {
+                shedOverload.increment();
+                return overloadedUntil - now;
+            }
+        }
+        if (!acquire(dpns)) {
+            shedInFlight.increment();
+            return retryAfterMs;
+        }
+        tx.setAdmission(new Ticket(dpns));
+        admitted.increment();
+        return ADMITTED;
+    }
+
+    /**
+     * Resolves the DPNs targeted by Contexts; Abstract DPNs are expanded to their members.
+     */
+    private static DpnHolder[] targets(Map<String, DpnHolder> dpnInfo, List<Contexts> contexts) {
+        List<DpnHolder> retVal = null;
+        for (Contexts context : contexts) {
+            for (Dpns dpn : (context.getDpns() != null) ? context.getDpns() : Collections.<Dpns>emptyList()) {
+                List<FpcDpnId> members = TenantManager.vdpnDpnsMap.get(dpn.getDpnId());
+                for (FpcDpnId dpnId : (members != null) ? members : Collections.singletonList(dpn.getDpnId())) {
+                    DpnHolder holder = dpnInfo.get(dpnId.toString());
+                    if (holder == null) {
+                        continue;
+                    }
+                    if (retVal == null) {
+                        retVal = new ArrayList<DpnHolder>(2);
+                    }
+                    if (!retVal.contains(holder)) {
+                        retVal.add(holder);
+                    }
+                }
+            }
+        }
+        return (retVal == null) ? NO_DPNS : retVal.toArray(new DpnHolder[retVal.size()]);
+    }
+
+    /**
+     * Takes an in flight slot on every DPN or on none of them.
+     */
+    private boolean acquire(DpnHolder[] dpns) {
+        for (int i = 0; i < dpns.length; i++) {
+            int inFlight = dpns[i].inFlight.incrementAndGet();
+            if (maxInFlight > 0 && inFlight > maxInFlight) {
+                for (int j = 0; j <= i; j++) {
+                    dpns[j].inFlight.decrementAndGet();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Operations admitted.
+     * @return count
+     */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * Operations shed because a DPN was overloaded.
+     * @return count
+     */
+    public long getShedOverload() {
+        return shedOverload.sum();
+    }
+
+    /**
+     * Operations shed because a DPN had too many operations in flight.
+     * @return count
+     */
+    public long getShedInFlight() {
+        return shedInFlight.sum();
+    }
+
+    /**
+     * Work queued in the Activation Threadpool.
+     * @return queue depth over all workers
+     */
+    public long getQueueDepth() {
+        long depth = 0L;
+        for (int d : activationService.getQueueDepths()) {
+            depth += d;
+        }
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionController [maxInFlight=" + maxInFlight + ", queueDepth=" + getQueueDepth()
+                + ", admitted=" + getAdmitted() + ", shedOverload=" + getShedOverload() + ", shedInFlight=" + getShedInFlight() + "]";
+    }
+}
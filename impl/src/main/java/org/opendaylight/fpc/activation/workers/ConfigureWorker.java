@@ -10,16 +10,15 @@ package org.opendaylight.fpc.activation.workers;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
@@ -31,10 +30,13 @@ import org.opendaylight.fpc.activation.cache.OpCache;
 import org.opendaylight.fpc.activation.cache.PayloadCache;
 import org.opendaylight.fpc.activation.cache.StorageCache;
 import org.opendaylight.fpc.activation.cache.StorageCacheUtils;
+import org.opendaylight.fpc.activation.cache.WriteBehindQueue;
 import org.opendaylight.fpc.activation.cache.transaction.ContextInfoHolder;
+import org.opendaylight.fpc.activation.cache.transaction.Metrics;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction.OperationStatus;
 import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPI2;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnCommandWindow;
 import org.opendaylight.fpc.dpn.DpnHolder;
 import org.opendaylight.fpc.impl.FpcProvider;
 import org.opendaylight.fpc.impl.FpcagentDispatcher;
@@ -43,6 +45,8 @@ import org.opendaylight.fpc.impl.memcached.MemcachedThreadPool;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.ErrorTypeIndex;
+import org.opendaylight.fpc.utils.LatencyHistogram;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
 import org.opendaylight.fpc.utils.NameResolver;
 import org.opendaylight.fpc.utils.NameResolver.FixedType;
 import org.opendaylight.fpc.utils.Worker;
@@ -100,31 +104,71 @@ public class ConfigureWorker
 implements Worker {
 	private static final Logger LOG = LoggerFactory.getLogger(ConfigureWorker.class);
 	private static final AtomicLong entrants = new AtomicLong(0L);
-	private boolean run;
-	private final BlockingQueue<Object> blockingConfigureQueue;
+	private static final long POLL_TIMEOUT_MS = 1000;
+	private volatile boolean run;
+	private final MpscArrayQueue<Object> blockingConfigureQueue;
 	private DpnAPI2 api;
-	private Map<String,ArrayList<Contexts>> sessionContextsMap;
+	private final ActivationThreadPool activationService;
+	private final int shard;
+	// Sessions owned by this worker's shard; only accessed by the worker thread
+	private final Map<String,List<Contexts>> sessionContextsMap = new HashMap<String,List<Contexts>>();
 
 	/**
 	 * Constructor.
 	 * @param db - DataBroker
-	 * @param blockingConfigureQueue - Work queue
+	 * @param blockingConfigureQueue - Work queue (this worker is its only consumer)
+	 * @param activationService - Activation Threadpool the worker belongs to
+	 * @param shard - index of the worker's shard
 	 */
-	protected ConfigureWorker(DataBroker db, BlockingQueue<Object> blockingConfigureQueue) {
+	protected ConfigureWorker(DataBroker db, MpscArrayQueue<Object> blockingConfigureQueue,
+			ActivationThreadPool activationService, int shard) {
 		api = new DpnAPI2(ZMQClientPool.getInstance().getWorker());
 		this.blockingConfigureQueue = blockingConfigureQueue;
-		sessionContextsMap = new ConcurrentHashMap<String,ArrayList<Contexts>>();
+		this.activationService = activationService;
+		this.shard = shard;
 		LOG.info("ConfigureWorker has been initialized");
 	}
 
+	/**
+	 * Indicates if a session belongs to this worker's shard.
+	 * @param sessionId - context id, or null if the element is not session scoped
+	 * @param leadKey - first session of the work item, or null if it is not session scoped
+	 * @return true if this worker activates the element
+	 */
+	private boolean owns(String sessionId, String leadKey) {
+		String key = (sessionId != null) ? sessionId : leadKey;
+		return key == null || activationService.shardOf(key) == shard;
+	}
+
+	/**
+	 * Returns the first session of a list of session keys.
+	 */
+	private static String leadKey(List<String> sessionKeys) {
+		return sessionKeys.isEmpty() ? null : sessionKeys.get(0);
+	}
+
 	/**
 	 * Retrieves the work queue.
 	 * @return - the work queue for this instance
 	 */
-	public BlockingQueue<Object> getQueue() {
+	public MpscArrayQueue<Object> getQueue() {
 		return blockingConfigureQueue;
 	}
 
+	/**
+	 * Records the duration of an activation call against the DPN's latency histogram.
+	 * @param dpnInfo - DPN Holder
+	 * @param startNanos - System.nanoTime() at the start of the call
+	 */
+	private static void recordActivation(DpnHolder dpnInfo, long startNanos) {
+		LatencyHistogram latency = dpnInfo.activationLatency;
+		if (latency == null) {
+			latency = Metrics.getInstance().getDpnHistogram(NameResolver.extractString(dpnInfo.dpn.getDpnId()));
+			dpnInfo.activationLatency = latency;
+		}
+		latency.record((System.nanoTime() - startNanos) / 1000L);
+	}
+
 	/**
 	 * Generic Error Handler dealing with the Err Return value Generation, exception printing and Transaction
 	 * Management.
@@ -141,6 +185,9 @@ implements Worker {
 			Transaction tx,
 			long duration) {
 		String mess = (e != null) ? message + e.getMessage() : message;
+		if (e instanceof DpnCommandWindow.WindowFullException) {
+			id = new ErrorTypeId(ErrorTypeIndex.DPN_BUSY);
+		}
 		Err rt = new ErrBuilder()
 				.setErrorTypeId(id)
 				.setErrorInfo(mess)
@@ -154,13 +201,15 @@ implements Worker {
 	}
 
 	/**
-	 * Primary execution method for individual operations.
+	 * Primary execution method for individual operations.  Only the contexts and targets owned
+	 * by this worker's shard are activated.
 	 * @param oCache - Object Cache
 	 * @param tx - Transaction
+	 * @param leadKey - first session of the work item, or null if it is not session scoped
 	 * @return a ResultType if an error occurs otherwise null
 	 */
 	private ResultType executeOperation(PayloadCache oCache,
-			Transaction tx, ConfigureInput configureInput) {
+			Transaction tx, String leadKey) {
 		long sysTime = System.currentTimeMillis();
 		OpInput input = tx.getOpInput();
 		DpnHolder dpnInfo = null;
@@ -169,6 +218,9 @@ implements Worker {
 		switch (input.getOpType()) {
 		case Create:
 			for (Contexts context : (oCache.getPayloadContexts() == null) ? Collections.<Contexts>emptyList() : oCache.getPayloadContexts()) {
+				if (!owns(NameResolver.extractString(context.getContextId()), leadKey)) {
+					continue;
+				}
 				for (Dpns dpn : (context.getDpns() == null) ? Collections.<Dpns>emptyList() : context.getDpns() ) {
 					if(TenantManager.vdpnContextsMap.get(dpn.getDpnId()) != null)
 						TenantManager.vdpnContextsMap.get(dpn.getDpnId()).put(context, new ContextInfoHolder(tx.getTenantContext(),tx.getReadCache(),input));
@@ -186,12 +238,14 @@ implements Worker {
 			}
 		case Update:
 			for (Contexts context : (oCache.getPayloadContexts() == null) ? Collections.<Contexts>emptyList() : oCache.getPayloadContexts()) {
+				if (!owns(NameResolver.extractString(context.getContextId()), leadKey)) {
+					continue;
+				}
 				if ((input.getOpType().equals(OpType.Create))) {
 					try {
 
 						if(MemcachedThreadPool.getInstance() != null){
-							MemcachedThreadPool.getInstance().getWorker().getBlockingQueue().put(
-									new AbstractMap.SimpleEntry<FpcContext,OpType>(context, OpType.Create));
+							MemcachedThreadPool.getInstance().mirror(context, OpType.Create);
 						}
 					} catch (Exception e) {
 						ErrorLog.logError(e.getStackTrace());
@@ -200,7 +254,7 @@ implements Worker {
 				if(sessionContextsMap.get(NameResolver.extractString(context.getContextId())) != null) {
 					sessionContextsMap.get(NameResolver.extractString(context.getContextId())).add(context);
 				} else {
-					ArrayList<Contexts> contextsArray = new ArrayList<Contexts>();
+					List<Contexts> contextsArray = new CopyOnWriteArrayList<Contexts>();
 					contextsArray.add(context);
 					sessionContextsMap.put(NameResolver.extractString(context.getContextId()),contextsArray);
 				}
@@ -223,8 +277,10 @@ implements Worker {
 								dpnInfo = tx.getTenantContext().getDpnInfo().get(dpnId.toString());
 								if (dpnInfo.activator != null) {
 									try {
+										long activationStart = System.nanoTime();
 										dpnInfo.activator.activate(api,input.getClientId(), input.getOpId(), input.getOpType(), (context.getInstructions() != null) ?
 												context.getInstructions() : input.getInstructions(), context, oCache);
+										recordActivation(dpnInfo, activationStart);
 									} catch (Exception e) {
 										return processActivationError(new ErrorTypeId(ErrorTypeIndex.CONTEXT_ACTIVATION_FAIL),
 												e,
@@ -241,8 +297,10 @@ implements Worker {
 							dpnInfo = tx.getTenantContext().getDpnInfo().get(dpn.getDpnId().toString());
 							if (dpnInfo.activator != null) {
 								try {
+									long activationStart = System.nanoTime();
 									dpnInfo.activator.activate(api,input.getClientId(), input.getOpId(), input.getOpType(), (context.getInstructions() != null) ?
 											context.getInstructions() : input.getInstructions(), context, oCache);
+									recordActivation(dpnInfo, activationStart);
 									tx.setStatus(OperationStatus.AWAITING_RESPONSES, System.currentTimeMillis() - sysTime);
 								} catch (Exception e) {
 									return processActivationError(new ErrorTypeId(ErrorTypeIndex.CONTEXT_ACTIVATION_FAIL),
@@ -284,22 +342,24 @@ implements Worker {
 				doq = (DeleteOrQuery) input.getOpBody();
 				for (Targets target : (doq.getTargets() != null) ? doq.getTargets() :
 					Collections.<Targets>emptyList()) {
+					if (!owns(ActivationThreadPool.sessionKey(target), leadKey)) {
+						continue;
+					}
 					FpcDpnId ident = null;
 					Entry<FixedType, String> entry = extractTypeAndId(NameResolver.extractString(target.getTarget()));
 					FpcContext context = null;
 					if(entry == null)
 						LOG.error("Unable to extract context ID - "+target.getTarget().toString());
-					ArrayList<Contexts> cList = sessionContextsMap.get(entry.getValue());
+					List<Contexts> cList = (entry != null) ? sessionContextsMap.get(entry.getValue()) : null;
 
-					if(!cList.isEmpty()){
+					if(cList != null && !cList.isEmpty()){
 						context = cList.get(cList.size()-1);
 					}
 
 					if (context != null) {
 						try {
 							if(MemcachedThreadPool.getInstance() != null){
-								MemcachedThreadPool.getInstance().getWorker().getBlockingQueue().put(
-										new AbstractMap.SimpleEntry<FpcContext,OpType>(context, OpType.Delete));
+								MemcachedThreadPool.getInstance().mirror(context, OpType.Delete);
 							}
 						} catch (Exception e) {
 							ErrorLog.logError(e.getStackTrace());
@@ -330,7 +390,9 @@ implements Worker {
 												dpnInfo = tx.getTenantContext().getDpnInfo().get(dpnId.toString());
 												if (dpnInfo.activator != null) {
 													try {
+														long activationStart = System.nanoTime();
 														dpnInfo.activator.delete(api,input.getClientId(),input.getOpId(),input.getInstructions(), target, context);
+														recordActivation(dpnInfo, activationStart);
 														sessionContextsMap.remove(NameResolver.extractString(context.getContextId()));
 													} catch (Exception e) {
 														return processActivationError(new ErrorTypeId(ErrorTypeIndex.DELETE_FAILURE),
@@ -351,7 +413,9 @@ implements Worker {
 											dpnInfo = tx.getTenantContext().getDpnInfo().get(dpn.getDpnId().toString());
 											if (dpnInfo.activator != null) {
 												try {
+													long activationStart = System.nanoTime();
 													dpnInfo.activator.delete(api,input.getClientId(),input.getOpId(),input.getInstructions(), target, context);
+													recordActivation(dpnInfo, activationStart);
 													tx.setStatus(OperationStatus.AWAITING_RESPONSES, System.currentTimeMillis() - sysTime);
 													sessionContextsMap.remove(NameResolver.extractString(context.getContextId()));
 												} catch (Exception e) {
@@ -404,6 +468,10 @@ implements Worker {
 		if (t == null) {
 			t = baseTx;
 		}
+		if (isFailed(t)) {
+			// Another shard's part of the operation failed first
+			return;
+		}
 		t.setStatusTs(OperationStatus.ACTIVATION_DEQUEUE, System.currentTimeMillis());
 		HierarchicalCache oCache = new HierarchicalCache((input.getOpRefScope() != null) ?
 				input.getOpRefScope() : RefScope.Unknown,
@@ -419,19 +487,24 @@ implements Worker {
 					t.completeAndClose(System.currentTimeMillis());
 					String defaultTenant = FpcProvider.getInstance().getConfig().getDefaultTenantId();
 					FpcIdentity defaultIdentity = (defaultTenant == null) ?  new FpcIdentity(0L) :  new FpcIdentity(defaultTenant);
-					DataBroker dataBroker = FpcProvider.getInstance().getDataBroker();
-					WriteTransaction writetx = dataBroker.newWriteOnlyTransaction();
 					org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts mobilityContext = new ContextsBuilder()
 							.setContextId(context.getContextId())
 							.setDpns(context.getDpns())
 							.setPorts(context.getPorts()).build();
-					writetx.put(LogicalDatastoreType.OPERATIONAL,
+					InstanceIdentifier<org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts> mobilityIid =
 							InstanceIdentifier.builder(Tenants.class)
 							.child(Tenant.class, new TenantKey(defaultIdentity))
 							.child(FpcMobility.class)
 							.child(org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts.class, new ContextsKey(context.getContextId()))
-							.build(),
-							mobilityContext);
+							.build();
+					WriteBehindQueue writeBehind = WriteBehindQueue.getInstance();
+					if (writeBehind != null) {
+						writeBehind.put(LogicalDatastoreType.OPERATIONAL, mobilityIid, mobilityContext);
+						return;
+					}
+					DataBroker dataBroker = FpcProvider.getInstance().getDataBroker();
+					WriteTransaction writetx = dataBroker.newWriteOnlyTransaction();
+					writetx.put(LogicalDatastoreType.OPERATIONAL, mobilityIid, mobilityContext);
 
 					CheckedFuture<Void,TransactionCommitFailedException> submitFuture = writetx.submit();
 
@@ -449,7 +522,86 @@ implements Worker {
 				}
 			}
 		}
-		executeOperation(oCache, t, input);
+		String leadKey = leadKey(ActivationThreadPool.sessionKeys(input.getOpBody()));
+		List<String> reserved = validateSession(t, input, leadKey);
+		if (reserved == null) {
+			return;
+		}
+		if (executeOperation(oCache, t, leadKey) instanceof Err) {
+			// A failed Create does not keep its sessions, so it can be retried
+			for (String id : reserved) {
+				sessionContextsMap.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a Transaction already failed or was rejected.
+	 * @param tx - Transaction
+	 * @return true if the Transaction must not be activated
+	 */
+	private static boolean isFailed(Transaction tx) {
+		OperationStatus status = tx.getStatus();
+		return status == OperationStatus.FAILED || status == OperationStatus.ERRORED_CREATE ||
+				status == OperationStatus.ERRORED_UPDATE;
+	}
+
+	/**
+	 * Validates a Create or Update against the sessions owned by this worker.  A Create reserves
+	 * its sessions so that a second Create of the same session is rejected.
+	 * @param tx - Transaction
+	 * @param input - Client request
+	 * @param leadKey - first session of the request
+	 * @return the sessions reserved by a Create (empty otherwise) or null if the operation was rejected
+	 */
+	private List<String> validateSession(Transaction tx, ConfigureInput input, String leadKey) {
+		List<String> reserved = new ArrayList<String>();
+		if (!(input.getOpBody() instanceof CreateOrUpdate) ||
+				((CreateOrUpdate)input.getOpBody()).getContexts() == null) {
+			return reserved;
+		}
+		for (Contexts context : ((CreateOrUpdate)input.getOpBody()).getContexts()) {
+			String sessionId = NameResolver.extractString(context.getContextId());
+			if (!owns(sessionId, leadKey)) {
+				continue;
+			}
+			if (input.getOpType() == OpType.Create) {
+				if (!sessionContextsMap.containsKey(sessionId)) {
+					sessionContextsMap.put(sessionId, new CopyOnWriteArrayList<Contexts>());
+					reserved.add(sessionId);
+					continue;
+				}
+				for (String id : reserved) {
+					sessionContextsMap.remove(id);
+				}
+				rejectSession(tx, OperationStatus.ERRORED_CREATE, ErrorTypeIndex.SESSION_ALREADY_EXISTS,
+						"Create session received for a session that was already created. Session id - "+sessionId);
+				return null;
+			}
+			if (input.getOpType() == OpType.Update && !sessionContextsMap.containsKey(sessionId)) {
+				rejectSession(tx, OperationStatus.ERRORED_UPDATE, ErrorTypeIndex.SESSION_NOT_FOUND,
+						"Update received for a session which hasn't been created yet. Session Id - "+sessionId);
+				return null;
+			}
+		}
+		return reserved;
+	}
+
+	/**
+	 * Fails a Transaction rejected by the session validation.  The client receives an Err Config
+	 * Result and the Transaction's admission and registry entry are released.
+	 * @param tx - Transaction
+	 * @param status - Errored state of the Transaction
+	 * @param errorType - Error Type Index
+	 * @param message - Error message
+	 */
+	private void rejectSession(Transaction tx, OperationStatus status, Long errorType, String message) {
+		ErrorLog.logError(message);
+		tx.setStatusTs(status, System.currentTimeMillis());
+		tx.failAsync(new ErrBuilder()
+				.setErrorTypeId(new ErrorTypeId(errorType))
+				.setErrorInfo("PROTOCOL - operation failed - ERROR - " + message)
+				.build());
 	}
 
 	/**
@@ -462,6 +614,8 @@ implements Worker {
 		HierarchicalCache bundleCache;
 		PayloadCache workingOpCache;
 		boolean usingGlobal = false;
+		String leadKey = leadKey(ActivationThreadPool.sessionKeys((input.getBundles() != null) ?
+				input.getBundles() : Collections.<Bundles>emptyList()));
 
 		TenantManager tenant = TenantManager.getTenantManager(input.getClientId());
 		if (tenant == null) {
@@ -511,7 +665,7 @@ implements Worker {
 					break;
 				}
 			}
-			ResultType rt = executeOperation(workingOpCache, t, null);
+			ResultType rt = executeOperation(workingOpCache, t, leadKey);
 
 			if ((rt != null) && (rt instanceof Err)) {
 				// TODO - Flag a cleanup call here
@@ -536,12 +690,14 @@ implements Worker {
 		LOG.info("ActivationWorker RUN started");
 		try {
 			while(run) {
-				entrants.incrementAndGet();
-				if ((entrants.get() % 100) == 0) {
+				AbstractMap.SimpleEntry<Object,Object> obj =
+						(AbstractMap.SimpleEntry<Object,Object>) blockingConfigureQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+				if (obj == null) {
+					continue;
+				}
+				if ((entrants.incrementAndGet() % 100) == 0) {
 					LOG.info("Configure Entries = {}", entrants.get());
 				}
-				AbstractMap.SimpleEntry<Object,Object> obj =
-						(AbstractMap.SimpleEntry<Object,Object>) blockingConfigureQueue.take();
 				if (obj.getValue() instanceof ConfigureInput) {
 					configure((Transaction) obj.getKey(),(ConfigureInput)obj.getValue());
 				} else if (obj.getValue() instanceof ConfigureBundlesInput) {
@@ -569,12 +725,6 @@ implements Worker {
 	 * @return - Map Entry with Type as key and Id as value
 	 */
 	public Map.Entry<FixedType, String> extractTypeAndId(String restconfPath) {
-		for (Map.Entry<FixedType, Map.Entry<Pattern,Integer>> p : NameResolver.entityPatterns.entrySet()) {
-			Matcher m = p.getValue().getKey().matcher(restconfPath);
-			if (m.matches()) {
-				return new AbstractMap.SimpleEntry<FixedType, String>(p.getKey(), m.group(1));
-			}
-		}
-		return null;
+		return NameResolver.extractTypeAndId(restconfPath);
 	}
 }
@@ -156,9 +156,10 @@ public class AssignmentManager {
                         List<Dpns> values = dpnAssignmentMgr.getDpn(
                                 context.getDl().getTunnelRemoteAddress(),
                                 ThreeGPPAccessType.class,
-                                true);
+                                true,
+                                (context.getImsi() != null) ? context.getImsi().getValue().longValue() : 0L);
 
-                        if (values.size() == 0)
+                        if (values == null || values.size() == 0)
                             return context;
 
                         newDpns = new ArrayList<org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.Dpns>();
@@ -192,7 +193,7 @@ public class AssignmentManager {
                                                 new MobilityTunnelParametersBuilder(dpn.getMobilityTunnelParameters());
 
                                         mtpb.setMobprofileParameters(new ThreegppTunnelBuilder()
-                                                .setTunnelIdentifier(new Long(teidRange.nextValue())).build());
+                                                .setTunnelIdentifier(Integer.toUnsignedLong(teidRange.nextValue())).build());
 
                                         DpnsBuilder dpnBldr = new DpnsBuilder(dpn)
                                                 .setMobilityTunnelParameters(mtpb.build());
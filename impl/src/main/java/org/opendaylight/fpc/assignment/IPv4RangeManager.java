@@ -7,7 +7,6 @@
  */
 package org.opendaylight.fpc.assignment;
 
-import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
@@ -27,31 +26,45 @@ public class IPv4RangeManager extends Counter {
      * @return An IPv4RangeManager configured to allocate addresses based upon the provided base
      */
     public static IPv4RangeManager createIPv4RangeManager(IpPrefix base) {
-        int baseVal = (int) IPToDecimal.cidrBase(base.getIpv4Prefix().toString());
-        int upperVal = (int) (baseVal + IPToDecimal.getSize(base.getIpv4Prefix().toString()));
-        return new IPv4RangeManager(baseVal, upperVal);
+        return createIPv4RangeManager(IPToDecimal.cidrBase(base.getIpv4Prefix().toString()),
+                IPToDecimal.getSize(base.getIpv4Prefix().toString()));
+    }
+
+    /**
+     * Constructs an IPv4 Pool Manager for a prefix.
+     * @param baseVal - network address of the prefix
+     * @param size - number of addresses in the prefix
+     * @return An IPv4RangeManager allocating the host addresses of the prefix
+     */
+    static IPv4RangeManager createIPv4RangeManager(long baseVal, long size) {
+        // Excludes the network and broadcast addresses when the prefix has host addresses
+        long upperVal = baseVal + ((size > 2) ? size - 2 : size - 1);
+        return new IPv4RangeManager((int) baseVal, (int) Math.max(upperVal, baseVal + 1));
     }
 
     /**
      * Default Constructor
-     * @param lo - Range lower bound
-     * @param hi - Range upper bound
+     * @param lo - Range lower bound (exclusive)
+     * @param hi - Range upper bound (inclusive)
      */
     protected IPv4RangeManager(int lo, int hi) {
         super(lo,hi);
     }
 
     /**
-     * Acquires the next available IP address from the pool
+     * Acquires the next available IP address from the pool.  Addresses reserved by other threads
+     * (see Counter) are not returned.
      * @return IpPrefix of the next avaiable IP address or null if there are no more addresses.
      */
     public IpPrefix getNextAddrAsPrefix() {
         try {
-            byte[] bytes = BigInteger.valueOf(nextValue()).toByteArray();
+            int value = nextValue();
+            byte[] bytes = new byte[] { (byte) (value >>> 24), (byte) (value >>> 16),
+                    (byte) (value >>> 8), (byte) value };
             InetAddress address = InetAddress.getByAddress(bytes);
             Ipv4Prefix ipv4Pre = new Ipv4Prefix(address.getHostAddress());
             return new IpPrefix(ipv4Pre);
-        } catch (IndexOutOfBoundsException outOfRangeExc) {
+        } catch (OutOfRangeException outOfRangeExc) {
             // This implies the Address pool has been exhausted
         } catch (UnknownHostException e) {
             ErrorLog.logError("A value was produced that gennerated a UnknownHostException", e.getStackTrace());
@@ -7,13 +7,13 @@
  */
 package org.opendaylight.fpc.dpn;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
@@ -45,12 +45,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Maps Remote IP addresses and Technology Types to DPN Groups
+ * Maps Remote IP addresses and Technology Types to DPN Groups and selects the DPN of new sessions
+ * from immutable snapshots of the groups (see DpnSelector).
  */
 public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(DpnAssignmentMgr.class);
 
     private static final Map<String, String> globalDpnIdMap = new HashMap<String, String>();
+    private static final String ALL = "all";
 
     /**
      * Retrieves Tenant Identity for a given DPN identity.
@@ -61,20 +63,69 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
         return globalDpnIdMap.get(identity.toString());
     }
 
+    /**
+     * Default time a DPN is avoided after an overload indication.  Creates targeting it are shed
+     * for as long, so the hold is kept close to the time a DPN needs to drain.
+     */
+    public static final long DEFAULT_OVERLOAD_HOLD_MS = 2000L;
+
+    private static volatile DpnSelector selector = DpnSelectors.LeastSessions.INSTANCE;
+    private static volatile long overloadHoldMs = DEFAULT_OVERLOAD_HOLD_MS;
+
+    /**
+     * Configures DPN selection for all tenants.
+     * @param strategy - selection strategy name (see DpnSelectors)
+     * @param holdMs - time a DPN is avoided after an overload indication
+     */
+    public static void configureSelection(String strategy, long holdMs) {
+        selector = DpnSelectors.forName(strategy);
+        overloadHoldMs = holdMs;
+        LOG.info("DpnAssignmentMgr - DPN selection strategy {}, overload hold {}ms", selector.getClass().getSimpleName(), holdMs);
+    }
+
+    /**
+     * Sets the DPN selection strategy.
+     * @param dpnSelector - strategy
+     */
+    public static void setSelector(DpnSelector dpnSelector) {
+        selector = dpnSelector;
+    }
+
+    /**
+     * Records an overload indication of a DPN.  The DPN is avoided by selections until the hold time
+     * expires or it is cleared.
+     * @param holder - DPN Holder
+     */
+    public static void markOverloaded(DpnHolder holder) {
+        holder.overloadedUntilMs = System.currentTimeMillis() + overloadHoldMs;
+    }
+
+    /**
+     * Clears the overload indication of a DPN, e.g. when it says Hello again.
+     * @param holder - DPN Holder
+     */
+    public static void clearOverload(DpnHolder holder) {
+        holder.overloadedUntilMs = 0L;
+    }
+
     private ListenerRegistration<DpnGroupChangeManager> groupsDataTreeChangeListenerRegistration;
-    private Map<PeerIpAcessRoleKey, Set<String>> accessAndRoleToDpnGroups;
+    // Group membership; guarded by this and published as snapshots
+    private Map<PeerIpAcessRoleKey, Set<String>> keyToDpnGroups;
+    private Map<String, Set<PeerIpAcessRoleKey>> dpnGroupsToKeys;
     private Map<String, Set<String>> dpnGroupsToDpns;
-    private Map<PeerIpAcessRoleKey, Set<String>> remoteIpAddressToDpnGroups;
+    // Access Type -> remote address (or "all") -> candidates; immutable
+    private volatile Map<Class<? extends FpcAccessType>, Map<String, DpnGroupSnapshot>> snapshots =
+            Collections.emptyMap();
+    private volatile DpnGroupSnapshot allDpns = new DpnGroupSnapshot(Collections.<String>emptyList());
     private final TenantManager tenantMgr;
 
     /**
      * Tracks Peer Ip Access roles.
      */
-    @SuppressWarnings("unused")
-    public class PeerIpAcessRoleKey {
-        private Class<? extends FpcAccessType> accessType;
-        private Class<? extends FpcForwaridingplaneRole> accessRole;
-        private String peerIpAddress;
+    public static final class PeerIpAcessRoleKey {
+        private final Class<? extends FpcAccessType> accessType;
+        private final Class<? extends FpcForwaridingplaneRole> accessRole;
+        private final String peerIpAddress;
         /**
          * Constructor
          * @param accessType - Access Type
@@ -88,6 +139,25 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
             this.accessRole = accessRole;
             this.peerIpAddress = peerIpAddress;
         }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accessType, accessRole, peerIpAddress);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PeerIpAcessRoleKey)) {
+                return false;
+            }
+            PeerIpAcessRoleKey other = (PeerIpAcessRoleKey) obj;
+            return Objects.equals(accessType, other.accessType) &&
+                    Objects.equals(accessRole, other.accessRole) &&
+                    Objects.equals(peerIpAddress, other.peerIpAddress);
+        }
     }
 
     /**
@@ -108,9 +178,9 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
      */
     public void init(DataBroker db,
                     TenantManager tenantMgr) {
-        accessAndRoleToDpnGroups = new HashMap<PeerIpAcessRoleKey, Set<String>>();
+        keyToDpnGroups = new HashMap<PeerIpAcessRoleKey, Set<String>>();
+        dpnGroupsToKeys = new HashMap<String, Set<PeerIpAcessRoleKey>>();
         dpnGroupsToDpns = new HashMap<String, Set<String>>();
-        remoteIpAddressToDpnGroups = new HashMap<PeerIpAcessRoleKey, Set<String>>();
         super.init(db, tenantMgr.getTenant());
 
         // Load Stored DPNs
@@ -146,61 +216,101 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
 
     /**
      * Loads a Dpn Group into this manager.
+     *
+     * Groups are indexed by access type and remote endpoint address, and by access type alone
+     * ("all").  The data plane role is not part of the index as selections are always made for the
+     * anchor role.
      * @param group - DpnGroups to be added
      */
-    private void loadDpnGroup(DpnGroups group) {
-        PeerIpAcessRoleKey byAccessRole = new PeerIpAcessRoleKey(group.getAccessType(),
-                group.getDataPlaneRole(),
-                "all");
-        Set<String> groupsByAccessAndRole = accessAndRoleToDpnGroups.get(byAccessRole);
-        if (groupsByAccessAndRole == null) {
-            groupsByAccessAndRole = new HashSet<String>();
-            accessAndRoleToDpnGroups.put(byAccessRole, groupsByAccessAndRole);
-        }
-        groupsByAccessAndRole.add(group.getDpnGroupId().toString());
-
-        Set<String> groupsToDpns = dpnGroupsToDpns.get(group.getDpnGroupId().toString());
-        if (groupsToDpns == null) {
-            groupsToDpns = new HashSet<String>();
-            dpnGroupsToDpns.put(group.getDpnGroupId().toString(), groupsToDpns);
-        }
+    private synchronized void loadDpnGroup(DpnGroups group) {
+        String groupId = group.getDpnGroupId().toString();
+        unindexGroup(groupId);
 
+        Set<PeerIpAcessRoleKey> keys = new HashSet<PeerIpAcessRoleKey>();
+        keys.add(new PeerIpAcessRoleKey(group.getAccessType(), null, ALL));
         for (DpnGroupPeers peerGroup : (group.getDpnGroupPeers() != null) ? group.getDpnGroupPeers() :
             Collections.<DpnGroupPeers>emptyList()) {
             if (peerGroup.getRemoteEndpointAddress() != null) {
-                PeerIpAcessRoleKey byIpAccessRole = new PeerIpAcessRoleKey(group.getAccessType(),
-                        group.getDataPlaneRole(),
-                        peerGroup.getRemoteEndpointAddress().toString());
-                Set<String> dpnGroups = remoteIpAddressToDpnGroups.get(byIpAccessRole);
-                if (dpnGroups == null) {
-                    groupsByAccessAndRole = new HashSet<String>();
-                    remoteIpAddressToDpnGroups.put(byIpAccessRole, dpnGroups);
-                }
-                dpnGroups.add(group.getDpnGroupId().toString());
+                keys.add(new PeerIpAcessRoleKey(group.getAccessType(), null,
+                        peerGroup.getRemoteEndpointAddress().toString()));
             }
         }
+        for (PeerIpAcessRoleKey key : keys) {
+            Set<String> groups = keyToDpnGroups.get(key);
+            if (groups == null) {
+                groups = new HashSet<String>();
+                keyToDpnGroups.put(key, groups);
+            }
+            groups.add(groupId);
+        }
+        dpnGroupsToKeys.put(groupId, keys);
+        if (dpnGroupsToDpns.get(groupId) == null) {
+            dpnGroupsToDpns.put(groupId, new HashSet<String>());
+        }
+        publish();
     }
 
     /**
      * Removes a Dpn Group from this manager.
      * @param group - DpnGroups to be removed
      */
-    private void removeDpnGroup(DpnGroups group) {
-        accessAndRoleToDpnGroups.remove(new PeerIpAcessRoleKey(group.getAccessType(),
-                group.getDataPlaneRole(),
-                "all"));
-        dpnGroupsToDpns.remove(group.getDpnGroupId().toString());
+    private synchronized void removeDpnGroup(DpnGroups group) {
+        String groupId = group.getDpnGroupId().toString();
+        unindexGroup(groupId);
+        dpnGroupsToDpns.remove(groupId);
+        publish();
+    }
 
-        for (DpnGroupPeers peerGroup : (group.getDpnGroupPeers() != null) ? group.getDpnGroupPeers() :
-            Collections.<DpnGroupPeers>emptyList()) {
-            if (peerGroup.getRemoteEndpointAddress() != null) {
-                remoteIpAddressToDpnGroups.remove(new PeerIpAcessRoleKey(group.getAccessType(),
-                        group.getDataPlaneRole(),
-                        peerGroup.getRemoteEndpointAddress().toString()));
+    private void unindexGroup(String groupId) {
+        Set<PeerIpAcessRoleKey> keys = dpnGroupsToKeys.remove(groupId);
+        if (keys == null) {
+            return;
+        }
+        for (PeerIpAcessRoleKey key : keys) {
+            Set<String> groups = keyToDpnGroups.get(key);
+            if (groups != null) {
+                groups.remove(groupId);
+                if (groups.isEmpty()) {
+                    keyToDpnGroups.remove(key);
+                }
             }
         }
     }
 
+    /**
+     * Rebuilds the selection snapshots.  Each index key holds the DPNs of all of its groups.
+     */
+    private void publish() {
+        Map<Class<? extends FpcAccessType>, Map<String, DpnGroupSnapshot>> next =
+                new HashMap<Class<? extends FpcAccessType>, Map<String, DpnGroupSnapshot>>();
+        for (Map.Entry<PeerIpAcessRoleKey, Set<String>> entry : keyToDpnGroups.entrySet()) {
+            Set<String> dpns = new HashSet<String>();
+            for (String groupId : entry.getValue()) {
+                Set<String> members = dpnGroupsToDpns.get(groupId);
+                if (members != null) {
+                    dpns.addAll(members);
+                }
+            }
+            if (!dpns.isEmpty()) {
+                Map<String, DpnGroupSnapshot> byAddress = next.get(entry.getKey().accessType);
+                if (byAddress == null) {
+                    byAddress = new HashMap<String, DpnGroupSnapshot>();
+                    next.put(entry.getKey().accessType, byAddress);
+                }
+                byAddress.put(entry.getKey().peerIpAddress, new DpnGroupSnapshot(dpns));
+            }
+        }
+        Set<String> all = new HashSet<String>();
+        for (Set<String> members : dpnGroupsToDpns.values()) {
+            all.addAll(members);
+        }
+        for (Map.Entry<Class<? extends FpcAccessType>, Map<String, DpnGroupSnapshot>> entry : next.entrySet()) {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+        }
+        snapshots = Collections.unmodifiableMap(next);
+        allDpns = new DpnGroupSnapshot(all);
+    }
+
     /**
      * Change Listener for DPNGroups.
      */
@@ -227,14 +337,17 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
     public void addDpn(Dpns dpn) throws Exception {
     	DpnAPIListener.setUlDpnMapping(dpn.getNodeId()+"/"+dpn.getNetworkId(), dpn.getDpnId());
         LOG.info("DpnAssignmentMgr - Adding DPN from Groups " + dpn.getDpnName() );
-        for (FpcDpnGroupId groupId : (dpn.getDpnGroups() == null) ? Collections.<FpcDpnGroupId>emptyList() :
-                dpn.getDpnGroups()) {
-            Set<String> dpnList = dpnGroupsToDpns.get(groupId.toString());
-            if (dpnList == null) {
-                dpnList = new HashSet<String>();
-                dpnGroupsToDpns.put(groupId.toString(), dpnList);
+        synchronized (this) {
+            for (FpcDpnGroupId groupId : (dpn.getDpnGroups() == null) ? Collections.<FpcDpnGroupId>emptyList() :
+                    dpn.getDpnGroups()) {
+                Set<String> dpnList = dpnGroupsToDpns.get(groupId.toString());
+                if (dpnList == null) {
+                    dpnList = new HashSet<String>();
+                    dpnGroupsToDpns.put(groupId.toString(), dpnList);
+                }
+                dpnList.add(dpn.getDpnId().toString());
             }
-            dpnList.add(dpn.getDpnId().toString());
+            publish();
         }
         if (globalDpnIdMap.get(dpn.getDpnId().toString()) != null) {
             if (globalDpnIdMap.get(dpn.getDpnId().toString()).compareTo(tenantId.toString()) != 0) {
@@ -249,12 +362,15 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
     @Override
     public void removeDpn(Dpns dpn) {
         LOG.info("DpnAssignmentMgr - Removing DPN " + dpn.getDpnName() );
-        for (FpcDpnGroupId groupId : (dpn.getDpnGroups() == null) ? Collections.<FpcDpnGroupId>emptyList() :
-            dpn.getDpnGroups()) {
-            Set<String> dpnList = dpnGroupsToDpns.get(groupId.toString());
-            if (dpnList != null) {
-                dpnList.remove(dpn.getDpnId().toString());
+        synchronized (this) {
+            for (FpcDpnGroupId groupId : (dpn.getDpnGroups() == null) ? Collections.<FpcDpnGroupId>emptyList() :
+                dpn.getDpnGroups()) {
+                Set<String> dpnList = dpnGroupsToDpns.get(groupId.toString());
+                if (dpnList != null) {
+                    dpnList.remove(dpn.getDpnId().toString());
+                }
             }
+            publish();
         }
         globalDpnIdMap.remove(dpn.getDpnId().toString());
     }
@@ -267,56 +383,36 @@ public class DpnAssignmentMgr extends DpnResourceManager implements AutoCloseabl
 
     /**
      * Retrieves a DPN.
+     *
+     * The candidates are the DPNs of the groups peering with the remote address or, if there are
+     * none, of all groups of the access type.  One candidate is chosen by the configured DpnSelector
+     * from the DPNs' session counts and overload indications.
      * @param remoteAddress - User Plane Remote Address
      * @param accessType - Technology Access Type
      * @param assignAnyway - Notes that if no viable DPN is found a default one should be assigned.
-     * @return a List of Dpns that meets the provided criteria or null otherwise.
+     * @param key - selection key, e.g. the IMSI of the session (0 if none)
+     * @return a List holding the selected Dpns or null if no DPN meets the provided criteria.
      */
     public List<Dpns> getDpn(IpAddress remoteAddress,
             Class<? extends FpcAccessType> accessType,
-            boolean assignAnyway) {
-        // TODO - If you are going to innovate here is the location to do it.  Add an iterator, balancer, etc.
-        // to select the group in a more dynamic / interesting fashion.
-
+            boolean assignAnyway,
+            long key) {
         // We assume anchor as the default Role of 'null'
-        PeerIpAcessRoleKey byIpAccessRole = new PeerIpAcessRoleKey(accessType,
-                null,
-                remoteAddress.toString());
-        if (remoteIpAddressToDpnGroups.get(byIpAccessRole) != null) {
-            String dpnGroup = remoteIpAddressToDpnGroups.get(byIpAccessRole).iterator().next();
-            Set<String> dpns = dpnGroupsToDpns.get(dpnGroup);
-            if (dpns.isEmpty()) {
-                return null;
-            } else {
-                List<Dpns> retVal = new ArrayList<Dpns>();
-                for (String dpnId : dpns) {
-                    DpnHolder info = this.tenantMgr.getDpnInfo().get(dpnId);
-                    if (info != null) {
-                        retVal.add(info.dpn);
-                    }
-                }
-                return retVal;
+        Map<String, DpnGroupSnapshot> byAddress = snapshots.get(accessType);
+        DpnGroupSnapshot group = null;
+        if (byAddress != null) {
+            group = (remoteAddress != null) ? byAddress.get(remoteAddress.toString()) : null;
+            if (group == null) {
+                group = byAddress.get(ALL);
             }
         }
-        PeerIpAcessRoleKey byAccessRole = new PeerIpAcessRoleKey(accessType,
-                null,
-                null);
-        if (remoteIpAddressToDpnGroups.get(byAccessRole) != null) {
-            String dpnGroup = remoteIpAddressToDpnGroups.get(byAccessRole).iterator().next();
-            Set<String> dpns = dpnGroupsToDpns.get(dpnGroup);
-            if (dpns.isEmpty()) {
-                return null;
-            } else {
-                List<Dpns> retVal = new ArrayList<Dpns>();
-                for (String dpnId : dpns) {
-                    DpnHolder info = this.tenantMgr.getDpnInfo().get(dpnId);
-                    if (info != null) {
-                        retVal.add(info.dpn);
-                    }
-                }
-                return retVal;
-            }
+        if (group == null && assignAnyway) {
+            group = allDpns;
+        }
+        if (group == null) {
+            return null;
         }
-        return null;
+        DpnHolder selected = selector.select(group, tenantMgr.getDpnInfo(), key, System.currentTimeMillis());
+        return (selected != null) ? Collections.singletonList(selected.dpn) : null;
     }
 }
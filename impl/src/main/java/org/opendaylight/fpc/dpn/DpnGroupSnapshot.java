@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.dpn;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable candidate list of a DPN selection.
+ *
+ * Holds the DPN identities of one or more DPN Groups and a precomputed consistent hash ring over
+ * them.  Snapshots are rebuilt by the DpnAssignmentMgr when groups or DPNs change and are never
+ * modified afterwards, so selections read them without locking.
+ */
+public final class DpnGroupSnapshot {
+    /**
+     * Points placed on the ring per DPN.
+     */
+    public static final int VIRTUAL_NODES = 64;
+
+    private final String[] dpnIds;
+    private final long[] ringHashes;
+    private final int[] ringOwners;
+
+    /**
+     * Constructor.
+     * @param dpnIds - DPN identities (duplicates MUST have been removed)
+     */
+    public DpnGroupSnapshot(Collection<String> dpnIds) {
+        this.dpnIds = dpnIds.toArray(new String[dpnIds.size()]);
+        // Sorted so the ring does not depend on the iteration order of the source
+        Arrays.sort(this.dpnIds);
+
+        int points = this.dpnIds.length * VIRTUAL_NODES;
+        long[] entries = new long[points];
+        for (int i = 0; i < this.dpnIds.length; i++) {
+            long seed = mix(this.dpnIds[i].hashCode());
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                // Upper bits carry the point, lower 16 bits the owner index
+                entries[i * VIRTUAL_NODES + v] = (mix(seed + v * 0x9E3779B97F4A7C15L) & ~0xFFFFL) | i;
+            }
+        }
+        Arrays.sort(entries);
+        ringHashes = new long[points];
+        ringOwners = new int[points];
+        for (int p = 0; p < points; p++) {
+            ringHashes[p] = entries[p] & ~0xFFFFL;
+            ringOwners[p] = (int) (entries[p] & 0xFFFFL);
+        }
+    }
+
+    /**
+     * Number of candidate DPNs.
+     * @return count
+     */
+    public int size() {
+        return dpnIds.length;
+    }
+
+    /**
+     * Identity of a candidate DPN.
+     * @param index - candidate index
+     * @return DPN identity
+     */
+    public String getDpnId(int index) {
+        return dpnIds[index];
+    }
+
+    /**
+     * Ring position owning a key.
+     * @param key - selection key, e.g. an IMSI
+     * @return ring position; use ownerAt to resolve the candidate
+     */
+    public int ringPosition(long key) {
+        int pos = Arrays.binarySearch(ringHashes, mix(key) & ~0xFFFFL);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        return (pos == ringHashes.length) ? 0 : pos;
+    }
+
+    /**
+     * Candidate owning a ring position.
+     * @param position - ring position, wrapped around the ring
+     * @return candidate index
+     */
+    public int ownerAt(int position) {
+        return ringOwners[position % ringOwners.length];
+    }
+
+    /**
+     * Number of ring positions.
+     * @return count
+     */
+    public int ringSize() {
+        return ringOwners.length;
+    }
+
+    /**
+     * 64 bit finalizer of MurmurHash3.
+     * @param key - value
+     * @return well distributed hash
+     */
+    static long mix(long key) {
+        key ^= (key >>> 33);
+        key *= 0xff51afd7ed558ccdL;
+        key ^= (key >>> 33);
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= (key >>> 33);
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return "DpnGroupSnapshot " + Arrays.toString(dpnIds);
+    }
+}
@@ -8,10 +8,13 @@
 package org.opendaylight.fpc.dpn;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opendaylight.fpc.activation.Activator;
 import org.opendaylight.fpc.assignment.IPv4RangeManager;
 import org.opendaylight.fpc.utils.Counter;
+import org.opendaylight.fpc.utils.LatencyHistogram;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.topology.Dpns;
 
 /**
@@ -26,6 +29,26 @@ public class DpnHolder {
     public Map<String, Counter> teidManagers;
     public Activator activator;
     public Dpns dpn;
+    /**
+     * Activation latency histogram (us), resolved from Metrics on first use
+     */
+    public volatile LatencyHistogram activationLatency;
+    /**
+     * Sessions currently activated on the DPN
+     */
+    private final AtomicLong sessions = new AtomicLong();
+    /**
+     * Relative capacity used by DPN selection; sessions are compared per unit of weight
+     */
+    public volatile int weight = 1;
+    /**
+     * Time (ms) until which the DPN is considered overloaded, 0 if it is not
+     */
+    public volatile long overloadedUntilMs = 0L;
+    /**
+     * Admitted operations targeting the DPN that have not completed yet
+     */
+    public final AtomicInteger inFlight = new AtomicInteger();
 
     /**
      * Default Constructor.
@@ -33,5 +56,63 @@ public class DpnHolder {
      */
     public DpnHolder(Dpns dpn) {
         this.dpn = dpn;
+        setWeight(dpn);
+    }
+
+    /**
+     * Sessions currently activated on the DPN.
+     * @return session count
+     */
+    public long getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Records a session activated on the DPN.  Callers record each session once, after its
+     * create_session was sent.
+     */
+    public void sessionCreated() {
+        sessions.incrementAndGet();
+    }
+
+    /**
+     * Records the deletion of a session.  Callers record each session once, after its
+     * delete_session was sent; bearer deletes are not session deletes.  The count does not go
+     * below zero, e.g. for a session whose create failed.
+     */
+    public void sessionDeleted() {
+        long current;
+        do {
+            current = sessions.get();
+            if (current <= 0L) {
+                return;
+            }
+        } while (!sessions.compareAndSet(current, current - 1L));
+    }
+
+    /**
+     * Relative capacity of the DPN.
+     * @return weight (at least 1)
+     */
+    public int getWeight() {
+        return Math.max(1, weight);
+    }
+
+    /**
+     * Applies the configured weight of a DPN, 1 if it has none.
+     * @param dpn - DPN configuration
+     */
+    public void setWeight(Dpns dpn) {
+        Integer configured = (dpn != null) ? dpn.getWeight() : null;
+        this.weight = (configured == null) ? 1 : Math.max(1, configured);
+    }
+
+    /**
+     * Indicates if the DPN reported an overload that has not expired.
+     * @param nowMs - System.currentTimeMillis()
+     * @return true if the DPN is overloaded
+     */
+    public boolean isOverloaded(long nowMs) {
+        return overloadedUntilMs > nowMs;
     }
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.dpn;
+
+import java.util.Map;
+
+/**
+ * Selects the DPN a new session is assigned to.
+ *
+ * Implementations MUST be thread safe; they are called concurrently by the assignment path and
+ * only read the group snapshot and the load of each DPN (see DpnHolder).
+ */
+public interface DpnSelector {
+    /**
+     * Selects a DPN.
+     * @param group - candidate DPNs
+     * @param dpnInfo - DPN Holders of the tenant, by DPN identity
+     * @param key - selection key, e.g. the IMSI of the session (0 if none)
+     * @param nowMs - System.currentTimeMillis()
+     * @return the selected DPN or null if no candidate has a DPN Holder
+     */
+    public DpnHolder select(DpnGroupSnapshot group, Map<String, DpnHolder> dpnInfo, long key, long nowMs);
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.dpn;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.opendaylight.fpc.utils.ErrorLog;
+
+/**
+ * DPN selection strategies.
+ *
+ * All strategies avoid DPNs that reported an overload indication while any other candidate is
+ * available; if every candidate is overloaded the strategy's choice among all of them is used.
+ */
+public final class DpnSelectors {
+    /**
+     * Name of the weighted least-sessions strategy.
+     */
+    public static final String LEAST_SESSIONS = "least-sessions";
+    /**
+     * Name of the power-of-two-choices strategy.
+     */
+    public static final String POWER_OF_TWO = "power-of-two";
+    /**
+     * Name of the consistent-hash-by-IMSI strategy.
+     */
+    public static final String IMSI_HASH = "imsi-hash";
+
+    private DpnSelectors() {
+    }
+
+    /**
+     * Returns a strategy by name.
+     * @param name - strategy name; null selects LEAST_SESSIONS
+     * @return strategy; LEAST_SESSIONS if the name is unknown
+     */
+    public static DpnSelector forName(String name) {
+        if (name == null || LEAST_SESSIONS.equals(name)) {
+            return LeastSessions.INSTANCE;
+        } else if (POWER_OF_TWO.equals(name)) {
+            return PowerOfTwoChoices.INSTANCE;
+        } else if (IMSI_HASH.equals(name)) {
+            return ConsistentHashByImsi.INSTANCE;
+        }
+        ErrorLog.logError("DpnSelectors - unknown DPN selection strategy '" + name + "', using " + LEAST_SESSIONS);
+        return LeastSessions.INSTANCE;
+    }
+
+    /**
+     * Compares the load of two DPNs, i.e. their sessions per unit of weight.
+     * @return true if a is less loaded than b
+     */
+    static boolean lessLoaded(DpnHolder a, DpnHolder b) {
+        return a.getSessions() * b.getWeight() < b.getSessions() * a.getWeight();
+    }
+
+    /**
+     * Assigns to the candidate with the fewest sessions per unit of weight.  The scan starts at a
+     * random candidate so ties are spread.
+     */
+    public static final class LeastSessions implements DpnSelector {
+        /**
+         * Shared instance.
+         */
+        public static final LeastSessions INSTANCE = new LeastSessions();
+
+        @Override
+        public DpnHolder select(DpnGroupSnapshot group, Map<String, DpnHolder> dpnInfo, long key, long nowMs) {
+            int n = group.size();
+            if (n == 0) {
+                return null;
+            }
+            int start = (n == 1) ? 0 : ThreadLocalRandom.current().nextInt(n);
+            DpnHolder best = null;
+            boolean bestOverloaded = true;
+            for (int i = 0; i < n; i++) {
+                DpnHolder holder = dpnInfo.get(group.getDpnId((start + i) % n));
+                if (holder == null) {
+                    continue;
+                }
+                boolean overloaded = holder.isOverloaded(nowMs);
+                if (best == null || (bestOverloaded && !overloaded) ||
+                        (bestOverloaded == overloaded && lessLoaded(holder, best))) {
+                    best = holder;
+                    bestOverloaded = overloaded;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Samples two random candidates and assigns to the less loaded one.  Keeps the load spread close
+     * to least-sessions while reading only two DPNs per selection.
+     */
+    public static final class PowerOfTwoChoices implements DpnSelector {
+        /**
+         * Shared instance.
+         */
+        public static final PowerOfTwoChoices INSTANCE = new PowerOfTwoChoices();
+
+        @Override
+        public DpnHolder select(DpnGroupSnapshot group, Map<String, DpnHolder> dpnInfo, long key, long nowMs) {
+            int n = group.size();
+            if (n <= 2) {
+                return LeastSessions.INSTANCE.select(group, dpnInfo, key, nowMs);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(n);
+            int j = random.nextInt(n - 1);
+            if (j >= i) {
+                j++;
+            }
+            DpnHolder a = dpnInfo.get(group.getDpnId(i));
+            DpnHolder b = dpnInfo.get(group.getDpnId(j));
+            if (a == null || b == null) {
+                // A DPN is being added or removed; fall back to a full scan
+                return LeastSessions.INSTANCE.select(group, dpnInfo, key, nowMs);
+            }
+            boolean aOverloaded = a.isOverloaded(nowMs);
+            boolean bOverloaded = b.isOverloaded(nowMs);
+            if (aOverloaded && bOverloaded) {
+                return LeastSessions.INSTANCE.select(group, dpnInfo, key, nowMs);
+            } else if (aOverloaded != bOverloaded) {
+                return aOverloaded ? b : a;
+            }
+            return lessLoaded(b, a) ? b : a;
+        }
+    }
+
+    /**
+     * Assigns a key (IMSI) to the DPN owning it on the group's hash ring, so sessions of a subscriber
+     * land on the same DPN and only the keys of an added or removed DPN move.  If the owner is
+     * overloaded the next DPN on the ring is used.  Sessions without a key use power-of-two-choices.
+     */
+    public static final class ConsistentHashByImsi implements DpnSelector {
+        /**
+         * Shared instance.
+         */
+        public static final ConsistentHashByImsi INSTANCE = new ConsistentHashByImsi();
+
+        @Override
+        public DpnHolder select(DpnGroupSnapshot group, Map<String, DpnHolder> dpnInfo, long key, long nowMs) {
+            if (group.size() == 0) {
+                return null;
+            }
+            if (key == 0L) {
+                return PowerOfTwoChoices.INSTANCE.select(group, dpnInfo, key, nowMs);
+            }
+            int pos = group.ringPosition(key);
+            DpnHolder first = null;
+            for (int step = 0; step < group.ringSize(); step++) {
+                DpnHolder holder = dpnInfo.get(group.getDpnId(group.ownerAt(pos + step)));
+                if (holder == null) {
+                    continue;
+                }
+                if (!holder.isOverloaded(nowMs)) {
+                    return holder;
+                }
+                if (first == null) {
+                    first = holder;
+                }
+            }
+            return first;
+        }
+    }
+}
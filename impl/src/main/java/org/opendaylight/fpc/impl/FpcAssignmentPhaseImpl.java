@@ -108,25 +108,30 @@ public class FpcAssignmentPhaseImpl extends FpcagentServiceBase {
                 switch (input.getOpType()) {
                     case Create:
                     case Update:
-                        try {
-                            activationService.getWorker().getQueue()
-                                .put(new AbstractMap.SimpleEntry<Transaction,Object>(tx,
+                        Err rejected = admit(tx, input.getOpType(), ((CommonSuccess) rt).getContexts(), startTime);
+                        if (rejected != null) {
+                            res = Result.Err;
+                            rt = rejected;
+                            break;
+                        }
+                        if (activationService.enqueue(sessionKeys((OpInput) input),
+                                new AbstractMap.SimpleEntry<Transaction,Object>(tx,
                                     new ConfigureInputBuilder(input)
                                         .setOpBody(new CreateOrUpdateBuilder((CreateOrUpdate)input.getOpBody())
                                                 .setContexts(((CommonSuccess)rt).getContexts())
                                                 .build())
-                                        .build()));
+                                        .build()))) {
                             enqueueVal = enqueues.incrementAndGet();
-                        } catch (InterruptedException e) {
-                            rt = activationServiceInterrupted(e,tx, System.currentTimeMillis() - startTime);
+                        } else {
+                            res = Result.Err;
+                            rt = activationQueueFull(tx, System.currentTimeMillis() - startTime);
                         }
                         break;
                     default: // Delete
-                        try {
-                            activationService.getWorker().getQueue().put(
-                                    new AbstractMap.SimpleEntry<Transaction,Object>(tx,input));
-                        } catch (InterruptedException e) {
-                            rt = activationServiceInterrupted(e,tx, System.currentTimeMillis() - startTime);
+                        if (!activationService.enqueue(sessionKeys((OpInput) input),
+                                new AbstractMap.SimpleEntry<Transaction,Object>(tx,input))) {
+                            res = Result.Err;
+                            rt = activationQueueFull(tx, System.currentTimeMillis() - startTime);
                         }
                 }
             } else if (input.getOpType() == OpType.Query) {
@@ -150,11 +155,10 @@ public class FpcAssignmentPhaseImpl extends FpcagentServiceBase {
         if ((entries % 100) == 0) {
             LOG.info("Entries = {} and enqueues = {}", entries, enqueueVal);
         }
-        return null;
-//        return Futures.immediateFuture(RpcResultBuilder.<ConfigureOutput>success(new ConfigureOutputBuilder()
-//                .setOpId(input.getOpId())
-//                .setResult(res)
-//                .setResultType(rt)).build());
+        return Futures.immediateFuture(RpcResultBuilder.<ConfigureOutput>success(new ConfigureOutputBuilder()
+                .setOpId(input.getOpId())
+                .setResult(res)
+                .setResultType(rt)).build());
     }
 
     @Override
@@ -183,6 +187,12 @@ public class FpcAssignmentPhaseImpl extends FpcagentServiceBase {
                     switch (op.getOpType()) {
                         case Create:
                         case Update:
+                                Err rejected = admit(tx, op.getOpType(), ((CommonSuccess)rt).getContexts(), opStartTime);
+                                if (rejected != null) {
+                                    txs.remove(tx);
+                                    rt = rejected;
+                                    break;
+                                }
                                 activationBundles.add(
                                         new org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.BundlesBuilder(op)
                                         .setOpBody((new CreateOrUpdateBuilder((CreateOrUpdate)op.getOpBody())
@@ -217,14 +227,13 @@ public class FpcAssignmentPhaseImpl extends FpcagentServiceBase {
                 break;
             }
         }
-        try {
-            activationService.getWorker().getQueue().put(new AbstractMap.SimpleEntry<List<Transaction>,Object>(txs,
+        if (!activationService.enqueue(sessionKeys(activationBundles),
+                new AbstractMap.SimpleEntry<List<Transaction>,Object>(txs,
                     new ConfigureBundlesInputBuilder()
                         .setBundles(activationBundles)
                         .setHighestOpRefScope(input.getHighestOpRefScope())
-                        .build()) );
-        } catch (InterruptedException e) {
-            activationServiceInterrupted(e, txs, System.currentTimeMillis() - startTime);
+                        .build()))) {
+            activationQueueFull(txs, System.currentTimeMillis() - startTime);
         }
         return Futures.immediateFuture(RpcResultBuilder.<ConfigureBundlesOutput>success(
                 new ConfigureBundlesOutputBuilder()
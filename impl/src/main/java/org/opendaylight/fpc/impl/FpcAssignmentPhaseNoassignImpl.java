@@ -16,7 +16,6 @@ import java.util.Map.Entry;
 import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
@@ -28,7 +27,6 @@ import org.opendaylight.fpc.activation.cache.transaction.EmptyBodyException;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction.OperationStatus;
 import org.opendaylight.fpc.activation.workers.ActivationThreadPool;
-import org.opendaylight.fpc.activation.workers.ConfigureWorker;
 import org.opendaylight.fpc.activation.workers.MonitorWorker;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.ErrorTypeIndex;
@@ -150,7 +148,6 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
         long startTime = System.currentTimeMillis();
         long entries = entrants.incrementAndGet();
         long enqueueVal = 0;
-        ConfigureWorker worker = null;
         ResultType rt = null;
         Result res  = null;
         Transaction tx = null;
@@ -205,51 +202,22 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
                         			}
                                     break;
                         		}
-                        		for(Contexts context : ((CreateOrUpdate)opBody).getContexts()){
-                                    ConfigureWorker entry = sessionMap.get(NameResolver.extractString(context.getContextId()));
-                                    if(entry != null){
-                                        if(input.getOpType().equals(OpType.Update)){
-                                            entry.getQueue().put(new AbstractMap.SimpleEntry<Transaction,Object>(tx,
-                                                input));
-                            				tx.setStatusTs(OperationStatus.UPDATE, System.currentTimeMillis());
-                            				tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
-                                            enqueueVal = enqueues.incrementAndGet();
-                        				} else if(input.getOpType().equals(OpType.Create)) {
-                        					ErrorLog.logError("Create session received for a session that was already created. Session id - "+context.getContextId().toString());
-                        					tx.setStatusTs(OperationStatus.ERRORED_CREATE, System.currentTimeMillis());
-                        				}
-                        			}
-                        			else {
-                        				if(input.getOpType().equals(OpType.Create)){
-                        					worker = activationService.getWorker();
-                        					worker.getQueue().put(new AbstractMap.SimpleEntry<Transaction,Object>(tx,
-                        							input));
-                        					sessionMap.put(NameResolver.extractString(context.getContextId()), worker);
-                        					tx.setStatusTs(OperationStatus.CREATE, System.currentTimeMillis());
-                        					tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
-                                            enqueueVal = enqueues.incrementAndGet();
-                        				}
-                        				else if(input.getOpType().equals(OpType.Update)){
-                        					for(int i = 0; i < 1500; i++){
-                        						Thread.sleep(1);
-                        						entry = sessionMap.get(NameResolver.extractString(context.getContextId()));
-                        						if(entry != null){
-                                    				if(input.getOpType().equals(OpType.Update)){
-                                    					entry.getQueue().put(new AbstractMap.SimpleEntry<Transaction,Object>(tx,
-                                                            input));
-                                        				tx.setStatusTs(OperationStatus.UPDATE, System.currentTimeMillis());
-                                        				tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
-                                                        enqueueVal = enqueues.incrementAndGet();
-                                                        break;
-                                    				}
-                        						}
-                        					}
-                        					if(entry == null){
-                        						tx.setStatusTs(OperationStatus.ERRORED_UPDATE, System.currentTimeMillis());
-                        						ErrorLog.logError("Update received for a session which hasn't been created yet. Session Id - "+context.getContextId().toString());
-                        					}
-                        				}
-                        			}
+                        		Err rejected = admit(tx, input.getOpType(), ((CreateOrUpdate) opBody).getContexts(), startTime);
+                        		if (rejected != null) {
+                        			res = Result.Err;
+                        			rt = rejected;
+                        			break;
+                        		}
+                        		if(activationService.enqueue(sessionKeys((OpInput)input),
+                        				new AbstractMap.SimpleEntry<Transaction,Object>(tx, input))){
+                        			tx.setStatusTs(input.getOpType().equals(OpType.Create) ?
+                        					OperationStatus.CREATE : OperationStatus.UPDATE, System.currentTimeMillis());
+                        			tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
+                        			enqueueVal = enqueues.incrementAndGet();
+                        		} else {
+                        			res = Result.Err;
+                        			rt = activationQueueFull(tx, System.currentTimeMillis() - startTime);
+                        			break;
                         		}
                         	}
                             rt = new CommonSuccessBuilder( ((Payload)input.getOpBody()) ).build();
@@ -259,22 +227,21 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
                         break;
                     default: // Delete
                         try {
-                        	if(((OpInput)input).getOpType().equals(OpType.Delete)){
-                        		for(Targets target: ((DeleteOrQuery)((OpInput)input).getOpBody()).getTargets()){
-                        			Entry<FixedType, String> entry = extractTypeAndId(NameResolver.extractString(target.getTarget()));
-                        			if(entry.getKey().equals(FixedType.CONTEXT))
-                        			if(sessionMap.get(entry.getValue()) != null){
-                        				sessionMap.get(entry.getValue()).getQueue().put(
-                                                new AbstractMap.SimpleEntry<Transaction,Object>(tx,input));
-                        				tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
-                        				tx.setStatusTs(OperationStatus.DELETE, System.currentTimeMillis());
-                        				sessionMap.remove(entry.getValue());
-                        			}
+                        	List<String> sessionKeys = sessionKeys((OpInput)input);
+                        	if(((OpInput)input).getOpType().equals(OpType.Delete) && !sessionKeys.isEmpty()){
+                        		if(activationService.enqueue(sessionKeys,
+                        				new AbstractMap.SimpleEntry<Transaction,Object>(tx,input))){
+                        			tx.setStatusTs(OperationStatus.ACTIVATION_ENQUEUE, System.currentTimeMillis());
+                        			tx.setStatusTs(OperationStatus.DELETE, System.currentTimeMillis());
+                        		} else {
+                        			res = Result.Err;
+                        			rt = activationQueueFull(tx, System.currentTimeMillis() - startTime);
+                        			break;
                         		}
                         	}
 
                             rt = new DeleteSuccessBuilder((DeleteOrQuery) input.getOpBody()).build();
-                        } catch (InterruptedException e) {
+                        } catch (Exception e) {
                             rt = activationServiceInterrupted(e,tx, System.currentTimeMillis() - startTime);
                         }
                 }
@@ -310,9 +277,9 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
     	String clientUri = NBEventWorker.clientIdToUri.get(input.getClientId().getInt64().intValue());
 
     	if(clientUri != null && outputString != null)
-    		ConfigureService.blockingQueue.add(new AbstractMap.SimpleEntry(clientUri, new AbstractMap.SimpleEntry(tx,"event:application/json;/restconf/operations/ietf-dmm-fpcagent:configure\ndata:"+outputString+"\r\n")));
+    		ConfigureService.send(clientUri, tx, "event:application/json;/restconf/operations/ietf-dmm-fpcagent:configure\ndata:"+outputString+"\r\n");
 
-        return Futures.immediateFuture(RpcResultBuilder.<ConfigureOutput>success().build());
+        return Futures.immediateFuture(RpcResultBuilder.<ConfigureOutput>success(configureOutput).build());
     }
 
     @Override
@@ -340,6 +307,14 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
                     switch (op.getOpType()) {
                         case Create:
                         case Update:
+                                Err rejected = (op.getOpBody() instanceof CreateOrUpdate) ?
+                                        admit(tx, op.getOpType(), ((CreateOrUpdate) op.getOpBody()).getContexts(),
+                                            opStartTime) : null;
+                                if (rejected != null) {
+                                    txs.remove(tx);
+                                    rt = rejected;
+                                    break;
+                                }
                                 activationBundles.add(op);
                             break;
                         default: // Delete Or Query
@@ -367,14 +342,13 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
                 break;
             }
         }
-        try {
-            activationService.getWorker().getQueue().put(new AbstractMap.SimpleEntry<List<Transaction>,Object>(txs,
+        if (!activationService.enqueue(sessionKeys(activationBundles),
+                new AbstractMap.SimpleEntry<List<Transaction>,Object>(txs,
                     new ConfigureBundlesInputBuilder()
                         .setBundles(activationBundles)
                         .setHighestOpRefScope(input.getHighestOpRefScope())
-                        .build()) );
-        } catch (InterruptedException e) {
-            activationServiceInterrupted(e, txs, System.currentTimeMillis() - startTime);
+                        .build()))) {
+            activationQueueFull(txs, System.currentTimeMillis() - startTime);
         }
         return Futures.immediateFuture(RpcResultBuilder.<ConfigureBundlesOutput>success(
                 new ConfigureBundlesOutputBuilder()
@@ -394,12 +368,6 @@ public class FpcAssignmentPhaseNoassignImpl extends FpcagentServiceBase {
      * @return - Map Entry of the Type and Id of the entity
      */
     public Map.Entry<FixedType, String> extractTypeAndId(String restconfPath) {
-        for (Map.Entry<FixedType, Map.Entry<Pattern,Integer>> p : NameResolver.entityPatterns.entrySet()) {
-            Matcher m = p.getValue().getKey().matcher(restconfPath);
-            if (m.matches()) {
-                return new AbstractMap.SimpleEntry<FixedType, String>(p.getKey(), m.group(1));
-            }
-        }
-        return null;
+        return NameResolver.extractTypeAndId(restconfPath);
     }
 }
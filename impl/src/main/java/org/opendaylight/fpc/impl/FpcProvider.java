@@ -21,12 +21,18 @@ import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.RpcRegistration;
 import org.opendaylight.controller.sal.binding.api.RpcProviderRegistry;
 import org.opendaylight.fpc.activation.ActivatorFactory;
+import org.opendaylight.fpc.activation.cache.StorageCache;
 import org.opendaylight.fpc.activation.cache.StorageWriter;
+import org.opendaylight.fpc.activation.cache.WriteBehindQueue;
 import org.opendaylight.fpc.activation.cache.transaction.Metrics;
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.activation.cache.transaction.WriteToCache;
 import org.opendaylight.fpc.activation.impl.dpdkdpn.DpdkImplFactory;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnCommandWindow;
 import org.opendaylight.fpc.activation.workers.ActivationThreadPool;
+import org.opendaylight.fpc.activation.workers.AdmissionController;
 import org.opendaylight.fpc.activation.workers.MonitorThreadPool;
+import org.opendaylight.fpc.dpn.DpnAssignmentMgr;
 import org.opendaylight.fpc.impl.memcached.MemcachedThreadPool;
 import org.opendaylight.fpc.impl.zeromq.ZMQNBIServerPool;
 import org.opendaylight.fpc.impl.zeromq.ZMQSBListener;
@@ -34,6 +40,7 @@ import org.opendaylight.fpc.impl.zeromq.ZMQSBMessagePool;
 import org.opendaylight.fpc.monitor.Events;
 import org.opendaylight.fpc.monitor.ScheduledMonitors;
 import org.opendaylight.fpc.notification.HTTPClientPool;
+import org.opendaylight.fpc.notification.HTTPNotifierPolicy;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.FpcCodecUtils;
@@ -41,7 +48,7 @@ import org.opendaylight.fpc.utils.StringConstants;
 import org.opendaylight.fpc.utils.eventStream.EventClient;
 import org.opendaylight.fpc.utils.eventStream.JettyServer;
 import org.opendaylight.fpc.utils.eventStream.NBEventPool;
-import org.opendaylight.fpc.utils.eventStream.ParseStream;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchPolicy;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
 import org.opendaylight.netconf.sal.restconf.api.JSONRestconfService;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.FpcAgentInfo;
@@ -89,7 +96,6 @@ public class FpcProvider implements AutoCloseable {
     private WriteToCache wtc;
     private Thread writeToCache;
     private Thread jettyServer;
-    private Thread parseStreamThread;
     /**
      * Returns the instance of the FpcProvider
      * @return FpcProvider instance
@@ -123,7 +129,11 @@ public class FpcProvider implements AutoCloseable {
         reportConfig();
         if(config.isUseMemcached()){
 	        try {
-		            MemcachedThreadPool.createInstance(config.getMemcachedThreads(),config.getMemcachedUri());
+		            MemcachedThreadPool.createInstance(config.getMemcachedThreads(),config.getMemcachedUri(),
+		                    (config.getMemcachedFlushMs() != null) ? config.getMemcachedFlushMs() :
+		                        MemcachedThreadPool.DEFAULT_FLUSH_MS,
+		                    (config.getMemcachedMaxSessions() != null) ? config.getMemcachedMaxSessions().intValue() :
+		                        MemcachedThreadPool.DEFAULT_MAX_SESSIONS);
 		            MemcachedThreadPool.getInstance().start();
 		            MemcachedThreadPool.getInstance().run();
 		    } catch(Exception e) {
@@ -136,7 +146,10 @@ public class FpcProvider implements AutoCloseable {
         try {
             ZMQClientPool.createInstance(new ZContext(),
                     config.getDpnClientUri(),
-                    config.getDpnClientThreads());
+                    config.getDpnClientThreads(),
+                    new ZMQBatchPolicy((config.getDpnClientBatchSize() != null) ? config.getDpnClientBatchSize() : 1,
+                            (config.getDpnClientBatchFlushUs() != null) ? config.getDpnClientBatchFlushUs() : 0L,
+                            ZMQBatchPolicy.DEFAULT_MAX_FRAME_BYTES));
             ZMQClientPool.getInstance().start();
             ZMQClientPool.getInstance().run();
         } catch (Exception e) {
@@ -145,6 +158,17 @@ public class FpcProvider implements AutoCloseable {
             throw new Exception("FpcProvider - Error during start/run for ZMQ Client Pool. Exiting...");
         }
 
+        DpnCommandWindow.init((config.getDpnWindowSize() != null) ? config.getDpnWindowSize().intValue() :
+                    DpnCommandWindow.DEFAULT_SIZE,
+                (config.getDpnRetransmitMs() != null) ? config.getDpnRetransmitMs() :
+                    DpnCommandWindow.DEFAULT_RETRANSMIT_MS,
+                (config.getDpnMaxRetransmits() != null) ? config.getDpnMaxRetransmits() :
+                    DpnCommandWindow.DEFAULT_MAX_RETRANSMITS);
+        VdpnReplicator.init((config.getVdpnReplicationThreads() != null) ? config.getVdpnReplicationThreads() :
+                    VdpnReplicator.DEFAULT_THREADS,
+                (config.getVdpnReplicationRate() != null) ? config.getVdpnReplicationRate() :
+                    VdpnReplicator.DEFAULT_RATE);
+
         try {
             ZMQSBMessagePool.createInstance(
                     config.getDpnMessageProcessorThreads(),config.getNodeId(),config.getNetworkId());
@@ -157,6 +181,15 @@ public class FpcProvider implements AutoCloseable {
         }
 
         StorageWriter.init(dataBroker, config.getMobilityupdateMs());
+        WriteBehindQueue.init(dataBroker,
+                (config.getStorageWriteBatchSize() != null) ? config.getStorageWriteBatchSize() : 0,
+                (config.getStorageWriteFlushMs() != null) ? config.getStorageWriteFlushMs() : 100L);
+        StorageCache.setOffHeapContexts(Boolean.TRUE.equals(config.isContextStoreOffheap()),
+                (config.getContextStoreSlabMb() != null) ? config.getContextStoreSlabMb() : 0);
+
+        DpnAssignmentMgr.configureSelection(config.getDpnSelectionStrategy(),
+                (config.getDpnOverloadHoldMs() != null) ? config.getDpnOverloadHoldMs() :
+                    DpnAssignmentMgr.DEFAULT_OVERLOAD_HOLD_MS);
 
         FpcIdentity defaultTenantId = new FpcIdentity(config.getDefaultTenantId());
         Map<Class<? extends FpcDpnControlProtocol>,ActivatorFactory> cpFactories =
@@ -173,7 +206,16 @@ public class FpcProvider implements AutoCloseable {
         	ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
         }
 
-        this.activationService = new ActivationThreadPool(dataBroker,config.getActivationThreads());
+        Transaction.init();
+        Transaction.setTimeToLive((config.getTransactionTtlMs() != null) ? config.getTransactionTtlMs() :
+            Transaction.DEFAULT_TTL_MS);
+        this.activationService = new ActivationThreadPool(dataBroker,config.getActivationThreads(),
+                (config.getActivationQueueSize() != null) ? config.getActivationQueueSize().intValue() : ActivationThreadPool.DEFAULT_Q_SIZE);
+        AdmissionController.init(activationService,
+                (config.getAdmissionMaxInflight() != null) ? config.getAdmissionMaxInflight().intValue() :
+                    AdmissionController.DEFAULT_MAX_IN_FLIGHT,
+                (config.getAdmissionRetryAfterMs() != null) ? config.getAdmissionRetryAfterMs() :
+                    AdmissionController.DEFAULT_RETRY_AFTER_MS);
         this.monitorService = new MonitorThreadPool(dataBroker, config.getMonitorThreads());
 
         Metrics.init(dataBroker, config.getMetricsupdateMs());
@@ -197,7 +239,16 @@ public class FpcProvider implements AutoCloseable {
         }
 
         this.httpNotifierPool= (config.getHttpNotifierClients() > 0) ?
-                HTTPClientPool.init(config.getHttpNotifierClients()) : null;
+                HTTPClientPool.init(config.getHttpNotifierClients(), new HTTPNotifierPolicy(
+                        (config.getHttpNotifierBatchSize() != null) ? config.getHttpNotifierBatchSize() : 1,
+                        (config.getHttpNotifierBacklog() != null) ? config.getHttpNotifierBacklog().intValue() :
+                            HTTPNotifierPolicy.DEFAULT_MAX_BACKLOG,
+                        (config.getHttpNotifierMaxConnections() != null) ? config.getHttpNotifierMaxConnections() :
+                            HTTPNotifierPolicy.DEFAULT_MAX_CONNECTIONS,
+                        (config.getHttpNotifierRetries() != null) ? config.getHttpNotifierRetries() :
+                            HTTPNotifierPolicy.DEFAULT_MAX_RETRIES,
+                        (config.getHttpNotifierRetryBackoffMs() != null) ? config.getHttpNotifierRetryBackoffMs() :
+                            HTTPNotifierPolicy.DEFAULT_RETRY_BACKOFF_MS)) : null;
 
         if (httpNotifierPool != null) {
             httpNotifierPool.start();
@@ -228,9 +279,6 @@ public class FpcProvider implements AutoCloseable {
         });
         jettyServer.start();
 
-        parseStreamThread = new Thread(new ParseStream());
-        parseStreamThread.start();
-
         try {
             NBEventPool.createInstance(20);
             NBEventPool.getInstance().start();
@@ -422,6 +470,10 @@ public class FpcProvider implements AutoCloseable {
         if(wtc != null){
         	wtc.stop();
         }
+        Transaction.shutdown();
+        if (WriteBehindQueue.getInstance() != null) {
+            WriteBehindQueue.getInstance().close();
+        }
 
         if (httpNotifierPool != null) {
             try {
@@ -432,7 +484,7 @@ public class FpcProvider implements AutoCloseable {
         }
         if (zmqNbi != null) {
             try {
-                //zmqNbi.close();
+                zmqNbi.close();
             } catch (Exception e) {
             	ErrorLog.logError(e.getStackTrace());
             }
@@ -456,6 +508,14 @@ public class FpcProvider implements AutoCloseable {
 	            }
 	        }
         }
+        DpnCommandWindow.close();
+        if (VdpnReplicator.getInstance() != null) {
+            try {
+                VdpnReplicator.getInstance().close();
+            } catch (Exception e) {
+            	ErrorLog.logError(e.getStackTrace());
+            }
+        }
         if (ZMQClientPool.getInstance() != null) {
             try {
                 ZMQClientPool.getInstance().close();
@@ -464,6 +524,8 @@ public class FpcProvider implements AutoCloseable {
             }
         }
 
+        ScheduledMonitors.close();
+
         if(NBEventPool.getInstance() != null){
         	try {
         		NBEventPool.getInstance().close();
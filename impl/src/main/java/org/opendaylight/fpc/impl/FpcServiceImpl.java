@@ -24,6 +24,7 @@ import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.fpc.activation.workers.ActivationThreadPool;
 import org.opendaylight.fpc.activation.workers.MonitorThreadPool;
+import org.opendaylight.fpc.notification.HTTPClientPool;
 import org.opendaylight.fpc.tenant.TenantManager;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
@@ -274,10 +275,29 @@ public class FpcServiceImpl implements FpcService {
         }
     }
 
+    /**
+     * Drops the HTTP notification lane of a Uri once no registered client uses it.
+     * @param uri - Uri of a deregistered client
+     */
+    private static void releaseNotificationUri(Uri uri) {
+        HTTPClientPool pool = HTTPClientPool.instance();
+        if (uri == null || pool == null) {
+            return;
+        }
+        for (Connections conn : connections.values()) {
+            if (uri.equals(conn.getAssignedInfo().getEndpointUri())) {
+                return;
+            }
+        }
+        pool.remove(uri);
+    }
+
     @Override
     public Future<RpcResult<DeregisterClientOutput>> deregisterClient(DeregisterClientInput input) {
          try {
-             if (connections.remove(input.getClientId().toString()) != null) {
+             Connections conn = connections.remove(input.getClientId().toString());
+             if (conn != null) {
+                 releaseNotificationUri(conn.getAssignedInfo().getEndpointUri());
                  TenantManager.deregisterClient(input.getClientId());
                  FpcagentDispatcher.removeStrategy(input.getClientId());
                  clientIdList.remove(input.getClientId());
@@ -300,19 +300,19 @@ public class FpcagentDispatcher implements IetfDmmFpcagentService {
 		if(dpn.isAbstract())
 			return Futures.immediateFuture(configDpnDpnNotRealErr);
 
-    	int threadCount = 0;
 		if(input.getOperation() == DpnOperation.Add) {
-			if(vdpn.getDpnIds()!=null && !vdpn.getDpnIds().contains(dpn.getDpnId())){
-				new Thread(new SessionThread(vdpn, dpn, input.getOperation(), false), ("SessionThread"+ ++threadCount)).start();
-			}
 			if(vdpnDpns.size() == 2)
 				return Futures.immediateFuture(configDpnTooManyDpnsErr);
+			boolean newMember = vdpn.getDpnIds()!=null && !vdpn.getDpnIds().contains(dpn.getDpnId());
 			vdpnDpns.add(dpn.getDpnId());
 			TenantManager.vdpnDpnsMap.get(vdpn.getDpnId()).add(dpn.getDpnId());
+			// New Contexts are sent to the member from here on, the existing ones are replicated
+			if(newMember)
+				VdpnReplicator.getInstance().replicate(vdpn.getDpnId(), dpn.getDpnId(), input.getOperation(), false);
 		}
 
 		if(input.getOperation() == DpnOperation.Remove){
-			new Thread(new SessionThread(vdpn, dpn, input.getOperation(), vdpn.getDpnIds().size()==1 ? true : false), ("sessionThread"+ ++threadCount)).start();
+			VdpnReplicator.getInstance().replicate(vdpn.getDpnId(), dpn.getDpnId(), input.getOperation(), vdpn.getDpnIds().size()==1 ? true : false);
 			if(vdpnDpns.size() == 0)
 				return Futures.immediateFuture(configDpnNotEnoughDpnsError);
 			if(!vdpnDpns.contains(dpn.getDpnId())){
@@ -10,7 +10,6 @@ package org.opendaylight.fpc.impl;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -19,7 +18,7 @@ import org.opendaylight.controller.md.sal.binding.api.NotificationPublishService
 import org.opendaylight.fpc.activation.cache.StorageCache;
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
 import org.opendaylight.fpc.activation.workers.ActivationThreadPool;
-import org.opendaylight.fpc.activation.workers.ConfigureWorker;
+import org.opendaylight.fpc.activation.workers.AdmissionController;
 import org.opendaylight.fpc.activation.workers.MonitorWorker;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.ErrorTypeIndex;
@@ -37,6 +36,7 @@ import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev1608
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ProbeOutputBuilder;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.Bundles;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdate;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.DeleteOrQuery;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
@@ -60,7 +60,6 @@ abstract public class FpcagentServiceBase implements IetfDmmFpcagentService, Con
     protected NotificationPublishService notificationService;
     protected int TARGET_READ_LIMIT = 10; // Default
     protected boolean assignmentManagerRequired = true;
-    public static ConcurrentHashMap<String,ConfigureWorker> sessionMap = new ConcurrentHashMap<String,ConfigureWorker>();
 
     /**
      * Primary Constructor which initializes the common services of the plugin.
@@ -223,6 +222,89 @@ abstract public class FpcagentServiceBase implements IetfDmmFpcagentService, Con
             .build();
     }
 
+    /**
+     * Generates an Error when a CONF request could not be queued because the activation shard is full.
+     *
+     * @param tx - Transaction
+     * @param duration - Duration of the activity (used for statistics)
+     * @return - An Error (Result Type Error)
+     */
+    protected Err activationQueueFull(Transaction tx,
+            long duration) {
+        tx.fail(duration);
+        ErrorLog.logError("Activation queue full - rejecting Op Id " + tx.getOpInput().getOpId());
+        return new ErrBuilder()
+            .setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.ACTIVATION_QUEUE_FULL))
+            .setErrorInfo("SYSTEM - operation failed - Activation queue is full, retry later.")
+            .build();
+    }
+
+    /**
+     * Generates an Error when a CONF_BUNDLES request could not be queued because the activation shard is full.
+     *
+     * @param txs - List of Transactions
+     * @param duration - Duration of the activity (used for statistics)
+     * @return - An Error (Result Type Error)
+     */
+    protected Err activationQueueFull(List<Transaction> txs,
+            long duration) {
+        for (Transaction tx : txs) {
+            tx.fail(duration);
+        }
+        ErrorLog.logError("Activation queue full - rejecting bundle of " + txs.size() + " operations");
+        return new ErrBuilder()
+            .setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.ACTIVATION_QUEUE_FULL))
+            .setErrorInfo("SYSTEM - operation failed - Activation queue is full, retry later.")
+            .build();
+    }
+
+    /**
+     * Runs admission control for a CONF operation before it is queued for activation.  A rejected
+     * operation's Transaction is closed without a notification; the returned Error is the result
+     * the caller must send back.
+     *
+     * @param tx - Transaction
+     * @param opType - Operation Type
+     * @param contexts - Contexts of the operation (after assignment)
+     * @param startTime - start time of the operation (used for statistics)
+     * @return - null if the operation was admitted; otherwise an Error (Result Type Error) carrying a retry-after
+     */
+    protected Err admit(Transaction tx,
+            OpType opType,
+            List<Contexts> contexts,
+            long startTime) {
+        AdmissionController admission = AdmissionController.getInstance();
+        long retryAfterMs = (admission != null) ? admission.admit(tx, opType, contexts) :
+            AdmissionController.ADMITTED;
+        if (retryAfterMs == AdmissionController.ADMITTED) {
+            return null;
+        }
+        tx.fail(System.currentTimeMillis() - startTime);
+        return new ErrBuilder()
+            .setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.DPN_BUSY))
+            .setErrorInfo("SYSTEM - operation failed - Target DPN is busy, retry-after=" + retryAfterMs + "ms")
+            .build();
+    }
+
+    /**
+     * Determines the sessions (context ids) an operation is routed by.  The operation is queued on
+     * the activation worker of each of its sessions (see ActivationThreadPool).
+     * @param input - Operation Input
+     * @return context ids of the contexts or context targets; empty if the operation is not session scoped
+     */
+    protected static List<String> sessionKeys(OpInput input) {
+        return ActivationThreadPool.sessionKeys(input.getOpBody());
+    }
+
+    /**
+     * Determines the sessions (context ids) a CONF_BUNDLES is routed by.
+     * @param bundles - Operations of the bundle
+     * @return context ids of all operations; empty if no operation is session scoped
+     */
+    protected static List<String> sessionKeys(List<Bundles> bundles) {
+        return ActivationThreadPool.sessionKeys(bundles);
+    }
+
     // Pre-defined, rpc specific responses.
     private static Future<RpcResult<EventDeregisterOutput>> eventDeregisterErr =
             Futures.immediateFuture(RpcResultBuilder.<EventDeregisterOutput>failed()
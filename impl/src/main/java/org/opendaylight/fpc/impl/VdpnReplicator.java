@@ -0,0 +1,681 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.impl;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import org.opendaylight.fpc.activation.cache.transaction.ContextInfoHolder;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPI2;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnCommandWindow;
+import org.opendaylight.fpc.dpn.DpnHolder;
+import org.opendaylight.fpc.tenant.TenantManager;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.fpc.utils.NamedThreadFactory;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.DpnOperation;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bulk replication of the Contexts of a Virtual DPN to one of its member DPNs.
+ *
+ * When a DPN is added to a VDPN its Contexts are created on it; when a DPN is removed they are
+ * deleted from it (and from the agent when it was the last DPN of the VDPN).  A replication Job
+ * takes one snapshot of the VDPN's Contexts and splits it into contiguous partitions, one per
+ * worker.  Each worker streams its partition to the DPN in batches of BATCH_SIZE, paced to the
+ * configured rate and held back while the DPN reports an overload or its command window is full.
+ *
+ * Commands are sent with the Client Identifier of the operation that created the Context, so the
+ * DPN reports Downlink Data Notifications of replicated sessions to the owning Client, and an
+ * Operation Identifier taken from the reserved range RESERVED_OP_ID_BASE - 0xFFFFFFFF, so their
+ * replies never match a Transaction.  Each (Client, Operation) pair sent is counted in a side
+ * table; the DPN's replies to pending pairs are counted as acknowledgements of the Job.
+ *
+ * A Context deleted from the VDPN while a Job copies it is skipped, or deleted again from the DPN
+ * when the deletion raced with its copy.
+ *
+ * Every partition keeps a cursor.  A Job stopped before the end (DPN gone, replicator closed) is
+ * kept and continues from its cursors when the same operation is requested again or the DPN
+ * says HELLO.
+ */
+public class VdpnReplicator implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(VdpnReplicator.class);
+    /**
+     * Default number of workers (and partitions per Job).
+     */
+    public static final int DEFAULT_THREADS = 4;
+    /**
+     * Default rate (Contexts per second over all workers).
+     */
+    public static final long DEFAULT_RATE = 200000L;
+    /**
+     * Contexts sent between two pacing checks.
+     */
+    public static final int BATCH_SIZE = 256;
+    /**
+     * Time a finished Job's unacknowledged commands are kept in the side table.
+     */
+    public static final long ACK_GRACE_MS = 60000L;
+    /**
+     * First Operation Identifier (as sent to the DPN, Uint32) reserved for replication commands.
+     */
+    public static final long RESERVED_OP_ID_BASE = 0xFF000000L;
+    private static final int RESERVED_OP_ID_MASK = 0x00FFFFFF;
+    private static final long OVERLOAD_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final String targetPrefix = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/";
+
+    static private VdpnReplicator _instance;
+
+    private final ExecutorService workers;
+    private final int partitions;
+    private final long rate;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+    private final Map<AckKey, PendingAck> pendingAcks = new ConcurrentHashMap<AckKey, PendingAck>();
+    private final AtomicInteger nextOpId = new AtomicInteger();
+    private volatile boolean run = true;
+
+    /**
+     * State of a Job.
+     */
+    public enum JobState {
+        RUNNING,
+        INTERRUPTED,
+        DONE,
+        CANCELLED
+    }
+
+    /**
+     * (Client, Operation) pair of a replication command.
+     */
+    private static final class AckKey {
+        final long clientId;
+        final long opId;
+
+        AckKey(long clientId, long opId) {
+            this.clientId = clientId;
+            this.opId = opId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(clientId) + Long.hashCode(opId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AckKey)) {
+                return false;
+            }
+            AckKey other = (AckKey) obj;
+            return clientId == other.clientId && opId == other.opId;
+        }
+    }
+
+    /**
+     * Replies expected for a (Client, Operation) pair sent by a Job.
+     */
+    private static final class PendingAck {
+        final Job job;
+        final int count;
+
+        PendingAck(Job job, int count) {
+            this.job = job;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Replication of one VDPN snapshot to one DPN.
+     */
+    public static final class Job {
+        private final FpcDpnId vdpnId;
+        private final FpcDpnId dpnId;
+        private final DpnOperation op;
+        private final boolean deleteFlag;
+        private final Entry<Contexts, ContextInfoHolder>[] snapshot;
+        private final AtomicIntegerArray cursors;
+        private final int[] ends;
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final long startMs = System.currentTimeMillis();
+        private volatile long endMs;
+        private volatile JobState state = JobState.RUNNING;
+        private volatile boolean resubmit;
+
+        private Job(FpcDpnId vdpnId, FpcDpnId dpnId, DpnOperation op, boolean deleteFlag,
+                Entry<Contexts, ContextInfoHolder>[] snapshot, int partitions) {
+            this.vdpnId = vdpnId;
+            this.dpnId = dpnId;
+            this.op = op;
+            this.deleteFlag = deleteFlag;
+            this.snapshot = snapshot;
+            this.cursors = new AtomicIntegerArray(partitions);
+            this.ends = new int[partitions];
+            for (int p = 0; p < partitions; p++) {
+                cursors.set(p, (int) ((long) snapshot.length * p / partitions));
+                ends[p] = (int) ((long) snapshot.length * (p + 1) / partitions);
+            }
+        }
+
+        /**
+         * Contexts sent to the DPN.
+         * @return count
+         */
+        public long getSent() {
+            return sent.sum();
+        }
+
+        /**
+         * Contexts that could not be sent.
+         * @return count
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * Replies received from the DPN.
+         * @return count
+         */
+        public long getAcked() {
+            return acked.sum();
+        }
+
+        /**
+         * Contexts of the snapshot deleted from the VDPN before they were copied.
+         * @return count
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * Contexts in the snapshot.
+         * @return count
+         */
+        public int getTotal() {
+            return snapshot.length;
+        }
+
+        /**
+         * Contexts not yet processed.
+         * @return count
+         */
+        public long getRemaining() {
+            long retVal = 0L;
+            for (int p = 0; p < ends.length; p++) {
+                retVal += ends[p] - cursors.get(p);
+            }
+            return retVal;
+        }
+
+        /**
+         * Job name, VDPN-&gt;DPN Operation.
+         * @return name
+         */
+        public String getName() {
+            return NameResolver.extractString(vdpnId) + "->" + NameResolver.extractString(dpnId) + " " + op;
+        }
+
+        /**
+         * Job State.
+         * @return state
+         */
+        public JobState getState() {
+            return state;
+        }
+
+        @Override
+        public String toString() {
+            return "Job [" + getName() + ", state=" + state
+                    + ", total=" + getTotal() + ", remaining=" + getRemaining() + ", sent=" + getSent()
+                    + ", failed=" + getFailed() + ", skipped=" + getSkipped() + ", acked=" + getAcked() + "]";
+        }
+    }
+
+    /**
+     * Initializer.
+     * @param threads - number of workers
+     * @param rate - Contexts per second over all workers (0 disables pacing)
+     * @return the Replicator
+     */
+    static public VdpnReplicator init(int threads, long rate) {
+        _instance = new VdpnReplicator(threads, rate);
+        return _instance;
+    }
+
+    /**
+     * Returns Class Instance
+     * @return Replicator or null if it was not initialized
+     */
+    static public VdpnReplicator getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Constructor.
+     * @param threads - number of workers
+     * @param rate - Contexts per second over all workers (0 disables pacing)
+     */
+    protected VdpnReplicator(int threads, long rate) {
+        this.partitions = Math.max(1, threads);
+        this.rate = Math.max(0L, rate);
+        this.workers = Executors.newFixedThreadPool(partitions, new NamedThreadFactory("fpc-vdpn-replicator"));
+    }
+
+    /**
+     * Starts copying (Add) or deleting (Remove) the Contexts of a VDPN on a DPN.  An unfinished Job
+     * for the same operation is resumed instead; one for the other operation is cancelled.
+     * @param vdpnId - Virtual DPN
+     * @param dpnId - DPN added to or removed from the VDPN
+     * @param op - Operation Add / Remove
+     * @param deleteFlag - Set to True if the Contexts have to be deleted from the agent as well
+     * @return the Job or null if the VDPN has no Contexts
+     */
+    public Job replicate(FpcDpnId vdpnId, FpcDpnId dpnId, DpnOperation op, boolean deleteFlag) {
+        String key = key(vdpnId, dpnId);
+        synchronized (jobs) {
+            Job prior = jobs.get(key);
+            if (prior != null) {
+                if (prior.op == op && prior.deleteFlag == deleteFlag) {
+                    submit(prior);
+                    return prior;
+                }
+                prior.state = JobState.CANCELLED;
+                jobs.remove(key);
+                forgetAcks(prior);
+            }
+            expireAcks();
+            Map<Contexts, ContextInfoHolder> contexts = TenantManager.vdpnContextsMap.get(vdpnId);
+            if (contexts == null || contexts.isEmpty()) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            Entry<Contexts, ContextInfoHolder>[] snapshot = contexts.entrySet().toArray((Entry<Contexts, ContextInfoHolder>[]) new Entry<?, ?>[0]);
+            Job job = new Job(vdpnId, dpnId, op, deleteFlag, snapshot, partitions);
+            jobs.put(key, job);
+            LOG.info("VDPN Replication started {}", job);
+            submit(job);
+            return job;
+        }
+    }
+
+    /**
+     * Resumes the interrupted Jobs targeting a DPN.
+     * @param dpnId - DPN
+     */
+    public void resume(FpcDpnId dpnId) {
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                if (job.dpnId.equals(dpnId)) {
+                    submit(job);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the running Jobs targeting a DPN; they stop at the end of their current batch.
+     * @param dpnId - DPN
+     */
+    public void interrupt(FpcDpnId dpnId) {
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                if (job.dpnId.equals(dpnId) && job.state == JobState.RUNNING) {
+                    job.resubmit = false;
+                    job.state = JobState.INTERRUPTED;
+                    LOG.info("VDPN Replication interrupted {}", job);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a DPN reply if it answers a replication command.
+     * @param clientId - Client Identifier of the reply
+     * @param opId - Operation Identifier of the reply
+     * @return true if the reply answers a replication command, false if it belongs to a Transaction
+     */
+    public boolean ack(long clientId, long opId) {
+        if (!isReserved(opId)) {
+            return false;
+        }
+        final Job[] acked = new Job[1];
+        pendingAcks.computeIfPresent(new AckKey(clientId, opId), new BiFunction<AckKey, PendingAck, PendingAck>() {
+            @Override
+            public PendingAck apply(AckKey k, PendingAck v) {
+                acked[0] = v.job;
+                return (v.count > 1) ? new PendingAck(v.job, v.count - 1) : null;
+            }
+        });
+        if (acked[0] != null) {
+            acked[0].acked.increment();
+        }
+        // Replies to forgotten or further frames of a replication command have no Transaction either
+        return true;
+    }
+
+    /**
+     * Indicates if an Operation Identifier belongs to the range reserved for replication commands.
+     * @param opId - Operation Identifier as sent to the DPN
+     * @return true if the identifier is reserved
+     */
+    public static boolean isReserved(long opId) {
+        return (opId & 0xFFFFFFFFL) >= RESERVED_OP_ID_BASE;
+    }
+
+    /**
+     * Replication commands awaiting a DPN reply.
+     * @return count of (Client, Operation) pairs
+     */
+    public int getPendingAcks() {
+        return pendingAcks.size();
+    }
+
+    /**
+     * Unfinished Jobs.
+     * @return Jobs
+     */
+    public Collection<Job> getJobs() {
+        return new ArrayList<Job>(jobs.values());
+    }
+
+    /**
+     * Queues a worker for each partition of a Job that is not finished or already running.
+     * Called with the jobs lock held.
+     */
+    private void submit(final Job job) {
+        if (!run) {
+            return;
+        }
+        if (job.active.get() > 0) {
+            // Resubmitted by the last worker of the previous run
+            job.resubmit = true;
+            return;
+        }
+        job.state = JobState.RUNNING;
+        List<Integer> pending = new ArrayList<Integer>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            if (job.cursors.get(p) < job.ends[p]) {
+                pending.add(p);
+            }
+        }
+        if (pending.isEmpty()) {
+            finish(job);
+            return;
+        }
+        job.active.addAndGet(pending.size());
+        for (final int p : pending) {
+            try {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        replicatePartition(job, p);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                partitionStopped(job);
+            }
+        }
+    }
+
+    /**
+     * Streams one partition of a Job, from its cursor to its end.
+     */
+    private void replicatePartition(Job job, int p) {
+        DpnAPI2 api = newApi();
+        long ratePerPartition = rate / partitions;
+        long start = System.nanoTime();
+        long paced = 0L;
+        int i = job.cursors.get(p);
+        int end = job.ends[p];
+        try {
+            while (i < end && run && job.state == JobState.RUNNING) {
+                DpnHolder dpnInfo = job.snapshot[i].getValue().tenantManager.getDpnInfo().get(job.dpnId.toString());
+                if (dpnInfo == null || dpnInfo.activator == null) {
+                    LOG.info("No activator found for DPN " + NameResolver.extractString(job.dpnId) + ", VDPN Replication interrupted");
+                    break;
+                }
+                if (dpnInfo.overloadedUntilMs > System.currentTimeMillis()) {
+                    LockSupport.parkNanos(OVERLOAD_BACKOFF_NANOS);
+                    // Pacing restarts after the overload
+                    start = System.nanoTime();
+                    paced = 0L;
+                    continue;
+                }
+                int batchEnd = Math.min(end, i + BATCH_SIZE);
+                while (i < batchEnd && replicate(job, dpnInfo, api, i)) {
+                    i++;
+                }
+                job.cursors.set(p, i);
+                if (i < batchEnd) {
+                    // The DPN's command window is full, the Context is sent again once it drains
+                    LockSupport.parkNanos(OVERLOAD_BACKOFF_NANOS);
+                    start = System.nanoTime();
+                    paced = 0L;
+                    continue;
+                }
+                paced += BATCH_SIZE;
+                if (ratePerPartition > 0) {
+                    long wait = start + TimeUnit.SECONDS.toNanos(paced) / ratePerPartition - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+        } finally {
+            partitionStopped(job);
+        }
+    }
+
+    /**
+     * Returns the API a worker sends its partition with.
+     * @return DPN API bound to a socket of the ZMQ client pool
+     */
+    protected DpnAPI2 newApi() {
+        return new DpnAPI2(ZMQClientPool.getInstance().getWorker());
+    }
+
+    /**
+     * Sends the command of one Context of the snapshot.
+     * @return false if the DPN's command window is full and the Context must be sent again
+     */
+    private boolean replicate(Job job, DpnHolder dpnInfo, DpnAPI2 api, int index) {
+        Entry<Contexts, ContextInfoHolder> entry = job.snapshot[index];
+        Contexts context = entry.getKey();
+        ContextInfoHolder holder = entry.getValue();
+        OpInput input = holder.opInput;
+        OpIdentifier opId = nextOpId();
+        try {
+            if (job.op == DpnOperation.Add) {
+                if (!inVdpn(job, context)) {
+                    job.skipped.increment();
+                    return true;
+                }
+                expectAck(job, input, opId);
+                dpnInfo.activator.activate(api, input.getClientId(), opId, input.getOpType(), (context.getInstructions() != null) ?
+                        context.getInstructions() : input.getInstructions(), context, holder.payloadCache);
+                if (!inVdpn(job, context)) {
+                    // Deleted while it was copied, the deletion may have reached the DPN first
+                    expectAck(job, input, opId);
+                    while (true) {
+                        try {
+                            dpnInfo.activator.delete(api, input.getClientId(), opId, input.getInstructions(), null, context);
+                            break;
+                        } catch (DpnCommandWindow.WindowFullException e) {
+                            if (!run) {
+                                throw e;
+                            }
+                            LockSupport.parkNanos(OVERLOAD_BACKOFF_NANOS);
+                        }
+                    }
+                }
+            } else {
+                expectAck(job, input, opId);
+                dpnInfo.activator.delete(api, input.getClientId(), opId, input.getInstructions(), null, context);
+                if (job.deleteFlag) {
+                    holder.tenantManager.getSc().remove(targetPrefix + NameResolver.extractString(context.getContextId()));
+                    Map<Contexts, ContextInfoHolder> contexts = TenantManager.vdpnContextsMap.get(job.vdpnId);
+                    if (contexts != null) {
+                        contexts.remove(context);
+                    }
+                }
+            }
+            job.sent.increment();
+        } catch (DpnCommandWindow.WindowFullException e) {
+            unexpectAck(input, opId);
+            return false;
+        } catch (Exception e) {
+            job.failed.increment();
+            ErrorLog.logError(e.getStackTrace());
+        }
+        return true;
+    }
+
+    /**
+     * Indicates if a Context is still part of the Job's VDPN.
+     */
+    private static boolean inVdpn(Job job, Contexts context) {
+        Map<Contexts, ContextInfoHolder> contexts = TenantManager.vdpnContextsMap.get(job.vdpnId);
+        return contexts != null && contexts.containsKey(context);
+    }
+
+    /**
+     * Takes the next Operation Identifier of the reserved range.
+     */
+    private OpIdentifier nextOpId() {
+        return new OpIdentifier(BigInteger.valueOf(RESERVED_OP_ID_BASE + (nextOpId.getAndIncrement() & RESERVED_OP_ID_MASK)));
+    }
+
+    /**
+     * Counts a reply expected for the (Client, Operation) pair of a replication command.
+     */
+    private void expectAck(final Job job, OpInput input, OpIdentifier opId) {
+        if (input.getClientId() == null || input.getClientId().getInt64() == null) {
+            return;
+        }
+        pendingAcks.compute(new AckKey(input.getClientId().getInt64(), opId.getValue().longValue()),
+                new BiFunction<AckKey, PendingAck, PendingAck>() {
+                    @Override
+                    public PendingAck apply(AckKey k, PendingAck v) {
+                        return new PendingAck(job, (v == null) ? 1 : v.count + 1);
+                    }
+                });
+    }
+
+    /**
+     * Takes back a reply counted for a command that was not sent.
+     */
+    private void unexpectAck(OpInput input, OpIdentifier opId) {
+        if (input.getClientId() == null || input.getClientId().getInt64() == null) {
+            return;
+        }
+        pendingAcks.computeIfPresent(new AckKey(input.getClientId().getInt64(), opId.getValue().longValue()),
+                new BiFunction<AckKey, PendingAck, PendingAck>() {
+                    @Override
+                    public PendingAck apply(AckKey k, PendingAck v) {
+                        return (v.count > 1) ? new PendingAck(v.job, v.count - 1) : null;
+                    }
+                });
+    }
+
+    /**
+     * Drops the expected replies of a Job.
+     */
+    private void forgetAcks(final Job job) {
+        pendingAcks.values().removeIf(new Predicate<PendingAck>() {
+            @Override
+            public boolean test(PendingAck v) {
+                return v.job == job;
+            }
+        });
+    }
+
+    /**
+     * Drops the expected replies of Jobs finished for longer than ACK_GRACE_MS.
+     */
+    private void expireAcks() {
+        final long expiry = System.currentTimeMillis() - ACK_GRACE_MS;
+        pendingAcks.values().removeIf(new Predicate<PendingAck>() {
+            @Override
+            public boolean test(PendingAck v) {
+                return v.job.state == JobState.CANCELLED || (v.job.state == JobState.DONE && v.job.endMs < expiry);
+            }
+        });
+    }
+
+    /**
+     * Called as each partition worker exits; the last one settles the Job.  The count of active
+     * workers is only changed under the lock so a concurrent resume cannot start a run that a
+     * stale worker then settles.
+     */
+    private void partitionStopped(Job job) {
+        synchronized (jobs) {
+            if (job.active.decrementAndGet() > 0) {
+                return;
+            }
+            if (job.getRemaining() == 0) {
+                finish(job);
+            } else if (job.resubmit && job.state != JobState.CANCELLED) {
+                job.resubmit = false;
+                submit(job);
+            } else if (job.state == JobState.RUNNING) {
+                job.state = JobState.INTERRUPTED;
+                LOG.info("VDPN Replication interrupted {}", job);
+            }
+        }
+    }
+
+    private static String key(FpcDpnId vdpnId, FpcDpnId dpnId) {
+        return NameResolver.extractString(vdpnId) + "/" + NameResolver.extractString(dpnId);
+    }
+
+    private void finish(Job job) {
+        if (job.state == JobState.CANCELLED) {
+            return;
+        }
+        job.state = JobState.DONE;
+        job.endMs = System.currentTimeMillis();
+        jobs.remove(key(job.vdpnId, job.dpnId), job);
+        LOG.info("VDPN Replication completed in {} ms {}", System.currentTimeMillis() - job.startMs, job);
+    }
+
+    @Override
+    public void close() throws Exception {
+        run = false;
+        workers.shutdownNow();
+        pendingAcks.clear();
+    }
+}
@@ -7,41 +7,66 @@
  */
 package org.opendaylight.fpc.impl.memcached;
 
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
-import org.opendaylight.fpc.impl.zeromq.ZMQSBMessagePool;
 import org.opendaylight.fpc.utils.AbstractThreadPool;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
 
 import com.google.common.base.Supplier;
 
 /**
  * Thread pool for memcached worker threads
  *
+ * Contexts are routed to a worker by their Context Id so that the Create and Delete of a session
+ * are mirrored, in order, by the same worker.
  */
 public class MemcachedThreadPool extends AbstractThreadPool<MemcachedWorker>{
+	/**
+	 * Default time a batch waits for entries.
+	 */
+	public static final long DEFAULT_FLUSH_MS = 1L;
+	/**
+	 * Default create timestamps kept over all workers.
+	 */
+	public static final int DEFAULT_MAX_SESSIONS = 1 << 20;
+	/**
+	 * Entries queued per worker before new entries are dropped.
+	 */
+	public static final int QUEUE_SIZE = 1 << 16;
 	static private MemcachedThreadPool _instance;
 	protected String memcachedUri;
+	protected long flushMs;
+	protected int maxSessions;
+	private final LongAdder dropped = new LongAdder();
+
 	/**
 	 * Constructor
 	 * @param poolSize - Number of threads to create in the pool
 	 * @param memcachedUri - The memcached URI to connect to
+	 * @param flushMs - Time a batch waits for entries
+	 * @param maxSessions - Create timestamps kept over all workers
 	 */
-	public MemcachedThreadPool(int poolSize, String memcachedUri) {
+	public MemcachedThreadPool(int poolSize, String memcachedUri, long flushMs, int maxSessions) {
 		super(null, poolSize);
 		this.memcachedUri = memcachedUri;
+		this.flushMs = flushMs;
+		this.maxSessions = maxSessions;
 	}
 
 	/**
 	 * Creates a new instance of the memcached thread pool
 	 * @param poolSize - Number of threads to create in the pool
 	 * @param memcachedUri - The memcached URI to connect to
+	 * @param flushMs - Time a batch waits for entries
+	 * @param maxSessions - Create timestamps kept over all workers
 	 */
-	public static void createInstance(int poolSize, String memcachedUri) {
-		_instance = new MemcachedThreadPool(poolSize,memcachedUri);
+	public static void createInstance(int poolSize, String memcachedUri, long flushMs, int maxSessions) {
+		_instance = new MemcachedThreadPool(poolSize,memcachedUri,flushMs,maxSessions);
 	}
 
 	/**
@@ -52,6 +77,56 @@ public class MemcachedThreadPool extends AbstractThreadPool<MemcachedWorker>{
 		return _instance;
 	}
 
+	/**
+	 * Queues a context to be mirrored.  Never blocks; if the worker has fallen QUEUE_SIZE entries
+	 * behind, the context is dropped and counted.
+	 * @param context - Context
+	 * @param opType - Create or Delete
+	 */
+	public void mirror(FpcContext context, OpType opType) {
+		long key = contextKey(context.getContextId());
+		MemcachedWorker worker = getWorker((int) ((key ^ (key >>> 32)) & Integer.MAX_VALUE) % poolSize);
+		if (!worker.offer(new MemcachedWorker.Entry(context, opType, key, System.currentTimeMillis()))) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Contexts dropped because a worker queue was full.
+	 * @return count
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Contexts memcached acknowledged.
+	 * @return count
+	 */
+	public long getWritten() {
+		long retVal = 0L;
+		for (MemcachedWorker worker : pool) {
+			retVal += worker.getWritten();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Long form of a Context Id; Ids that are not an int64 are hashed (FNV-1a).
+	 */
+	private static long contextKey(FpcContextId id) {
+		if (id.getInt64() != null) {
+			return id.getInt64();
+		}
+		String text = (id.getString() != null) ? id.getString() : id.getInstanceIdentifier().toString();
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xFF);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
 	@Override
 	protected Supplier<? extends MemcachedWorker> getPoolFactory(DataBroker db) {
 		return new MemcachedWorkerFactory(startSignal);
@@ -73,7 +148,8 @@ public class MemcachedThreadPool extends AbstractThreadPool<MemcachedWorker>{
 
         @Override
         public MemcachedWorker get() {
-            return new MemcachedWorker(startSignal,new LinkedBlockingQueue<>(),memcachedUri);
+            return new MemcachedWorker(startSignal, QUEUE_SIZE, memcachedUri, MemcachedWorker.DEFAULT_BATCH_SIZE,
+                    flushMs, Math.max(1, maxSessions / Math.max(1, poolSize)));
         }
     }
 
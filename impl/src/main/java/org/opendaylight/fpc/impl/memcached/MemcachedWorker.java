@@ -7,64 +7,141 @@
  */
 package org.opendaylight.fpc.impl.memcached;
 
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.opendaylight.fpc.dpn.DPNStatusIndication;
-import org.opendaylight.fpc.impl.FpcServiceImpl;
-import org.opendaylight.fpc.monitor.EventMonitorMgr;
+import org.opendaylight.fpc.utils.BoundedLongMap;
 import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.IPToDecimal;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
 import org.opendaylight.fpc.utils.Worker;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpInput;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpPrefix;
-//import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
 
 import net.spy.memcached.AddrUtil;
+import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.ConnectionFactoryBuilder.Protocol;
 import net.spy.memcached.MemcachedClient;
-import net.spy.memcached.compat.log.Log4JLogger;
-import net.spy.memcached.compat.log.Logger;
+import net.spy.memcached.internal.OperationCompletionListener;
+import net.spy.memcached.internal.OperationFuture;
 
 /**
- * @author vivekvijayan
  * Memcached Worker Thread
+ *
+ * Mirrors the sessions of the contexts routed to it (see MemcachedThreadPool.mirror) into memcached,
+ * keyed by the UE IPv4 address.  Entries are taken in batches of up to batchSize or flushIntervalMs
+ * and written back to back without waiting for replies; the binary protocol client pipelines
+ * consecutive sets as quiet sets, so a batch costs about one round trip.  Values use the compact
+ * binary form
+ * <pre>
+ *   u8 VERSION, u32 UE ipv4, u64 imsi, u64 create timestamp (ms), u64 delete timestamp (ms, 0 while
+ *   active), u8 context-id kind (0 - int64, 1 - string), u64 context-id | u16 length + UTF-8
+ * </pre>
+ * Create timestamps are kept per worker in a BoundedLongMap of up to maxSessions entries; a Delete
+ * of an evicted session is written with a create timestamp of 0.  Sets are counted as written or
+ * failed when memcached acknowledges them.
+ *
+ * @author vivekvijayan
  */
 public class MemcachedWorker implements Worker {
-	//private static final Logger LOG = LoggerFactory.getLogger(FpcServiceImpl.class);
-	private BlockingQueue<Map.Entry<FpcContext,OpType>> blockingQueue;
-	private static Map<FpcContextId,Long> createTimestamp = new ConcurrentHashMap<FpcContextId,Long>();
-	private boolean run;
+	/**
+	 * Value encoding version.
+	 */
+	public static final byte VERSION = 1;
+	/**
+	 * Default entries written per batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	// version, address, imsi, timestamps and context-id kind
+	private static final int VALUE_HEADER_LEN = 1 + 4 + 8 + 8 + 8 + 1;
+
+	/**
+	 * A context mirroring request.
+	 */
+	static final class Entry {
+		final FpcContext context;
+		final OpType opType;
+		final long key;
+		final long timestamp;
+
+		Entry(FpcContext context, OpType opType, long key, long timestamp) {
+			this.context = context;
+			this.opType = opType;
+			this.key = key;
+			this.timestamp = timestamp;
+		}
+	}
+
+	private final MpscArrayQueue<Entry> queue;
+	private final BoundedLongMap createTimestamp;
+	private final Entry[] batch;
+	private final long flushIntervalNanos;
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final OperationCompletionListener setListener = new OperationCompletionListener() {
+		@Override
+		public void onComplete(OperationFuture<?> future) {
+			if (future.getStatus().isSuccess()) {
+				written.increment();
+			} else {
+				failed.increment();
+			}
+		}
+	};
+	private volatile boolean run;
 	protected final CountDownLatch startSignal;
 	protected String memcachedUri;
 	protected MemcachedClient  mcc;
+
 	/**
 	 * Constructor
 	 * @param startSignal - Start Signal
-	 * @param linkedBlockingQueue - Blocking Queue
+	 * @param queueSize - Entries queued before new entries are dropped
 	 * @param memcachedUri - Memcached URI
+	 * @param batchSize - Entries written per batch
+	 * @param flushIntervalMs - Time a batch waits for entries
+	 * @param maxSessions - Create timestamps kept by the worker
 	 */
-	public MemcachedWorker(CountDownLatch startSignal, LinkedBlockingQueue<Map.Entry<FpcContext, OpType>> linkedBlockingQueue, String memcachedUri){
+	public MemcachedWorker(CountDownLatch startSignal, int queueSize, String memcachedUri, int batchSize,
+			long flushIntervalMs, int maxSessions){
 		this.startSignal = startSignal;
-		this.blockingQueue = linkedBlockingQueue;
+		this.queue = new MpscArrayQueue<Entry>(queueSize);
 		this.memcachedUri = memcachedUri;
+		this.batch = new Entry[Math.max(1, batchSize)];
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, flushIntervalMs));
+		this.createTimestamp = new BoundedLongMap(maxSessions);
+	}
+
+	/**
+	 * Queues a context for mirroring.  Never blocks.
+	 * @param entry - mirroring request
+	 * @return false if the queue is full and the entry was dropped
+	 */
+	boolean offer(Entry entry) {
+		return queue.offer(entry);
 	}
 
 	/**
-	  * Returns the blocking queue of the worker
-	 * @return Blocking Queue
+	 * Entries memcached acknowledged.  Sets still in flight are not counted.
+	 * @return count
 	 */
-	public BlockingQueue<Map.Entry<FpcContext,OpType>> getBlockingQueue() {
-       return blockingQueue;
-   }
+	public long getWritten() {
+		return written.sum();
+	}
+
+	/**
+	 * Entries that could not be written (no IP assignment, client failure or a set memcached did
+	 * not acknowledge).
+	 * @return count
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
 
 	@Override
 	public void run() {
@@ -72,59 +149,114 @@ public class MemcachedWorker implements Worker {
 		try {
 			System.setProperty("net.spy.log.LoggerImpl",
 					  "net.spy.memcached.compat.log.Log4JLogger");
-			mcc =  new MemcachedClient(AddrUtil.getAddresses(memcachedUri));
-            while(run) {
-            	Map.Entry<FpcContext,OpType> context = blockingQueue.take();
-            	long timestamp = System.currentTimeMillis();
-            	FpcContext ctxt = context.getKey();
-            		IpPrefix assignedPrefix = (ctxt.getDelegatingIpPrefixes() == null) ? null
-        					: (ctxt.getDelegatingIpPrefixes().isEmpty()) ? null : ctxt.getDelegatingIpPrefixes().get(0);
-
-        			String entry = assignedPrefix.getIpv4Prefix().getValue().split("/")[0] +","+
-        					String.valueOf(ctxt.getImsi().getValue().longValue()) +","+String.valueOf(ctxt.getImsi().getValue().longValue()) +"," +
-        					String.valueOf( (ctxt.getContextId().getInt64() != null) ? ctxt.getContextId().getInt64() :
-        						( (ctxt.getContextId().getString() != null) ? ctxt.getContextId().getString() : ctxt.getContextId().getInstanceIdentifier().toString())
-        							);
-            		if(context.getValue().equals(OpType.Create)){
-            			createTimestamp.put(ctxt.getContextId(), timestamp);
-            			entry = entry + "," + String.valueOf(timestamp) +",";
-            			mcc.set(assignedPrefix.getIpv4Prefix().getValue().split("/")[0], 0, entry);
-            		} else if(context.getValue().equals(OpType.Delete)){
-            			entry = entry + "," + createTimestamp.get(ctxt.getContextId()) +"," + String.valueOf(timestamp);
-            			mcc.replace(assignedPrefix.getIpv4Prefix().getValue().split("/")[0], 0, entry);
-            			createTimestamp.remove(ctxt.getContextId());
-                    }
-
-            }
-        } catch (InterruptedException e) {
-        	ErrorLog.logError(e.getStackTrace());
-        } catch (Exception e) {
-        	ErrorLog.logError(e.getMessage(),e.getStackTrace());
-        }
+			mcc = new MemcachedClient(new ConnectionFactoryBuilder()
+						.setProtocol(Protocol.BINARY)
+						.setShouldOptimize(true)
+						.build(),
+					AddrUtil.getAddresses(memcachedUri));
+			while(run) {
+				Entry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (entry == null) {
+					continue;
+				}
+				int n = 0;
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				while (entry != null) {
+					batch[n++] = entry;
+					if (n == batch.length) {
+						break;
+					}
+					entry = queue.poll();
+					if (entry == null) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining > 0) {
+							entry = queue.poll(remaining, TimeUnit.NANOSECONDS);
+						}
+					}
+				}
+				for (int i = 0; i < n; i++) {
+					write(batch[i]);
+					batch[i] = null;
+				}
+			}
+		} catch (InterruptedException e) {
+			ErrorLog.logError(e.getStackTrace());
+		} catch (Exception e) {
+			ErrorLog.logError(e.getMessage(),e.getStackTrace());
+		}
+	}
+
+	/**
+	 * Writes an entry; the reply is not awaited, it is counted by the set listener.
+	 */
+	private void write(Entry entry) {
+		FpcContext ctxt = entry.context;
+		IpPrefix assignedPrefix = (ctxt.getDelegatingIpPrefixes() == null) ? null
+				: (ctxt.getDelegatingIpPrefixes().isEmpty()) ? null : ctxt.getDelegatingIpPrefixes().get(0);
+		if (assignedPrefix == null || assignedPrefix.getIpv4Prefix() == null) {
+			failed.increment();
+			return;
+		}
+		String prefix = assignedPrefix.getIpv4Prefix().getValue();
+		int slash = prefix.indexOf('/');
+		String ueAddress = (slash < 0) ? prefix : prefix.substring(0, slash);
+
+		long created, deleted;
+		if (entry.opType == OpType.Create) {
+			createTimestamp.put(entry.key, entry.timestamp);
+			created = entry.timestamp;
+			deleted = 0L;
+		} else {
+			created = createTimestamp.remove(entry.key);
+			created = (created == BoundedLongMap.MISSING) ? 0L : created;
+			deleted = entry.timestamp;
+		}
+
+		try {
+			FpcContextId id = ctxt.getContextId();
+			byte[] text = (id.getInt64() != null) ? null : ((id.getString() != null) ? id.getString() :
+				id.getInstanceIdentifier().toString()).getBytes(StandardCharsets.UTF_8);
+			byte[] value = new byte[VALUE_HEADER_LEN + ((text == null) ? 8 : 2 + text.length)];
+			ByteBuffer bb = ByteBuffer.wrap(value);
+			bb.put(VERSION)
+			  .putInt((int) IPToDecimal.ipv4ToLong(ueAddress))
+			  .putLong((ctxt.getImsi() != null) ? ctxt.getImsi().getValue().longValue() : 0L)
+			  .putLong(created)
+			  .putLong(deleted);
+			if (text == null) {
+				bb.put((byte) 0).putLong(id.getInt64());
+			} else {
+				bb.put((byte) 1).putShort((short) text.length).put(text);
+			}
+			mcc.set(ueAddress, 0, value).addListener(setListener);
+		} catch (Exception e) {
+			failed.increment();
+			ErrorLog.logError("MemcachedWorker - mirroring of " + ueAddress + " failed " + e.getMessage(),
+					e.getStackTrace());
+		}
 	}
 
 	@Override
 	public void close() throws Exception {
 		this.run = false;
-		mcc.shutdown();
+		if (mcc != null) {
+			mcc.shutdown();
+		}
 	}
 
 	@Override
 	public void stop() {
-		// TODO Auto-generated method stub
-
+		this.run = false;
 	}
 
 	@Override
 	public void open() {
-		// TODO Auto-generated method stub
-
+		// Does nothing; the memcached client is connected when the worker thread starts
 	}
 
 	@Override
 	public boolean isOpen() {
-		// TODO Auto-generated method stub
-		return false;
+		return run;
 	}
 
 }
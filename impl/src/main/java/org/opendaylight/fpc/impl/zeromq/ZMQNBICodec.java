@@ -0,0 +1,454 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.impl.zeromq;
+
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.opendaylight.fpc.utils.IPToDecimal;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.RefScope;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ResultBody;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.Bundles;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.BundlesBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.Instructions;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.InstructionsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.instructions.instr.type.Instr3gppMobBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.OpBody;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdateBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.DeleteOrQueryBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.Err;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDirection;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.Dpns;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.DpnsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.DpnsKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.DlBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.UlBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.fpc.context.profile.MobilityTunnelParametersBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.mobility.info.mobprofile.parameters.ThreegppTunnelBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.Targets;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.TargetsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.EbiType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ImsiType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ThreegppInstr;
+
+/**
+ * Compact binary encoding of the Northbound CONF and CONF_BUNDLES operations.
+ *
+ * The encoding covers the 3GPP session subset of the operations (the payload DpdkImpl activates);
+ * everything else continues to use the JSON form.  All integers are big endian and unsigned,
+ * strings are a u16 length followed by UTF-8.  A request frame is
+ * <pre>
+ *   u8 MAGIC, u8 VERSION, u8 type (CONFIGURE | CONFIGURE_BUNDLES), u64 client-id,
+ *   CONFIGURE:         op
+ *   CONFIGURE_BUNDLES: u8 highest-op-ref-scope, u16 count, op[count]
+ *
+ *   op      = u64 op-id, u8 op-type, u8 op-ref-scope (NONE if absent), u32 3GPP instruction bits,
+ *             create/update: u16 count, context[count]
+ *             delete/query:  u16 count, string target[count]
+ *   context = u64 context-id, u64 imsi, u8 ebi, u8 lbi (0 if absent), string dpn-id (empty if
+ *             unassigned), u8 dpn direction, u32 UE ipv4 (0 if unassigned), u8 prefix length,
+ *             u8 flags, [UL tunnel], [DL tunnel], [u32 DL lifetime]
+ *   tunnel  = u32 local ipv4, u32 remote ipv4 (0 if absent), u32 teid
+ * </pre>
+ * and its reply is
+ * <pre>
+ *   u8 MAGIC, u8 VERSION, u8 type | REPLY, u16 count,
+ *   (u64 op-id, u8 result, [u32 error-type-id, string error-info if result is err])[count]
+ * </pre>
+ * The MAGIC byte is not printable so a binary frame never collides with the JSON form, which starts
+ * with the RPC name.
+ */
+public class ZMQNBICodec {
+    /**
+     * First byte of a binary frame.
+     */
+    public static final byte MAGIC = (byte) 0xFB;
+    /**
+     * Encoding version.
+     */
+    public static final byte VERSION = 1;
+    /**
+     * CONF operation.
+     */
+    public static final byte CONFIGURE = 1;
+    /**
+     * CONF_BUNDLES operation.
+     */
+    public static final byte CONFIGURE_BUNDLES = 2;
+    /**
+     * Flag set on the type of a reply.
+     */
+    public static final byte REPLY = (byte) 0x80;
+    /**
+     * Absent op-ref-scope.
+     */
+    public static final byte NONE = (byte) 0xFF;
+    /**
+     * Context flag - UL tunnel present.
+     */
+    public static final byte FLAG_UL = 0x01;
+    /**
+     * Context flag - DL tunnel present.
+     */
+    public static final byte FLAG_DL = 0x02;
+    /**
+     * Context flag - DL lifetime present.
+     */
+    public static final byte FLAG_DL_LIFETIME = 0x04;
+
+    private static final int HEADER_LEN = 3;
+    private static final int MAX_ERROR_INFO = 1024;
+
+    private ZMQNBICodec() {
+    }
+
+    /**
+     * Determines if a frame uses the binary encoding.
+     * @param frame - request frame
+     * @return true if the frame starts with MAGIC
+     */
+    public static boolean isBinary(byte[] frame) {
+        return frame != null && frame.length >= HEADER_LEN && frame[0] == MAGIC;
+    }
+
+    /**
+     * Returns the type of a binary frame.
+     * @param frame - request frame (see isBinary)
+     * @return CONFIGURE or CONFIGURE_BUNDLES
+     * @throws IllegalArgumentException - if the version or type is not supported
+     */
+    public static byte getType(byte[] frame) {
+        if (frame[1] != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary NB version " + frame[1]);
+        }
+        if (frame[2] != CONFIGURE && frame[2] != CONFIGURE_BUNDLES) {
+            throw new IllegalArgumentException("Unsupported binary NB operation " + frame[2]);
+        }
+        return frame[2];
+    }
+
+    /**
+     * Decodes a CONF request.
+     * @param frame - request frame of type CONFIGURE
+     * @return ConfigureInput
+     * @throws IllegalArgumentException - if the frame is malformed
+     */
+    public static ConfigureInput decodeConfigure(byte[] frame) {
+        try {
+            ByteBuffer bb = ByteBuffer.wrap(frame, HEADER_LEN, frame.length - HEADER_LEN);
+            ClientIdentifier clientId = new ClientIdentifier(bb.getLong());
+            OpIdentifier opId = opId(bb.getLong());
+            OpType opType = opType(bb.get());
+            RefScope refScope = refScope(bb.get());
+            Instructions instructions = instructions(bb.getInt());
+            return new ConfigureInputBuilder()
+                    .setClientId(clientId)
+                    .setOpId(opId)
+                    .setOpType(opType)
+                    .setOpRefScope(refScope)
+                    .setInstructions(instructions)
+                    .setOpBody(opBody(bb, opType))
+                    .build();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary NB frame");
+        }
+    }
+
+    /**
+     * Decodes a CONF_BUNDLES request.
+     * @param frame - request frame of type CONFIGURE_BUNDLES
+     * @return ConfigureBundlesInput
+     * @throws IllegalArgumentException - if the frame is malformed
+     */
+    public static ConfigureBundlesInput decodeConfigureBundles(byte[] frame) {
+        try {
+            ByteBuffer bb = ByteBuffer.wrap(frame, HEADER_LEN, frame.length - HEADER_LEN);
+            ClientIdentifier clientId = new ClientIdentifier(bb.getLong());
+            RefScope highestScope = refScope(bb.get());
+            int count = bb.getShort() & 0xFFFF;
+            List<Bundles> bundles = new ArrayList<Bundles>(count);
+            for (int i = 0; i < count; i++) {
+                OpIdentifier opId = opId(bb.getLong());
+                OpType opType = opType(bb.get());
+                RefScope refScope = refScope(bb.get());
+                Instructions instructions = instructions(bb.getInt());
+                bundles.add(new BundlesBuilder()
+                        .setClientId(clientId)
+                        .setOpId(opId)
+                        .setOpType(opType)
+                        .setOpRefScope(refScope)
+                        .setInstructions(instructions)
+                        .setOpBody(opBody(bb, opType))
+                        .build());
+            }
+            return new ConfigureBundlesInputBuilder()
+                    .setClientId(clientId)
+                    .setHighestOpRefScope(highestScope)
+                    .setBundles(bundles)
+                    .build();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary NB frame");
+        }
+    }
+
+    /**
+     * Reads the op-id of a binary frame without decoding it, e.g. to report a decode failure.
+     * @param frame - request frame
+     * @return op-id of a CONF request, 0 otherwise or if the frame is truncated
+     */
+    public static long peekOpId(byte[] frame) {
+        return (frame.length >= HEADER_LEN + 16 && frame[2] == CONFIGURE) ?
+                ByteBuffer.wrap(frame).getLong(HEADER_LEN + 8) : 0L;
+    }
+
+    /**
+     * Encodes the reply of one or more operations.
+     * @param type - request type
+     * @param results - results (ConfigureOutput or ConfigureBundlesOutput Bundles)
+     * @return reply frame
+     */
+    public static byte[] encodeReply(byte type, List<? extends ResultBody> results) {
+        int len = HEADER_LEN + 2;
+        List<byte[]> infos = new ArrayList<byte[]>(results.size());
+        for (ResultBody result : results) {
+            byte[] info = null;
+            len += 9;
+            if (result.getResultType() instanceof Err) {
+                String text = ((Err) result.getResultType()).getErrorInfo();
+                info = (text != null) ? text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                if (info.length > MAX_ERROR_INFO) {
+                    info = Arrays.copyOf(info, MAX_ERROR_INFO);
+                }
+                len += 6 + info.length;
+            }
+            infos.add(info);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(len);
+        bb.put(MAGIC).put(VERSION).put((byte) (type | REPLY)).putShort((short) results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ResultBody result = results.get(i);
+            bb.putLong((result.getOpId() != null) ? result.getOpId().getValue().longValue() : 0L);
+            bb.put((byte) ((result.getResult() != null) ? result.getResult().getIntValue() :
+                Result.Err.getIntValue()));
+            byte[] info = infos.get(i);
+            if (info != null) {
+                Err err = (Err) result.getResultType();
+                bb.putInt((err.getErrorTypeId() != null) ? err.getErrorTypeId().getValue().intValue() : 0);
+                bb.putShort((short) info.length).put(info);
+            }
+        }
+        return bb.array();
+    }
+
+    /**
+     * Encodes the failure of a request that could not be decoded or dispatched.
+     * @param type - request type
+     * @param opId - op-id of the request (0 if unknown)
+     * @param errorTypeId - Error Type Id
+     * @param message - error information
+     * @return reply frame
+     */
+    public static byte[] encodeError(byte type, long opId, long errorTypeId, String message) {
+        byte[] info = (message != null) ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (info.length > MAX_ERROR_INFO) {
+            info = Arrays.copyOf(info, MAX_ERROR_INFO);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_LEN + 2 + 9 + 6 + info.length);
+        bb.put(MAGIC).put(VERSION).put((byte) (type | REPLY)).putShort((short) 1)
+          .putLong(opId)
+          .put((byte) Result.Err.getIntValue())
+          .putInt((int) errorTypeId)
+          .putShort((short) info.length).put(info);
+        return bb.array();
+    }
+
+    private static OpIdentifier opId(long value) {
+        return new OpIdentifier(unsigned(value));
+    }
+
+    private static OpType opType(byte value) {
+        OpType retVal = OpType.forValue(value & 0xFF);
+        if (retVal == null) {
+            throw new IllegalArgumentException("Unknown op-type " + (value & 0xFF));
+        }
+        return retVal;
+    }
+
+    private static RefScope refScope(byte value) {
+        if (value == NONE) {
+            return null;
+        }
+        RefScope retVal = RefScope.forValue(value & 0xFF);
+        if (retVal == null) {
+            throw new IllegalArgumentException("Unknown op-ref-scope " + (value & 0xFF));
+        }
+        return retVal;
+    }
+
+    /**
+     * Builds the 3GPP Instructions of an operation.  The generated Bits class takes its flags in
+     * alphabetical order of their Java names; the bit positions are those of threegpp-instr.
+     */
+    private static Instructions instructions(int bits) {
+        if (bits == 0) {
+            return null;
+        }
+        ThreegppInstr instr = new ThreegppInstr(
+                bit(bits, 10), // add_filters_to_existing_tft
+                bit(bits, 6),  // assign-dpn
+                bit(bits, 1),  // assign-fteid-ip
+                bit(bits, 2),  // assign-fteid-teid
+                bit(bits, 0),  // assign-ip
+                bit(bits, 8),  // create_new_tft
+                bit(bits, 9),  // delete_existing_tft
+                bit(bits, 12), // delete_filters_from_existing_tft
+                bit(bits, 5),  // downlink
+                bit(bits, 7),  // indirect-forward
+                bit(bits, 13), // no_tft_op
+                bit(bits, 11), // replace_filters_in_existing_tft
+                bit(bits, 3),  // session
+                bit(bits, 4)); // uplink
+        return new InstructionsBuilder()
+                .setInstrType(new Instr3gppMobBuilder()
+                        .setInstr3gppMob(instr)
+                        .build())
+                .build();
+    }
+
+    private static Boolean bit(int bits, int position) {
+        return ((bits >>> position) & 1) != 0;
+    }
+
+    private static OpBody opBody(ByteBuffer bb, OpType opType) {
+        int count = bb.getShort() & 0xFFFF;
+        if (opType == OpType.Create || opType == OpType.Update) {
+            List<Contexts> contexts = new ArrayList<Contexts>(count);
+            for (int i = 0; i < count; i++) {
+                contexts.add(context(bb));
+            }
+            return new CreateOrUpdateBuilder()
+                    .setContexts(contexts)
+                    .build();
+        }
+        List<Targets> targets = new ArrayList<Targets>(count);
+        for (int i = 0; i < count; i++) {
+            targets.add(new TargetsBuilder()
+                    .setTarget(new FpcIdentity(string(bb)))
+                    .build());
+        }
+        return new DeleteOrQueryBuilder()
+                .setTargets(targets)
+                .build();
+    }
+
+    private static Contexts context(ByteBuffer bb) {
+        ContextsBuilder cb = new ContextsBuilder()
+                .setContextId(new FpcContextId(new FpcIdentity(bb.getLong())))
+                .setImsi(new ImsiType(unsigned(bb.getLong())))
+                .setEbi(new EbiType((short) (bb.get() & 0xFF)));
+        short lbi = (short) (bb.get() & 0xFF);
+        if (lbi != 0) {
+            cb.setLbi(new EbiType(lbi));
+        }
+        String dpnId = string(bb);
+        FpcDirection direction = FpcDirection.forValue(bb.get() & 0xFF);
+        if (!dpnId.isEmpty()) {
+            FpcDpnId id = new FpcDpnId(dpnId);
+            direction = (direction != null) ? direction : FpcDirection.Uplink;
+            cb.setDpns(Collections.<Dpns>singletonList(new DpnsBuilder()
+                    .setDpnId(id)
+                    .setDirection(direction)
+                    .setKey(new DpnsKey(id, direction))
+                    .build()));
+        }
+        long ueAddress = bb.getInt() & 0xFFFFFFFFL;
+        int prefixLength = bb.get() & 0xFF;
+        if (ueAddress != 0L) {
+            cb.setDelegatingIpPrefixes(Collections.singletonList(new IpPrefix(
+                    new Ipv4Prefix(IPToDecimal.longToIpv4(ueAddress) + "/" + prefixLength))));
+        }
+        byte flags = bb.get();
+        if ((flags & FLAG_UL) != 0) {
+            long local = bb.getInt() & 0xFFFFFFFFL;
+            long remote = bb.getInt() & 0xFFFFFFFFL;
+            long teid = bb.getInt() & 0xFFFFFFFFL;
+            cb.setUl(new UlBuilder()
+                    .setTunnelLocalAddress(address(local))
+                    .setTunnelRemoteAddress(address(remote))
+                    .setMobilityTunnelParameters(new MobilityTunnelParametersBuilder()
+                            .setMobprofileParameters(new ThreegppTunnelBuilder()
+                                    .setTunnelIdentifier(teid)
+                                    .build())
+                            .build())
+                    .build());
+        }
+        if ((flags & FLAG_DL) != 0) {
+            long local = bb.getInt() & 0xFFFFFFFFL;
+            long remote = bb.getInt() & 0xFFFFFFFFL;
+            long teid = bb.getInt() & 0xFFFFFFFFL;
+            DlBuilder dl = new DlBuilder()
+                    .setTunnelLocalAddress(address(local))
+                    .setTunnelRemoteAddress(address(remote))
+                    .setMobilityTunnelParameters(new MobilityTunnelParametersBuilder()
+                            .setMobprofileParameters(new ThreegppTunnelBuilder()
+                                    .setTunnelIdentifier(teid)
+                                    .build())
+                            .build());
+            if ((flags & FLAG_DL_LIFETIME) != 0) {
+                dl.setLifetime(bb.getInt() & 0xFFFFFFFFL);
+            }
+            cb.setDl(dl.build());
+        }
+        return cb.build();
+    }
+
+    private static IpAddress address(long value) {
+        return (value != 0L) ? new IpAddress(new Ipv4Address(IPToDecimal.longToIpv4(value))) : null;
+    }
+
+    private static BigInteger unsigned(long value) {
+        return (value >= 0L) ? BigInteger.valueOf(value) :
+            BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+    }
+
+    private static String string(ByteBuffer bb) {
+        int len = bb.getShort() & 0xFFFF;
+        if (len == 0) {
+            return "";
+        }
+        if (len > bb.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String retVal = new String(bb.array(), bb.arrayOffset() + bb.position(), len, StandardCharsets.UTF_8);
+        bb.position(bb.position() + len);
+        return retVal;
+    }
+}
@@ -7,29 +7,73 @@
  */
 package org.opendaylight.fpc.impl.zeromq;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.opendaylight.fpc.activation.cache.transaction.Metrics;
+import org.opendaylight.fpc.impl.FpcagentDispatcher;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.ErrorTypeIndex;
 import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.LatencyHistogram;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
+import org.opendaylight.fpc.utils.NamedThreadFactory;
 import org.opendaylight.netconf.sal.restconf.api.JSONRestconfService;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesOutput;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.IetfDmmFpcagentService;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ResultBody;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.Bundles;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.output.BundlesBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.output.BundlesKey;
+import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yangtools.yang.common.OperationFailedException;
 import org.opendaylight.yangtools.yang.common.QName;
 import org.opendaylight.yangtools.yang.common.RpcError;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.zeromq.ZContext;
 import org.zeromq.ZFrame;
 import org.zeromq.ZMQ;
 import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMQException;
 import org.zeromq.ZMsg;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
 
 /**
- * Zero MQ Northbound Service Thread Pool - untested.
+ * Zero MQ Northbound Service Thread Pool.
+ *
+ * Clients connect to a ROUTER socket on the server URI that is proxied to serverPoolsize DEALER
+ * workers.  A request is a single frame, either the JSON form ("&lt;rpc-name&gt; &lt;json input&gt;") or
+ * the compact binary form of a CONF / CONF_BUNDLES (see {@link ZMQNBICodec}); the reply carries
+ * the envelope of the request so clients may pipeline any number of requests on a connection.
+ *
+ * Workers never block on a request.  Binary requests are decoded on the worker and handed straight
+ * to the FpcagentDispatcher, whose strategies queue the operation and return at once; JSON requests
+ * go to RESTCONF on the request handler pool.  Completed replies are queued back to the worker that
+ * owns the socket (ZMQ sockets are not thread safe), which polls for them at a 1 ms interval while
+ * replies are outstanding.  A worker stops reading requests while MAX_IN_FLIGHT of its requests are
+ * outstanding, leaving further requests to the ZMQ high water marks.
+ *
+ * Per stage processing times are recorded in the Metrics Northbound histograms.
  */
-public class ZMQNBIServerPool {
+public class ZMQNBIServerPool implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(ZMQNBIServerPool.class);
     /**
      * QName
@@ -50,7 +94,39 @@ public class ZMQNBIServerPool {
         }
     }
 
-    private server_task server = null;
+    /**
+     * Requests outstanding per worker before it stops reading requests.
+     */
+    public static final int MAX_IN_FLIGHT = 4096;
+    /**
+     * Metrics stage - decode of a binary request.
+     */
+    public static final String STAGE_DECODE = "Binary Decode";
+    /**
+     * Metrics stage - dispatch of a binary request until its operation is queued.
+     */
+    public static final String STAGE_DISPATCH = "Binary Dispatch";
+    /**
+     * Metrics stage - wait of a JSON request for a request handler.
+     */
+    public static final String STAGE_QUEUE = "JSON Queue Wait";
+    /**
+     * Metrics stage - RESTCONF invocation of a JSON request.
+     */
+    public static final String STAGE_INVOKE = "JSON Invoke";
+    /**
+     * Metrics stage - receipt of a request until its reply is sent.
+     */
+    public static final String STAGE_TOTAL = "Request Total";
+    private static final long PENDING_POLL_MS = 1L;
+    private static final long IDLE_POLL_MS = 100L;
+
+    private final ZMQ.Context context;
+    private final ExecutorService requestHandlers;
+    private final String serverUri;
+    private final String inprocUri;
+    private volatile boolean run;
+    private volatile JSONRestconfService service;
 
     /**
      * Primary Constructor.
@@ -65,136 +141,387 @@ public class ZMQNBIServerPool {
             String inprocUri,
             int serverPoolsize,
             int requestHanlderPoolSize) {
-        server = new server_task(requestHanlderPoolSize);
-        new Thread(server).start();
+        this.serverUri = (serverUri != null) ? serverUri : "tcp://*:5570";
+        this.inprocUri = (inprocUri != null) ? inprocUri : "inproc://backend";
+        this.context = ZMQ.context(1);
+        this.requestHandlers = Executors.newFixedThreadPool(Math.max(1, requestHanlderPoolSize),
+                new NamedThreadFactory("fpc-zmq-nbi-handler"));
+        this.run = true;
+        new Thread(new server_task(Math.max(1, serverPoolsize)), "fpc-zmq-nbi-server").start();
+    }
+
+    @Override
+    public void close() {
+        run = false;
+        requestHandlers.shutdown();
+        // Returns once the proxy and the workers have closed their sockets
+        context.term();
+    }
+
+    /**
+     * Returns the RESTCONF service used for JSON requests.
+     * @return JSONRestconfService or null if it is not available yet
+     */
+    private JSONRestconfService getService() {
+        JSONRestconfService retVal = service;
+        if (retVal == null) {
+            Object[] instances = FpcCodecUtils.getGlobalInstances(JSONRestconfService.class, this);
+            retVal = (instances != null) ? (JSONRestconfService) instances[0] : null;
+            service = retVal;
+        }
+        return retVal;
+    }
+
+    /**
+     * Decodes a binary request.
+     * @param type - request type
+     * @param request - request frame
+     * @return ConfigureInput or ConfigureBundlesInput
+     * @throws IllegalArgumentException - if the frame is malformed
+     */
+    static DataObject decodeBinary(byte type, byte[] request) {
+        return (type == ZMQNBICodec.CONFIGURE) ? ZMQNBICodec.decodeConfigure(request) :
+            ZMQNBICodec.decodeConfigureBundles(request);
+    }
+
+    /**
+     * Dispatches a decoded binary request.  A strategy that returns no future, or fails while
+     * queuing the operation, is answered here so the worker always has an outcome to reply with.
+     * @param service - service the request is dispatched to
+     * @param input - ConfigureInput or ConfigureBundlesInput
+     * @return outcome of the request
+     */
+    static Future<? extends RpcResult<?>> dispatchBinary(IetfDmmFpcagentService service, DataObject input) {
+        Future<? extends RpcResult<?>> result;
+        try {
+            result = (input instanceof ConfigureInput) ? service.configure((ConfigureInput) input) :
+                service.configureBundles((ConfigureBundlesInput) input);
+        } catch (RuntimeException e) {
+            ErrorLog.logError("ZMQNBIServerPool - binary request failed " + e.getMessage(), e.getStackTrace());
+            return Futures.immediateFuture(RpcResultBuilder.failed()
+                    .withError(RpcError.ErrorType.APPLICATION, "SYSTEM - operation failed - " + e.getMessage())
+                    .build());
+        }
+        return (result != null) ? result : Futures.immediateFuture(RpcResultBuilder.success().build());
+    }
+
+    /**
+     * Encodes the outcome of a binary request.  A successful result without output means the
+     * operation was accepted and its outcome is notified later, i.e. ok-notify-follows.
+     * @param type - request type
+     * @param input - ConfigureInput or ConfigureBundlesInput
+     * @param future - outcome of the request
+     * @return reply frame
+     */
+    static byte[] binaryReply(byte type, DataObject input, Future<? extends RpcResult<?>> future) {
+        try {
+            RpcResult<?> result = future.get();
+            Object output = result.getResult();
+            if (output instanceof ConfigureOutput) {
+                return ZMQNBICodec.encodeReply(type, Collections.singletonList((ConfigureOutput) output));
+            } else if (output instanceof ConfigureBundlesOutput) {
+                List<? extends ResultBody> bundles = ((ConfigureBundlesOutput) output).getBundles();
+                return ZMQNBICodec.encodeReply(type, (bundles != null) ? bundles :
+                    Collections.<ResultBody>emptyList());
+            } else if (output == null && result.isSuccessful()) {
+                return ZMQNBICodec.encodeReply(type, accepted(input));
+            }
+            String message = "SYSTEM - operation failed";
+            for (RpcError error : result.getErrors()) {
+                message = error.getMessage();
+                break;
+            }
+            return ZMQNBICodec.encodeError(type, opId(input), ErrorTypeIndex.MESSAGE_WITH_NO_BODY, message);
+        } catch (Exception e) {
+            ErrorLog.logError("ZMQNBIServerPool - binary request failed " + e.getMessage(), e.getStackTrace());
+            return ZMQNBICodec.encodeError(type, opId(input), ErrorTypeIndex.MESSAGE_WITH_NO_BODY,
+                    "SYSTEM - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the ok-notify-follows results of an accepted request.
+     */
+    private static List<ResultBody> accepted(DataObject input) {
+        List<ResultBody> retVal = new ArrayList<ResultBody>();
+        if (input instanceof ConfigureInput) {
+            retVal.add(new ConfigureOutputBuilder()
+                    .setOpId(((ConfigureInput) input).getOpId())
+                    .setResult(Result.OkNotifyFollows)
+                    .build());
+        } else if (((ConfigureBundlesInput) input).getBundles() != null) {
+            for (Bundles op : ((ConfigureBundlesInput) input).getBundles()) {
+                retVal.add(new BundlesBuilder()
+                        .setOpId(op.getOpId())
+                        .setKey(new BundlesKey(op.getOpId()))
+                        .setResult(Result.OkNotifyFollows)
+                        .build());
+            }
+        }
+        return retVal;
+    }
+
+    private static long opId(DataObject input) {
+        return (input instanceof ConfigureInput && ((ConfigureInput) input).getOpId() != null) ?
+                ((ConfigureInput) input).getOpId().getValue().longValue() : 0L;
     }
 
     /**
      * Server Task.
      */
-    private static class server_task implements Runnable {
-        int requestHanlderPoolSize;
+    private class server_task implements Runnable {
+        int serverPoolsize;
 
         /**
          * Constructor.
          *
-         * @param requestHanlderPoolSize - Request Handler Pool Size
+         * @param serverPoolsize - Server Pool Size
          */
-        public server_task(int requestHanlderPoolSize) {
-            this.requestHanlderPoolSize = requestHanlderPoolSize;
+        public server_task(int serverPoolsize) {
+            this.serverPoolsize = serverPoolsize;
         }
 
         @Override
         public void run() {
-            ZContext ctx = new ZContext();
-
             //  Frontend socket talks to clients over TCP
-            Socket frontend = ctx.createSocket(ZMQ.ROUTER);
-            frontend.bind("tcp://*:5570");
+            Socket frontend = context.socket(ZMQ.ROUTER);
+            frontend.bind(serverUri);
 
             //  Backend socket talks to workers over inproc
-            Socket backend = ctx.createSocket(ZMQ.DEALER);
-            backend.bind("inproc://backend");
-
-            //  Launch pool of worker threads, precise number is not critical
-            for (int threadNbr = 0; threadNbr < requestHanlderPoolSize; threadNbr++) {
-                try {
-                    new Thread(new server_worker(ctx)).start();
-                } catch (Exception e) {
-                    // Does nothing as a warning was already issued.
-                }
+            Socket backend = context.socket(ZMQ.DEALER);
+            backend.bind(inprocUri);
+
+            for (int threadNbr = 0; threadNbr < serverPoolsize; threadNbr++) {
+                new Thread(new server_worker(), "fpc-zmq-nbi-worker-" + threadNbr).start();
             }
 
-            //  Connect backend to frontend via a proxy
-            ZMQ.proxy(frontend, backend, null);
+            //  Connect backend to frontend via a proxy; returns when the context is terminated
+            try {
+                ZMQ.proxy(frontend, backend, null);
+            } catch (ZMQException e) {
+                // Context terminated
+            }
 
             LOG.info("ZMQNBIServerPool - Exiting MAIN server thread");
-            frontend.unbind("tcp://*:5570");
-            backend.unbind("inproc://backend");
-            ctx.destroySocket(frontend);
-            ctx.destroySocket(backend);
-            ctx.destroy();
+            frontend.setLinger(0);
+            backend.setLinger(0);
+            frontend.close();
+            backend.close();
+        }
+    }
+
+    /**
+     * A reply ready to be sent by the worker owning the socket.
+     */
+    private static final class Reply {
+        final ZMsg envelope;
+        final long startNanos;
+        byte[] body;
+
+        Reply(ZMsg envelope, long startNanos) {
+            this.envelope = envelope;
+            this.startNanos = startNanos;
         }
     }
 
     /**
      * Worker Class.
      */
-    private static class server_worker implements Runnable {
-        private ZContext ctx;
-        private JSONRestconfService service;
+    private class server_worker implements Runnable {
+        private final MpscArrayQueue<Reply> completions = new MpscArrayQueue<Reply>(MAX_IN_FLIGHT);
+        private final FpcagentDispatcher dispatcher = new FpcagentDispatcher();
+        private LatencyHistogram decodeTime;
+        private LatencyHistogram dispatchTime;
+        private LatencyHistogram queueTime;
+        private LatencyHistogram invokeTime;
+        private LatencyHistogram totalTime;
+        private int inFlight;
+
+        @Override
+        public void run() {
+            Metrics metrics = Metrics.getInstance();
+            if (metrics != null) {
+                decodeTime = metrics.getNbiHistogram(STAGE_DECODE);
+                dispatchTime = metrics.getNbiHistogram(STAGE_DISPATCH);
+                queueTime = metrics.getNbiHistogram(STAGE_QUEUE);
+                invokeTime = metrics.getNbiHistogram(STAGE_INVOKE);
+                totalTime = metrics.getNbiHistogram(STAGE_TOTAL);
+            }
+
+            Socket worker = context.socket(ZMQ.DEALER);
+            worker.connect(inprocUri);
+            ZMQ.Poller poller = new ZMQ.Poller(1);
+            poller.register(worker, ZMQ.Poller.POLLIN);
+
+            try {
+                while (run) {
+                    if (inFlight < MAX_IN_FLIGHT) {
+                        poller.poll((inFlight > 0) ? PENDING_POLL_MS : IDLE_POLL_MS);
+                        if (poller.pollin(0)) {
+                            ZMsg msg;
+                            while (inFlight < MAX_IN_FLIGHT &&
+                                    (msg = ZMsg.recvMsg(worker, ZMQ.DONTWAIT)) != null) {
+                                inFlight++;
+                                handle(worker, msg);
+                            }
+                        }
+                    } else {
+                        Thread.sleep(PENDING_POLL_MS);
+                    }
+                    Reply reply;
+                    while ((reply = completions.poll()) != null) {
+                        send(worker, reply);
+                    }
+                }
+            } catch (ZMQException e) {
+                // Context terminated
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker.setLinger(0);
+            worker.close();
+        }
 
         /**
-         * Constructor.
-         *
-         * @param ctx - ZMQ Context
-         * @throws Exception - Throws Exception
+         * Handles a request.  The reply is sent inline if it is available, otherwise it is queued
+         * to the completions once ready.
          */
-        public server_worker(ZContext ctx) throws Exception {
-            this.ctx = ctx;
-            Object[] instances =  FpcCodecUtils.getGlobalInstances(JSONRestconfService.class, this);
-            service = (instances != null) ? (JSONRestconfService) instances[0] : null;
-            if (service == null) {
-                LOG.error("JSONRestconfService was NOT available at the moment of the worker's constructor");
-                throw new Exception();
+        private void handle(Socket worker, ZMsg msg) {
+            long start = System.nanoTime();
+            //  A DEALER socket gives us the address envelope and message
+            ZFrame content = msg.pollLast();
+            Reply reply = new Reply(msg, start);
+            if (content == null) {
+                msg.destroy();
+                inFlight--;
+                return;
+            }
+            byte[] request = content.getData();
+            content.destroy();
+
+            if (ZMQNBICodec.isBinary(request)) {
+                handleBinary(worker, reply, request);
+            } else {
+                handleJson(reply, request);
             }
         }
 
-        @Override
-        public void run() {
-            Socket worker = ctx.createSocket(ZMQ.DEALER);
-            worker.connect("inproc://backend");
-
-            while (!Thread.currentThread().isInterrupted()) {
-                //  A DEALER socket gives us the address envelope and message
-                ZMsg msg = ZMsg.recvMsg(worker);
-                long ts1 = 0, ts0 = System.currentTimeMillis();
-                ZFrame address = msg.pop();
-                ZFrame content = msg.pop();
-                ZFrame response = null;
-                assert (content != null);
-                msg.destroy();
+        /**
+         * Decodes a binary request and dispatches it.
+         */
+        private void handleBinary(Socket worker, final Reply reply, byte[] request) {
+            byte type = request[2];
+            final DataObject input;
+            final Future<? extends RpcResult<?>> result;
+            try {
+                type = ZMQNBICodec.getType(request);
+                input = decodeBinary(type, request);
+                long decoded = record(decodeTime, reply.startNanos);
+                result = dispatchBinary(dispatcher, input);
+                record(dispatchTime, decoded);
+            } catch (IllegalArgumentException e) {
+                reply.body = ZMQNBICodec.encodeError(type, ZMQNBICodec.peekOpId(request),
+                        ErrorTypeIndex.MALFORMED_MESSAGE, "PROTOCOL - " + e.getMessage());
+                send(worker, reply);
+                return;
+            }
 
-                long ts2 = System.currentTimeMillis();
-                String request = new String(content.getData());
-                content.destroy();
-                long ts3 = System.currentTimeMillis();
-                assert (request != null);
-                long ts4 = System.currentTimeMillis();
-                int index = request.indexOf(' ');
-                long ts5 = System.currentTimeMillis();
-                try {
-                    Optional<String> output = service.invokeRpc(request.substring(0, index),
-                            Optional.of(request.substring(index+1)));
-
-                    ts1 = System.currentTimeMillis();
-
-                    if (output.isPresent()) {
-                        response = new ZFrame(output.get());
+            if (result.isDone()) {
+                reply.body = binaryReply(type, input, result);
+                send(worker, reply);
+                return;
+            }
+            final byte replyType = type;
+            try {
+                requestHandlers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        reply.body = binaryReply(replyType, input, result);
+                        completions.offer(reply);
                     }
-                } catch (OperationFailedException e) {
-                    if (e.getErrorList().get(0) instanceof RpcError) {
-                        RpcError rpcError = (RpcError) e.getErrorList().get(0);
-                        String errVal = "{\"errors\":{\"error\":[{\"error-type\":\"" + rpcError.getErrorType().toString() +
-                                "\",\"error-tag\":\"" + rpcError.getTag() +
-                                "\",\"error-message\":\"" + rpcError.getMessage() +
-                                "\",\"error-info\":\"<severity>" + rpcError.getSeverity().toString() + "</severity>\"}]}}";
-                        response = new ZFrame(errVal);
+                });
+            } catch (RejectedExecutionException e) {
+                reply.body = ZMQNBICodec.encodeError(type, ZMQNBICodec.peekOpId(request),
+                        ErrorTypeIndex.ACTIVATION_QUEUE_FULL, "SYSTEM - Northbound is shutting down");
+                send(worker, reply);
+            }
+        }
+
+        /**
+         * Invokes a JSON request on the request handler pool.
+         */
+        private void handleJson(final Reply reply, final byte[] request) {
+            try {
+                requestHandlers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long started = record(queueTime, reply.startNanos);
+                        reply.body = jsonReply(new String(request, StandardCharsets.UTF_8));
+                        record(invokeTime, started);
+                        completions.offer(reply);
                     }
+                });
+            } catch (RejectedExecutionException e) {
+                reply.envelope.destroy();
+                inFlight--;
+            }
+        }
+
+        /**
+         * Sends a reply (if any) with the envelope of its request.
+         */
+        private void send(Socket worker, Reply reply) {
+            inFlight--;
+            if (reply.body == null) {
+                reply.envelope.destroy();
+                return;
+            }
+            reply.envelope.add(new ZFrame(reply.body));
+            reply.envelope.send(worker);
+            record(totalTime, reply.startNanos);
+        }
+
+        /**
+         * Invokes a JSON request ("rpc-name input").
+         * @return the JSON reply or null if there is none
+         */
+        private byte[] jsonReply(String request) {
+            int index = request.indexOf(' ');
+            JSONRestconfService restconf = getService();
+            if (restconf == null) {
+                ErrorLog.logError("ZMQNBIServerPool - JSONRestconfService is not available");
+                return null;
+            }
+            try {
+                Optional<String> output = (index > 0) ?
+                        restconf.invokeRpc(request.substring(0, index), Optional.of(request.substring(index + 1))) :
+                        restconf.invokeRpc(request, Optional.<String>absent());
+                return (output.isPresent()) ? output.get().getBytes(StandardCharsets.UTF_8) : null;
+            } catch (OperationFailedException e) {
+                if (!e.getErrorList().isEmpty() && e.getErrorList().get(0) instanceof RpcError) {
+                    RpcError rpcError = (RpcError) e.getErrorList().get(0);
+                    String errVal = "{\"errors\":{\"error\":[{\"error-type\":\"" + rpcError.getErrorType().toString() +
+                            "\",\"error-tag\":\"" + rpcError.getTag() +
+                            "\",\"error-message\":\"" + rpcError.getMessage() +
+                            "\",\"error-info\":\"<severity>" + rpcError.getSeverity().toString() + "</severity>\"}]}}";
+                    return errVal.getBytes(StandardCharsets.UTF_8);
                 }
-                if (response != null) {
-                    address.send(worker, ZFrame.REUSE + ZFrame.MORE);
-                    response.send(worker, ZFrame.DONTWAIT);
-                }
-                // TODO - Turn ZNQ NBI invocation time into a metric
-                LOG.info("Total Invocation Time = {}\n", (ts1-ts0));
-                LOG.info("Invocation Times = {}\n, \t{}\n, \t{}\n, \t{}\t, \t{}\n", (ts2-ts0), (ts3-ts2),
-                        (ts4-ts3), (ts5-ts4), (ts1-ts5));
+            } catch (Exception e) {
+                ErrorLog.logError("ZMQNBIServerPool - JSON request failed " + e.getMessage(), e.getStackTrace());
+            }
+            return null;
+        }
 
+        /**
+         * Records the time since a stage started.
+         * @return now, i.e. the start of the next stage
+         */
+        private long record(LatencyHistogram h, long sinceNanos) {
+            long now = System.nanoTime();
+            if (h != null) {
+                h.record((now - sinceNanos) / 1000L);
             }
-            worker.disconnect("inproc://backend");
-            worker.close();
-            ctx.destroySocket(worker);
+            return now;
         }
     }
 }
@@ -8,6 +8,8 @@
 package org.opendaylight.fpc.impl.zeromq;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -17,6 +19,7 @@ import org.opendaylight.fpc.dpn.DPNStatusIndication;
 import org.opendaylight.fpc.monitor.EventMonitorMgr;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.Worker;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
@@ -66,9 +69,12 @@ public class ZMQSBMessageWorker implements Worker {
 	 * @param dpnStatus - DPN Status Indication message received from the DPN
 	 */
 	protected void sendHelloReply(DPNStatusIndication dpnStatus){
-	    	if(DpnAPIListener.getTopicFromNode(dpnStatus.getKey()) != null){
-		    	ByteBuffer bb = ByteBuffer.allocate(9+nodeId.length()+networkId.length());
-		        bb.put(DpnAPI2.toUint8(DpnAPIListener.getTopicFromNode(dpnStatus.getKey())))
+	    	Short topic = DpnAPIListener.getTopicFromNode(dpnStatus.getKey());
+	    	if(topic != null){
+	    		// Echo the batched frame capability only to a DPN that announced it
+	    		boolean batching = sock.getBatchPolicy().isEnabled(topic);
+		    	ByteBuffer bb = ByteBuffer.allocate(9+nodeId.length()+networkId.length()+(batching ? 1 : 0));
+		        bb.put(DpnAPI2.toUint8(topic))
 		            .put(HELLO_REPLY)
 		            .put(DpnAPI2.toUint8(ZMQSBListener.getControllerTopic()))
 		            .put(DpnAPI2.toUint32(ZMQSBListener.getControllerSourceId()))
@@ -76,6 +82,9 @@ public class ZMQSBMessageWorker implements Worker {
 		            .put(nodeId.getBytes())
 		            .put(DpnAPI2.toUint8((short)networkId.length()))
 		            .put(networkId.getBytes());
+		        if (batching) {
+		        	bb.put(ZMQBatchFrame.HELLO_CAPABILITY);
+		        }
 
 		        try {
 					sock.getBlockingQueue().put(bb);
@@ -87,24 +96,44 @@ public class ZMQSBMessageWorker implements Worker {
 
 
 
+	/**
+	 * Decodes and dispatches a single southbound message.
+	 * @param contents - message received from the DPN
+	 */
+	private void process(byte[] contents) {
+		Map.Entry<FpcDpnId, Object> entry = dpnApi.decode(contents);
+	 	if(entry!=null){
+	 		if (entry.getValue() instanceof DownlinkDataNotification) {
+	 			EventMonitorMgr.processEvent(entry.getKey(),(DownlinkDataNotification)entry.getValue());
+	 		} else if (entry.getValue()  instanceof DPNStatusIndication) {
+	 			DPNStatusIndication dpnStatus = (DPNStatusIndication)entry.getValue();
+	 			EventMonitorMgr.processEvent(entry.getKey(),dpnStatus);
+	 			if(dpnStatus.getStatus() == DPNStatusIndication.Status.HELLO){
+	 	    		sendHelloReply(dpnStatus);
+	 	    	}
+	 		}
+	 	}
+	}
+
 	@Override
 	public void run() {
 		this.run = true;
+		List<byte[]> batch = new ArrayList<byte[]>();
 		try {
             while(run) {
                 byte[] contents = blockingQueue.take();
-				Map.Entry<FpcDpnId, Object> entry = dpnApi.decode(contents);
-    		 	if(entry!=null){
-    		 		if (entry.getValue() instanceof DownlinkDataNotification) {
-    		 			EventMonitorMgr.processEvent(entry.getKey(),(DownlinkDataNotification)entry.getValue());
-    		 		} else if (entry.getValue()  instanceof DPNStatusIndication) {
-    		 			DPNStatusIndication dpnStatus = (DPNStatusIndication)entry.getValue();
-    		 			EventMonitorMgr.processEvent(entry.getKey(),dpnStatus);
-    		 			if(dpnStatus.getStatus() == DPNStatusIndication.Status.HELLO){
-    		 	    		sendHelloReply(dpnStatus);
-    		 	    	}
-    		 		}
-    		 	}
+                if (ZMQBatchFrame.isBatch(contents)) {
+                	if (!ZMQBatchFrame.unpack(contents, batch)) {
+                		ErrorLog.logError("Malformed batched frame received on topic " + (contents[0] & 0xFF)
+                				+ " - processing " + batch.size() + " messages");
+                	}
+                	for (byte[] message : batch) {
+                		process(message);
+                	}
+                	batch.clear();
+                } else {
+                	process(contents);
+                }
             }
         } catch (InterruptedException e) {
         	ErrorLog.logError(e.getStackTrace());
@@ -9,13 +9,14 @@ package org.opendaylight.fpc.monitor;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.opendaylight.fpc.activation.cache.StorageCacheUtils;
 import org.opendaylight.fpc.dpn.DPNStatusIndication;
+import org.opendaylight.fpc.dpn.DpnAssignmentMgr;
+import org.opendaylight.fpc.dpn.DpnHolder;
 import org.opendaylight.fpc.impl.FpcProvider;
 import org.opendaylight.fpc.impl.FpcServiceImpl;
 import org.opendaylight.fpc.notification.Notifier;
@@ -29,26 +30,33 @@ import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev16080
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.report.config.event.config.value.EventsConfig;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.report.config.event.config.value.EventsConfigIdent;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.base.Preconditions;
 
 /**
  * Event Monitor Manager.
+ *
+ * Registrations may be changed by any Monitor Worker while events are processed.  Event
+ * destinations are kept in a SubscriptionIndex so event processing only performs lock free reads
+ * of precomputed destination lists.
  */
 public class EventMonitorMgr {
+    private static final Logger LOG = LoggerFactory.getLogger(EventMonitorMgr.class);
     /**
      * Map of Client Registrations
      */
     static public Map<String, Map.Entry<ClientIdentifier, Object>> registrations =
-            new HashMap<String, Map.Entry<ClientIdentifier, Object>>();
+            new ConcurrentHashMap<String, Map.Entry<ClientIdentifier, Object>>();
     /**
-     * Map of Tenants to Uris
+     * Index of Tenants and Events to Uris
      */
-    static public Map<String, Map<Long, Map<Uri, Long>>> tenant2Uris =
-            new HashMap<String, Map<Long, Map<Uri, Long>>>();
+    static public final SubscriptionIndex subscriptions = new SubscriptionIndex();
     /**
      * Map of imsi to Tenants
      */
-    static public Map<String, String> imsi2Tenants = new HashMap<String, String>();
+    static public Map<String, String> imsi2Tenants = new ConcurrentHashMap<String, String>();
 
     /**
      * Indicates if this Manager has the specified Monitor.
@@ -73,23 +81,8 @@ public class EventMonitorMgr {
         FpcIdentity tenantId = tm.getTenant().getTenantId();
         registrations.put(monitorId.toString(), new
                 AbstractMap.SimpleEntry<ClientIdentifier, Object>(clientId, config));
-        Map<Long, Map<Uri, Long>> tenantRegistrations = tenant2Uris.get(tenantId.toString());
-        if (tenantRegistrations == null) {
-            tenantRegistrations = new  HashMap<Long, Map<Uri, Long>>();
-            tenant2Uris.put(tenantId.toString(), tenantRegistrations);
-        }
-        for (Long eventId : events) {
-            Map<Uri, Long> uriMaps = tenantRegistrations.get(eventId);
-            if (uriMaps == null) {
-                uriMaps = new HashMap<Uri, Long>();
-                tenantRegistrations.put(eventId, uriMaps);
-            }
-            Long refs = uriMaps.get(uri);
-            if (refs != null) {
-                refs++;
-            } else {
-                uriMaps.put(uri, 1L);
-            }
+        if (uri != null) {
+            subscriptions.subscribe(tenantId.toString(), events, uri);
         }
         StorageCacheUtils.writeMonitor(tm.getSc(), monitorId, null, config);
     }
@@ -134,20 +127,9 @@ public class EventMonitorMgr {
      */
     private static void deregister(ClientIdentifier clientId, List<Long> events) {
         Uri uri = FpcServiceImpl.getNotificationUri(clientId);
-        FpcIdentity tenantId = TenantManager.getTenantManagerForClient(clientId).getTenant().getTenantId();
-        Map<Long, Map<Uri, Long>> tenantRegistrations = tenant2Uris.get(tenantId.toString());
-        if (tenantRegistrations != null) {
-            for (Long eventId : events) {
-                Map<Uri, Long> uriMaps = tenantRegistrations.get(eventId);
-                if (uriMaps != null) {
-                    Long refs = uriMaps.get(uri);
-                    if (refs == 1L) {
-                        uriMaps.remove(uri);
-                    } else {
-                        uriMaps.put(uri, refs-1);
-                    }
-                }
-            }
+        TenantManager tm = TenantManager.getTenantManagerForClient(clientId);
+        if (uri != null && tm != null) {
+            subscriptions.unsubscribe(tm.getTenant().getTenantId().toString(), events, uri);
         }
     }
 
@@ -156,8 +138,8 @@ public class EventMonitorMgr {
      * @param monitorId - Monitor Identity
      */
     public static void deregister(FpcIdentity monitorId) {
-        if (registrations.containsKey(monitorId.toString())) {
-            Map.Entry<ClientIdentifier, Object> objPair = registrations.get(monitorId.toString());
+        Map.Entry<ClientIdentifier, Object> objPair = registrations.remove(monitorId.toString());
+        if (objPair != null) {
             if (objPair.getValue() instanceof EventsConfigIdent) {
                 EventsConfigIdent identConfig = (EventsConfigIdent) objPair.getValue();
                 List<Long> values = new ArrayList<Long>();
@@ -170,9 +152,10 @@ public class EventMonitorMgr {
             } else if (objPair.getValue() instanceof EventsConfig) {
                 deregister(objPair.getKey(), ((EventsConfig)objPair.getValue()).getEventIds());
             }
-            registrations.remove(monitorId).toString();
-            TenantManager tm = TenantManager.getTenantManagerForClient((ClientIdentifier)objPair.getValue());
-            StorageCacheUtils.removeMonitor(tm.getSc(), monitorId);
+            TenantManager tm = TenantManager.getTenantManagerForClient(objPair.getKey());
+            if (tm != null) {
+                StorageCacheUtils.removeMonitor(tm.getSc(), monitorId);
+            }
         }
     }
 
@@ -180,29 +163,32 @@ public class EventMonitorMgr {
      * Returns the Notificaiton Uris for given tenant and event type.
      * @param tenantId - Tenant Identity
      * @param eventType - Event Type
-     * @return A collect of Uris associated with the input, null otherwise.
+     * @return Uris subscribed to the event; an empty array if there are none.  The array MUST NOT
+     *  be modified.
      */
-    private static Collection<Uri> getUris(String tenantId, Long eventType) {
-        if (tenant2Uris.get(tenantId) != null) {
-            if (tenant2Uris.get(tenantId).get(eventType) != null) {
-                return tenant2Uris.get(tenantId).get(eventType).keySet();
-            }
-        }
-        return null;
+    public static Uri[] getUris(String tenantId, long eventType) {
+        return subscriptions.get(tenantId, eventType);
     }
 
     /**
-     * Processes notification generation for the specified event.
+     * Processes notification generation for the specified event.  A DDN is only delivered to the
+     * stream of the Client owning the session; the Client acknowledges it once.
      * @param dpn - Dataplane Node that originated the event.
      * @param ddn - Downlink Data Notification
      */
     public static void processEvent(FpcDpnId dpn, DownlinkDataNotification ddn) {
     	Notifier.issueDownlinkDataNotification(ddn);
-//    	ArrayList<Uri> uris = new ArrayList<Uri>();
-//    	if(FpcServiceImpl.getNotificationUri(ddn.getClientId()) != null){
-//    		uris.add(FpcServiceImpl.getNotificationUri(ddn.getClientId()));
-//        	Notifier.issueDownlinkDataNotification(uris, ddn);
-//    	}
+    }
+
+    /**
+     * Retrieves the DPN Holder of a DPN of the default Tenant.
+     * @param dpn - DPN Identity
+     * @return DPN Holder or null if the DPN is unknown
+     */
+    private static DpnHolder getDpnHolder(FpcDpnId dpn) {
+        TenantManager tenantMgr = TenantManager.getTenantManager(
+                new FpcIdentity(FpcProvider.getInstance().getConfig().getDefaultTenantId()));
+        return (dpn != null && tenantMgr != null) ? tenantMgr.getDpnInfo().get(dpn.toString()) : null;
     }
 
     /**
@@ -212,7 +198,19 @@ public class EventMonitorMgr {
      */
     public static void processEvent(FpcDpnId dpn, DPNStatusIndication dpnStatus) {
         // TODO - We need further guidance DPNStatusIndication on use cases
+    	if(dpnStatus.getStatus() == DPNStatusIndication.Status.OVERLOAD_INDICATION){
+    		DpnHolder holder = getDpnHolder(dpn);
+    		if (holder != null) {
+    			DpnAssignmentMgr.markOverloaded(holder);
+    			LOG.warn("DPN {} reported an overload and is avoided by DPN selection", dpn);
+    		}
+    		return;
+    	}
     	if(dpnStatus.getStatus() == DPNStatusIndication.Status.HELLO){
+    		DpnHolder holder = getDpnHolder(dpn);
+    		if (holder != null) {
+    			DpnAssignmentMgr.clearOverload(holder);
+    		}
             TenantManager.getTenantManager(new FpcIdentity(FpcProvider.getInstance().getConfig().getDefaultTenantId())).addDpnToDataStore(dpnStatus.getKey().split("/")[0], dpnStatus.getKey().split("/")[1]);
     	}
     	if(dpnStatus.getStatus() == DPNStatusIndication.Status.BYE){
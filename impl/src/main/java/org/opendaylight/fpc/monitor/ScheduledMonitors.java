@@ -8,19 +8,28 @@
 package org.opendaylight.fpc.monitor;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.opendaylight.fpc.activation.cache.StorageCacheUtils;
 import org.opendaylight.fpc.activation.cache.StorageCache;
 import org.opendaylight.fpc.impl.FpcServiceImpl;
 import org.opendaylight.fpc.notification.Notifier;
 import org.opendaylight.fpc.tenant.TenantManager;
+import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
+import org.opendaylight.fpc.utils.HashedTimingWheel.Timeout;
 import org.opendaylight.fpc.utils.NameResolver;
+import org.opendaylight.fpc.utils.NamedThreadFactory;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.MonitorNotificationBuilder;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.monitor.notification.monitor.notification.value.SimpleMonitorBuilder;
@@ -38,14 +47,30 @@ import com.google.common.base.Preconditions;
 
 /**
  * Scheduled Monitors Manager.
+ *
+ * Monitors are grouped by (Storage Cache, Target, Period) for Periodic monitors and by (Storage
+ * Cache, Target, Report Time) for Scheduled monitors.  A group is read and serialized once when it
+ * fires and the report is sent to every monitor of the group.  All groups share one hashed timing
+ * wheel with a TICK_MS resolution; the reads run on the monitor thread pool.
+ *
+ * A periodic monitor is only notified when the Target's value changed since its previous report;
+ * a monitor joining an existing group is first sent the group's latest value.  Probes always carry
+ * the value.
  */
 public class ScheduledMonitors {
     static public Long ScheduleHorizon = 600000L; // 60 Seconds
+    private static final long TICK_MS = 100L;
+    private static final int TICKS_PER_WHEEL = 1024;
     static private ScheduledMonitors em = new ScheduledMonitors();
     static private NameResolver resolver = NameResolver.get();
     static private FpcCodecUtils codecs = FpcCodecUtils.get();
-    static public Map<String, ScheduledEvent> registrations = new HashMap<String, ScheduledEvent>();
-    static private ScheduledThreadPoolExecutor threadPool;
+    static public Map<String, ScheduledEvent> registrations = new ConcurrentHashMap<String, ScheduledEvent>();
+    static private final Map<GroupKey, Group> groups = new ConcurrentHashMap<GroupKey, Group>();
+    static private final LongAdder reads = new LongAdder();
+    static private final LongAdder serializations = new LongAdder();
+    static private final LongAdder overruns = new LongAdder();
+    static private ExecutorService threadPool;
+    static private HashedTimingWheel<Group> wheel;
 
     /**
      * Initializer
@@ -53,18 +78,135 @@ public class ScheduledMonitors {
      */
     static public void init(int threadPoolSize) {
         Preconditions.checkArgument((threadPoolSize != 0), "The ScheduledMonitors threadpool size CANNOT be zero");
-        threadPool = new ScheduledThreadPoolExecutor(threadPoolSize);
+        threadPool = Executors.newFixedThreadPool(threadPoolSize, new NamedThreadFactory("fpc-scheduled-monitors"));
+        wheel = new HashedTimingWheel<Group>("ScheduledMonitors", TICK_MS, TimeUnit.MILLISECONDS,
+                TICKS_PER_WHEEL, new HashedTimingWheel.ExpiryHandler<Group>() {
+                    @Override
+                    public void expired(List<Group> items) {
+                        dispatch(items);
+                    }
+                });
+    }
+
+    /**
+     * Stops the monitors.
+     */
+    static public void close() {
+        if (wheel != null) {
+            wheel.close();
+        }
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Identity of a monitor group.
+     */
+    private static final class GroupKey {
+        final StorageCache sc;
+        final String target;
+        final long period;
+        final long reportTime;
+
+        GroupKey(StorageCache sc, String target, long period, long reportTime) {
+            this.sc = sc;
+            this.target = target;
+            this.period = period;
+            this.reportTime = reportTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * (31 * System.identityHashCode(sc) + target.hashCode()) + Long.hashCode(period))
+                    ^ Long.hashCode(reportTime);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) obj;
+            return sc == other.sc && period == other.period && reportTime == other.reportTime
+                    && target.equals(other.target);
+        }
     }
 
     /**
-     * Scheduled Event Task.
+     * Report of a group and its version within the group.
      */
-    public class ScheduledEvent implements Runnable, AutoCloseable {
+    private static final class Report {
+        final ReportValue value;
+        final long version;
+
+        Report(ReportValue value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Monitors sharing a Target and a schedule.
+     */
+    private static final class Group {
+        final GroupKey key;
+        final YangInstanceIdentifier yiid;
+        final List<ScheduledEvent> monitors = new CopyOnWriteArrayList<ScheduledEvent>();
+        final AtomicBoolean running = new AtomicBoolean(false);
+        long nextReportMs;
+        Timeout<Group> timeout;
+        // Last value read, only accessed by the running task
+        DataObject lastValue;
+        // Last report, published for the monitors joining the group
+        volatile Report latest;
+
+        Group(GroupKey key, YangInstanceIdentifier yiid) {
+            this.key = key;
+            this.yiid = yiid;
+        }
+
+        /**
+         * Reads the Target, serializing it only if it changed, and reports to the monitors.
+         */
+        void report() {
+            try {
+                reads.increment();
+                Map.Entry<InstanceIdentifier<?>, DataObject> val = key.sc.readAsPair(yiid);
+                if (val == null) {
+                    return;
+                }
+                DataObject value = val.getValue();
+                Report report = latest;
+                if (report == null || (value != lastValue && !value.equals(lastValue))) {
+                    serializations.increment();
+                    report = new Report(new AnyDataBuilder()
+                            .setData(codecs.jsonStringFromDataObject(val.getKey(), value))
+                            .build(), (report == null) ? 0L : report.version + 1);
+                    lastValue = value;
+                    latest = report;
+                }
+                for (ScheduledEvent evt : monitors) {
+                    evt.report(report.value, report.version);
+                }
+            } catch (Exception e) {
+                ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Scheduled Event.
+     */
+    public class ScheduledEvent implements AutoCloseable {
         final Uri uri;
         final YangInstanceIdentifier yiid;
         final StorageCache sc;
         final SimpleMonitorBuilder smb;
-        ScheduledFuture<ScheduledEvent> schedFuture = null;
+        Group group;
+        long reportedVersion = -1L;
 
         /**
          * Constructor.
@@ -83,36 +225,129 @@ public class ScheduledMonitors {
         }
 
         /**
-         * Issues a Notification.
+         * Issues a Notification carrying the current value of the Target.
          */
         public void issueNotification() {
             Map.Entry<InstanceIdentifier<?>, DataObject> val = sc.readAsPair(yiid);
             if (val != null) {
                 String retVal = codecs.jsonStringFromDataObject(val.getKey(), val.getValue());
-                smb.setReportValue((ReportValue) new AnyDataBuilder().setData(retVal));
-                Notifier.issueBlobNotification(Arrays.asList(uri), new MonitorNotificationBuilder()
-                        .setMonitorNotificationValue(smb.build()).build());
+                send(new AnyDataBuilder().setData(retVal).build());
             }
         }
 
         /**
-         * Sets the future for this event.
-         * @param future - ScheduledFuture that will receive the data when the task is exectued.
+         * Issues the report of a group unless the monitor already reported this or a later version.
+         * @param report - value of the Target
+         * @param version - version of the value within the group
          */
-        protected void setFuture(ScheduledFuture<ScheduledEvent> future) {
-            this.schedFuture = future;
+        synchronized void report(ReportValue report, long version) {
+            if (version <= reportedVersion) {
+                return;
+            }
+            send(report);
+            reportedVersion = version;
+        }
+
+        private synchronized void send(ReportValue report) {
+            smb.setReportValue(report);
+            Notifier.issueBlobNotification(Arrays.asList(uri), new MonitorNotificationBuilder()
+                    .setMonitorNotificationValue(smb.build()).build());
         }
 
         @Override
         public void close() {
-            schedFuture.cancel(false);
+            leave(this);
             StorageCacheUtils.removeMonitor(this.sc, this.smb.getMonitorId());
         }
+    }
+
+    /**
+     * Adds a monitor to its group, creating and scheduling the group if needed.
+     * @param evt - monitor
+     * @param period - report period (0 for a single report)
+     * @param reportTime - time of the single report
+     * @return true if the group was created
+     */
+    private static boolean join(ScheduledEvent evt, long period, long reportTime) {
+        GroupKey key = new GroupKey(evt.sc, resolver.extractString(evt.smb.getTarget()), period, reportTime);
+        synchronized (groups) {
+            Group group = groups.get(key);
+            boolean created = (group == null);
+            if (created) {
+                group = new Group(key, evt.yiid);
+                groups.put(key, group);
+                group.nextReportMs = (period > 0) ? System.currentTimeMillis() : reportTime;
+                arm(group);
+            }
+            evt.group = group;
+            group.monitors.add(evt);
+            return created;
+        }
+    }
 
-        @Override
-        public void run() {
-            issueNotification();
-            registrations.remove(smb.getMonitorId().toString());
+    /**
+     * Removes a monitor from its group; the last monitor cancels the group.
+     * @param evt - monitor
+     */
+    private static void leave(ScheduledEvent evt) {
+        synchronized (groups) {
+            Group group = evt.group;
+            if (group == null) {
+                return;
+            }
+            evt.group = null;
+            group.monitors.remove(evt);
+            if (group.monitors.isEmpty() && groups.remove(group.key, group) && group.timeout != null) {
+                group.timeout.cancel();
+            }
+        }
+    }
+
+    /**
+     * Schedules the next report of a group.
+     * @param group - group
+     */
+    private static void arm(Group group) {
+        group.timeout = wheel.schedule(group, Math.max(0L, group.nextReportMs - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands the groups due in a tick to the thread pool and re-arms the periodic ones.  Runs on the
+     * wheel thread.
+     * @param items - due groups
+     */
+    private static void dispatch(List<Group> items) {
+        for (final Group group : items) {
+            synchronized (groups) {
+                if (groups.get(group.key) != group) {
+                    continue;
+                }
+                if (group.key.period > 0) {
+                    // Fixed rate; a report that is still running when the next one is due is skipped
+                    group.nextReportMs += group.key.period;
+                    arm(group);
+                } else {
+                    groups.remove(group.key, group);
+                    for (ScheduledEvent evt : group.monitors) {
+                        registrations.remove(evt.smb.getMonitorId().toString(), evt);
+                    }
+                }
+            }
+            if (!group.running.compareAndSet(false, true)) {
+                overruns.increment();
+                continue;
+            }
+            try {
+                threadPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        group.report();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                group.running.set(false);
+            }
         }
     }
 
@@ -138,9 +373,7 @@ public class ScheduledMonitors {
                 .setMonitorId(monitorId)
                 .setTarget(target)
                 .setEventConfigValue(conf));
-        ScheduledFuture<?> future = threadPool.schedule(evt, conf.getReportTime() - System.currentTimeMillis(),
-                TimeUnit.MILLISECONDS);
-        evt.setFuture((ScheduledFuture<ScheduledEvent>) future);
+        join(evt, 0L, conf.getReportTime());
     }
 
     /**
@@ -152,12 +385,24 @@ public class ScheduledMonitors {
      */
     static public void register(FpcIdentity monitorId, ClientIdentifier clientId, FpcIdentity target,
             PeriodicConfig conf) {
-        ScheduledEvent evt = em.new ScheduledEvent(clientId, new SimpleMonitorBuilder()
+        final ScheduledEvent evt = em.new ScheduledEvent(clientId, new SimpleMonitorBuilder()
                 .setMonitorId(monitorId)
                 .setTarget(target)
                 .setEventConfigValue(conf));
-        ScheduledFuture<?> future = threadPool.scheduleAtFixedRate(evt, 0, conf.getPeriod(), TimeUnit.MILLISECONDS);
-        evt.setFuture((ScheduledFuture<ScheduledEvent>) future);
+        if (!join(evt, Math.max(TICK_MS, conf.getPeriod()), 0L)) {
+            // A new group reports right away; a monitor joining an existing one gets its latest report
+            // now, or the group's first report if it has not been read yet
+            final Group group = evt.group;
+            threadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Report report = (group != null) ? group.latest : null;
+                    if (report != null) {
+                        evt.report(report.value, report.version);
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -165,8 +410,9 @@ public class ScheduledMonitors {
      * @param monitorId - Monitor Identity
      */
     public static void probe(FpcIdentity monitorId) {
-        if (registrations.containsKey(monitorId.toString())) {
-            registrations.get(monitorId.toString()).issueNotification();
+        ScheduledEvent evt = registrations.get(monitorId.toString());
+        if (evt != null) {
+            evt.issueNotification();
         }
     }
 
@@ -175,11 +421,41 @@ public class ScheduledMonitors {
      * @param monitorId - Monitor Identity
      */
     public static void deregister(FpcIdentity monitorId) {
-        if (registrations.containsKey(monitorId.toString())) {
-            ScheduledEvent evt = registrations.remove(monitorId.toString());
-            if (evt != null) {
-                evt.close();
-            }
+        ScheduledEvent evt = registrations.remove(monitorId.toString());
+        if (evt != null) {
+            evt.close();
         }
     }
+
+    /**
+     * Number of monitor groups.
+     * @return count
+     */
+    public static int getGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Number of Target reads.
+     * @return count
+     */
+    public static long getReads() {
+        return reads.sum();
+    }
+
+    /**
+     * Number of Target serializations.
+     * @return count
+     */
+    public static long getSerializations() {
+        return serializations.sum();
+    }
+
+    /**
+     * Number of reports skipped because the previous one was still running.
+     * @return count
+     */
+    public static long getOverruns() {
+        return overruns.sum();
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.monitor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
+
+/**
+ * Event subscription index.
+ *
+ * Maps (tenant, event id) to the Uris subscribed to the event.  Readers see an immutable snapshot
+ * holding a precomputed destination array per (tenant, event id), so a lookup is two map reads
+ * without any locking.  Subscription changes are serialized, update the reference counted
+ * subscription state and publish a new snapshot in which only the affected tenant and event ids
+ * were copied.
+ */
+public class SubscriptionIndex {
+    /**
+     * Destination list of an event without subscribers.
+     */
+    public static final Uri[] NONE = new Uri[0];
+
+    // Reference counts per tenant, event id and Uri; guarded by this
+    private final Map<String, Map<Long, Map<Uri, Integer>>> refs =
+            new HashMap<String, Map<Long, Map<Uri, Integer>>>();
+    private volatile Map<String, Map<Long, Uri[]>> snapshot = Collections.emptyMap();
+
+    /**
+     * Subscribes a Uri to events of a tenant.  A Uri subscribed several times to the same event
+     * receives it once and stays subscribed until it is unsubscribed as many times.
+     * @param tenantId - Tenant Identity
+     * @param events - event ids
+     * @param uri - destination
+     */
+    public synchronized void subscribe(String tenantId, Collection<Long> events, Uri uri) {
+        Map<Long, Map<Uri, Integer>> tenantRefs = refs.get(tenantId);
+        if (tenantRefs == null) {
+            tenantRefs = new HashMap<Long, Map<Uri, Integer>>();
+            refs.put(tenantId, tenantRefs);
+        }
+        for (Long eventId : events) {
+            Map<Uri, Integer> uris = tenantRefs.get(eventId);
+            if (uris == null) {
+                // Insertion ordered so destinations are notified in subscription order
+                uris = new LinkedHashMap<Uri, Integer>();
+                tenantRefs.put(eventId, uris);
+            }
+            Integer count = uris.get(uri);
+            uris.put(uri, (count != null) ? count + 1 : 1);
+        }
+        publish(tenantId, events);
+    }
+
+    /**
+     * Removes one subscription of a Uri to events of a tenant.
+     * @param tenantId - Tenant Identity
+     * @param events - event ids
+     * @param uri - destination
+     */
+    public synchronized void unsubscribe(String tenantId, Collection<Long> events, Uri uri) {
+        Map<Long, Map<Uri, Integer>> tenantRefs = refs.get(tenantId);
+        if (tenantRefs == null) {
+            return;
+        }
+        for (Long eventId : events) {
+            Map<Uri, Integer> uris = tenantRefs.get(eventId);
+            if (uris == null) {
+                continue;
+            }
+            Integer count = uris.get(uri);
+            if (count == null) {
+                continue;
+            }
+            if (count <= 1) {
+                uris.remove(uri);
+                if (uris.isEmpty()) {
+                    tenantRefs.remove(eventId);
+                }
+            } else {
+                uris.put(uri, count - 1);
+            }
+        }
+        if (tenantRefs.isEmpty()) {
+            refs.remove(tenantId);
+        }
+        publish(tenantId, events);
+    }
+
+    /**
+     * Publishes a snapshot in which the destinations of the given tenant and events are rebuilt.
+     */
+    private void publish(String tenantId, Collection<Long> events) {
+        Map<Long, Map<Uri, Integer>> tenantRefs = refs.get(tenantId);
+        Map<String, Map<Long, Uri[]>> next = new HashMap<String, Map<Long, Uri[]>>(snapshot);
+        if (tenantRefs == null) {
+            next.remove(tenantId);
+        } else {
+            Map<Long, Uri[]> current = next.get(tenantId);
+            Map<Long, Uri[]> tenantFanout = (current != null) ? new HashMap<Long, Uri[]>(current) :
+                new HashMap<Long, Uri[]>();
+            for (Long eventId : events) {
+                Map<Uri, Integer> uris = tenantRefs.get(eventId);
+                if (uris == null) {
+                    tenantFanout.remove(eventId);
+                } else {
+                    tenantFanout.put(eventId, uris.keySet().toArray(new Uri[uris.size()]));
+                }
+            }
+            next.put(tenantId, Collections.unmodifiableMap(tenantFanout));
+        }
+        snapshot = Collections.unmodifiableMap(next);
+    }
+
+    /**
+     * Returns the destinations of an event.  The returned array MUST NOT be modified.
+     * @param tenantId - Tenant Identity
+     * @param eventId - event id
+     * @return destinations; NONE if the event has no subscribers
+     */
+    public Uri[] get(String tenantId, long eventId) {
+        Map<Long, Uri[]> tenantFanout = snapshot.get(tenantId);
+        if (tenantFanout == null) {
+            return NONE;
+        }
+        Uri[] uris = tenantFanout.get(eventId);
+        return (uris != null) ? uris : NONE;
+    }
+
+    /**
+     * Number of tenants with subscriptions.
+     * @return tenant count
+     */
+    public int tenants() {
+        return snapshot.size();
+    }
+}
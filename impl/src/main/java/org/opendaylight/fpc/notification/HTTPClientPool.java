@@ -7,13 +7,19 @@
  */
 package org.opendaylight.fpc.notification;
 
-import java.util.AbstractMap;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.fpc.utils.AbstractThreadPool;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
 import org.opendaylight.yangtools.yang.binding.Notification;
 
@@ -21,19 +27,31 @@ import com.google.common.base.Supplier;
 
 /**
  * Client Pool Manager for HTTP Northbound notifications.
+ *
+ * Every client Uri is given a delivery lane (see HTTPNotificationLane) that is pinned to one
+ * worker, which keeps the notifications of a client in order while different clients are served
+ * in parallel.  All workers share one HTTP client whose connections are capped by the policy.
  */
 public class HTTPClientPool extends AbstractThreadPool<HTTPNotifier> {
+    private static final long RETRY_TICK_MS = 10L;
+    private static final int RETRY_WHEEL_SIZE = 512;
     public static HTTPClientPool instance;
 
+    private final HTTPNotifierPolicy policy;
+    private final ConcurrentMap<String, HTTPNotificationLane> lanes;
+    private final CloseableHttpAsyncClient client;
+    private final HashedTimingWheel<HTTPNotificationLane> retryWheel;
+
     /**
      * Singleton Initialization call.
-     * 
+     *
      * @param poolsize - thread pool size
+     * @param policy - delivery policy
      * @return HTTP Northbound Client Pool
      */
-    public static HTTPClientPool init(int poolsize) {
+    public static HTTPClientPool init(int poolsize, HTTPNotifierPolicy policy) {
         if (instance == null) {
-            instance = new HTTPClientPool(poolsize);
+            instance = new HTTPClientPool(poolsize, policy);
         }
         return instance;
     }
@@ -48,11 +66,108 @@ public class HTTPClientPool extends AbstractThreadPool<HTTPNotifier> {
 
     /**
      * Constructor.
-     *  
+     *
      * @param poolsize - thread pool size
+     * @param policy - delivery policy
      */
-    private HTTPClientPool(int poolSize) {
+    private HTTPClientPool(int poolSize, HTTPNotifierPolicy policy) {
         super(null,poolSize);
+        this.policy = (policy != null) ? policy : HTTPNotifierPolicy.DEFAULT;
+        this.lanes = new ConcurrentHashMap<String, HTTPNotificationLane>();
+        this.client = HttpAsyncClients.custom()
+                .setMaxConnTotal(this.policy.getMaxConnections())
+                .setMaxConnPerRoute(this.policy.getMaxConnections())
+                .build();
+        this.retryWheel = new HashedTimingWheel<HTTPNotificationLane>("fpc-http-retry", RETRY_TICK_MS,
+                TimeUnit.MILLISECONDS, RETRY_WHEEL_SIZE, new HashedTimingWheel.ExpiryHandler<HTTPNotificationLane>() {
+                    @Override
+                    public void expired(List<HTTPNotificationLane> items) {
+                        for (HTTPNotificationLane lane : items) {
+                            lane.resume();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        client.start();
+        super.startUp();
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        super.shutDown();
+        retryWheel.close();
+        client.close();
+    }
+
+    /**
+     * Queues a notification for a client.
+     * @param uri - client Uri
+     * @param notification - notification
+     * @return false if the notification was dropped because the client's backlog is full
+     */
+    public boolean enqueue(Uri uri, Notification notification) {
+        String key = uri.getValue();
+        HTTPNotificationLane lane = lanes.get(key);
+        if (lane == null) {
+            HTTPNotifier notifier = getWorker((key.hashCode() & Integer.MAX_VALUE) % poolSize);
+            if (notifier == null) {
+                ErrorLog.logError("HTTPClientPool - No HTTP notifier available for " + key);
+                return false;
+            }
+            lane = new HTTPNotificationLane(key, notifier, policy);
+            HTTPNotificationLane prev = lanes.putIfAbsent(key, lane);
+            lane = (prev != null) ? prev : lane;
+        }
+        return lane.offer(notification);
+    }
+
+    /**
+     * Removes the lane of a client Uri that is no longer registered.  Its queued notifications
+     * are dropped.
+     * @param uri - client Uri
+     */
+    public void remove(Uri uri) {
+        HTTPNotificationLane lane = lanes.remove(uri.getValue());
+        if (lane != null) {
+            lane.close();
+        }
+    }
+
+    /**
+     * Delivery statistics of a client.
+     * @param uri - client Uri
+     * @return statistics or null if nothing was sent to the client
+     */
+    public String getLaneStats(Uri uri) {
+        HTTPNotificationLane lane = lanes.get(uri.getValue());
+        return (lane != null) ? lane.toString() : null;
+    }
+
+    /**
+     * Notifications dropped because a client's backlog was full.
+     * @return count over all clients
+     */
+    public long getDropped() {
+        long sum = 0L;
+        for (HTTPNotificationLane lane : lanes.values()) {
+            sum += lane.getDropped();
+        }
+        return sum;
+    }
+
+    /**
+     * Notifications abandoned after their retries were exhausted.
+     * @return count over all clients
+     */
+    public long getFailed() {
+        long sum = 0L;
+        for (HTTPNotificationLane lane : lanes.values()) {
+            sum += lane.getFailed();
+        }
+        return sum;
     }
 
     @Override
@@ -60,11 +175,16 @@ public class HTTPClientPool extends AbstractThreadPool<HTTPNotifier> {
         return new HTTPNotifierFactory(startSignal);
     }
 
+    @Override
+    public String toString() {
+        return "HTTPClientPool [" + policy + ", lanes=" + lanes.size() + ", dropped=" + getDropped()
+                + ", failed=" + getFailed() + "]";
+    }
+
     /**
      * Internal Factory Class
      */
     protected class HTTPNotifierFactory implements Supplier<HTTPNotifier> {
-        protected BlockingQueue<Object> unifiedBlockingQueue;
         protected CountDownLatch startSignal;
 
         /**
@@ -72,14 +192,13 @@ public class HTTPClientPool extends AbstractThreadPool<HTTPNotifier> {
          * @param startSignal - countdown latch start signal
          */
         public HTTPNotifierFactory(CountDownLatch startSignal) {
-            this.unifiedBlockingQueue = new LinkedBlockingQueue<Object>();
             this.startSignal = startSignal;
         }
 
         @Override
         public HTTPNotifier get() {
-            return new HTTPNotifier(startSignal, new
-                    LinkedBlockingQueue<AbstractMap.SimpleEntry<Uri,Notification>>());
+            return new HTTPNotifier(startSignal, client, retryWheel,
+                    new LinkedBlockingQueue<HTTPNotificationLane>());
         }
     }
 }
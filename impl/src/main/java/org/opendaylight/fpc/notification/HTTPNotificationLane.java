@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
+import org.opendaylight.yangtools.yang.binding.Notification;
+
+/**
+ * Ordered delivery lane of a single client Uri.
+ *
+ * A lane is either idle or active.  It becomes active when a notification is queued to an idle
+ * lane and is then handed to its HTTPNotifier, which takes a batch and POSTs it.  The lane stays
+ * active (and is not handed out again) until that POST completes or is abandoned, so at most one
+ * POST per Uri is outstanding.  Downlink Data Notifications are always sent on their own as their
+ * response carries the DDN acknowledgement.
+ *
+ * A lane is closed when its Uri is no longer used by any client; its backlog is dropped and the
+ * batch in progress, if any, is not retried.
+ */
+class HTTPNotificationLane {
+    private final String uri;
+    private final HTTPNotifier notifier;
+    private final HTTPNotifierPolicy policy;
+    private final ArrayDeque<Notification> backlog;
+    private boolean active;
+    private boolean closed;
+
+    // Batch being delivered; only touched by the owning notifier and the POST callbacks
+    private List<Notification> batch;
+    private byte[] body;
+    private int attempts;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param uri - client Uri
+     * @param notifier - notifier serving the lane
+     * @param policy - delivery policy
+     */
+    HTTPNotificationLane(String uri, HTTPNotifier notifier, HTTPNotifierPolicy policy) {
+        this.uri = uri;
+        this.notifier = notifier;
+        this.policy = policy;
+        this.backlog = new ArrayDeque<Notification>();
+        this.active = false;
+    }
+
+    /**
+     * Client Uri.
+     * @return Uri
+     */
+    String getUri() {
+        return uri;
+    }
+
+    /**
+     * Queues a notification.  The notification is dropped if the backlog is full.
+     * @param notification - notification
+     * @return false if the notification was dropped
+     */
+    boolean offer(Notification notification) {
+        boolean wake;
+        synchronized (this) {
+            if (closed || backlog.size() >= policy.getMaxBacklog()) {
+                dropped.increment();
+                return false;
+            }
+            backlog.add(notification);
+            wake = !active;
+            active = true;
+        }
+        if (wake) {
+            notifier.dispatch(this);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the batch to deliver: the batch of a failed POST being retried or the next
+     * notifications of the backlog.
+     * @return batch or null if the lane went idle
+     */
+    List<Notification> nextBatch() {
+        synchronized (this) {
+            if (closed) {
+                active = false;
+                if (batch != null) {
+                    failed.add(batch.size());
+                }
+                batch = null;
+                body = null;
+                return null;
+            }
+        }
+        if (batch != null) {
+            return batch;
+        }
+        synchronized (this) {
+            if (backlog.isEmpty()) {
+                active = false;
+                return null;
+            }
+            List<Notification> next = new ArrayList<Notification>(Math.min(backlog.size(), policy.getMaxBatch()));
+            if (isDdn(backlog.peek())) {
+                next.add(backlog.poll());
+            } else {
+                while (!backlog.isEmpty() && next.size() < policy.getMaxBatch() && !isDdn(backlog.peek())) {
+                    next.add(backlog.poll());
+                }
+            }
+            batch = next;
+            return next;
+        }
+    }
+
+    /**
+     * Serialized body of the current batch, cached for retries.
+     * @return body or null if not yet serialized
+     */
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Caches the serialized body of the current batch.
+     * @param body - POST body
+     */
+    void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * Completes the current batch and hands the lane back to its notifier if more notifications
+     * are queued.
+     * @param success - true if the batch was delivered
+     */
+    void complete(boolean success) {
+        if (batch != null) {
+            if (success) {
+                delivered.add(batch.size());
+            } else {
+                failed.add(batch.size());
+            }
+        }
+        batch = null;
+        body = null;
+        attempts = 0;
+        boolean more;
+        synchronized (this) {
+            more = !backlog.isEmpty();
+            active = more;
+        }
+        if (more) {
+            notifier.dispatch(this);
+        }
+    }
+
+    /**
+     * Records a failed POST of the current batch.  The batch is retried after the policy's backoff
+     * or abandoned once the retries are exhausted.
+     */
+    void fail() {
+        attempts++;
+        if (attempts > policy.getMaxRetries()) {
+            complete(false);
+            return;
+        }
+        retried.increment();
+        notifier.retry(this, policy.getRetryBackoffMs(attempts));
+    }
+
+    /**
+     * Hands the lane back to its notifier once the backoff of a retry has elapsed.
+     */
+    void resume() {
+        notifier.dispatch(this);
+    }
+
+    /**
+     * Closes the lane.  Queued notifications are dropped.
+     */
+    synchronized void close() {
+        closed = true;
+        dropped.add(backlog.size());
+        backlog.clear();
+    }
+
+    /**
+     * Notifications delivered.
+     * @return count
+     */
+    long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * Notifications dropped because the backlog was full or the lane was closed.
+     * @return count
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Notifications abandoned after the retries were exhausted.
+     * @return count
+     */
+    long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * POSTs retried.
+     * @return count
+     */
+    long getRetried() {
+        return retried.sum();
+    }
+
+    /**
+     * Notifications queued.
+     * @return count
+     */
+    synchronized int getBacklog() {
+        return backlog.size();
+    }
+
+    private static boolean isDdn(Notification notification) {
+        return (notification instanceof Notify) &&
+                (((Notify) notification).getValue() instanceof DownlinkDataNotification);
+    }
+
+    @Override
+    public String toString() {
+        return "HTTPNotificationLane [uri=" + uri + ", backlog=" + getBacklog() + ", delivered=" + getDelivered()
+                + ", dropped=" + getDropped() + ", failed=" + getFailed() + ", retried=" + getRetried() + "]";
+    }
+}
@@ -9,13 +9,10 @@ package org.opendaylight.fpc.notification;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.util.AbstractMap;
-import java.util.AbstractMap.SimpleEntry;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
@@ -26,20 +23,19 @@ import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicResponseHandler;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.nio.client.methods.HttpAsyncMethods;
 import org.json.JSONObject;
 import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPI2;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.HashedTimingWheel;
+import org.opendaylight.fpc.utils.JsonOutput;
 import org.opendaylight.fpc.utils.Worker;
 import org.opendaylight.fpc.utils.zeromq.ZMQClientPool;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotification;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
 import org.opendaylight.yangtools.yang.binding.DataObject;
-import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yangtools.yang.binding.Notification;
 import org.opendaylight.yangtools.yang.common.QName;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
@@ -50,6 +46,11 @@ import com.google.common.base.Throwables;
 
 /**
  * HTTP Notification Worker.
+ *
+ * Serves the delivery lanes assigned to it.  A lane is handed to the worker when it has
+ * notifications to send; the worker serializes the lane's next batch and POSTs it asynchronously.
+ * The POST callbacks complete the batch or schedule a retry, after which the lane is handed back
+ * if more notifications are queued.
  */
 class HTTPNotifier implements Worker {
     private static final Logger LOG = LoggerFactory.getLogger(HTTPNotifier.class);
@@ -57,13 +58,6 @@ class HTTPNotifier implements Worker {
             QName.create("urn:ietf:params:xml:ns:yang:fpcagent", "2016-08-03","config-result-notification").intern();
     private static final YangInstanceIdentifier configResultNotificationYII =
             YangInstanceIdentifier.of(TOP_ODL_FPC_QNAME);
-    private static final InstanceIdentifier<ConfigResultNotification> configResultNotificationII =
-            InstanceIdentifier.create(ConfigResultNotification.class);
-    private static final CloseableHttpAsyncClient client = HttpAsyncClients.createDefault();
-    private ResponseHandler<String> handler;
-    private DpnAPI2 api;
-    // TODO - This is prob a bad idea... FIX ME!
-    private static final Map<String, HttpURLConnection> connections = new ConcurrentHashMap<String, HttpURLConnection>();
     private static final FpcCodecUtils fpcCodecUtils;
     static {
         try {
@@ -74,21 +68,32 @@ class HTTPNotifier implements Worker {
         }
     }
 
+    private final CloseableHttpAsyncClient client;
+    private final HashedTimingWheel<HTTPNotificationLane> retryWheel;
+    private ResponseHandler<String> handler;
+    private DpnAPI2 api;
+
     protected final CountDownLatch startSignal;
     protected boolean run;
-    private final BlockingQueue<AbstractMap.SimpleEntry<Uri,Notification>> blockingNotificationQueue;
+    private final BlockingQueue<HTTPNotificationLane> blockingLaneQueue;
 
     /**
      * Primary Constructor.
      *
      * @param startSignal - Latch start signal
-     * @param blockingNotificationQueue - Blocking Queue assigned to the worker
+     * @param client - shared HTTP client
+     * @param retryWheel - timing wheel used to delay retries
+     * @param blockingLaneQueue - Blocking Queue of the lanes ready to be served by the worker
      */
     public HTTPNotifier(CountDownLatch startSignal,
-            BlockingQueue<AbstractMap.SimpleEntry<Uri,Notification>> blockingNotificationQueue) {
+            CloseableHttpAsyncClient client,
+            HashedTimingWheel<HTTPNotificationLane> retryWheel,
+            BlockingQueue<HTTPNotificationLane> blockingLaneQueue) {
         this.run = false;
         this.startSignal = startSignal;
-        this.blockingNotificationQueue = blockingNotificationQueue;
+        this.client = client;
+        this.retryWheel = retryWheel;
+        this.blockingLaneQueue = blockingLaneQueue;
         handler = new BasicResponseHandler();
         this.api = new DpnAPI2(ZMQClientPool.getInstance().getWorker());
     }
@@ -114,79 +119,155 @@ class HTTPNotifier implements Worker {
 
     /**
      * Retrieves the Worker's Queue.
-     * @return A BlockingQueue that accepts a pair (Map.Entry) of Uri and Notification to be issued
+     * @return A BlockingQueue of the lanes that have notifications to send
      */
-    public BlockingQueue<AbstractMap.SimpleEntry<Uri,Notification>> getQueue() {
-        return blockingNotificationQueue;
+    public BlockingQueue<HTTPNotificationLane> getQueue() {
+        return blockingLaneQueue;
     }
 
-    @Override
-    public void run() {
-        this.run = true;
-        LOG.info("HTTPNotifier RUN started");
-        try {
-            while(run) {
-                SimpleEntry<Uri, Notification> obj = (AbstractMap.SimpleEntry<Uri,Notification>) blockingNotificationQueue.take();
-                String postBody = null;
-                try
-                {
-	            	if(obj.getValue() instanceof ConfigResultNotification){
-	            		postBody = fpcCodecUtils.notificationToJsonString(ConfigResultNotification.class,
-	                            (DataObject)obj.getValue(),
-	                            true);
-	            	}
-	            	else if(obj.getValue() instanceof Notify){
-	            		postBody = fpcCodecUtils.notificationToJsonString(Notify.class,
-	                            (DataObject)obj.getValue(),
-	                            true);
-	            	}
-                } catch (Exception e){
-                	ErrorLog.logError(e.getStackTrace());
+    /**
+     * Hands a lane to this worker.
+     * @param lane - lane with notifications to send
+     */
+    void dispatch(HTTPNotificationLane lane) {
+        blockingLaneQueue.offer(lane);
+    }
+
+    /**
+     * Hands a lane back to this worker after a delay.
+     * @param lane - lane whose batch is retried
+     * @param delayMs - delay in milliseconds
+     */
+    void retry(HTTPNotificationLane lane, long delayMs) {
+        retryWheel.schedule(lane, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Serializes a batch.  A single notification is sent as is, several as a JSON array.
+     * Notifications that cannot be serialized are left out.
+     * @param batch - notifications
+     * @return POST body or null if nothing could be serialized
+     */
+    private static byte[] serialize(List<Notification> batch) {
+        JsonOutput out = JsonOutput.local();
+        boolean array = batch.size() > 1;
+        int written = 0;
+        if (array) {
+            out.writeByte('[');
+        }
+        for (Notification notification : batch) {
+            if (!(notification instanceof ConfigResultNotification) && !(notification instanceof Notify)) {
+                continue;
+            }
+            int mark = out.length();
+            try {
+                if (written > 0) {
+                    out.writeByte(',');
                 }
-            	if(obj.getKey() != null && postBody != null){
-            		String url = obj.getKey().getValue();
-                    try{
-                        client.start();
-                        HttpRequest post = HttpAsyncMethods.createPost(url, postBody, ContentType.APPLICATION_JSON).generateRequest();
-                        post.setHeader("User-Agent", "ODL Notification Agent");
-                        post.setHeader("charset", "utf-8");
-                        client.execute((HttpUriRequest) post, new FutureCallback<HttpResponse>() {
-                            @Override
-                            public void cancelled() {
-                                LOG.error(post.getRequestLine() + "-> Cancelled");
-                            }
+                NotificationJsonWriter.write(fpcCodecUtils, (DataObject) notification, out);
+                written++;
+            } catch (Exception e) {
+                out.truncate(mark);
+                ErrorLog.logError(e.getStackTrace());
+            }
+        }
+        if (written == 0) {
+            return null;
+        }
+        if (array) {
+            out.writeByte(']');
+        }
+        return out.toByteArray();
+    }
 
-                            @Override
-                            public void completed(HttpResponse resp) {
-                                try {
-                                	if(obj.getValue() instanceof Notify){
-                                		if(((Notify)obj.getValue()).getValue() instanceof DownlinkDataNotification){
-                                			String body = handler.handleResponse(resp);
-                							JSONObject json_body = new JSONObject(body);
-                							api.ddnAck(json_body);
-                							LOG.info("Response Body: "+body);
-                                		}
-                                	}
-        						} catch (IOException e) {
-        							ErrorLog.logError(e.getStackTrace());
-        						}
-                            }
+    /**
+     * Sends the next batch of a lane.
+     * @param lane - lane
+     */
+    private void send(HTTPNotificationLane lane) {
+        List<Notification> batch = lane.nextBatch();
+        if (batch == null) {
+            return;
+        }
+        byte[] postBody = lane.getBody();
+        if (postBody == null) {
+            postBody = serialize(batch);
+            if (postBody == null) {
+                lane.complete(false);
+                return;
+            }
+            lane.setBody(postBody);
+        }
+        try {
+            HttpRequest post = HttpAsyncMethods.createPost(lane.getUri(), postBody, ContentType.APPLICATION_JSON).generateRequest();
+            post.setHeader("User-Agent", "ODL Notification Agent");
+            post.setHeader("charset", "utf-8");
+            client.execute((HttpUriRequest) post, new FutureCallback<HttpResponse>() {
+                @Override
+                public void cancelled() {
+                    LOG.error(post.getRequestLine() + "-> Cancelled");
+                    lane.complete(false);
+                }
 
-                            @Override
-                            public void failed(Exception e) {
-                                ErrorLog.logError(post.getRequestLine() + "->" + e.getMessage(), e.getStackTrace());
+                @Override
+                public void completed(HttpResponse resp) {
+                    int status = resp.getStatusLine().getStatusCode();
+                    if (status >= 500 || status == 429) {
+                        LOG.warn(post.getRequestLine() + "->" + resp.getStatusLine());
+                        lane.fail();
+                        return;
+                    }
+                    try {
+                        Notification first = batch.get(0);
+                        if(first instanceof Notify){
+                            if(((Notify)first).getValue() instanceof DownlinkDataNotification){
+                                String body = handler.handleResponse(resp);
+                                JSONObject json_body = new JSONObject(body);
+                                api.ddnAck(json_body);
+                                LOG.info("Response Body: "+body);
                             }
-                        });
-                    } catch (UnsupportedEncodingException e) {
-                    	ErrorLog.logError(e.getStackTrace());
+                        }
                     } catch (IOException e) {
-                    	ErrorLog.logError(e.getStackTrace());
-                    } catch (HttpException e) {
-                    	ErrorLog.logError(e.getStackTrace());
+                        ErrorLog.logError(e.getStackTrace());
                     } catch (Exception e) {
-                    	ErrorLog.logError(e.getStackTrace());
+                        ErrorLog.logError(e.getStackTrace());
                     }
-            	}
+                    lane.complete(status < 300);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    ErrorLog.logError(post.getRequestLine() + "->" + e.getMessage(), e.getStackTrace());
+                    lane.fail();
+                }
+            });
+        } catch (UnsupportedEncodingException e) {
+            ErrorLog.logError(e.getStackTrace());
+            lane.complete(false);
+        } catch (IOException e) {
+            ErrorLog.logError(e.getStackTrace());
+            lane.complete(false);
+        } catch (HttpException e) {
+            ErrorLog.logError(e.getStackTrace());
+            lane.complete(false);
+        } catch (Exception e) {
+            ErrorLog.logError(e.getStackTrace());
+            lane.fail();
+        }
+    }
+
+    @Override
+    public void run() {
+        this.run = true;
+        LOG.info("HTTPNotifier RUN started");
+        try {
+            while(run) {
+                HTTPNotificationLane lane = blockingLaneQueue.take();
+                try {
+                    send(lane);
+                } catch (Exception e) {
+                    ErrorLog.logError(e.getStackTrace());
+                }
             }
         } catch (InterruptedException e) {
         	ErrorLog.logError(e.getStackTrace());
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.notification;
+
+/**
+ * Delivery policy of the HTTP notification lanes.
+ *
+ * Each client Uri has its own lane with at most one POST outstanding, so notifications reach a
+ * client in the order they were issued.  Up to maxBatch queued notifications are sent in a single
+ * POST (as a JSON array when more than one is sent).  A lane holds at most maxBacklog
+ * notifications; further notifications are dropped and counted.  Failed POSTs are retried up to
+ * maxRetries times with an exponential backoff starting at retryBackoffMs and capped at
+ * maxRetryBackoffMs.  maxConnections caps the connections of the shared HTTP client.
+ */
+public class HTTPNotifierPolicy {
+    /**
+     * Default backlog per client Uri.
+     */
+    public static final int DEFAULT_MAX_BACKLOG = 4096;
+    /**
+     * Default connection cap.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    /**
+     * Default retry count.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /**
+     * Default initial retry backoff.
+     */
+    public static final long DEFAULT_RETRY_BACKOFF_MS = 100L;
+    /**
+     * Default maximum retry backoff.
+     */
+    public static final long DEFAULT_MAX_RETRY_BACKOFF_MS = 5000L;
+    /**
+     * Policy that sends every notification in its own POST and never retries.
+     */
+    public static final HTTPNotifierPolicy DEFAULT = new HTTPNotifierPolicy(1, DEFAULT_MAX_BACKLOG,
+            DEFAULT_MAX_CONNECTIONS, 0, DEFAULT_RETRY_BACKOFF_MS);
+
+    private final int maxBatch;
+    private final int maxBacklog;
+    private final int maxConnections;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+
+    /**
+     * Constructor.
+     * @param maxBatch - maximum notifications per POST (1 disables batching)
+     * @param maxBacklog - maximum notifications queued per client Uri
+     * @param maxConnections - maximum connections of the HTTP client
+     * @param maxRetries - retries of a failed POST (0 disables retries)
+     * @param retryBackoffMs - delay before the first retry; doubled for each further retry
+     */
+    public HTTPNotifierPolicy(int maxBatch, int maxBacklog, int maxConnections, int maxRetries,
+            long retryBackoffMs) {
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxBacklog = Math.max(1, maxBacklog);
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMs = Math.max(1L, retryBackoffMs);
+        this.maxRetryBackoffMs = Math.max(this.retryBackoffMs, DEFAULT_MAX_RETRY_BACKOFF_MS);
+    }
+
+    /**
+     * Maximum notifications per POST.
+     * @return notification count
+     */
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    /**
+     * Maximum notifications queued per client Uri.
+     * @return notification count
+     */
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+    /**
+     * Maximum connections of the HTTP client.
+     * @return connection count
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Retries of a failed POST.
+     * @return retry count
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Delay before a retry.
+     * @param attempt - number of the retry, starting at 1
+     * @return delay in milliseconds
+     */
+    public long getRetryBackoffMs(int attempt) {
+        int shift = Math.min(Math.max(0, attempt - 1), 20);
+        return Math.min(retryBackoffMs << shift, maxRetryBackoffMs);
+    }
+
+    @Override
+    public String toString() {
+        return "HTTPNotifierPolicy [maxBatch=" + maxBatch + ", maxBacklog=" + maxBacklog
+                + ", maxConnections=" + maxConnections + ", maxRetries=" + maxRetries
+                + ", retryBackoffMs=" + retryBackoffMs + "]";
+    }
+}
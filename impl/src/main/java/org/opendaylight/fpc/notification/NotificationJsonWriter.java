@@ -0,0 +1,334 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.notification;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.JsonOutput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.config.result.notification.value.ConfigResult;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DpnAvailability;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.ResultType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.CommonSuccess;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.DeleteSuccess;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.EmptyCase;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.Err;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.Targets;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+
+/**
+ * Precompiled JSON writers for the notifications issued by the Agent.
+ *
+ * The Config Result, Downlink Data and DPN Availability notifications are written straight from
+ * their binding objects into a JsonOutput, producing the same members as the YANG JSON codec
+ * (choices are flattened, unions, enumerations and identities are strings, integers are numbers).
+ * Anything these writers do not cover - Config Results carrying a payload, bundle results,
+ * instance-identifier values and the remaining Notify values - is written by the codec instead.
+ */
+public class NotificationJsonWriter {
+    private static final byte[] CONFIG_RESULT_NOTIFICATION = JsonOutput.name("config-result-notification");
+    private static final byte[] NOTIFY = JsonOutput.name("notify");
+    private static final byte[] NOTIFICATION_ID = JsonOutput.name("notification-id");
+    private static final byte[] TIMESTAMP = JsonOutput.name("timestamp");
+    private static final byte[] OP_ID = JsonOutput.name("op-id");
+    private static final byte[] OP_STATUS = JsonOutput.name("op-status");
+    private static final byte[] CAUSE_VALUE = JsonOutput.name("cause-value");
+    private static final byte[] RESULT = JsonOutput.name("result");
+    private static final byte[] ERROR_TYPE_ID = JsonOutput.name("error-type-id");
+    private static final byte[] ERROR_INFO = JsonOutput.name("error-info");
+    private static final byte[] TARGETS = JsonOutput.name("targets");
+    private static final byte[] TARGET = JsonOutput.name("target");
+    private static final byte[] MESSAGE_TYPE = JsonOutput.name("message-type");
+    private static final byte[] DPN_ID = JsonOutput.name("dpn-id");
+    private static final byte[] SESSION_ID = JsonOutput.name("session-id");
+    private static final byte[] CLIENT_ID = JsonOutput.name("client-id");
+    private static final byte[] DPN_STATUS = JsonOutput.name("dpn-status");
+    private static final byte[] LOAD = JsonOutput.name("load");
+    private static final byte[] DPN_NAME = JsonOutput.name("dpn-name");
+    private static final byte[] DPN_GROUPS = JsonOutput.name("dpn-groups");
+    private static final byte[] ABSTRACT = JsonOutput.name("abstract");
+    private static final byte[] STRATEGY = JsonOutput.name("strategy");
+    private static final byte[] DPN_IDS = JsonOutput.name("dpn-ids");
+    private static final byte[] NODE_ID = JsonOutput.name("node-id");
+    private static final byte[] NETWORK_ID = JsonOutput.name("network-id");
+
+    private NotificationJsonWriter() {
+    }
+
+    /**
+     * Writes a notification as compact JSON, falling back to the codec for shapes the
+     * precompiled writers do not cover.
+     * @param codecs - codec used for the fallback
+     * @param notification - ConfigResultNotification or Notify
+     * @param out - output; nothing may be open in it
+     * @throws IOException - if the codec fails
+     */
+    public static void write(FpcCodecUtils codecs, DataObject notification, JsonOutput out) throws IOException {
+        int mark = out.length();
+        if (!writeCompiled(notification, out)) {
+            out.truncate(mark);
+            codecs.writeNotificationJson(notification, out.asWriter());
+        }
+    }
+
+    /**
+     * Writes a notification with the precompiled writers only.
+     * @param notification - notification
+     * @param out - output
+     * @return false if the notification has a shape that is not covered; out then holds a
+     *  partial document that must be discarded
+     */
+    public static boolean writeCompiled(DataObject notification, JsonOutput out) {
+        if (notification instanceof ConfigResultNotification) {
+            return writeConfigResult((ConfigResultNotification) notification, out);
+        }
+        if (notification instanceof Notify) {
+            return writeNotify((Notify) notification, out);
+        }
+        return false;
+    }
+
+    private static boolean writeConfigResult(ConfigResultNotification notification, JsonOutput out) {
+        if (!(notification.getValue() instanceof ConfigResult)) {
+            return false;
+        }
+        ConfigResult value = (ConfigResult) notification.getValue();
+        out.beginObject().name(CONFIG_RESULT_NOTIFICATION).beginObject();
+        if (notification.getNotificationId() != null) {
+            out.name(NOTIFICATION_ID).value(notification.getNotificationId().getValue());
+        }
+        if (notification.getTimestamp() != null) {
+            out.name(TIMESTAMP).value(notification.getTimestamp());
+        }
+        if ((value.getOpId() != null) && (value.getOpId().getValue() != null)) {
+            out.name(OP_ID).value(value.getOpId().getValue());
+        }
+        if (value.getOpStatus() != null) {
+            out.name(OP_STATUS);
+            switch (value.getOpStatus()) {
+                case Ok:
+                    out.value("ok");
+                    break;
+                case Err:
+                    out.value("err");
+                    break;
+                default:
+                    return false;
+            }
+        }
+        if (value.getCauseValue() != null) {
+            out.name(CAUSE_VALUE).value(value.getCauseValue());
+        }
+        if (value.getResult() != null) {
+            out.name(RESULT);
+            switch (value.getResult()) {
+                case Ok:
+                    out.value("ok");
+                    break;
+                case Err:
+                    out.value("err");
+                    break;
+                case OkNotifyFollows:
+                    out.value("ok-notify-follows");
+                    break;
+                default:
+                    return false;
+            }
+        }
+        if (!writeResultType(value.getResultType(), out)) {
+            return false;
+        }
+        out.endObject().endObject();
+        return true;
+    }
+
+    private static boolean writeResultType(ResultType rt, JsonOutput out) {
+        if ((rt == null) || (rt instanceof EmptyCase)) {
+            return true;
+        }
+        if (rt instanceof Err) {
+            Err err = (Err) rt;
+            if ((err.getErrorTypeId() != null) && (err.getErrorTypeId().getValue() != null)) {
+                out.name(ERROR_TYPE_ID).value(err.getErrorTypeId().getValue());
+            }
+            if (err.getErrorInfo() != null) {
+                out.name(ERROR_INFO).value(err.getErrorInfo());
+            }
+            return true;
+        }
+        if (rt instanceof CommonSuccess) {
+            // Payload Contexts and Ports are left to the codec
+            CommonSuccess cs = (CommonSuccess) rt;
+            return isEmpty(cs.getContexts()) && isEmpty(cs.getPorts());
+        }
+        if (rt instanceof DeleteSuccess) {
+            List<Targets> targets = ((DeleteSuccess) rt).getTargets();
+            if (isEmpty(targets)) {
+                return true;
+            }
+            out.name(TARGETS).beginArray();
+            for (Targets target : targets) {
+                out.beginObject();
+                if ((target.getTarget() != null) && !identity(TARGET, target.getTarget(), out)) {
+                    return false;
+                }
+                if (!identities(DPN_ID, target.getDpnId(), out)) {
+                    return false;
+                }
+                out.endObject();
+            }
+            out.endArray();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean writeNotify(Notify notification, JsonOutput out) {
+        out.beginObject().name(NOTIFY).beginObject();
+        if (notification.getNotificationId() != null) {
+            out.name(NOTIFICATION_ID).value(notification.getNotificationId().getValue());
+        }
+        if (notification.getTimestamp() != null) {
+            out.name(TIMESTAMP).value(notification.getTimestamp());
+        }
+        if (notification.getValue() instanceof DownlinkDataNotification) {
+            if (!writeDdn((DownlinkDataNotification) notification.getValue(), out)) {
+                return false;
+            }
+        } else if (notification.getValue() instanceof DpnAvailability) {
+            if (!writeDpnAvailability((DpnAvailability) notification.getValue(), out)) {
+                return false;
+            }
+        } else if (notification.getValue() != null) {
+            return false;
+        }
+        out.endObject().endObject();
+        return true;
+    }
+
+    private static boolean writeDdn(DownlinkDataNotification ddn, JsonOutput out) {
+        if (ddn.getMessageType() != null) {
+            out.name(MESSAGE_TYPE).value(ddn.getMessageType());
+        }
+        if ((ddn.getDpnId() != null) && !identity(DPN_ID, ddn.getDpnId(), out)) {
+            return false;
+        }
+        if (ddn.getSessionId() != null) {
+            out.name(SESSION_ID).value(ddn.getSessionId());
+        }
+        if ((ddn.getClientId() != null) && !identity(CLIENT_ID, ddn.getClientId(), out)) {
+            return false;
+        }
+        if ((ddn.getOpId() != null) && (ddn.getOpId().getValue() != null)) {
+            out.name(OP_ID).value(ddn.getOpId().getValue());
+        }
+        return true;
+    }
+
+    private static boolean writeDpnAvailability(DpnAvailability dpn, JsonOutput out) {
+        if (dpn.getNodeReference() != null) {
+            return false;
+        }
+        if (dpn.getMessageType() != null) {
+            out.name(MESSAGE_TYPE).value(dpn.getMessageType());
+        }
+        if (dpn.getDpnStatus() != null) {
+            out.name(DPN_STATUS);
+            switch (dpn.getDpnStatus()) {
+                case Available:
+                    out.value("available");
+                    break;
+                case Unavailable:
+                    out.value("unavailable");
+                    break;
+                default:
+                    return false;
+            }
+        }
+        if (dpn.getLoad() != null) {
+            out.name(LOAD).value(dpn.getLoad());
+        }
+        if ((dpn.getDpnId() != null) && !identity(DPN_ID, dpn.getDpnId(), out)) {
+            return false;
+        }
+        if (dpn.getDpnName() != null) {
+            out.name(DPN_NAME).value(dpn.getDpnName());
+        }
+        if (!identities(DPN_GROUPS, dpn.getDpnGroups(), out)) {
+            return false;
+        }
+        if (dpn.isAbstract() != null) {
+            out.name(ABSTRACT).value(dpn.isAbstract());
+        }
+        if (dpn.getStrategy() != null) {
+            out.name(STRATEGY).value(dpn.getStrategy());
+        }
+        if (!identities(DPN_IDS, dpn.getDpnIds(), out)) {
+            return false;
+        }
+        if (dpn.getNodeId() != null) {
+            out.name(NODE_ID).value(dpn.getNodeId());
+        }
+        if (dpn.getNetworkId() != null) {
+            out.name(NETWORK_ID).value(dpn.getNetworkId());
+        }
+        return true;
+    }
+
+    /**
+     * Writes an FPC Identity member.
+     * @param name - encoded member name
+     * @param id - identity
+     * @param out - output
+     * @return false if the identity holds an instance-identifier
+     */
+    private static boolean identity(byte[] name, FpcIdentity id, JsonOutput out) {
+        if (id.getInt64() != null) {
+            out.name(name).value(id.getInt64().toString());
+        } else if (id.getString() != null) {
+            out.name(name).value(id.getString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a leaf-list of FPC Identities.
+     * @param name - encoded member name
+     * @param ids - identities
+     * @param out - output
+     * @return false if an identity holds an instance-identifier
+     */
+    private static boolean identities(byte[] name, List<? extends FpcIdentity> ids, JsonOutput out) {
+        if (isEmpty(ids)) {
+            return true;
+        }
+        out.name(name).beginArray();
+        for (FpcIdentity id : ids) {
+            if (id.getInt64() != null) {
+                out.value(id.getInt64().toString());
+            } else if (id.getString() != null) {
+                out.value(id.getString());
+            } else {
+                return false;
+            }
+        }
+        out.endArray();
+        return true;
+    }
+
+    private static boolean isEmpty(List<?> list) {
+        return (list == null) || list.isEmpty();
+    }
+}
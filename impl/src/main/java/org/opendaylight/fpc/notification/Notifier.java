@@ -7,18 +7,24 @@
  */
 package org.opendaylight.fpc.notification;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.AbstractMap;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 import org.opendaylight.controller.md.sal.binding.api.NotificationPublishService;
+import org.opendaylight.fpc.impl.FpcProvider;
 import org.opendaylight.fpc.impl.FpcServiceImpl;
+import org.opendaylight.fpc.monitor.EventMonitorMgr;
+import org.opendaylight.fpc.monitor.Events;
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.JsonOutput;
 import org.opendaylight.fpc.utils.eventStream.NotificationService;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotification;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotificationBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.DpnStatusValue.DpnStatus;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotificationId;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotifyBuilder;
@@ -30,10 +36,10 @@ import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev1608
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DpnAvailability;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.MonitorNotification;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.ResultType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
 import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
-import org.opendaylight.yangtools.yang.binding.Notification;
 import org.opendaylight.yangtools.yang.common.QName;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
 import org.slf4j.Logger;
@@ -65,6 +71,9 @@ public class Notifier {
         }
     }
 
+    private static final byte[] EVENT_PREFIX =
+            "event:application/json;/notification\ndata:".getBytes(StandardCharsets.US_ASCII);
+
     protected static NotificationPublishService notificationService;
 
     /**
@@ -75,6 +84,21 @@ public class Notifier {
         notificationService = notificationSvc;
     }
 
+    /**
+     * Builds the event stream frame of a notification.  The JSON is written into the calling
+     * thread's scratch buffer and copied once into the frame.
+     * @param notification - ConfigResultNotification or Notify
+     * @return event-data frame
+     * @throws IOException - if the notification cannot be serialized
+     */
+    static byte[] toEventFrame(DataObject notification) throws IOException {
+        JsonOutput out = JsonOutput.local();
+        out.writeRaw(EVENT_PREFIX);
+        NotificationJsonWriter.write(fpcCodecUtils, notification, out);
+        out.writeByte('\n');
+        return out.toByteArray();
+    }
+
     /**
      * Issues a Configuration Result over the Northbound over the NotificationPublishService
      * @param clientId - Client Identifier
@@ -104,12 +128,7 @@ public class Notifier {
                         .build())
                 .build();
         try {
-        	String streamString = fpcCodecUtils.notificationToJsonString(Notify.class,
-    		        (DataObject) result,
-    		        true);
-            streamString = streamString.replace("\n","");
-            streamString = "event:application/json;/notification\ndata:"+streamString+"\n";
-            NotificationService.blockingQueue.put(new AbstractMap.SimpleEntry<String,String>(clientId.getInt64().toString(),streamString));
+            NotificationService.send(clientId.getInt64().toString(), toEventFrame((DataObject) result));
             if (issueInternal &&
                     (notificationService != null)) {
                 notificationService.putNotification(result);
@@ -128,6 +147,20 @@ public class Notifier {
      * @param uris - Uris to issue the notification to
      */
     static protected void issueNotification(Value value, Collection<Uri> uris) {
+        issueNotification(value, uris.toArray(new Uri[uris.size()]));
+    }
+
+    /**
+     * Issue notification to the specified Uris.  The notification is built once and queued to each
+     * Uri.
+     * @param value - Notification to issue
+     * @param uris - Uris to issue the notification to
+     */
+    static public void issueNotification(Value value, Uri[] uris) {
+        HTTPClientPool pool = HTTPClientPool.instance();
+        if (pool == null) {
+            return;
+        }
         Long notificationId = NotificationInfo.next();
         Notify notif = new NotifyBuilder()
                 .setNotificationId(new NotificationId(notificationId))
@@ -136,15 +169,9 @@ public class Notifier {
                 .build();
 
         for(Uri uri : uris) {
-            if (uri!=null && uri.getValue().startsWith("http") &&
-                    (HTTPClientPool.instance() != null)) {
+            if (uri!=null && uri.getValue().startsWith("http")) {
                     try {
-                        HTTPClientPool.instance().getWorker().getQueue().put(
-                            new AbstractMap.SimpleEntry<Uri,Notification>(
-                                    uri,
-                                    notif));
-                    } catch (InterruptedException e) {
-                    	ErrorLog.logError(e.getStackTrace());
+                        pool.enqueue(uri, notif);
                     } catch (Exception ee) {
                     	ErrorLog.logError(ee.getMessage(),ee.getStackTrace());
                     }
@@ -163,14 +190,9 @@ public class Notifier {
                 .setTimestamp(BigInteger.valueOf(System.currentTimeMillis()))
                 .setValue(ddn)
                 .build();
-        String streamString = fpcCodecUtils.notificationToJsonString(Notify.class,
-		        (DataObject) notif,
-		        true);
-        streamString = streamString.replace("\n", "");
-        streamString = "event:application/json;/notification\ndata:"+streamString+"\n";
         try {
-			NotificationService.blockingQueue.put(new AbstractMap.SimpleEntry<String,String>(ddn.getClientId().getInt64().toString(),streamString));
-		} catch (InterruptedException e) {
+			NotificationService.send(ddn.getClientId().getInt64().toString(), toEventFrame((DataObject) notif));
+		} catch (IOException e) {
 			ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
 		}
     }
@@ -180,24 +202,29 @@ public class Notifier {
      * @param dpnAvailability - DPN
      */
     static public void issueDpnAvailabilityNotification(DpnAvailability dpnAvailability){
+		Long notificationId = NotificationInfo.next();
+        Notify notif = new NotifyBuilder()
+                .setNotificationId(new NotificationId(notificationId))
+                .setTimestamp(BigInteger.valueOf(System.currentTimeMillis()))
+                .setValue(dpnAvailability)
+                .build();
+        byte[] frame;
+        try {
+            frame = toEventFrame((DataObject) notif);
+        } catch (IOException e) {
+			ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
+			return;
+		}
     	for(ClientIdentifier clientId : FpcServiceImpl.clientIdList){
-    		Long notificationId = NotificationInfo.next();
-            Notify notif = new NotifyBuilder()
-                    .setNotificationId(new NotificationId(notificationId))
-                    .setTimestamp(BigInteger.valueOf(System.currentTimeMillis()))
-                    .setValue(dpnAvailability)
-                    .build();
-            String streamString = fpcCodecUtils.notificationToJsonString(Notify.class,
-			        (DataObject) notif,
-			        true);
-            streamString = streamString.replace("\n", "");
-            streamString = "event:application/json;/notification\ndata:"+streamString+"\n";
-
-            try {
-				NotificationService.blockingQueue.put(new AbstractMap.SimpleEntry<String,String>(clientId.getInt64().toString(),streamString));
-			} catch (InterruptedException e) {
-				ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
-			}
+			NotificationService.send(clientId.getInt64().toString(), frame);
+    	}
+    	FpcProvider provider = FpcProvider.getInstance();
+    	if (provider != null && provider.getConfig() != null && provider.getConfig().getDefaultTenantId() != null) {
+    	    Uri[] uris = EventMonitorMgr.getUris(new FpcIdentity(provider.getConfig().getDefaultTenantId()).toString(),
+    	            (dpnAvailability.getDpnStatus() == DpnStatus.Available) ? Events.DPN_UP : Events.DPN_DOWN);
+    	    if (uris.length > 0) {
+    	        issueNotification(dpnAvailability, uris);
+    	    }
     	}
     }
 
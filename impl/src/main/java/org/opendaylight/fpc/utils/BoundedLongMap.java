@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+/**
+ * Map of long keys to long values holding at most maxEntries entries.
+ *
+ * Entries are kept in an open addressing table (linear probing, backward shift removal) that
+ * starts small and doubles up to the size needed for maxEntries, so memory follows the number of
+ * entries actually held and the map no longer allocates once it has been full.  When a put would
+ * exceed maxEntries the oldest put still present is evicted.  NOT thread safe; it is meant to be
+ * owned by one worker.
+ */
+public class BoundedLongMap {
+    /**
+     * Value returned by get and remove for an absent key.
+     */
+    public static final long MISSING = Long.MIN_VALUE;
+    /**
+     * Largest supported maxEntries; the table then holds 2^30 slots.
+     */
+    public static final int MAX_ENTRIES = 1 << 29;
+    private static final int INITIAL_ENTRIES = 1 << 10;
+
+    private final int maxEntries;
+    private long[] keys;
+    private long[] values;
+    // Put sequence of the entry in a slot, 0 for a free slot
+    private long[] stamps;
+    private int mask;
+    // Entries held before the table is doubled
+    private int threshold;
+    // Insertion order ring (key, stamp) used for eviction
+    private long[] orderKeys;
+    private long[] orderStamps;
+    private int orderHead;
+    private int orderSize;
+    private long nextStamp = 1L;
+    private int size;
+    private long evictions;
+
+    /**
+     * Constructor.
+     * @param maxEntries - maximum number of entries, clamped to [1, MAX_ENTRIES]
+     */
+    public BoundedLongMap(int maxEntries) {
+        this.maxEntries = Math.min(MAX_ENTRIES, Math.max(1, maxEntries));
+        allocate(tableSize(Math.min(this.maxEntries, INITIAL_ENTRIES)));
+    }
+
+    /**
+     * Returns the value of a key.
+     * @param key - key
+     * @return value or MISSING
+     */
+    public long get(long key) {
+        int i = find(key);
+        return (i < 0) ? MISSING : values[i];
+    }
+
+    /**
+     * Sets the value of a key, evicting the oldest entry if the map is full.
+     * @param key - key
+     * @param value - value (MUST NOT be MISSING)
+     */
+    public void put(long key, long value) {
+        long stamp = nextStamp++;
+        int i = slot(key);
+        for (; stamps[i] != 0L; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                stamps[i] = stamp;
+                record(key, stamp);
+                return;
+            }
+        }
+        if (size == maxEntries) {
+            evictOldest();
+            // The eviction may have shifted entries into the free slot
+            i = freeSlot(key);
+        } else if (size == threshold) {
+            grow();
+            i = freeSlot(key);
+        }
+        keys[i] = key;
+        values[i] = value;
+        stamps[i] = stamp;
+        size++;
+        record(key, stamp);
+    }
+
+    /**
+     * Removes a key.
+     * @param key - key
+     * @return the removed value or MISSING
+     */
+    public long remove(long key) {
+        int i = find(key);
+        if (i < 0) {
+            return MISSING;
+        }
+        long retVal = values[i];
+        delete(i);
+        return retVal;
+    }
+
+    /**
+     * Number of entries.
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of entries evicted since the map was created.
+     * @return evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Number of table slots currently allocated.
+     * @return capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Table size for a number of entries - the smallest power of two keeping the load factor at
+     * or below 0.5.
+     */
+    private static int tableSize(int entries) {
+        return Math.max(2, Integer.highestOneBit((entries << 1) - 1) << 1);
+    }
+
+    /**
+     * Allocates an empty table and insertion order ring.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        stamps = new long[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(maxEntries, capacity >> 1);
+        // Twice the entries the table may hold, so a compaction frees at least half of the ring
+        orderKeys = new long[threshold << 1];
+        orderStamps = new long[threshold << 1];
+        orderHead = 0;
+        orderSize = 0;
+    }
+
+    /**
+     * Doubles the table and moves the entries and the current records of the ring over.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        long[] oldStamps = stamps;
+        long[] oldOrderKeys = orderKeys;
+        long[] oldOrderStamps = orderStamps;
+        int oldHead = orderHead;
+        int oldSize = orderSize;
+        allocate(keys.length << 1);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStamps[j] != 0L) {
+                int i = freeSlot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                stamps[i] = oldStamps[j];
+            }
+        }
+        for (int n = 0; n < oldSize; n++) {
+            int r = (oldHead + n) % oldOrderKeys.length;
+            if (isCurrent(oldOrderKeys[r], oldOrderStamps[r])) {
+                orderKeys[orderSize] = oldOrderKeys[r];
+                orderStamps[orderSize] = oldOrderStamps[r];
+                orderSize++;
+            }
+        }
+    }
+
+    /**
+     * Appends a put to the insertion order ring.  A full ring is compacted first; every put has a
+     * unique stamp, so at most size records are current and at least half of the ring is freed.
+     */
+    private void record(long key, long stamp) {
+        if (orderSize == orderKeys.length) {
+            compact();
+        }
+        int tail = (orderHead + orderSize) % orderKeys.length;
+        orderKeys[tail] = key;
+        orderStamps[tail] = stamp;
+        orderSize++;
+    }
+
+    /**
+     * Drops the records of the ring that are no longer the latest put of their key.
+     */
+    private void compact() {
+        // Kept records are moved towards the head, behind the records still to be read
+        int kept = 0;
+        for (int n = 0; n < orderSize; n++) {
+            int r = (orderHead + n) % orderKeys.length;
+            if (isCurrent(orderKeys[r], orderStamps[r])) {
+                int w = (orderHead + kept) % orderKeys.length;
+                orderKeys[w] = orderKeys[r];
+                orderStamps[w] = orderStamps[r];
+                kept++;
+            }
+        }
+        orderSize = kept;
+    }
+
+    /**
+     * Evicts the oldest put that is still the latest put of its key.
+     */
+    private void evictOldest() {
+        while (orderSize > 0) {
+            long key = orderKeys[orderHead];
+            long stamp = orderStamps[orderHead];
+            orderHead = (orderHead + 1) % orderKeys.length;
+            orderSize--;
+            int i = find(key);
+            if (i >= 0 && stamps[i] == stamp) {
+                delete(i);
+                evictions++;
+                return;
+            }
+        }
+    }
+
+    private boolean isCurrent(long key, long stamp) {
+        int i = find(key);
+        return i >= 0 && stamps[i] == stamp;
+    }
+
+    /**
+     * Slot of a key.
+     * @return slot or -1 if the key is absent
+     */
+    private int find(long key) {
+        for (int i = slot(key); stamps[i] != 0L; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * First free slot of the probe sequence of a key.
+     */
+    private int freeSlot(long key) {
+        int i = slot(key);
+        while (stamps[i] != 0L) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Frees a slot and shifts back the entries of its probe sequence.
+     */
+    private void delete(int i) {
+        int hole = i;
+        for (int j = (i + 1) & mask; stamps[j] != 0L; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // Move j into the hole unless its home lies cyclically in (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                stamps[hole] = stamps[j];
+                hole = j;
+            }
+        }
+        stamps[hole] = 0L;
+        size--;
+    }
+
+    private int slot(long key) {
+        key ^= (key >>> 33);
+        key *= 0xff51afd7ed558ccdL;
+        key ^= (key >>> 33);
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.AugmentationIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeWithValue;
+import org.opendaylight.yangtools.yang.data.api.schema.AugmentationNode;
+import org.opendaylight.yangtools.yang.data.api.schema.ChoiceNode;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafNode;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafSetEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafSetNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.OrderedLeafSetNode;
+import org.opendaylight.yangtools.yang.data.api.schema.OrderedMapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.UnkeyedListEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.UnkeyedListNode;
+import org.opendaylight.yangtools.yang.data.api.schema.stream.NormalizedNodeStreamWriter;
+import org.opendaylight.yangtools.yang.data.impl.schema.ImmutableNormalizedNodeStreamWriter;
+import org.opendaylight.yangtools.yang.data.impl.schema.NormalizedNodeResult;
+
+/**
+ * Compact binary encoding of Normalized Nodes.
+ *
+ * Every node is written as a one byte node type followed by the QName of the node, its children
+ * count and its children (or value).  QNames are replaced by a small integer assigned by this
+ * codec the first time a QName is seen; the dictionary stays on heap and is bounded by the size of
+ * the schema.  Integers are variable length encoded and Strings are UTF-8.
+ *
+ * Decoding replays the encoded tree into an ImmutableNormalizedNodeStreamWriter, so the result is
+ * equal to the encoded node.  Nodes holding AnyXml data or leaf values of an unsupported type are
+ * rejected with an {@link UnsupportedNodeException} and should be kept elsewhere.
+ *
+ * Encoding and decoding are thread safe.
+ */
+public class CompactNodeCodec {
+    // Node Types
+    private static final byte CONTAINER = 1;
+    private static final byte MAP_ENTRY = 2;
+    private static final byte MAP = 3;
+    private static final byte ORDERED_MAP = 4;
+    private static final byte LEAF = 5;
+    private static final byte LEAF_SET = 6;
+    private static final byte ORDERED_LEAF_SET = 7;
+    private static final byte LEAF_SET_ENTRY = 8;
+    private static final byte CHOICE = 9;
+    private static final byte AUGMENTATION = 10;
+    private static final byte UNKEYED_LIST = 11;
+    private static final byte UNKEYED_LIST_ENTRY = 12;
+
+    // Value Types
+    private static final byte V_NULL = 0;
+    private static final byte V_STRING = 1;
+    private static final byte V_TRUE = 2;
+    private static final byte V_FALSE = 3;
+    private static final byte V_BYTE = 4;
+    private static final byte V_SHORT = 5;
+    private static final byte V_INT = 6;
+    private static final byte V_LONG = 7;
+    private static final byte V_BIG_INTEGER = 8;
+    private static final byte V_BIG_DECIMAL = 9;
+    private static final byte V_QNAME = 10;
+    private static final byte V_BINARY = 11;
+    private static final byte V_BITS = 12;
+
+    private final Map<QName, Integer> qnameIds = new ConcurrentHashMap<QName, Integer>();
+    private volatile QName[] qnames = new QName[64];
+    private int qnameCount = 0;
+
+    /**
+     * Indicates a node that cannot be encoded.
+     */
+    public static class UnsupportedNodeException extends RuntimeException {
+        /**
+         * Generated Serial Id.
+         */
+        private static final long serialVersionUID = 6146712468253093870L;
+
+        /**
+         * Constructor.
+         * @param message - reason the node is unsupported
+         */
+        public UnsupportedNodeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Growable byte sink used during encoding.
+     */
+    public static final class Output {
+        private byte[] buf;
+        private int pos;
+
+        /**
+         * Constructor.
+         * @param initialSize - initial buffer size
+         */
+        public Output(int initialSize) {
+            buf = new byte[Math.max(16, initialSize)];
+        }
+
+        /**
+         * Discards the written bytes.
+         */
+        public void reset() {
+            pos = 0;
+        }
+
+        /**
+         * Underlying array.  Valid bytes are in [0, {@link #length()}).
+         * @return byte array
+         */
+        public byte[] array() {
+            return buf;
+        }
+
+        /**
+         * Number of written bytes.
+         * @return length
+         */
+        public int length() {
+            return pos;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBytes(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, pos, b.length);
+            pos += b.length;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+    }
+
+    /**
+     * Cursor over encoded bytes.
+     */
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf, int off) {
+            this.buf = buf;
+            this.pos = off;
+        }
+
+        byte readByte() {
+            return buf[pos++];
+        }
+
+        byte[] readBytes(int len) {
+            byte[] b = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return b;
+        }
+
+        String readString(int len) {
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+    }
+
+    /**
+     * Encodes a Normalized Node.
+     * @param node - Normalized Node
+     * @param out - byte sink (appended to)
+     * @throws UnsupportedNodeException - if the node contains data this codec cannot represent
+     */
+    public void encode(NormalizedNode<?, ?> node, Output out) {
+        if (node instanceof LeafNode) {
+            out.writeByte(LEAF);
+            writeQName(node.getNodeType(), out);
+            writeValue(node.getValue(), out);
+        } else if (node instanceof LeafSetEntryNode) {
+            out.writeByte(LEAF_SET_ENTRY);
+            writeQName(node.getNodeType(), out);
+            writeValue(((NodeWithValue<?>) node.getIdentifier()).getValue(), out);
+        } else if (node instanceof MapEntryNode) {
+            out.writeByte(MAP_ENTRY);
+            writeQName(node.getNodeType(), out);
+            Map<QName, Object> keys = ((MapEntryNode) node).getIdentifier().getKeyValues();
+            out.writeVarLong(keys.size());
+            for (Map.Entry<QName, Object> key : keys.entrySet()) {
+                writeQName(key.getKey(), out);
+                writeValue(key.getValue(), out);
+            }
+            writeChildren(((MapEntryNode) node).getValue(), out);
+        } else if (node instanceof ContainerNode) {
+            out.writeByte(CONTAINER);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((ContainerNode) node).getValue(), out);
+        } else if (node instanceof ChoiceNode) {
+            out.writeByte(CHOICE);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((ChoiceNode) node).getValue(), out);
+        } else if (node instanceof AugmentationNode) {
+            out.writeByte(AUGMENTATION);
+            Set<QName> names = ((AugmentationNode) node).getIdentifier().getPossibleChildNames();
+            out.writeVarLong(names.size());
+            for (QName name : names) {
+                writeQName(name, out);
+            }
+            writeChildren(((AugmentationNode) node).getValue(), out);
+        } else if (node instanceof UnkeyedListEntryNode) {
+            out.writeByte(UNKEYED_LIST_ENTRY);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((UnkeyedListEntryNode) node).getValue(), out);
+        } else if (node instanceof MapNode) {
+            out.writeByte((node instanceof OrderedMapNode) ? ORDERED_MAP : MAP);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((MapNode) node).getValue(), out);
+        } else if (node instanceof LeafSetNode) {
+            out.writeByte((node instanceof OrderedLeafSetNode) ? ORDERED_LEAF_SET : LEAF_SET);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((LeafSetNode<?>) node).getValue(), out);
+        } else if (node instanceof UnkeyedListNode) {
+            out.writeByte(UNKEYED_LIST);
+            writeQName(node.getNodeType(), out);
+            writeChildren(((UnkeyedListNode) node).getValue(), out);
+        } else {
+            throw new UnsupportedNodeException("Unsupported node type - " +
+                    ((node != null) ? node.getClass().getName() : "null"));
+        }
+    }
+
+    /**
+     * Decodes a Normalized Node.
+     * @param buf - encoded bytes
+     * @param off - offset of the encoded node
+     * @return Normalized Node
+     */
+    public NormalizedNode<?, ?> decode(byte[] buf, int off) {
+        final NormalizedNodeResult result = new NormalizedNodeResult();
+        final NormalizedNodeStreamWriter writer = ImmutableNormalizedNodeStreamWriter.from(result);
+        try {
+            readNode(new Input(buf, off), writer);
+            writer.flush();
+        } catch (IOException e) {
+            // Immutable writers do not perform I/O
+            throw new IllegalStateException(e);
+        }
+        return result.getResult();
+    }
+
+    /**
+     * Number of QNames in the dictionary.
+     * @return QName count
+     */
+    public synchronized int getDictionarySize() {
+        return qnameCount;
+    }
+
+    private void writeChildren(Collection<? extends NormalizedNode<?, ?>> children, Output out) {
+        out.writeVarLong(children.size());
+        for (NormalizedNode<?, ?> child : children) {
+            encode(child, out);
+        }
+    }
+
+    private void writeQName(QName name, Output out) {
+        Integer id = qnameIds.get(name);
+        out.writeVarLong((id != null) ? id : register(name));
+    }
+
+    /**
+     * Adds a QName to the dictionary.
+     * @param name - QName
+     * @return dictionary id
+     */
+    private synchronized int register(QName name) {
+        Integer id = qnameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        QName[] names = qnames;
+        if (qnameCount == names.length) {
+            names = Arrays.copyOf(names, names.length << 1);
+        }
+        names[qnameCount] = name;
+        // Publish the array before the id so a decoder never sees an id it cannot resolve
+        qnames = names;
+        qnameIds.put(name, qnameCount);
+        return qnameCount++;
+    }
+
+    private void writeValue(Object value, Output out) {
+        if (value == null) {
+            out.writeByte(V_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(V_STRING);
+            byte[] b = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(b.length);
+            out.writeBytes(b);
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value) ? V_TRUE : V_FALSE);
+        } else if (value instanceof Byte) {
+            out.writeByte(V_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(V_SHORT);
+            out.writeVarLong(((Short) value) & 0xFFFFL);
+        } else if (value instanceof Integer) {
+            out.writeByte(V_INT);
+            out.writeVarLong(((Integer) value) & 0xFFFFFFFFL);
+        } else if (value instanceof Long) {
+            out.writeByte(V_LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(V_BIG_INTEGER);
+            byte[] b = ((BigInteger) value).toByteArray();
+            out.writeVarLong(b.length);
+            out.writeBytes(b);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(V_BIG_DECIMAL);
+            byte[] b = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(b.length);
+            out.writeBytes(b);
+        } else if (value instanceof QName) {
+            out.writeByte(V_QNAME);
+            writeQName((QName) value, out);
+        } else if (value instanceof byte[]) {
+            out.writeByte(V_BINARY);
+            out.writeVarLong(((byte[]) value).length);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Set) {
+            out.writeByte(V_BITS);
+            out.writeVarLong(((Set<?>) value).size());
+            for (Object bit : (Set<?>) value) {
+                if (!(bit instanceof String)) {
+                    throw new UnsupportedNodeException("Unsupported bits value - " + bit);
+                }
+                byte[] b = ((String) bit).getBytes(StandardCharsets.UTF_8);
+                out.writeVarLong(b.length);
+                out.writeBytes(b);
+            }
+        } else {
+            throw new UnsupportedNodeException("Unsupported value type - " + value.getClass().getName());
+        }
+    }
+
+    private QName readQName(Input in) {
+        return qnames[in.readVarInt()];
+    }
+
+    private Object readValue(Input in) {
+        byte type = in.readByte();
+        switch (type) {
+            case V_NULL:
+                return null;
+            case V_STRING:
+                return in.readString(in.readVarInt());
+            case V_TRUE:
+                return Boolean.TRUE;
+            case V_FALSE:
+                return Boolean.FALSE;
+            case V_BYTE:
+                return in.readByte();
+            case V_SHORT:
+                return (short) in.readVarLong();
+            case V_INT:
+                return (int) in.readVarLong();
+            case V_LONG:
+                return in.readVarLong();
+            case V_BIG_INTEGER:
+                return new BigInteger(in.readBytes(in.readVarInt()));
+            case V_BIG_DECIMAL:
+                return new BigDecimal(in.readString(in.readVarInt()));
+            case V_QNAME:
+                return readQName(in);
+            case V_BINARY:
+                return in.readBytes(in.readVarInt());
+            case V_BITS:
+                int count = in.readVarInt();
+                Set<String> bits = new HashSet<String>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    bits.add(in.readString(in.readVarInt()));
+                }
+                return bits;
+            default:
+                throw new IllegalStateException("Corrupt encoding - value type " + type);
+        }
+    }
+
+    private void readNode(Input in, NormalizedNodeStreamWriter writer) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case LEAF:
+                writer.leafNode(new NodeIdentifier(readQName(in)), readValue(in));
+                return;
+            case LEAF_SET_ENTRY:
+                writer.leafSetEntryNode(readQName(in), readValue(in));
+                return;
+            case MAP_ENTRY: {
+                QName name = readQName(in);
+                int keyCount = in.readVarInt();
+                NodeIdentifierWithPredicates id;
+                if (keyCount == 1) {
+                    QName key = readQName(in);
+                    id = new NodeIdentifierWithPredicates(name, key, readValue(in));
+                } else {
+                    Map<QName, Object> keys = new LinkedHashMap<QName, Object>(keyCount * 2);
+                    for (int i = 0; i < keyCount; i++) {
+                        QName key = readQName(in);
+                        keys.put(key, readValue(in));
+                    }
+                    id = new NodeIdentifierWithPredicates(name, keys);
+                }
+                int count = in.readVarInt();
+                writer.startMapEntryNode(id, count);
+                readChildren(in, count, writer);
+                return;
+            }
+            case AUGMENTATION: {
+                int nameCount = in.readVarInt();
+                Set<QName> names = new HashSet<QName>(nameCount * 2);
+                for (int i = 0; i < nameCount; i++) {
+                    names.add(readQName(in));
+                }
+                writer.startAugmentationNode(new AugmentationIdentifier(names));
+                readChildren(in, in.readVarInt(), writer);
+                return;
+            }
+            default:
+                break;
+        }
+
+        NodeIdentifier id = new NodeIdentifier(readQName(in));
+        int count = in.readVarInt();
+        switch (type) {
+            case CONTAINER:
+                writer.startContainerNode(id, count);
+                break;
+            case CHOICE:
+                writer.startChoiceNode(id, count);
+                break;
+            case UNKEYED_LIST_ENTRY:
+                writer.startUnkeyedListItem(id, count);
+                break;
+            case MAP:
+                writer.startMapNode(id, count);
+                break;
+            case ORDERED_MAP:
+                writer.startOrderedMapNode(id, count);
+                break;
+            case LEAF_SET:
+                writer.startLeafSet(id, count);
+                break;
+            case ORDERED_LEAF_SET:
+                writer.startOrderedLeafSet(id, count);
+                break;
+            case UNKEYED_LIST:
+                writer.startUnkeyedList(id, count);
+                break;
+            default:
+                throw new IllegalStateException("Corrupt encoding - node type " + type);
+        }
+        readChildren(in, count, writer);
+    }
+
+    private void readChildren(Input in, int count, NormalizedNodeStreamWriter writer) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readNode(in, writer);
+        }
+        writer.endNode();
+    }
+}
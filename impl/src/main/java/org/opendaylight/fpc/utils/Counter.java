@@ -7,15 +7,13 @@
  */
 package org.opendaylight.fpc.utils;
 
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * A Counter used to track allocated integers in a range of values. 
+ * A Counter used to track allocated integers in a range of values.  Values are treated as
+ * unsigned 32 bit integers (e.g. TEIDs and IPv4 addresses).
  *
  * Example:
  *
@@ -27,37 +25,79 @@ import java.util.TreeMap;
  * Recycle:
  * c.recyle(i);
  *
+ * The Counter is thread safe and lock free.  Allocation state is a bitmap of atomic 64 bit words
+ * (one bit per value) that is created lazily in segments.  Each thread claims a whole word at a
+ * time into a private cache and allocates from it without any atomic operation; a recycled
+ * value is released immediately, either back into the recycling thread's cache (if it owns the
+ * word) or into the shared bitmap.  Allocation and recycle are O(1) amortized and do not
+ * allocate once the segment covering a value exists.
+ *
+ * Each thread that allocates from a Counter reserves up to 63 values of it in its cache.  Values
+ * reserved by one thread are not handed out to other threads, so nextValue() may fail while up
+ * to 63 values per allocating thread are still unused; the values are available again once the
+ * owning thread allocates them or returns them with {@link #releaseCache()}; the values reserved
+ * by a thread that ends without calling it are not issued again.
  */
-// TODO - Determine if we can eliminate the background thread in the PageManager during a recycle as it appears unnecessary.
-// TODO - Re-issue partially used pages.  Right now we throw them away.
 public class Counter {
-    private final static int MAX_SIZE_EXPONENT = 32;
-    private final static int PAGE_SIZE_EXPONENT= 2;
-    private final static int PAGE_SIZE = (int) Math.pow(2, PAGE_SIZE_EXPONENT);
+    private static final int WORD_BITS_EXPONENT = 6;
+    private static final int WORD_BITS = 1 << WORD_BITS_EXPONENT;
+    private static final int SEGMENT_WORDS_EXPONENT = 10;
+    private static final int SEGMENT_WORDS = 1 << SEGMENT_WORDS_EXPONENT;
+    private static final long FULL_WORD = -1L;
+    private static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+
+    private final long firstValue;
+    private final long size;
+    private final int words;
+    private final AtomicReferenceArray<AtomicLongArray> segments;
+    private final AtomicLong cursor;
+    private final ThreadLocal<Cache> caches;
 
-    private PageManager w;
-    private Page currentPage, nextPage;
-    private int offset = 0;
+    /**
+     * Per thread allocation cache: a claimed word and the values of it not yet handed out.
+     */
+    private static final class Cache {
+        int word = -1;
+        long free = 0L;
+    }
 
     /**
-     * Constructor for a given range.
-     * @param lo - minimum value (inclusive)
+     * Constructor for a given range.  Values are issued from lo + 1 up to hi.
+     * @param lo - minimum value (exclusive)
      * @param hi - maximum value (inclusive)
      */
     public Counter(int lo, int hi) {
-        offset = lo;
-        w = new PageManager(lo,hi);
-        currentPage = w.nextPage();
-        nextPage = w.nextPage();
+        this((lo & MAX_UNSIGNED_INT) + 1, (hi & MAX_UNSIGNED_INT) - (lo & MAX_UNSIGNED_INT));
     }
 
     /**
-     * Default Constructor for the full range of integer values.
+     * Default Constructor for the full range of unsigned integer values (zero excluded).
      */
     public Counter() {
-        w = new PageManager();
-        currentPage = w.nextPage();
-        nextPage = w.nextPage();
+        this(1L, MAX_UNSIGNED_INT);
+    }
+
+    /**
+     * Primary Constructor.
+     * @param firstValue - first value of the range
+     * @param size - number of values in the range
+     */
+    private Counter(long firstValue, long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Counter range is empty");
+        }
+        this.firstValue = firstValue;
+        this.size = size;
+        this.words = (int) ((size + WORD_BITS - 1) >>> WORD_BITS_EXPONENT);
+        this.segments = new AtomicReferenceArray<AtomicLongArray>(
+                (words + SEGMENT_WORDS - 1) >>> SEGMENT_WORDS_EXPONENT);
+        this.cursor = new AtomicLong(0L);
+        this.caches = new ThreadLocal<Cache>() {
+            @Override
+            protected Cache initialValue() {
+                return new Cache();
+            }
+        };
     }
 
     /**
@@ -66,19 +106,13 @@ public class Counter {
      * @throws OutOfRangeException when no unused value exists
      */
     public int nextValue() throws OutOfRangeException {
-        int nv;
-
-        try {
-            nv = currentPage.nextValue();
-        } catch (OutOfRangeException e) {
-            // Running of current page
-            currentPage = nextPage;
-            nextPage = w.nextPage();
-
-            nv = currentPage.nextValue();
+        Cache cache = caches.get();
+        if (cache.free == 0L) {
+            claimWord(cache);
         }
-
-        return nv + offset;
+        int bit = Long.numberOfTrailingZeros(cache.free);
+        cache.free &= cache.free - 1;
+        return (int) (firstValue + ((long) cache.word << WORD_BITS_EXPONENT) + bit);
     }
 
     /**
@@ -86,144 +120,99 @@ public class Counter {
      * @param i - integer value to be recycled.
      */
     public void recycle(int i) {
-        w.recycle(i);
+        long index = (i & MAX_UNSIGNED_INT) - firstValue;
+        if (index < 0 || index >= size) {
+            return;
+        }
+        int word = (int) (index >>> WORD_BITS_EXPONENT);
+        long bit = 1L << (index & (WORD_BITS - 1));
+        Cache cache = caches.get();
+        if (cache.word == word) {
+            // The word is reserved by this thread; the value becomes available to it immediately
+            cache.free |= bit;
+            return;
+        }
+        AtomicLongArray segment = segment(word >>> SEGMENT_WORDS_EXPONENT);
+        int offset = word & (SEGMENT_WORDS - 1);
+        long v;
+        do {
+            v = segment.get(offset);
+            if ((v & bit) == 0) {
+                return; // not allocated
+            }
+        } while (!segment.compareAndSet(offset, v, v & ~bit));
     }
 
     /**
-     * Manages the pages (sub-ranges) of the pool
+     * Returns the values reserved in the calling thread's cache to the pool.  Threads that stop
+     * allocating from this Counter SHOULD call this.
      */
-    private class PageManager {
-        private static final int TIMER_INTERVAL = 60000;
-        private static final int TIMER_START_TIME = 1000;
-        private int page_index_range = (int) Math.pow(2.0, MAX_SIZE_EXPONENT - PAGE_SIZE_EXPONENT);
-        private BitSet unusedPageIndex = new BitSet(page_index_range);
-        private TreeMap<Integer, BitSet> recylePages = new TreeMap<>();
-
-        /**
-         * Range based Constructor
-         * @param lo - minimum value (inclusive)
-         * @param hi - maximum value (inclusive)
-         */
-        public PageManager(int lo, int hi) {
-            page_index_range = (int) ((hi - lo) / Math.pow(2.0, PAGE_SIZE_EXPONENT));
-            unusedPageIndex = new BitSet(page_index_range);
-            start();
-        }
-
-        /**
-         * Default Constructor.
-         */
-        public PageManager() {
-            page_index_range = (int) Math.pow(2.0, MAX_SIZE_EXPONENT - PAGE_SIZE_EXPONENT);
-            unusedPageIndex = new BitSet(page_index_range);
-            start();
+    public void releaseCache() {
+        Cache cache = caches.get();
+        if (cache.word >= 0 && cache.free != 0L) {
+            AtomicLongArray segment = segment(cache.word >>> SEGMENT_WORDS_EXPONENT);
+            int offset = cache.word & (SEGMENT_WORDS - 1);
+            long v;
+            do {
+                v = segment.get(offset);
+            } while (!segment.compareAndSet(offset, v, v & ~cache.free));
         }
+        cache.word = -1;
+        cache.free = 0L;
+    }
 
-        /**
-         * Starts the internal thread used to clean up pages.
-         */
-        private void start() {
-            Timer t = new Timer();
-            t.scheduleAtFixedRate( new TimerTask() {
-
-                @Override
-                public void run() {
-                    cleanup();
+    /**
+     * Reserves the free values of the next word that has any into the cache.
+     * @param cache - calling thread's cache
+     * @throws OutOfRangeException when every value is in use
+     */
+    private void claimWord(Cache cache) throws OutOfRangeException {
+        cache.word = -1;
+        for (int scanned = 0; scanned < words; scanned++) {
+            int word = (int) Long.remainderUnsigned(cursor.getAndIncrement(), words);
+            AtomicLongArray segment = segment(word >>> SEGMENT_WORDS_EXPONENT);
+            int offset = word & (SEGMENT_WORDS - 1);
+            long v;
+            while ((v = segment.get(offset)) != FULL_WORD) {
+                if (segment.compareAndSet(offset, v, FULL_WORD)) {
+                    cache.word = word;
+                    cache.free = ~v;
+                    return;
                 }
-            },
-                    TIMER_START_TIME, TIMER_INTERVAL);
-        }
-
-        /**
-         * Returns the next available page.
-         * @return next page with some unallocated values
-         * @throws OutOfRangeException when no pages remain
-         */
-        public Page nextPage() throws OutOfRangeException {
-            int index = unusedPageIndex.nextClearBit(0);
-            if (index > page_index_range) 
-            	throw new OutOfRangeException();
-            unusedPageIndex.set(index);
-            return new Page(index);
-        }
-
-        /**
-         * Recycles an integer
-         * @param num - integer to be recycled in the pool
-         */
-        public void recycle(int num) {
-          Integer pageNumber = (num -1) / PAGE_SIZE;
-
-          BitSet usedPage = recylePages.get(pageNumber);
-
-          if (usedPage == null) {
-              usedPage = new BitSet(PAGE_SIZE);
-              recylePages.put(pageNumber, usedPage);
-
-          }
-          usedPage.set(num-1);
-        }
-
-        /**
-         * Cleanup process that looks for completely empty pages.
-         */
-        public synchronized void cleanup() {
-            ArrayList<Integer> removeList = new ArrayList<>();
-                for (Map.Entry<Integer, BitSet> entry: recylePages.entrySet()) {
-                    int i = entry.getKey();
-                    BitSet value = entry.getValue();
-                    if (value.cardinality() == PAGE_SIZE) {
-                        unusedPageIndex.clear(i);
-                        removeList.add(i);
-                    }
-
-            }
-            for (Integer i : removeList) {
-                recylePages.remove(i);
             }
         }
+        throw new OutOfRangeException();
     }
 
     /**
-     * Tracking class for used values.
+     * Retrieves (lazily creating) a bitmap segment.
+     * @param index - segment index
+     * @return segment
      */
-    private class Page {
-        int currentValue;
-        int maxValue;
-
-        /**
-         * Primary Constructor.
-         * @param index - Page index (used by the PageManager for tracking)
-         */
-        public Page(int index) {
-            if (index == 0) {
-                this.maxValue = PAGE_SIZE;
-                this.currentValue = 0;
-            } else {
-                this.maxValue = (int)Math.pow(2,PAGE_SIZE_EXPONENT+index);
-                this.currentValue = (int) Math.pow(2,PAGE_SIZE_EXPONENT+index-1);
-            }
-        }
-
-        /**
-         * Returns the next unused value.
-         * @return integer
-         * @throws OutOfRangeException when no unused value exists
-         */ 
-        public int nextValue() throws OutOfRangeException {
-            this.currentValue++;
-
-            if (this.currentValue > this.maxValue) {
-                throw new OutOfRangeException();
+    private AtomicLongArray segment(int index) {
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            AtomicLongArray created = new AtomicLongArray(SEGMENT_WORDS);
+            // Values beyond the end of the range are marked as used
+            long firstOutOfRange = size - ((long) index << (SEGMENT_WORDS_EXPONENT + WORD_BITS_EXPONENT));
+            for (int w = 0; w < SEGMENT_WORDS; w++) {
+                long firstBit = (long) w << WORD_BITS_EXPONENT;
+                if (firstBit >= firstOutOfRange) {
+                    created.set(w, FULL_WORD);
+                } else if (firstBit + WORD_BITS > firstOutOfRange) {
+                    created.set(w, FULL_WORD << (firstOutOfRange - firstBit));
+                }
             }
-            return this.currentValue;
+            segments.compareAndSet(index, null, created);
+            segment = segments.get(index);
         }
+        return segment;
     }
 
     /**
      * Explicit error noting the exhaust of a page or pool
      */
-    public class OutOfRangeException extends RuntimeException {
+    public static class OutOfRangeException extends RuntimeException {
         /**
          * Generated Serial Id.
          */
@@ -24,4 +24,10 @@ public class ErrorTypeIndex {
     static final public Long MESSAGE_WITH_NO_BODY = 10L;
     static final public Long CLIENT_ID_NOT_REGISTERED = 11L;
     static final public Long SESSION_ALREADY_EXISTS = 12L;
+    static final public Long ACTIVATION_QUEUE_FULL = 13L;
+    static final public Long DPN_BUSY = 14L;
+    static final public Long MALFORMED_MESSAGE = 15L;
+    static final public Long DPN_TIMEOUT = 16L;
+    static final public Long TRANSACTION_EXPIRED = 17L;
+    static final public Long SESSION_NOT_FOUND = 18L;
 }
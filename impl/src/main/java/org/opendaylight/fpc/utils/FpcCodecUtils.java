@@ -126,6 +126,7 @@ public class FpcCodecUtils {
     private final YangInstanceIdentifier TOP_PATH;
     private SchemaPath CONFIGURE_OUTPUT_PATH;
 	private Object service;
+    private JSONCodecFactory jsonCodecs;
 
     /**
      * Primary Constructor
@@ -148,6 +149,7 @@ public class FpcCodecUtils {
 
         LOG.info("Building Binding Context");
         bindingContext = BindingRuntimeContext.create(moduleContext, context);
+        jsonCodecs = JSONCodecFactory.create(context);
 
         LOG.info("Building Binding Codec Factory");
         final BindingNormalizedNodeCodecRegistry bindingStreamCodecs = new BindingNormalizedNodeCodecRegistry(StreamWriterGenerator.create(JavassistUtils.forClassPool(ClassPool.getDefault())));
@@ -218,9 +220,9 @@ public class FpcCodecUtils {
             final Writer writer = new StringWriter();
             final NormalizedNodeStreamWriter domWriter;
             if(pretty)
-                domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(JSONCodecFactory.create(context), scPath.getParent(), scPath.getLastComponent().getNamespace(), JsonWriterFactory.createJsonWriter(writer,2));
+                domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(jsonCodecs, scPath.getParent(), scPath.getLastComponent().getNamespace(), JsonWriterFactory.createJsonWriter(writer,2));
             else
-                domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(JSONCodecFactory.create(context), scPath.getParent(), scPath.getLastComponent().getNamespace(), JsonWriterFactory.createJsonWriter(writer));
+                domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(jsonCodecs, scPath.getParent(), scPath.getLastComponent().getNamespace(), JsonWriterFactory.createJsonWriter(writer));
             final BindingStreamEventWriter bindingWriter = codecRegistry.newWriter(path, domWriter);
 
             try {
@@ -245,7 +247,7 @@ public class FpcCodecUtils {
     public final String jsonStringFromConfigureOutput(DataObject object) {
         final Writer writer = new StringWriter();
         JsonWriter jsonWriter = JsonWriterFactory.createJsonWriter(writer);
-        final NormalizedNodeStreamWriter domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(JSONCodecFactory.create(context), CONFIGURE_OUTPUT_PATH, CONFIGURE_OUTPUT_PATH.getLastComponent().getNamespace(), jsonWriter);
+        final NormalizedNodeStreamWriter domWriter = JSONNormalizedNodeStreamWriter.createExclusiveWriter(jsonCodecs, CONFIGURE_OUTPUT_PATH, CONFIGURE_OUTPUT_PATH.getLastComponent().getNamespace(), jsonWriter);
         RestconfNormalizedNodeWriter restConfWriter = null;
         try {
         	jsonWriter.beginObject();
@@ -282,6 +284,24 @@ public class FpcCodecUtils {
             DataObject notification,
             boolean pretty) {
         final Writer writer = new StringWriter();
+        try {
+            writeNotificationJson(notification, writer);
+            writer.close();
+            return writer.toString();
+        } catch (IOException e) {
+            LOG.info("Error encounterd during notification => JSON serialization");
+            ErrorLog.logError(e.getStackTrace());
+        }
+        return "";
+    }
+
+    /**
+     * Writes a YANG Notification as compact JSON.
+     * @param notification - Notification instance
+     * @param writer - Writer to use
+     * @throws IOException - if an error was encountered when writing
+     */
+    public void writeNotificationJson(DataObject notification, Writer writer) throws IOException {
         NormalizedNode<?, ?> node = null;
         try {
         	node = codecRegistry.toNormalizedNodeNotification((Notification)notification);
@@ -293,17 +313,8 @@ public class FpcCodecUtils {
 			}
         	node = codecRegistry.toNormalizedNodeNotification((Notification)notification);
         }
-        try {
-            final SchemaPath scPath = SchemaPath.create(true, BindingReflections.findQName(notification.getImplementedInterface()));
-
-            String str =  normalizedNodeToJsonStreamTransformation(writer, scPath, node);
-            writer.close();
-            return str;
-        } catch (IOException e) {
-            LOG.info("Error encounterd during notification => JSON serialization");
-            ErrorLog.logError(e.getStackTrace());
-        }
-        return "";
+        final SchemaPath scPath = SchemaPath.create(true, BindingReflections.findQName(notification.getImplementedInterface()));
+        normalizedNodeToJsonStreamTransformation(writer, scPath, node);
     }
 
     /**
@@ -320,7 +331,7 @@ public class FpcCodecUtils {
     	QName lastcomp = scPath.getLastComponent();
     	URI ns = lastcomp.getNamespace();
         final NormalizedNodeStreamWriter jsonStream = JSONNormalizedNodeStreamWriter.
-                createExclusiveWriter(JSONCodecFactory.create(context), scPath, scPath.getLastComponent().getNamespace(),
+                createExclusiveWriter(jsonCodecs, scPath, scPath.getLastComponent().getNamespace(),
                     JsonWriterFactory.createJsonWriter(writer));
         final NormalizedNodeWriter nodeWriter = NormalizedNodeWriter.forStreamWriter(jsonStream);
         nodeWriter.write(inputStructure);
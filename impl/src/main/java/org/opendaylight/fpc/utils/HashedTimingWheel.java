@@ -0,0 +1,307 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed Timing Wheel.
+ *
+ * Timeouts are hashed into one of ticksPerWheel buckets by their deadline tick and expire with a
+ * resolution of one tick.  Scheduling and cancellation are O(1) and lock free for the caller: new
+ * and cancelled timeouts are handed to the wheel thread through queues and the buckets are only
+ * touched by that thread.  Timeouts further away than one revolution stay in their bucket and
+ * carry the number of remaining revolutions.
+ *
+ * All items expiring in the same tick are delivered to the {@link ExpiryHandler} in a single call
+ * on the wheel thread, so handlers can batch the resulting work.  Handlers SHOULD be short and MUST
+ * NOT block.
+ *
+ * @param <T> - item type
+ */
+public class HashedTimingWheel<T> implements AutoCloseable {
+    /**
+     * Receives the items expiring in a tick.
+     * @param <T> - item type
+     */
+    public interface ExpiryHandler<T> {
+        /**
+         * Called on the wheel thread with the items whose timeouts expired in the same tick.
+         * @param items - expired items (the list is not retained by the wheel)
+         */
+        void expired(List<T> items);
+    }
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    /**
+     * A scheduled timeout.
+     * @param <T> - item type
+     */
+    public static final class Timeout<T> {
+        private final HashedTimingWheel<T> wheel;
+        private final T item;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+        private long remainingRounds;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private Bucket<T> bucket;
+
+        private Timeout(HashedTimingWheel<T> wheel, T item, long deadlineTick) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Returns the scheduled item.
+         * @return item
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Cancels the timeout.
+         * @return true if the timeout was pending and will not expire
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Indicates if the timeout was cancelled.
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * Indicates if the timeout expired.
+         * @return true if expired
+         */
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts.
+     * @param <T> - item type
+     */
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        void remove(Timeout<T> t) {
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            } else {
+                tail = t.prev;
+            }
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+    }
+
+    private final Bucket<T>[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final ExpiryHandler<T> handler;
+    private final ConcurrentLinkedQueue<Timeout<T>> added = new ConcurrentLinkedQueue<Timeout<T>>();
+    private final ConcurrentLinkedQueue<Timeout<T>> cancelled = new ConcurrentLinkedQueue<Timeout<T>>();
+    private final AtomicLong pending = new AtomicLong(0L);
+    private final Thread workerThread;
+    private final long startTime;
+    private volatile boolean run = true;
+    private long tick = 0;
+
+    /**
+     * Constructor.  The wheel thread is started immediately.
+     * @param name - wheel thread name
+     * @param tickDuration - duration of a tick
+     * @param unit - unit of the tick duration
+     * @param ticksPerWheel - number of buckets (rounded up to a power of two)
+     * @param handler - receives expired items
+     */
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel,
+            ExpiryHandler<T> handler) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and ticks per wheel must be positive");
+        }
+        int size = Integer.highestOneBit(ticksPerWheel);
+        size = (size < ticksPerWheel) ? size << 1 : size;
+        @SuppressWarnings("unchecked")
+        Bucket<T>[] buckets = (Bucket<T>[]) new Bucket<?>[size];
+        this.wheel = buckets;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket<T>();
+        }
+        this.mask = size - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.handler = handler;
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(new Worker(), name);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * Schedules an item.
+     * @param item - item delivered on expiry
+     * @param delay - delay before expiry
+     * @param unit - unit of the delay
+     * @return Timeout that may be cancelled
+     */
+    public Timeout<T> schedule(T item, long delay, TimeUnit unit) {
+        long deadline = (System.nanoTime() - startTime) + unit.toNanos(Math.max(0L, delay));
+        // Round up so that an item never expires early
+        Timeout<T> t = new Timeout<T>(this, item, (deadline + tickNanos - 1) / tickNanos);
+        pending.incrementAndGet();
+        added.add(t);
+        return t;
+    }
+
+    /**
+     * Number of pending timeouts.
+     * @return pending count
+     */
+    public long size() {
+        return pending.get();
+    }
+
+    /**
+     * Duration of a tick.
+     * @param unit - unit of the result
+     * @return tick duration
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        run = false;
+        workerThread.interrupt();
+    }
+
+    /**
+     * Moves scheduled timeouts into their buckets.
+     */
+    private void transferAdded() {
+        Timeout<T> t;
+        // Bound the work per tick so a burst of schedules cannot starve expiry
+        for (int i = 0; (i < 100000) && ((t = added.poll()) != null); i++) {
+            if (t.state.get() == STATE_CANCELLED) {
+                continue;
+            }
+            long ticks = Math.max(t.deadlineTick, tick);
+            t.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    /**
+     * Unlinks cancelled timeouts.
+     */
+    private void removeCancelled() {
+        Timeout<T> t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.bucket != null) {
+                t.bucket.remove(t);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Expires the timeouts of the current tick.
+     * @param bucket - bucket of the current tick
+     * @param expired - list receiving the expired items
+     */
+    private void expire(Bucket<T> bucket, List<T> expired) {
+        Timeout<T> t = bucket.head;
+        while (t != null) {
+            Timeout<T> next = t.next;
+            if (t.remainingRounds <= 0) {
+                bucket.remove(t);
+                if (t.state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                    pending.decrementAndGet();
+                    expired.add(t.item);
+                }
+            } else {
+                t.remainingRounds--;
+            }
+            t = next;
+        }
+    }
+
+    /**
+     * Wheel thread.
+     */
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            List<T> expired = new ArrayList<T>();
+            while (run) {
+                long deadline = (tick + 1) * tickNanos;
+                long sleep;
+                while ((sleep = deadline - (System.nanoTime() - startTime)) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        if (!run) {
+                            return;
+                        }
+                    }
+                }
+                tick++;
+                removeCancelled();
+                transferAdded();
+                expire(wheel[(int) (tick & mask)], expired);
+                if (!expired.isEmpty()) {
+                    try {
+                        handler.expired(expired);
+                    } catch (Exception e) {
+                        ErrorLog.logError(e.getLocalizedMessage(), e.getStackTrace());
+                    }
+                    expired.clear();
+                }
+            }
+        }
+    }
+}
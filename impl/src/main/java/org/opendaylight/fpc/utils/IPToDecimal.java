@@ -26,23 +26,34 @@ public class IPToDecimal {
      */
     public static long ipv4ToLong(String ipAddress) {
         long result = 0;
+        long octet = 0;
+        int octets = 0;
+        int digits = 0;
 
-        String[] ipAddressInArray = ipAddress.split("\\.");
-
-        for (int i = 3; i >= 0; i--) {
-
-            long ip = Long.parseLong(ipAddressInArray[3 - i]);
-
-            // left shifting 24,16,8,0 and bitwise OR
-
-            // 1. 192 << 24
-            // 1. 168 << 16
-            // 1. 1 << 8
-            // 1. 2 << 0
-            result |= ip << (i * 8);
+        // Parsed in place to avoid the String[] / substring garbage of split()
+        for (int i = 0; i < ipAddress.length(); i++) {
+            char c = ipAddress.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++octets > 3) {
+                    throw new NumberFormatException("Invalid IPv4 address: " + ipAddress);
+                }
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    throw new NumberFormatException("Invalid IPv4 address: " + ipAddress);
+                }
+            } else {
+                throw new NumberFormatException("Invalid IPv4 address: " + ipAddress);
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            throw new NumberFormatException("Invalid IPv4 address: " + ipAddress);
         }
 
-        return result;
+        return (result << 8) | octet;
     }
 
     /**
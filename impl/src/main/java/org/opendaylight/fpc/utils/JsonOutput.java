@@ -0,0 +1,427 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable UTF-8 byte buffer with the JSON primitives used by the precompiled notification
+ * writers.
+ *
+ * The buffer is meant to be reused by a single thread: reset() it, write a document and copy the
+ * result out (toByteArray()) or hand out the backing array with its length.  Member names are
+ * written as pre-encoded byte arrays (see name(String)); separators are inserted as members and
+ * array elements are written.  Nesting is limited to 64 levels.
+ */
+public class JsonOutput {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<JsonOutput> LOCAL = new ThreadLocal<JsonOutput>() {
+        @Override
+        protected JsonOutput initialValue() {
+            return new JsonOutput(512);
+        }
+    };
+
+    private byte[] buf;
+    private int length;
+    private int depth;
+    private long started;
+    private boolean named;
+    private Utf8Writer writer;
+
+    /**
+     * Constructor.
+     * @param initialCapacity - initial buffer size in bytes
+     */
+    public JsonOutput(int initialCapacity) {
+        buf = new byte[Math.max(16, initialCapacity)];
+        length = 0;
+    }
+
+    /**
+     * Retrieves the calling thread's scratch buffer, emptied.
+     * @return JsonOutput owned by the calling thread
+     */
+    public static JsonOutput local() {
+        JsonOutput out = LOCAL.get();
+        out.reset();
+        return out;
+    }
+
+    /**
+     * Pre-encodes a member name, i.e. <i>"name":</i>.
+     * @param name - member name
+     * @return encoded name
+     */
+    public static byte[] name(String name) {
+        return ("\"" + name + "\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Empties the buffer.
+     */
+    public void reset() {
+        length = 0;
+        depth = 0;
+        started = 0L;
+        named = false;
+    }
+
+    /**
+     * Discards everything written after a position, e.g. a document that could not be completed.
+     * @param mark - length() to return to, taken while no object or array was open
+     */
+    public void truncate(int mark) {
+        length = Math.min(length, mark);
+        depth = 0;
+        started = 0L;
+        named = false;
+    }
+
+    /**
+     * Number of bytes written.
+     * @return length
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Backing array.  Only the first length() bytes are valid and the array is replaced when the
+     * buffer grows.
+     * @return backing array
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    /**
+     * Copies the written bytes.
+     * @return array of length() bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, length);
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, length + extra));
+        }
+    }
+
+    /**
+     * Writes a separator if a value was already written at the current level.
+     */
+    private void separate() {
+        if (named) {
+            named = false;
+            return;
+        }
+        long bit = 1L << depth;
+        if ((started & bit) != 0) {
+            writeByte(',');
+        } else {
+            started |= bit;
+        }
+    }
+
+    /**
+     * Starts an object.
+     * @return this
+     */
+    public JsonOutput beginObject() {
+        separate();
+        writeByte('{');
+        depth++;
+        started &= ~(1L << depth);
+        return this;
+    }
+
+    /**
+     * Ends an object.
+     * @return this
+     */
+    public JsonOutput endObject() {
+        depth--;
+        return writeByte('}');
+    }
+
+    /**
+     * Starts an array.
+     * @return this
+     */
+    public JsonOutput beginArray() {
+        separate();
+        writeByte('[');
+        depth++;
+        started &= ~(1L << depth);
+        return this;
+    }
+
+    /**
+     * Ends an array.
+     * @return this
+     */
+    public JsonOutput endArray() {
+        depth--;
+        return writeByte(']');
+    }
+
+    /**
+     * Writes a member name.
+     * @param encodedName - name encoded by name(String)
+     * @return this
+     */
+    public JsonOutput name(byte[] encodedName) {
+        separate();
+        writeRaw(encodedName);
+        named = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value.
+     * @param value - value
+     * @return this
+     */
+    public JsonOutput value(String value) {
+        separate();
+        return writeString(value);
+    }
+
+    /**
+     * Writes a number value.
+     * @param value - value
+     * @return this
+     */
+    public JsonOutput value(long value) {
+        separate();
+        return writeNumber(value);
+    }
+
+    /**
+     * Writes a number value (uint64 values).
+     * @param value - value
+     * @return this
+     */
+    public JsonOutput value(BigInteger value) {
+        separate();
+        return (value.bitLength() < 64) ? writeNumber(value.longValue()) : writeRaw(value.toString());
+    }
+
+    /**
+     * Writes a boolean value.
+     * @param value - value
+     * @return this
+     */
+    public JsonOutput value(boolean value) {
+        separate();
+        return writeRaw(value ? TRUE : FALSE);
+    }
+
+    /**
+     * Writer that appends its characters, UTF-8 encoded and unescaped, to this buffer.  Used to
+     * let character based serializers write into the buffer.
+     * @return Writer
+     */
+    public Writer asWriter() {
+        if (writer == null) {
+            writer = new Utf8Writer();
+        }
+        return writer;
+    }
+
+    /**
+     * Writes a single byte.
+     * @param b - byte
+     * @return this
+     */
+    public JsonOutput writeByte(int b) {
+        ensure(1);
+        buf[length++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Writes raw bytes (pre-encoded names or literals).
+     * @param bytes - bytes
+     * @return this
+     */
+    public JsonOutput writeRaw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Writes raw text, UTF-8 encoded but not escaped.
+     * @param text - text
+     * @return this
+     */
+    public JsonOutput writeRaw(String text) {
+        return writeRaw(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a quoted and escaped JSON string.
+     * @param value - string
+     * @return this
+     */
+    private JsonOutput writeString(String value) {
+        ensure(value.length() + 2);
+        buf[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    ensure(2);
+                    buf[length++] = '\\';
+                    buf[length++] = (byte) c;
+                } else if (c < 0x20) {
+                    escape(c);
+                } else {
+                    ensure(1);
+                    buf[length++] = (byte) c;
+                }
+            } else if (c == 0x2028 || c == 0x2029) {
+                escape(c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[length++] = (byte) (0xC0 | (c >> 6));
+                buf[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && (i + 1 < value.length()) &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                buf[length++] = (byte) (0xF0 | (cp >> 18));
+                buf[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                escape(c);
+            } else {
+                ensure(3);
+                buf[length++] = (byte) (0xE0 | (c >> 12));
+                buf[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        buf[length++] = '"';
+        return this;
+    }
+
+    private void escape(char c) {
+        ensure(6);
+        buf[length++] = '\\';
+        buf[length++] = 'u';
+        buf[length++] = HEX[(c >> 12) & 0xF];
+        buf[length++] = HEX[(c >> 8) & 0xF];
+        buf[length++] = HEX[(c >> 4) & 0xF];
+        buf[length++] = HEX[c & 0xF];
+    }
+
+    private JsonOutput writeNumber(long value) {
+        if (value == Long.MIN_VALUE) {
+            return writeRaw(MIN_LONG);
+        }
+        long v = value;
+        ensure(20);
+        if (v < 0) {
+            buf[length++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; (digits < 19) && (v >= p); p *= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        length = pos;
+        do {
+            buf[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        return this;
+    }
+
+    private void writeChar(int c) {
+        ensure(3);
+        if (c < 0x80) {
+            buf[length++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[length++] = (byte) (0xC0 | (c >> 6));
+            buf[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            buf[length++] = (byte) (0xE0 | (c >> 12));
+            buf[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * UTF-8 encoding view of the buffer.
+     */
+    private class Utf8Writer extends Writer {
+        private char high;
+
+        @Override
+        public void write(int c) {
+            char ch = (char) c;
+            if (high != 0) {
+                char h = high;
+                high = 0;
+                if (Character.isLowSurrogate(ch)) {
+                    int cp = Character.toCodePoint(h, ch);
+                    ensure(4);
+                    buf[length++] = (byte) (0xF0 | (cp >> 18));
+                    buf[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[length++] = (byte) (0x80 | (cp & 0x3F));
+                    return;
+                }
+                writeChar('?');
+            }
+            if (Character.isHighSurrogate(ch)) {
+                high = ch;
+            } else if (Character.isLowSurrogate(ch)) {
+                writeChar('?');
+            } else {
+                writeChar(ch);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(str.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free, allocation free histogram of non negative values in the style of HdrHistogram.
+ *
+ * Values are counted in log-linear buckets: every power of two range is split into 128 linear
+ * sub-buckets so any recorded value is reported within 1/128 (less than 1%) of its true value.
+ * Values above the highest trackable value are counted in the last bucket.  Percentiles are read
+ * from a non atomic pass over the buckets and are therefore approximate while recording continues.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts;
+    private final long highestTrackableValue;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     * @param highestTrackableValue - highest value tracked with full precision
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        this.highestTrackableValue = Math.max(SUB_BUCKET_COUNT, highestTrackableValue);
+        this.counts = new AtomicLongArray(indexOf(this.highestTrackableValue) + 1);
+    }
+
+    /**
+     * Bucket index of a value.
+     * @param value - non negative value
+     * @return bucket index
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * Highest value that maps to a bucket index.
+     * @param index - bucket index
+     * @return highest equivalent value
+     */
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = ((long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1)))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value.  Negative values are recorded as zero.
+     * @param value - value to record
+     */
+    public void record(long value) {
+        long v = (value < 0) ? 0 : value;
+        counts.incrementAndGet(indexOf(Math.min(v, highestTrackableValue)));
+        total.increment();
+        sum.add(v);
+        long m;
+        while (v > (m = max.get())) {
+            if (max.compareAndSet(m, v)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Number of recorded values.
+     * @return count
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Sum of the recorded values.
+     * @return sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Largest recorded value.
+     * @return max value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Mean of the recorded values.
+     * @return mean or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = total.sum();
+        return (n == 0) ? 0.0 : ((double) sum.sum()) / n;
+    }
+
+    /**
+     * Value at a percentile.
+     * @param percentile - percentile in the range [0, 100]
+     * @return the highest value equivalent to the bucket holding the percentile (bounded by the
+     *  largest recorded value) or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = 0;
+        int length = counts.length();
+        for (int i = 0; i < length; i++) {
+            n += counts.get(i);
+        }
+        if (n == 0) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil((Math.min(100.0, percentile) / 100.0) * n));
+        long seen = 0;
+        for (int i = 0; i < length; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return (i == length - 1) ? max.get() : Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0L);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0L);
+    }
+}
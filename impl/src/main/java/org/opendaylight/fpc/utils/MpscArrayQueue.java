@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free, multi-producer / single-consumer ring buffer.
+ *
+ * Producers claim a slot with a CAS on the tail and publish it through a per-slot sequence
+ * number; the single consumer reads slots in order without any CAS.  When the ring is full
+ * {@link #offer(Object)} fails immediately so that the caller can apply backpressure instead of
+ * growing memory.  An idle consumer spins, yields and then parks; producers unpark it.
+ *
+ * @param <E> - element type
+ */
+public class MpscArrayQueue<E> {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0L);
+    private volatile long head = 0L;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * Constructor.
+     * @param capacity - requested capacity, rounded up to the next power of two
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive - " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = (size < capacity) ? size << 1 : size;
+        this.buffer = new AtomicReferenceArray<E>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Inserts an element if space is available.  May be called by any thread.
+     * @param e - element (non null)
+     * @return true if the element was added; false if the ring is full
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long pos;
+        int idx;
+        while (true) {
+            pos = tail.get();
+            idx = (int) (pos & mask);
+            long dif = sequences.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                return false;
+            }
+        }
+        buffer.lazySet(idx, e);
+        sequences.set(idx, pos + 1);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the head element.  MUST only be called by the consumer thread.
+     * @return the head element or null if the ring is empty
+     */
+    public E poll() {
+        long pos = head;
+        int idx = (int) (pos & mask);
+        if (sequences.get(idx) != pos + 1) {
+            return null;
+        }
+        E e = buffer.get(idx);
+        buffer.lazySet(idx, null);
+        sequences.lazySet(idx, pos + mask + 1);
+        head = pos + 1;
+        return e;
+    }
+
+    /**
+     * Removes the head element, waiting up to the specified time for one to become available.
+     * MUST only be called by the consumer thread.
+     * @param timeout - maximum wait
+     * @param unit - unit of the timeout
+     * @return the head element or null if the timeout elapsed
+     * @throws InterruptedException - if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (tries < SPIN_TRIES) {
+                tries++;
+            } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                tries++;
+                Thread.yield();
+            } else {
+                waitingConsumer = Thread.currentThread();
+                if ((e = poll()) != null) {
+                    waitingConsumer = null;
+                    return e;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                waitingConsumer = null;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Returns the number of queued elements (approximate under concurrent updates).
+     * @return queue depth
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Indicates if the ring is empty (approximate under concurrent updates).
+     * @return true if no elements are queued
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the capacity of the ring.
+     * @return capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
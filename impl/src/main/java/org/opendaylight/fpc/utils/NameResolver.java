@@ -17,6 +17,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,7 +58,9 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
-import com.google.common.collect.Iterables;;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
 
 /**
  * FPC Name Resolver.
@@ -66,7 +70,12 @@ import com.google.common.collect.Iterables;;
  */
 public class NameResolver {
     private final static Logger LOG = LoggerFactory.getLogger(NameResolver.class);
+    /**
+     * Maximum number of resolved paths retained by a resolver.
+     */
+    public final static int PATH_CACHE_SIZE = 16384;
     private volatile SchemaContext globalSchema;
+    private volatile CompiledPaths compiledPaths;
 
     /**
      * Known FPC Schema fixed types.
@@ -93,6 +102,14 @@ public class NameResolver {
                 Pattern.compile("/ietf-dmm-fpcagent:tenants/tenant/[^ /]+/fpc-mobility/ports/([^ /]+)") , 0));
     }
 
+    private final static String TENANT_PREFIX = "/ietf-dmm-fpcagent:tenants/tenant/";
+    private final static Map<FixedType, String> entityInfixes = new HashMap<FixedType, String>();
+
+    static {
+        entityInfixes.put(FixedType.CONTEXT, "/fpc-mobility/contexts/");
+        entityInfixes.put(FixedType.PORT, "/fpc-mobility/ports/");
+    }
+
     /**
      * Creates a NameResolver for a specific module.
      * @param module - Class instance of a Yang Module
@@ -167,11 +184,16 @@ public class NameResolver {
      */
     public void setGlobalSchema(final SchemaContext globalSchema) {
         this.globalSchema = globalSchema;
+        this.compiledPaths = null;
         //dataNormalizer = new DataNormalizer(globalSchema);
     }
 
     /**
-     * Transforms a RestConf based URI instance (JSON String) to a YangInstanceIdentifier
+     * Transforms a RestConf based URI instance (JSON String) to a YangInstanceIdentifier.
+     *
+     * Resolved identifiers are cached.  On a cache miss the path is walked over the compiled path
+     * templates so the Schema Context is only searched the first time a path shape is seen; after
+     * that only the key values are decoded.
      * @param restconfInstance - URI
      * @return YangInstanceIdentifier
      */
@@ -180,6 +202,15 @@ public class NameResolver {
             return null;
         }
 
+        final CompiledPaths paths = compiledPaths();
+        if (paths == null) {
+            return null;
+        }
+        YangInstanceIdentifier iid = paths.resolved.getIfPresent(restconfInstance);
+        if (iid != null) {
+            return iid;
+        }
+
         List<String> pathArgs;
         try {
             pathArgs = urlPathArgsDecode(SLASH_SPLITTER.split(restconfInstance));
@@ -191,20 +222,37 @@ public class NameResolver {
             return null;
         }
 
+        iid = collectPathArguments(paths, pathArgs);
+        if (iid != null) {
+            paths.resolved.put(restconfInstance, iid);
+        }
+        return iid;
+    }
+
+    /**
+     * Retrieves (creating if required) the compiled path templates of the current Schema Context.
+     * @return CompiledPaths or null if the FPC Agent module is not in the Schema Context
+     */
+    private CompiledPaths compiledPaths() {
+        CompiledPaths paths = compiledPaths;
+        final SchemaContext schema = globalSchema;
+        if ((paths != null) && (paths.schema == schema)) {
+            return paths;
+        }
+
         final String first = "ietf-dmm-fpcagent:tenants";
         final String startModule = toModuleName(first);
-        if (startModule == null) {
+        if ((schema == null) || (startModule == null)) {
             return null;
         }
-
-        final InstanceIdentifierBuilder builder = YangInstanceIdentifier.builder();
-        final Module latestModule = globalSchema.findModuleByName(startModule, null);
-
+        final Module latestModule = schema.findModuleByName(startModule, null);
         if (latestModule == null) {
             return null;
         }
 
-        return collectPathArguments(builder, pathArgs, latestModule);
+        paths = new CompiledPaths(schema, latestModule);
+        compiledPaths = paths;
+        return paths;
     }
 
     /**
@@ -217,7 +265,8 @@ public class NameResolver {
         try {
             final List<String> decodedPathArgs = new ArrayList<String>();
             for (final String pathArg : strings) {
-                final String _decode = URLDecoder.decode(pathArg, URI_ENCODING_CHAR_SET);
+                final String _decode = ((pathArg.indexOf('%') < 0) && (pathArg.indexOf('+') < 0)) ? pathArg :
+                    URLDecoder.decode(pathArg, URI_ENCODING_CHAR_SET);
                 decodedPathArgs.add(_decode);
             }
             return decodedPathArgs;
@@ -277,34 +326,73 @@ public class NameResolver {
 
     /**
      * Collects the path arguments to provide a YangInstanceIdentifier.
-     * @param builder - InstanceIdentifierBuilder
+     * @param paths - compiled path templates
      * @param strings - URI parameters
-     * @param parentNode - Parent Node of the structure
      * @return YangInstanceIdentifier based upon the input
      */
-    private YangInstanceIdentifier collectPathArguments(final InstanceIdentifierBuilder builder,
-            final List<String> strings, final DataNodeContainer parentNode) {
+    private YangInstanceIdentifier collectPathArguments(final CompiledPaths paths, final List<String> strings) {
         Preconditions.<List<String>> checkNotNull(strings);
 
-        if (parentNode == null) {
-            return null;
-        }
+        final InstanceIdentifierBuilder builder = YangInstanceIdentifier.builder();
+        PathStep step = paths.root;
+        int consumed = 0;
+        while (consumed < strings.size()) {
+            final String head = strings.get(consumed);
+            PathStep next = step.children.get(head);
+            if (next == null) {
+                next = compileStep(paths.schema, step.container, head);
+                if (next == null) {
+                    return null;
+                }
+                final PathStep prior = step.children.putIfAbsent(head, next);
+                next = (prior != null) ? prior : next;
+            }
+            consumed++;
 
-        if (strings.isEmpty()) {
-            return builder.build();
+            if (next.keys != null) {
+                if ((strings.size() - consumed) < next.keys.length) {
+                    return null;
+                }
+                final HashMap<QName, Object> keyValues = new HashMap<QName, Object>();
+                for (int i = 0; i < next.keys.length; i++) {
+                    final String uriKeyValue = strings.get(consumed + i);
+                    if (uriKeyValue.equals(NULL_VALUE)) {
+                        return null;
+                    }
+                    try {
+                        keyValues.put(next.keys[i].qname, next.keys[i].decode(paths.schema, uriKeyValue));
+                    } catch (Exception e) {
+                        return null;
+                    }
+                }
+                consumed += next.keys.length;
+                // The following line is added for the inmemory DOM store...
+                builder.node(next.qname);
+                builder.nodeWithKey(next.qname, keyValues);
+            } else {
+                builder.node(next.qname);
+            }
+            step = next;
         }
 
-        final String head = strings.iterator().next();
+        return builder.build();
+    }
+
+    /**
+     * Compiles the template step of a path argument.
+     * @param schema - SchemaContext
+     * @param parentNode - Parent Node of the path argument
+     * @param head - path argument (<i>nodename</i> or <i>modulename:nodename</i>)
+     * @return PathStep or null if the argument does not address a list or container of the parent
+     */
+    private static PathStep compileStep(final SchemaContext schema, final DataNodeContainer parentNode,
+            final String head) {
         final String nodeName = toNodeName(head);
         final String moduleName = toModuleName(head);
 
         DataSchemaNode targetNode = null;
         if (!Strings.isNullOrEmpty(moduleName)) {
-            Module module = null;
-            if (globalSchema == null) {
-                return null;
-            }
-            module = globalSchema.findModuleByName(moduleName, null);
+            final Module module = schema.findModuleByName(moduleName, null);
             if (module == null) {
                 return null;
             }
@@ -327,47 +415,105 @@ public class NameResolver {
             return null;
         }
 
-        int consumed = 1;
+        KeyTemplate[] keys = null;
         if ((targetNode instanceof ListSchemaNode)) {
             final ListSchemaNode listNode = ((ListSchemaNode) targetNode);
-            final int keysSize = listNode.getKeyDefinition().size();
-            if ((strings.size() - consumed) < keysSize) {
-                return null;
-            }
-
-            final List<String> uriKeyValues = strings.subList(consumed, consumed + keysSize);
-            final HashMap<QName, Object> keyValues = new HashMap<QName, Object>();
+            keys = new KeyTemplate[listNode.getKeyDefinition().size()];
             int i = 0;
             for (final QName key : listNode.getKeyDefinition()) {
-                {
-                    final String uriKeyValue = uriKeyValues.get(i);
-                    if (uriKeyValue.equals(NULL_VALUE)) {
-                        return null;
-                    }
-
-                    try {
-                        addKeyValue(keyValues, listNode.getDataChildByName(key), uriKeyValue);
-                    } catch (Exception e) {
-                        return null;
-                    }
-                    i++;
+                final DataSchemaNode keyNode = listNode.getDataChildByName(key);
+                if (!(keyNode instanceof LeafSchemaNode)) {
+                    return null;
                 }
+                keys[i++] = new KeyTemplate(schema, (LeafSchemaNode) keyNode);
             }
+        }
 
-            consumed = consumed + i;
-            // The following line is added for the inmemory DOM store...
-            builder.node(targetNode.getQName());
-            builder.nodeWithKey(targetNode.getQName(), keyValues);
-        } else {
-            builder.node(targetNode.getQName());
+        return new PathStep(targetNode.getQName(), (DataNodeContainer) targetNode, keys);
+    }
+
+    /**
+     * Path templates compiled against a Schema Context and the paths resolved with them.
+     */
+    private static final class CompiledPaths {
+        final SchemaContext schema;
+        final PathStep root;
+        final Cache<String, YangInstanceIdentifier> resolved;
+
+        CompiledPaths(final SchemaContext schema, final Module module) {
+            this.schema = schema;
+            this.root = new PathStep(null, module, null);
+            this.resolved = CacheBuilder.newBuilder().maximumSize(PATH_CACHE_SIZE).build();
         }
+    }
 
-        if ((targetNode instanceof DataNodeContainer)) {
-            final List<String> remaining = strings.subList(consumed, strings.size());
-            return collectPathArguments(builder, remaining, ((DataNodeContainer) targetNode));
+    /**
+     * A compiled path argument: the list or container it addresses and the templates of its
+     * keys.  Steps that follow it are added as they are first seen.
+     */
+    private static final class PathStep {
+        final QName qname;
+        final DataNodeContainer container;
+        final KeyTemplate[] keys;
+        final ConcurrentMap<String, PathStep> children = new ConcurrentHashMap<String, PathStep>();
+
+        PathStep(final QName qname, final DataNodeContainer container, final KeyTemplate[] keys) {
+            this.qname = qname;
+            this.container = container;
+            this.keys = keys;
         }
+    }
 
-        return builder.build();
+    /**
+     * A compiled list key: its resolved type and codec.
+     */
+    private static final class KeyTemplate {
+        final QName qname;
+        final boolean identityref;
+        final TypeDefinitionAwareCodec<Object, ? extends TypeDefinition<?>> codec;
+
+        KeyTemplate(final SchemaContext schema, final LeafSchemaNode node) {
+            this.qname = node.getQName();
+            TypeDefinition<?> typedef = node.getType();
+            final TypeDefinition<?> baseType = resolveBaseTypeFrom(typedef);
+            if (baseType instanceof LeafrefTypeDefinition) {
+                typedef = SchemaContextUtil.getBaseTypeForLeafRef((LeafrefTypeDefinition) baseType, schema, node);
+            }
+            this.identityref = (baseType instanceof IdentityrefTypeDefinition);
+            final TypeDefinition<?> type = resolveBaseTypeFrom(typedef);
+            this.codec = ((type instanceof IdentityrefTypeDefinition) ||
+                    (type instanceof InstanceIdentifierTypeDefinition)) ? null : TypeDefinitionAwareCodec.from(type);
+        }
+
+        /**
+         * Decodes a key value.
+         * @param schema - SchemaContext
+         * @param uriValue - uri value
+         * @return decoded value
+         * @throws Exception if the value cannot be decoded
+         */
+        Object decode(final SchemaContext schema, final String uriValue) throws Exception {
+            final String urlDecoded = urlPathArgDecode(uriValue);
+            Object decoded = null;
+            if (codec != null) {
+                try {
+                    decoded = codec.deserialize(urlDecoded);
+                } catch (final ClassCastException e) {
+                    LOG.error(
+                            "ClassCastException was thrown when codec is invoked with parameter " + String.valueOf(urlDecoded),
+                            e);
+                }
+            }
+            String additionalInfo = "";
+            if ((decoded == null) && identityref) {
+                decoded = toQName(schema, urlDecoded);
+                additionalInfo = "For key which is of type identityref it should be in format module_name:identity_name.";
+            }
+            if (decoded == null) {
+                throw new Exception(uriValue + " from URI can't be resolved. " + additionalInfo);
+            }
+            return decoded;
+        }
     }
 
     /**
@@ -474,49 +620,17 @@ public class NameResolver {
         return node instanceof ListSchemaNode || node instanceof ContainerSchemaNode;
     }
 
-    /**
-     * Adds a Key Value to the map for a specific uri value.
-     * @param map - current QName to Object mapping
-     * @param node - DataSchemaNode
-     * @param uriValue - uri value to add
-     * @throws Exception if error occurs during Uri decoding.
-     */
-    private void addKeyValue(final HashMap<QName, Object> map, final DataSchemaNode node, final String uriValue)
-            throws Exception {
-        Preconditions.checkNotNull(uriValue);
-        Preconditions.checkArgument((node instanceof LeafSchemaNode));
-
-        final String urlDecoded = urlPathArgDecode(uriValue);
-        TypeDefinition<?> typedef = ((LeafSchemaNode) node).getType();
-        final TypeDefinition<?> baseType = resolveBaseTypeFrom(typedef);
-        if (baseType instanceof LeafrefTypeDefinition) {
-            typedef = SchemaContextUtil.getBaseTypeForLeafRef((LeafrefTypeDefinition) baseType, globalSchema, node);
-        }
-
-        Object decoded = deserialize(typedef, urlDecoded);
-        String additionalInfo = "";
-        if (decoded == null) {
-            if ((baseType instanceof IdentityrefTypeDefinition)) {
-                decoded = toQName(urlDecoded);
-                additionalInfo = "For key which is of type identityref it should be in format module_name:identity_name.";
-            }
-        }
-
-        if (decoded == null) {
-            throw new Exception(uriValue + " from URI can't be resolved. " + additionalInfo);
-        }
-
-        map.put(node.getQName(), decoded);
-    }
-
     /**
      * Decodes a URL path argument
      * @param pathArg - URL path
      * @return a String representing the URL Decoded path
      * @throws Exception if the URL path decoding fails
      */
-    private String urlPathArgDecode(final String pathArg) throws Exception {
+    private static String urlPathArgDecode(final String pathArg) throws Exception {
         if (pathArg != null) {
+            if ((pathArg.indexOf('%') < 0) && (pathArg.indexOf('+') < 0)) {
+                return pathArg;
+            }
             try {
                 return URLDecoder.decode(pathArg, URI_ENCODING_CHAR_SET);
             } catch (final UnsupportedEncodingException e) {
@@ -532,7 +646,7 @@ public class NameResolver {
      * @param type - TypeDefinition
      * @return Base type for the TypeDefinition
      */
-    private TypeDefinition<?> resolveBaseTypeFrom(final TypeDefinition<?> type) {
+    private static TypeDefinition<?> resolveBaseTypeFrom(final TypeDefinition<?> type) {
         TypeDefinition<?> superType = type;
         while (superType.getBaseType() != null) {
             superType = superType.getBaseType();
@@ -542,48 +656,20 @@ public class NameResolver {
 
     /**
      * Returns the QName of a string
+     * @param schema - SchemaContext
      * @param name - string containing the module and node name
      * @return QName of the string or null if no module could be found for the input
      */
-    private QName toQName(final String name) {
-        if (globalSchema == null) {
+    private static QName toQName(final SchemaContext schema, final String name) {
+        if (schema == null) {
             return null;
         }
         final String module = toModuleName(name);
         final String node = toNodeName(name);
-        final Module m = globalSchema.findModuleByName(module, null);
+        final Module m = schema.findModuleByName(module, null);
         return m == null ? null : QName.create(m.getQNameModule(), node);
     }
 
-    /**
-     * De-serializes a string.
-     * @param typeDefinition - Type Definition
-     * @param input - Input
-     * @return De-serialized JSON string
-     */
-    private Object deserialize(final TypeDefinition<?> typeDefinition, String input) {
-        TypeDefinition<?> type = resolveBaseTypeFrom(typeDefinition);
-
-        try {
-            if ((type instanceof IdentityrefTypeDefinition) || (type instanceof InstanceIdentifierTypeDefinition)) {
-                return null;
-            } else {
-                final TypeDefinitionAwareCodec<Object, ? extends TypeDefinition<?>> typeAwarecodec = TypeDefinitionAwareCodec
-                        .from(type);
-                if (typeAwarecodec != null) {
-                    return typeAwarecodec.deserialize(input);
-                } else {
-                    return null;
-                }
-            }
-        } catch (final ClassCastException e) {
-            LOG.error(
-                    "ClassCastException was thrown when codec is invoked with parameter " + String.valueOf(input),
-                    e);
-            return null;
-        }
-    }
-
     /**
      * Extracts a key from a RestConf path
      * @param restconfPath - RestConf URI path
@@ -614,6 +700,49 @@ public class NameResolver {
         return null;
     }
 
+    /**
+     * Extracts the type and Id of an entity from its RestConf path without using the entity
+     * patterns, i.e. the first capture group of the matching entityPatterns entry.
+     * @param restconfPath - RestConf URI path
+     * @return a pair (Map.Entry) of the FixedType and Id of the entity or null if the path does
+     *  not address a known entity
+     */
+    static public Map.Entry<FixedType, String> extractTypeAndId(String restconfPath) {
+        if ((restconfPath == null) || !restconfPath.startsWith(TENANT_PREFIX)) {
+            return null;
+        }
+        final int tenantEnd = segmentEnd(restconfPath, TENANT_PREFIX.length());
+        if (tenantEnd == TENANT_PREFIX.length()) {
+            return null;
+        }
+        for (Map.Entry<FixedType, String> infix : entityInfixes.entrySet()) {
+            if (restconfPath.startsWith(infix.getValue(), tenantEnd)) {
+                final int idStart = tenantEnd + infix.getValue().length();
+                final int idEnd = segmentEnd(restconfPath, idStart);
+                if ((idEnd > idStart) && (idEnd == restconfPath.length())) {
+                    return new AbstractMap.SimpleEntry<FixedType, String>(infix.getKey(),
+                            restconfPath.substring(idStart));
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the end of a path segment.
+     * @param path - path
+     * @param start - start of the segment
+     * @return index of the first '/' or ' ' at or after start (or the path length)
+     */
+    private static int segmentEnd(String path, int start) {
+        int i = start;
+        while ((i < path.length()) && (path.charAt(i) != '/') && (path.charAt(i) != ' ')) {
+            i++;
+        }
+        return i;
+    }
+
     /**
      * Extracts a String value from an FpcIdentity
      * @param value - FPC Identity
@@ -7,94 +7,71 @@
  */
 package org.opendaylight.fpc.utils.eventStream;
 
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.charset.StandardCharsets;
 
-import javax.servlet.AsyncContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import javax.servlet.ServletOutputStream;
 
 import org.opendaylight.fpc.activation.cache.transaction.Transaction;
-import org.opendaylight.fpc.utils.ErrorLog;
 
 
 /**
  * A servlet context listener that sends response (ConfigureOutput) events to clients.
  */
 public class ConfigureService implements ServletContextListener {
-	//key = client-id, value = configure-output
-   public static BlockingQueue<Map.Entry<String,Map.Entry<Transaction,String>>> blockingQueue = new LinkedBlockingQueue<Map.Entry<String,Map.Entry<Transaction,String>>>();
-   public static BlockingQueue<Map.Entry<String,String>> registerClientQueue = new LinkedBlockingQueue<Map.Entry<String,String>>();
+	private static final int WRITER_THREADS = 4;
+	private static final int STREAM_CAPACITY = 8192;
+	private static final int MAX_COALESCE = 64;
+	private static final long MAX_STALL_MS = 30000L;
+	//key = client-uri
+	private static volatile SseFanout responseStreams;
 
-   public void contextInitialized(ServletContextEvent sce) {
-	   Map<String, AsyncContext> responseStreams = new ConcurrentHashMap<String, AsyncContext>();
-	   sce.getServletContext().setAttribute("responseStreams", responseStreams);
-	   Thread thread = new Thread(new Runnable(){
+	/**
+	 * Response stream engine.
+	 * @return engine or null if the service is not initialized
+	 */
+	public static SseFanout getResponseStreams() {
+		return responseStreams;
+	}
 
-		@Override
-		public void run() {
-			String clientUri = null;
-			AsyncContext asyncContext = null;
-			while(true)
-			   {
-				   try {
-					   Map.Entry<String,Map.Entry<Transaction,String>> entry = blockingQueue.take();
-					   clientUri = entry.getKey();
-					   asyncContext = responseStreams.get(clientUri);
-					   if(responseStreams.get(entry.getKey()) != null){
-						   ServletOutputStream out = asyncContext.getResponse().getOutputStream();
-						   out.write(entry.getValue().getValue().getBytes());
-						   out.flush();
-						   asyncContext.getResponse().flushBuffer();
-						   entry.getValue().getKey().setResponseSent();
-					   }
-				   } catch (Exception e){
-					   ErrorLog.logError("Exception - Cannot write to client",	e.getStackTrace());
-					   asyncContext.complete();
-					   responseStreams.remove(clientUri);
-					   break;
-				   }
-			   }
-		}
-
-	   });
-	   thread.start();
-
-	   Thread thread1 = new Thread(new Runnable(){
-
-			@Override
-			public void run() {
-				String clientUri = null;
-				AsyncContext asyncContext = null;
-				while(true)
-				   {
-					   try {
-						   Map.Entry<String,String> entry = registerClientQueue.take();
-						   clientUri = entry.getKey();
-						   asyncContext = responseStreams.get(clientUri);
-						   if(responseStreams.get(entry.getKey()) != null){
-							   ServletOutputStream out = asyncContext.getResponse().getOutputStream();
-							   out.write(entry.getValue().getBytes());
-							   out.flush();
-							   asyncContext.getResponse().flushBuffer();
-						   }
-					   } catch (Exception e){
-						   ErrorLog.logError("Exception - Cannot write to client",	e.getStackTrace());
-						   asyncContext.complete();
-						   responseStreams.remove(clientUri);
-						   break;
-					   }
-				   }
+	/**
+	 * Queues a configure response for a client.
+	 * @param clientUri - Client Uri
+	 * @param tx - Transaction marked as responded once the event is sent or dropped (may be null)
+	 * @param event - event-data frame
+	 * @return false if the client has no stream or the event was dropped
+	 */
+	public static boolean send(String clientUri, Transaction tx, String event) {
+		SseFanout streams = responseStreams;
+		if (streams == null) {
+			if (tx != null) {
+				tx.setResponseSent();
 			}
+			return false;
+		}
+		return streams.send(clientUri, event.getBytes(StandardCharsets.UTF_8), tx);
+	}
 
-		   });
-		   thread1.start();
+	/**
+	 * Queues an event for a client.
+	 * @param clientUri - Client Uri
+	 * @param event - event-data frame
+	 * @return false if the client has no stream or the event was dropped
+	 */
+	public static boolean send(String clientUri, String event) {
+		return send(clientUri, null, event);
+	}
 
-   }
+	public void contextInitialized(ServletContextEvent sce) {
+		responseStreams = new SseFanout("fpc-sse-response", WRITER_THREADS, STREAM_CAPACITY, MAX_COALESCE,
+				MAX_STALL_MS, SseFanout.OverflowPolicy.EVICT);
+	}
 
-   public void contextDestroyed(ServletContextEvent sce) {
-   }
+	public void contextDestroyed(ServletContextEvent sce) {
+		SseFanout streams = responseStreams;
+		responseStreams = null;
+		if (streams != null) {
+			streams.close();
+		}
+	}
 }
@@ -8,8 +8,7 @@
 package org.opendaylight.fpc.utils.eventStream;
 
 import java.io.IOException;
-import java.nio.CharBuffer;
-import java.util.AbstractMap;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 
@@ -17,7 +16,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.nio.IOControl;
-import org.apache.http.nio.client.methods.AsyncCharConsumer;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
 import org.apache.http.nio.client.methods.HttpAsyncMethods;
 import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
 import org.apache.http.protocol.HttpContext;
@@ -46,16 +45,16 @@ public class EventClient {
 	}
 
      /**
-     * A character consumer to read incoming characters on the request stream
+     * A byte consumer that parses the request stream as it is received
      */
-    static class MyResponseConsumer extends AsyncCharConsumer<Boolean> {
-    	   private String clientUri;
+    static class MyResponseConsumer extends AsyncByteConsumer<Boolean> {
+    	   private final ParseStream parser;
             /**
              * Constructor
              * @param clientUri - URI of the FPC Client
              */
             public MyResponseConsumer(String clientUri) {
-				this.clientUri = clientUri;
+				this.parser = new ParseStream(clientUri);
             }
 
 			@Override
@@ -63,16 +62,12 @@ public class EventClient {
             }
 
             @Override
-            protected void onCharReceived(final CharBuffer buf, final IOControl ioctrl) throws IOException {
+            protected void onByteReceived(final ByteBuffer buf, final IOControl ioctrl) throws IOException {
             	try {
-            		char[] charArray = new char[buf.remaining()];
-            		System.arraycopy(buf.array(), 0, charArray, 0, buf.remaining());
-            		CharBuffer charBuffer =  CharBuffer.wrap(charArray);
-					ParseStream.blockingQueue.put(new AbstractMap.SimpleEntry<String, CharBuffer>(clientUri, charBuffer));
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+            		parser.feed(buf);
+            	} catch (Exception e) {
+            		ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
+            	}
             }
 
             @Override
@@ -86,5 +81,3 @@ public class EventClient {
 
         }
 	}
-
-
@@ -10,11 +10,8 @@ package org.opendaylight.fpc.utils.eventStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.AsyncContext;
-import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -60,9 +57,7 @@ public class EventServer extends HttpServlet {
 			} catch (IOException e1) {
 				ErrorLog.logError(e1.getMessage(),e1.getStackTrace());
 			}
-			ServletContext servletContext = request.getServletContext();
-			Map<String,AsyncContext> responseStreams = (ConcurrentHashMap<String,AsyncContext>) servletContext.getAttribute("responseStreams");
-			responseStreams.put(clientUri,asyncContext);
+			ConfigureService.getResponseStreams().register(clientUri,asyncContext);
 		} catch (Exception e){
 			ErrorLog.logError(e.getMessage(),e.getStackTrace());
 		}
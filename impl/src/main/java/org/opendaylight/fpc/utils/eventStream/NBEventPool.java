@@ -19,6 +19,10 @@ import com.google.common.base.Supplier;
  * Creates a thread pool of NBEventWorker
  */
 public class NBEventPool extends AbstractThreadPool<NBEventWorker> {
+	/**
+	 * Maximum number of event-data pairs queued per worker.
+	 */
+	public static final int QUEUE_CAPACITY = 16384;
 	static private NBEventPool _instance;
 
     public static void createInstance(int poolSize) {
@@ -35,6 +39,16 @@ public class NBEventPool extends AbstractThreadPool<NBEventWorker> {
 		super(null, poolSize);
 	}
 
+	/**
+	 * Retrieves the worker of a FPC Client.  A client is always served by the same worker so its
+	 * events are processed in order.
+	 * @param clientUri - FPC Client Uri
+	 * @return NBEventWorker
+	 */
+	public NBEventWorker getWorker(String clientUri) {
+		return getWorker((long) ((clientUri.hashCode() & Integer.MAX_VALUE) % poolSize));
+	}
+
 	@Override
 	protected Supplier<? extends NBEventWorker> getPoolFactory(DataBroker db) {
 		return new NBEventWorkerFactory(startSignal);
@@ -56,7 +70,7 @@ public class NBEventPool extends AbstractThreadPool<NBEventWorker> {
 
         @Override
         public NBEventWorker get() {
-            return new NBEventWorker(startSignal,new LinkedBlockingQueue<Map.Entry<String,Map.Entry<String,String>>>());
+            return new NBEventWorker(startSignal,new LinkedBlockingQueue<Map.Entry<String,Map.Entry<String,String>>>(QUEUE_CAPACITY));
         }
     }
 
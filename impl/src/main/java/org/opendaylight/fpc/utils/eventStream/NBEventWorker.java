@@ -8,7 +8,6 @@
 package org.opendaylight.fpc.utils.eventStream;
 
 import java.nio.ByteBuffer;
-import java.util.AbstractMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
@@ -69,7 +68,7 @@ public class NBEventWorker implements Worker {
 					else if(contents.getValue().getKey().contains("fpc:register_client")){
 						Optional<String> output = ((JSONRestconfService) service).invokeRpc("fpc:register_client", Optional.of(contents.getValue().getValue()));
 						addClientIdToUriMapping(output.get(),contents.getKey());
-						ConfigureService.registerClientQueue.add(new AbstractMap.SimpleEntry(contents.getKey(), "event:application/json;/restconf/operations/fpc:register_client\ndata:"+output.get()+"\r\n"));
+						ConfigureService.send(contents.getKey(), "event:application/json;/restconf/operations/fpc:register_client\ndata:"+output.get()+"\r\n");
 					}
 					else if(contents.getValue().getKey().contains("fpc:deregister_client")){
 						Optional<String> output = ((JSONRestconfService) service).invokeRpc("fpc:deregister_client", Optional.of(contents.getValue().getValue()));
@@ -9,11 +9,8 @@ package org.opendaylight.fpc.utils.eventStream;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.AsyncContext;
-import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -59,9 +56,7 @@ public class NotificationServer extends HttpServlet {
 				} catch (IOException e1) {
 					ErrorLog.logError(e1.getMessage(),e1.getStackTrace());
 				}
-				ServletContext servletContext = request.getServletContext();
-				Map<String,AsyncContext> notificationStreams = (ConcurrentHashMap<String,AsyncContext>) servletContext.getAttribute("notificationStreams");
-				notificationStreams.put(clientId,asyncContext);
+				NotificationService.getNotificationStreams().register(clientId,asyncContext);
 				LOG.info("Client Id received in the notification stream request: "+clientId);
 			}
 		} catch (JSONException e) {
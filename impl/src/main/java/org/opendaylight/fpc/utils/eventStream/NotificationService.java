@@ -7,62 +7,50 @@
  */
 package org.opendaylight.fpc.utils.eventStream;
 
-import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-
-import javax.servlet.AsyncContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
-import javax.servlet.ServletOutputStream;
-
-import org.eclipse.jetty.io.EofException;
-import org.opendaylight.fpc.utils.ErrorLog;
 
 
 /**
  * A servlet context listener that sends event-data pairs for config result notifications
  */
 public class NotificationService implements ServletContextListener {
-	//key = client id, value = config-result-notification
-   public static BlockingQueue<Map.Entry<String,String>> blockingQueue = new LinkedBlockingQueue<Map.Entry<String,String>>();
-   public void contextInitialized(ServletContextEvent sce) {
-	   Map<String, AsyncContext> notificationStreams = new ConcurrentHashMap<String, AsyncContext>();
-	   sce.getServletContext().setAttribute("notificationStreams", notificationStreams);
-	   Thread thread = new Thread(new Runnable(){
-
-		@Override
-		public void run() {
-			String clientId = null;
-			AsyncContext asyncContext = null;
-			while(true)
-			   {
-				   try {
-					   Map.Entry<String, String> entry = blockingQueue.take();
-					   clientId = entry.getKey();
-					   asyncContext = notificationStreams.get(clientId);
-					   if(notificationStreams.get(entry.getKey()) != null){
-						   ServletOutputStream out = asyncContext.getResponse().getOutputStream();
-						   out.write(entry.getValue().getBytes());
-						   out.flush();
-						   asyncContext.getResponse().flushBuffer();
-					   }
-				   } catch (Exception e){
-					   ErrorLog.logError("Cannot write to client",	e.getStackTrace());
-					   asyncContext.complete();
-					   notificationStreams.remove(clientId);
-					   break;
-				   }
-			   }
+	private static final int WRITER_THREADS = 4;
+	private static final int STREAM_CAPACITY = 8192;
+	private static final int MAX_COALESCE = 64;
+	private static final long MAX_STALL_MS = 30000L;
+	//key = client id
+	private static volatile SseFanout notificationStreams;
+
+	/**
+	 * Notification stream engine.
+	 * @return engine or null if the service is not initialized
+	 */
+	public static SseFanout getNotificationStreams() {
+		return notificationStreams;
+	}
+
+	/**
+	 * Queues a notification for a client.
+	 * @param clientId - Client Id
+	 * @param event - event-data frame (UTF-8)
+	 * @return false if the client has no stream or the event was dropped
+	 */
+	public static boolean send(String clientId, byte[] event) {
+		SseFanout streams = notificationStreams;
+		return (streams != null) && streams.send(clientId, event, null);
+	}
+
+	public void contextInitialized(ServletContextEvent sce) {
+		notificationStreams = new SseFanout("fpc-sse-notification", WRITER_THREADS, STREAM_CAPACITY, MAX_COALESCE,
+				MAX_STALL_MS, SseFanout.OverflowPolicy.DROP);
+	}
+
+	public void contextDestroyed(ServletContextEvent sce) {
+		SseFanout streams = notificationStreams;
+		notificationStreams = null;
+		if (streams != null) {
+			streams.close();
 		}
-
-	   });
-	   thread.start();
-
-   }
-
-   public void contextDestroyed(ServletContextEvent sce) {
-   }
+	}
 }
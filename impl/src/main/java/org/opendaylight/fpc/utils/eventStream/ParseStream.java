@@ -7,84 +7,229 @@
  */
 package org.opendaylight.fpc.utils.eventStream;
 
-import java.nio.CharBuffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.opendaylight.fpc.utils.ErrorLog;
 
 /**
- * A class that parses the request stream and enqueues creates event-data pairs for processing
+ * Incremental parser of a single request stream.  Creates event-data pairs and enqueues them for
+ * processing.
+ *
+ * One parser is used per connection and is fed the response bytes as they are received; an event
+ * may be split across any number of buffers.  The parser is a byte level state machine: field names
+ * are matched as they arrive and only the values of the event and data fields are accumulated, so
+ * no Strings are created until an event-data pair is complete.  As sent by FPC Clients, a pair is
+ * complete at the end of its data line; comment lines, other fields and blank lines are ignored.
+ * Lines end with LF, CR or CRLF.
+ *
+ * The pairs of a connection are always handed to the same NBEventWorker so they are processed in
+ * order.  The parser is fed on the I/O thread of the HTTP client, so it never waits for a worker;
+ * a pair that does not fit in the worker queue is dropped and logged.  A parser MUST only be fed
+ * by one thread at a time.
  */
-public class ParseStream implements Runnable {
-	public static BlockingQueue<Map.Entry<String, CharBuffer>> blockingQueue = new LinkedBlockingQueue<Map.Entry<String, CharBuffer>>();
-	private CharBuffer charBuf;
-	private String partialChunk; //Chunked data left over at the end of the buffer
-	boolean chunkedBuffer;
-
-	private String getLine(){
-		StringBuilder s = new StringBuilder();
-		if(this.chunkedBuffer){
-			while(this.charBuf.hasRemaining()){
-				char ch = this.charBuf.get();
-				if(ch == '\n'){
-					this.partialChunk += s.toString();
-					this.chunkedBuffer = false;
-					return this.partialChunk;
+public class ParseStream {
+	private static final int MAX_VALUE_LENGTH = 4 * 1024 * 1024;
+	private static final byte[] EVENT = "event".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int FIELD_NAME = 0;
+	private static final int VALUE_START = 1;
+	private static final int VALUE = 2;
+	private static final int SKIP_LINE = 3;
+
+	private static final int FIELD_OTHER = 0;
+	private static final int FIELD_EVENT = 1;
+	private static final int FIELD_DATA = 2;
+
+	private final String clientUri;
+	private final BlockingQueue<Map.Entry<String,Map.Entry<String,String>>> queue;
+	private int state = FIELD_NAME;
+	private boolean lastWasCr = false;
+	// Number of field name bytes matched so far and the candidate fields (bit 0 event, bit 1 data)
+	private int nameLength = 0;
+	private int candidates = 3;
+	private int field = FIELD_OTHER;
+
+	private byte[] event = new byte[64];
+	private int eventLength = 0;
+	private boolean hasEvent = false;
+	private byte[] data = new byte[1024];
+	private int dataLength = 0;
+	private long overflows = 0;
+	private long dropped = 0;
+
+	/**
+	 * Constructor
+	 * @param clientUri - URI of the FPC Client
+	 */
+	public ParseStream(String clientUri) {
+		this(clientUri, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param clientUri - URI of the FPC Client
+	 * @param queue - queue receiving the event-data pairs or null to use the queue of the client's
+	 *  NBEventWorker
+	 */
+	ParseStream(String clientUri, BlockingQueue<Map.Entry<String,Map.Entry<String,String>>> queue) {
+		this.clientUri = clientUri;
+		this.queue = queue;
+	}
+
+	/**
+	 * Parses the remaining bytes of a buffer.  The buffer is consumed.
+	 * @param buf - bytes received on the request stream
+	 */
+	public void feed(ByteBuffer buf) {
+		while (buf.hasRemaining()) {
+			byte b = buf.get();
+			if (b == '\n' && lastWasCr) {
+				// Second half of a CRLF
+				lastWasCr = false;
+				continue;
+			}
+			lastWasCr = (b == '\r');
+			if (b == '\n' || b == '\r') {
+				endOfLine();
+				continue;
+			}
+			switch (state) {
+			case FIELD_NAME:
+				if (b == ':') {
+					field = matchedField();
+					state = (field == FIELD_OTHER) ? SKIP_LINE : VALUE_START;
+					if (field == FIELD_DATA) {
+						dataLength = 0;
+					} else if (field == FIELD_EVENT) {
+						eventLength = 0;
+					}
+				} else {
+					matchName(b);
 				}
-				if(ch =='\r')
-					continue;
-				s.append(ch);
+				break;
+			case VALUE_START:
+				state = VALUE;
+				if (b == ' ') {
+					break;
+				}
+				append(b);
+				break;
+			case VALUE:
+				append(b);
+				break;
+			default:
+				break;
 			}
 		}
-		while(this.charBuf.hasRemaining()){
-			char ch = this.charBuf.get();
-			if(ch == '\n'){
-				String line = s.toString();
-				return line.length() > 0 ? line : null;
+	}
+
+	private void matchName(byte b) {
+		if ((candidates & 1) != 0 && (nameLength >= EVENT.length || EVENT[nameLength] != b)) {
+			candidates &= ~1;
+		}
+		if ((candidates & 2) != 0 && (nameLength >= DATA.length || DATA[nameLength] != b)) {
+			candidates &= ~2;
+		}
+		nameLength++;
+		if (candidates == 0) {
+			state = SKIP_LINE;
+		}
+	}
+
+	private int matchedField() {
+		if ((candidates & 1) != 0 && nameLength == EVENT.length) {
+			return FIELD_EVENT;
+		}
+		if ((candidates & 2) != 0 && nameLength == DATA.length) {
+			return FIELD_DATA;
+		}
+		return FIELD_OTHER;
+	}
+
+	private void append(byte b) {
+		if (field == FIELD_EVENT) {
+			if (eventLength == event.length) {
+				event = grow(event);
 			}
-			if(ch =='\r')
-				continue;
-			s.append(ch);
-			if(!this.charBuf.hasRemaining()){
-				this.partialChunk = s.toString();
-				this.chunkedBuffer = true;
+			if (event != null) {
+				event[eventLength++] = b;
+				return;
+			}
+		} else {
+			if (dataLength == data.length) {
+				data = grow(data);
+			}
+			if (data != null) {
+				data[dataLength++] = b;
+				return;
 			}
 		}
-		return null;
+		// Value too large; the line is dropped
+		overflows++;
+		ErrorLog.logError("ParseStream - value exceeds " + MAX_VALUE_LENGTH + " bytes on stream of " + clientUri);
+		event = new byte[64];
+		data = new byte[1024];
+		eventLength = 0;
+		dataLength = 0;
+		hasEvent = false;
+		state = SKIP_LINE;
 	}
 
+	private static byte[] grow(byte[] buf) {
+		return (buf.length >= MAX_VALUE_LENGTH) ? null : Arrays.copyOf(buf, Math.min(buf.length << 1, MAX_VALUE_LENGTH));
+	}
 
-	@Override
-	public void run() {
-		chunkedBuffer = false;
-		String event = null,data = null;
-		while(true){
-			try {
-				Map.Entry<String, CharBuffer> entry = blockingQueue.take();
-				this.charBuf = entry.getValue();
-				while(this.charBuf.hasRemaining()){
-					String line = getLine();
-					if(line != null){
-						if(line.startsWith("event")){
-							event = line.split(":",2)[1];
-
-						} else if(line.startsWith("data")){
-							data = line.split(":",2)[1];
-							if(event != null && data != null)
-								NBEventPool.getInstance().getWorker().getBlockingQueue().put(new AbstractMap.SimpleEntry<String,Map.Entry<String,String>>(entry.getKey(), new AbstractMap.SimpleEntry<String,String>(event, data)));
-							event = null;
-							data = null;
-						}
-					}
+	private void endOfLine() {
+		if (state == VALUE || state == VALUE_START) {
+			if (field == FIELD_EVENT) {
+				hasEvent = true;
+			} else if (field == FIELD_DATA && hasEvent) {
+				dispatch();
+				hasEvent = false;
+			}
+		}
+		state = FIELD_NAME;
+		nameLength = 0;
+		candidates = 3;
+		field = FIELD_OTHER;
+	}
 
-				}
-			} catch (InterruptedException e) {
-				ErrorLog.logError(e.getLocalizedMessage(),e.getStackTrace());
+	private void dispatch() {
+		BlockingQueue<Map.Entry<String,Map.Entry<String,String>>> target = queue;
+		if (target == null) {
+			NBEventPool pool = NBEventPool.getInstance();
+			if (pool == null) {
+				return;
 			}
+			target = pool.getWorker(clientUri).getBlockingQueue();
+		}
+		if (!target.offer(new AbstractMap.SimpleEntry<String,Map.Entry<String,String>>(clientUri,
+					new AbstractMap.SimpleEntry<String,String>(new String(event, 0, eventLength, StandardCharsets.UTF_8),
+							new String(data, 0, dataLength, StandardCharsets.UTF_8))))) {
+			dropped++;
+			ErrorLog.logError("ParseStream - worker queue full, event dropped on stream of " + clientUri);
 		}
 	}
 
+	/**
+	 * Number of lines dropped because a value exceeded the maximum length.
+	 * @return count
+	 */
+	public long getOverflows() {
+		return overflows;
+	}
+
+	/**
+	 * Number of event-data pairs dropped because the worker queue was full.
+	 * @return count
+	 */
+	public long getDropped() {
+		return dropped;
+	}
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.eventStream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.utils.ErrorLog;
+import org.opendaylight.fpc.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server Sent Event delivery engine.
+ *
+ * Each registered client has its own bounded stream (see SseStream) drained by a shared pool of
+ * writers, so a slow client only delays its own events.  Slow consumers are evicted, i.e. their
+ * stream is completed, its connection closed and the stream removed, when
+ * <ul>
+ * <li>their ring overflows and the policy is EVICT (with DROP the event is dropped instead), or</li>
+ * <li>a write has been blocked for longer than maxStallMs.</li>
+ * </ul>
+ * The servlet container in use (Jetty 8, Servlet 3.0) does not provide WriteListener, so writes
+ * remain blocking; they are however confined to the writer owning the stream and bounded in time
+ * by the stall check, whose eviction closes the connection and so fails the blocked write.
+ */
+public class SseFanout implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SseFanout.class);
+    private static final long STALL_CHECK_MS = 1000L;
+
+    /**
+     * Action taken when a client's ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the event and keep the stream.
+         */
+        DROP,
+        /**
+         * Close the stream.
+         */
+        EVICT
+    }
+
+    private final String name;
+    private final int capacity;
+    private final int maxCoalesce;
+    private final long maxStallMs;
+    private final OverflowPolicy overflowPolicy;
+    private final ConcurrentMap<String, SseStream> streams;
+    private final ExecutorService writers;
+    private final ScheduledExecutorService stallCheck;
+    private final LongAdder unrouted = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param name - engine name, used for thread names and logs
+     * @param writerThreads - number of writer threads
+     * @param capacity - ring capacity per client
+     * @param maxCoalesce - maximum events written per flush
+     * @param maxStallMs - maximum time a write may block before the client is evicted
+     * @param overflowPolicy - action taken when a client's ring is full
+     */
+    public SseFanout(String name, int writerThreads, int capacity, int maxCoalesce, long maxStallMs,
+            OverflowPolicy overflowPolicy) {
+        this.name = name;
+        this.capacity = capacity;
+        this.maxCoalesce = maxCoalesce;
+        this.maxStallMs = maxStallMs;
+        this.overflowPolicy = overflowPolicy;
+        this.streams = new ConcurrentHashMap<String, SseStream>();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), new NamedThreadFactory(name));
+        this.stallCheck = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name + "-stall"));
+        this.stallCheck.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictStalled();
+            }
+        }, STALL_CHECK_MS, STALL_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a client's stream, replacing (and closing) any previous stream of the client.
+     * @param key - client key
+     * @param asyncContext - the client's async context
+     */
+    public void register(String key, AsyncContext asyncContext) {
+        SseStream prev = streams.put(key, new SseStream(key, asyncContext, capacity, maxCoalesce));
+        if (prev != null) {
+            prev.close();
+        }
+    }
+
+    /**
+     * Indicates if a client has a stream.
+     * @param key - client key
+     * @return true if the client has a stream
+     */
+    public boolean isRegistered(String key) {
+        return streams.containsKey(key);
+    }
+
+    /**
+     * Queues an event for a client.
+     * @param key - client key
+     * @param frame - event-data frame
+     * @param tx - Transaction marked as responded once the frame is flushed, or released if the frame
+     *      is dropped (may be null)
+     * @return false if the client has no stream or the event was dropped
+     */
+    public boolean send(String key, byte[] frame, Transaction tx) {
+        SseStream.Event event = new SseStream.Event(frame, tx);
+        SseStream stream = streams.get(key);
+        if (stream == null) {
+            unrouted.increment();
+            event.release();
+            return false;
+        }
+        if (!stream.offer(event)) {
+            if (overflowPolicy == OverflowPolicy.EVICT) {
+                evict(stream, "backlog of " + capacity + " events exceeded");
+            }
+            return false;
+        }
+        if (stream.schedule()) {
+            submit(stream);
+        }
+        return true;
+    }
+
+    private void submit(SseStream stream) {
+        try {
+            writers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (stream.drain()) {
+                            submit(stream);
+                        }
+                    } catch (Exception e) {
+                        ErrorLog.logError("Cannot write to client " + stream.getKey(), e.getStackTrace());
+                        evict(stream, e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Engine is closing
+            stream.close();
+        }
+    }
+
+    private void evict(SseStream stream, String reason) {
+        streams.remove(stream.getKey(), stream);
+        if (stream.abort()) {
+            evicted.increment();
+            LOG.warn("{} - evicted client {} ({}): {}", name, stream.getKey(), reason, stream);
+        }
+    }
+
+    private void evictStalled() {
+        long now = System.nanoTime();
+        for (SseStream stream : streams.values()) {
+            if (stream.getStallMs(now) > maxStallMs) {
+                evict(stream, "write blocked for more than " + maxStallMs + "ms");
+            }
+        }
+    }
+
+    /**
+     * Metrics of a client's stream.
+     * @param key - client key
+     * @return metrics or null if the client has no stream
+     */
+    public String getStreamStats(String key) {
+        SseStream stream = streams.get(key);
+        return (stream != null) ? stream.toString() : null;
+    }
+
+    /**
+     * Events queued for clients that had no stream.
+     * @return count
+     */
+    public long getUnrouted() {
+        return unrouted.sum();
+    }
+
+    /**
+     * Largest 99th percentile queueing lag over all streams.
+     * @return lag in milliseconds
+     */
+    public long getMaxLagP99Ms() {
+        long max = 0L;
+        for (SseStream stream : streams.values()) {
+            max = Math.max(max, stream.getLag().getValueAtPercentile(99.0));
+        }
+        return max;
+    }
+
+    @Override
+    public void close() {
+        stallCheck.shutdownNow();
+        writers.shutdown();
+        for (Map.Entry<String, SseStream> entry : streams.entrySet()) {
+            streams.remove(entry.getKey(), entry.getValue());
+            entry.getValue().close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SseFanout [name=" + name + ", streams=" + streams.size() + ", unrouted=" + unrouted.sum()
+                + ", evicted=" + evicted.sum() + ", maxLagP99Ms=" + getMaxLagP99Ms() + "]";
+    }
+}
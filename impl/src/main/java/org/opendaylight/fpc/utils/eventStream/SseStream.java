@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.eventStream;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Request;
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+import org.opendaylight.fpc.utils.LatencyHistogram;
+import org.opendaylight.fpc.utils.MpscArrayQueue;
+
+/**
+ * A single client's Server Sent Event stream.
+ *
+ * Events are queued in a bounded ring and written by at most one drain task at a time, which takes
+ * every queued event (up to maxCoalesce) and writes them with a single flush.  The time each event
+ * spent queued is recorded in the stream's lag histogram.
+ *
+ * An event that is never written (rejected, queued when the stream closes or lost in a failed write)
+ * is released: its Transaction is marked as responded so that the Config Result notification, which
+ * carries the outcome, is still issued and the Transaction does not linger until it expires.
+ *
+ * Completing the async context does not unblock a Jetty 8 write in progress, so an aborted stream
+ * also closes the client's connection; the blocked write then fails and the drain task ends.
+ */
+class SseStream {
+    private static final long HIGHEST_TRACKABLE_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * A queued event.
+     */
+    static final class Event {
+        final byte[] frame;
+        final Transaction tx;
+        final long enqueuedNanos;
+
+        Event(byte[] frame, Transaction tx) {
+            this.frame = frame;
+            this.tx = tx;
+            this.enqueuedNanos = System.nanoTime();
+        }
+
+        /**
+         * Releases the Transaction of an event that will not be written.
+         */
+        void release() {
+            if (tx != null) {
+                tx.setResponseSent();
+            }
+        }
+    }
+
+    private final String key;
+    private final AsyncContext asyncContext;
+    private final EndPoint endPoint;
+    private final MpscArrayQueue<Event> ring;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Event[] batch;
+    private volatile boolean closed = false;
+    private volatile long writeStartNanos = 0L;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram lag = new LatencyHistogram(HIGHEST_TRACKABLE_MS);
+
+    /**
+     * Constructor.
+     * @param key - client key (client id or client Uri)
+     * @param asyncContext - the client's async context
+     * @param capacity - ring capacity
+     * @param maxCoalesce - maximum events written per flush
+     */
+    SseStream(String key, AsyncContext asyncContext, int capacity, int maxCoalesce) {
+        this.key = key;
+        this.asyncContext = asyncContext;
+        this.endPoint = endPointOf(asyncContext.getRequest());
+        this.ring = new MpscArrayQueue<Event>(capacity);
+        this.batch = new Event[Math.max(1, maxCoalesce)];
+    }
+
+    /**
+     * Connection end point of a Jetty request.
+     * @param request - request
+     * @return end point or null if the request is not a Jetty request
+     */
+    private static EndPoint endPointOf(ServletRequest request) {
+        if (request instanceof Request && ((Request) request).getConnection() != null) {
+            return ((Request) request).getConnection().getEndPoint();
+        }
+        return null;
+    }
+
+    /**
+     * Client key.
+     * @return key
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Queues an event.  May be called by any thread.  A rejected event is released.
+     * @param event - event
+     * @return false if the ring is full or the stream is closed
+     */
+    boolean offer(Event event) {
+        if (closed || !ring.offer(event)) {
+            dropped.increment();
+            event.release();
+            return false;
+        }
+        if (closed) {
+            // Queued after close() released the ring
+            releaseQueued();
+        }
+        return true;
+    }
+
+    /**
+     * Claims the drain task of this stream.
+     * @return true if the caller must run drain()
+     */
+    boolean schedule() {
+        return !closed && !ring.isEmpty() && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Writes the queued events.  Only called by the thread that claimed the drain task.
+     * @return true if more events were queued while draining and the drain task was claimed again
+     * @throws IOException - if the write fails
+     */
+    boolean drain() throws IOException {
+        try {
+            int n;
+            while (!closed && (n = take()) > 0) {
+                writeStartNanos = System.nanoTime();
+                ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+                for (int i = 0; i < n; i++) {
+                    out.write(batch[i].frame);
+                }
+                out.flush();
+                asyncContext.getResponse().flushBuffer();
+                long now = System.nanoTime();
+                writeStartNanos = 0L;
+                for (int i = 0; i < n; i++) {
+                    lag.record(TimeUnit.NANOSECONDS.toMillis(now - batch[i].enqueuedNanos));
+                    if (batch[i].tx != null) {
+                        batch[i].tx.setResponseSent();
+                    }
+                    batch[i] = null;
+                }
+                sent.add(n);
+                flushes.increment();
+            }
+        } finally {
+            writeStartNanos = 0L;
+            // Events of a failed write
+            for (int i = 0; i < batch.length && batch[i] != null; i++) {
+                dropped.increment();
+                batch[i].release();
+                batch[i] = null;
+            }
+            scheduled.set(false);
+        }
+        if (closed) {
+            releaseQueued();
+            return false;
+        }
+        // An event may have been queued after the last poll but before the task was released
+        return schedule();
+    }
+
+    private int take() {
+        int n = 0;
+        Event e;
+        while (n < batch.length && (e = ring.poll()) != null) {
+            batch[n++] = e;
+        }
+        return n;
+    }
+
+    /**
+     * Closes the stream.  Queued events are dropped and released.
+     * @return false if the stream was already closed
+     */
+    boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        try {
+            asyncContext.complete();
+        } catch (Exception e) {
+            // The client is already gone
+        }
+        releaseQueued();
+        return true;
+    }
+
+    /**
+     * Closes the stream and the client's connection, which fails a write blocked on the client.
+     * @return false if the stream was already closed
+     */
+    boolean abort() {
+        if (!close()) {
+            return false;
+        }
+        try {
+            if (endPoint != null) {
+                endPoint.close();
+            } else {
+                asyncContext.getResponse().getOutputStream().close();
+            }
+        } catch (Exception e) {
+            // The client is already gone
+        }
+        return true;
+    }
+
+    /**
+     * Drops and releases the queued events of a closed stream.  The ring has a single consumer, so
+     * this only runs while holding the drain task; a drain in progress releases the ring itself when
+     * it ends.
+     */
+    private void releaseQueued() {
+        while (!ring.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                Event e;
+                while ((e = ring.poll()) != null) {
+                    dropped.increment();
+                    e.release();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the stream is closed.
+     * @return true if closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Time the write in progress has been blocked.
+     * @param now - System.nanoTime()
+     * @return stall in milliseconds, 0 if no write is in progress
+     */
+    long getStallMs(long now) {
+        long start = writeStartNanos;
+        return (start == 0L) ? 0L : TimeUnit.NANOSECONDS.toMillis(now - start);
+    }
+
+    /**
+     * Events queued.
+     * @return count
+     */
+    int getBacklog() {
+        return ring.size();
+    }
+
+    /**
+     * Events written.
+     * @return count
+     */
+    long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Flushes performed.
+     * @return count
+     */
+    long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * Events dropped because the ring was full or the stream was closed.
+     * @return count
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Time events spent queued before they were flushed.
+     * @return histogram in milliseconds
+     */
+    LatencyHistogram getLag() {
+        return lag;
+    }
+
+    @Override
+    public String toString() {
+        return "SseStream [key=" + key + ", backlog=" + getBacklog() + ", sent=" + getSent() + ", flushes="
+                + getFlushes() + ", dropped=" + getDropped() + ", lagP99Ms=" + lag.getValueAtPercentile(99.0)
+                + ", lagMaxMs=" + lag.getMax() + "]";
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.zeromq;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of exact-size ByteBuffers owned by a single ZMQ Client Socket.
+ *
+ * Buffers are grouped by size class so that a released buffer can be sent as-is (its backing
+ * array is exactly the message length) once it is handed out again.  Free lists are array backed
+ * so acquiring and releasing a buffer does not allocate.  When a free list is empty a new buffer
+ * is allocated and adopted by the pool on release, up to the per-size limit.
+ */
+public class ByteBufferPool {
+    /**
+     * Largest message size that is pooled.
+     */
+    public static final int MAX_POOLED_SIZE = 64;
+    /**
+     * Default number of buffers retained per size class.
+     */
+    public static final int DEFAULT_BUFFERS_PER_SIZE = 1024;
+
+    private final AtomicReferenceArray<ArrayBlockingQueue<ByteBuffer>> freeLists;
+    private final int buffersPerSize;
+    private final LongAdder allocations;
+
+    /**
+     * Default Constructor.
+     */
+    public ByteBufferPool() {
+        this(DEFAULT_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param buffersPerSize - maximum number of free buffers retained per size class
+     */
+    public ByteBufferPool(int buffersPerSize) {
+        this.buffersPerSize = buffersPerSize;
+        this.freeLists = new AtomicReferenceArray<ArrayBlockingQueue<ByteBuffer>>(MAX_POOLED_SIZE + 1);
+        this.allocations = new LongAdder();
+    }
+
+    /**
+     * Acquires a cleared buffer of exactly the given size.
+     * @param size - message size in bytes
+     * @return ByteBuffer with capacity equal to size
+     */
+    public ByteBuffer acquire(int size) {
+        ArrayBlockingQueue<ByteBuffer> freeList = freeList(size);
+        ByteBuffer bb = (freeList != null) ? freeList.poll() : null;
+        if (bb == null) {
+            allocations.increment();
+            return ByteBuffer.allocate(size);
+        }
+        bb.clear();
+        return bb;
+    }
+
+    /**
+     * Returns a buffer to the pool.  Buffers outside of the pooled sizes or in excess of the
+     * per-size limit are left to the garbage collector.
+     * @param bb - buffer that is no longer in use
+     */
+    public void release(ByteBuffer bb) {
+        ArrayBlockingQueue<ByteBuffer> freeList = freeList(bb.capacity());
+        if (freeList != null) {
+            freeList.offer(bb);
+        }
+    }
+
+    /**
+     * Number of buffers allocated because no pooled buffer was available.
+     * @return allocation count
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * Retrieves (lazily creating) the free list for a size class.
+     * @param size - buffer size
+     * @return free list or null if the size is not pooled
+     */
+    private ArrayBlockingQueue<ByteBuffer> freeList(int size) {
+        if (size <= 0 || size > MAX_POOLED_SIZE) {
+            return null;
+        }
+        ArrayBlockingQueue<ByteBuffer> freeList = freeLists.get(size);
+        if (freeList == null) {
+            freeLists.compareAndSet(size, null, new ArrayBlockingQueue<ByteBuffer>(buffersPerSize));
+            freeList = freeLists.get(size);
+        }
+        return freeList;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.zeromq;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batched frame layout shared by the southbound client and listener.
+ *
+ * <pre>
+ * | topic (1) | BATCH_TYPE (1) | count (2) | length (2) | message | ... | length (2) | message |
+ * </pre>
+ *
+ * Every embedded message is a complete southbound message (including its own topic byte), so a
+ * receiver unpacks the frame and processes each message exactly as if it had arrived alone.  All
+ * embedded messages carry the topic of the enclosing frame.  Multi-byte fields are in network
+ * byte order.
+ *
+ * A DPN that can unpack batched frames announces it by appending a capabilities byte to its
+ * Hello status indication, after the network id, with {@link #HELLO_CAPABILITY} set:
+ *
+ * <pre>
+ * | topic | STATUS_INDICATION | dpn topic | HELLO | source id (4) | node id len | node id |
+ * | network id len | network id | capabilities (1, optional) |
+ * </pre>
+ *
+ * The agent echoes the capabilities byte at the end of its Hello Reply when it will batch, and
+ * only then sends batched frames on the DPN's topic.  A DPN that sends no capabilities byte
+ * (or says Bye) keeps receiving one message per frame.
+ */
+public class ZMQBatchFrame {
+    /**
+     * Message Type of a batched frame.
+     */
+    public static final byte BATCH_TYPE = 0b0001_1111;
+    /**
+     * Hello capability bit of a DPN that accepts batched frames.
+     */
+    public static final byte HELLO_CAPABILITY = 0b0000_0001;
+    /**
+     * Length of the frame header (topic, type, count).
+     */
+    public static final int HEADER_LENGTH = 4;
+    /**
+     * Length of the per-message length prefix.
+     */
+    public static final int LENGTH_PREFIX = 2;
+    /**
+     * Largest number of messages in a frame.
+     */
+    public static final int MAX_MESSAGES = 0xFFFF;
+    /**
+     * Largest embedded message.
+     */
+    public static final int MAX_MESSAGE_LENGTH = 0xFFFF;
+
+    /**
+     * Indicates if a received frame is a batched frame.
+     * @param frame - received frame
+     * @return true if the frame carries multiple messages
+     */
+    public static boolean isBatch(byte[] frame) {
+        return frame.length >= HEADER_LENGTH && frame[1] == BATCH_TYPE;
+    }
+
+    /**
+     * Number of messages in a batched frame.
+     * @param frame - batched frame
+     * @return message count
+     */
+    public static int count(byte[] frame) {
+        return ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+    }
+
+    /**
+     * Writes the frame header.
+     * @param buf - frame buffer
+     * @param topic - ZMQ Topic
+     */
+    public static void writeHeader(byte[] buf, byte topic) {
+        buf[0] = topic;
+        buf[1] = BATCH_TYPE;
+        buf[2] = 0;
+        buf[3] = 0;
+    }
+
+    /**
+     * Writes the message count into the frame header.
+     * @param buf - frame buffer
+     * @param count - number of messages in the frame
+     */
+    public static void writeCount(byte[] buf, int count) {
+        buf[2] = (byte) (count >>> 8);
+        buf[3] = (byte) count;
+    }
+
+    /**
+     * Appends a message to a frame.
+     * @param buf - frame buffer
+     * @param pos - write position
+     * @param msg - message bytes
+     * @param off - message offset
+     * @param len - message length
+     * @return the new write position
+     */
+    public static int append(byte[] buf, int pos, byte[] msg, int off, int len) {
+        buf[pos] = (byte) (len >>> 8);
+        buf[pos + 1] = (byte) len;
+        System.arraycopy(msg, off, buf, pos + LENGTH_PREFIX, len);
+        return pos + LENGTH_PREFIX + len;
+    }
+
+    /**
+     * Splits a batched frame into its messages.
+     * @param frame - received batched frame
+     * @param out - list receiving a copy of each message
+     * @return false if the frame is malformed; messages preceding the error are still added
+     */
+    public static boolean unpack(byte[] frame, List<byte[]> out) {
+        int count = count(frame);
+        int pos = HEADER_LENGTH;
+        for (int i = 0; i < count; i++) {
+            if (pos + LENGTH_PREFIX > frame.length) {
+                return false;
+            }
+            int len = ((frame[pos] & 0xFF) << 8) | (frame[pos + 1] & 0xFF);
+            pos += LENGTH_PREFIX;
+            if (len == 0 || pos + len > frame.length) {
+                return false;
+            }
+            out.add(Arrays.copyOfRange(frame, pos, pos + len));
+            pos += len;
+        }
+        return pos == frame.length;
+    }
+}
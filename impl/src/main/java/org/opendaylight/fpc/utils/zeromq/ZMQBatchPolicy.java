@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.zeromq;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Flush policy of a batching ZMQ Client Socket.
+ *
+ * Messages for the same topic are coalesced into one batched frame until either the batch holds
+ * maxMessages messages, the frame would exceed maxFrameBytes or maxDelayMicros have elapsed since
+ * the first message of the drain cycle was taken.
+ *
+ * Batched frames are only sent to a topic whose DPN announced
+ * {@link ZMQBatchFrame#HELLO_CAPABILITY} in its Hello; every other topic, including the
+ * broadcast topic, keeps receiving one message per frame.  Batching is off by default.
+ */
+public class ZMQBatchPolicy {
+    /**
+     * Default maximum batched frame size.
+     */
+    public static final int DEFAULT_MAX_FRAME_BYTES = 8192;
+    /**
+     * Policy that sends every message as its own frame.
+     */
+    public static final ZMQBatchPolicy DISABLED = new ZMQBatchPolicy(1, 0L, DEFAULT_MAX_FRAME_BYTES);
+
+    private final int maxMessages;
+    private final long maxDelayMicros;
+    private final int maxFrameBytes;
+    private final AtomicIntegerArray acceptingTopics = new AtomicIntegerArray(256);
+
+    /**
+     * Constructor.
+     * @param maxMessages - maximum messages per batched frame (1 disables batching)
+     * @param maxDelayMicros - maximum time a message waits for its batch to fill
+     * @param maxFrameBytes - maximum size of a batched frame
+     */
+    public ZMQBatchPolicy(int maxMessages, long maxDelayMicros, int maxFrameBytes) {
+        this.maxMessages = Math.max(1, Math.min(maxMessages, ZMQBatchFrame.MAX_MESSAGES));
+        this.maxDelayMicros = Math.max(0L, maxDelayMicros);
+        this.maxFrameBytes = Math.max(ZMQBatchFrame.HEADER_LENGTH, maxFrameBytes);
+    }
+
+    /**
+     * Indicates if messages are coalesced.
+     * @return true if more than one message may be placed in a frame
+     */
+    public boolean isEnabled() {
+        return maxMessages > 1;
+    }
+
+    /**
+     * Indicates if messages for a topic are coalesced.
+     * @param topic - ZMQ Topic
+     * @return true if batching is enabled and the DPN of the topic accepts batched frames
+     */
+    public boolean isEnabled(int topic) {
+        return isEnabled() && acceptingTopics.get(topic & 0xFF) != 0;
+    }
+
+    /**
+     * Records whether the DPN of a topic accepts batched frames.  Called on DPN Hello / Bye.
+     * The broadcast topic is never batched since it reaches DPNs that may not accept them.
+     * @param topic - ZMQ Topic of the DPN
+     * @param accepts - true if the DPN announced the batched frame capability
+     */
+    public void setAccepted(int topic, boolean accepts) {
+        if ((topic & 0xFF) != 0) {
+            acceptingTopics.set(topic & 0xFF, accepts ? 1 : 0);
+        }
+    }
+
+    /**
+     * Maximum messages per batched frame.
+     * @return message count
+     */
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * Maximum time a message waits for its batch to fill.
+     * @return delay in nanoseconds
+     */
+    public long getMaxDelayNanos() {
+        return TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    }
+
+    /**
+     * Maximum size of a batched frame.
+     * @return size in bytes
+     */
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ZMQBatchPolicy [maxMessages=" + maxMessages + ", maxDelayMicros=" + maxDelayMicros
+                + ", maxFrameBytes=" + maxFrameBytes + "]";
+    }
+}
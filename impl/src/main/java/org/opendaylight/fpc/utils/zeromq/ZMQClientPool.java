@@ -32,7 +32,19 @@ public class ZMQClientPool extends AbstractThreadPool<ZMQClientSocket> {
      * @param poolSize - thread pool size
      */
     public static void createInstance(ZContext context, String address, int poolSize) {
-        _instance = new ZMQClientPool(context, address, poolSize);
+        createInstance(context, address, poolSize, ZMQBatchPolicy.DISABLED);
+    }
+
+    /**
+     * Singleton Initialization call.
+     *
+     * @param context - ZConext
+     * @param address - ZMQ Address
+     * @param poolSize - thread pool size
+     * @param batchPolicy - per topic batching flush policy of the Client sockets
+     */
+    public static void createInstance(ZContext context, String address, int poolSize, ZMQBatchPolicy batchPolicy) {
+        _instance = new ZMQClientPool(context, address, poolSize, batchPolicy);
     }
 
     /**
@@ -45,6 +57,7 @@ public class ZMQClientPool extends AbstractThreadPool<ZMQClientSocket> {
 
     private final ZContext context;
     private String address;
+    private final ZMQBatchPolicy batchPolicy;
 
     /**
      * Constructor.
@@ -52,11 +65,13 @@ public class ZMQClientPool extends AbstractThreadPool<ZMQClientSocket> {
      * @param context - ZConext
      * @param address - ZMQ Address
      * @param poolSize - thread pool size
+     * @param batchPolicy - per topic batching flush policy of the Client sockets
      */
-    protected ZMQClientPool(ZContext context, String address, int poolSize) {
+    protected ZMQClientPool(ZContext context, String address, int poolSize, ZMQBatchPolicy batchPolicy) {
         super(null, poolSize);
         this.context = context;
         this.address = address;
+        this.batchPolicy = batchPolicy;
     }
 
     /**
@@ -68,6 +83,15 @@ public class ZMQClientPool extends AbstractThreadPool<ZMQClientSocket> {
         return address;
     }
 
+    /**
+     * Returns the batching flush policy shared by the Client sockets.
+     *
+     * @return batch policy
+     */
+    public ZMQBatchPolicy getBatchPolicy() {
+        return batchPolicy;
+    }
+
     /**
      * Returns Context of the ZMQ Client.
      * 
@@ -116,7 +140,7 @@ public class ZMQClientPool extends AbstractThreadPool<ZMQClientSocket> {
         @Override
         public ZMQClientSocket get() {
             // NOTE that Queues are NOT shared amongst sockets
-            return new ZMQClientSocket(context, address, type, startSignal, new LinkedBlockingQueue<ByteBuffer>());
+            return new ZMQClientSocket(context, address, type, startSignal, new LinkedBlockingQueue<ByteBuffer>(), batchPolicy);
         }
     }
 }
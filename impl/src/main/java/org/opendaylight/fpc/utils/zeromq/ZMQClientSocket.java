@@ -10,6 +10,8 @@ package org.opendaylight.fpc.utils.zeromq;
 import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.opendaylight.fpc.utils.ErrorLog;
 import org.slf4j.Logger;
@@ -18,10 +20,21 @@ import org.zeromq.ZContext;
 
 /**
  * ZMQ Client Socket.
+ *
+ * When batching is enabled (see {@link ZMQBatchPolicy}) queued messages are coalesced per topic
+ * into {@link ZMQBatchFrame}s for the topics whose DPN accepts them; a batch holding a single
+ * message is sent as a plain frame.  A frame that is already batched by its producer is sent
+ * as-is.
  */
 public class ZMQClientSocket extends ZMQBaseSocket {
     private static final Logger LOG = LoggerFactory.getLogger(ZMQClientSocket.class);
+    private static final int TOPICS = 256;
     private BlockingQueue<ByteBuffer> blockingQueue;
+    private final ByteBufferPool bufferPool;
+    private final ZMQBatchPolicy batchPolicy;
+    private final TopicBatch[] batches;
+    private final LongAdder framesSent;
+    private final LongAdder messagesSent;
 
     /**
      * Client Constructor.
@@ -34,9 +47,63 @@ public class ZMQClientSocket extends ZMQBaseSocket {
      */
     public ZMQClientSocket(ZContext context, String address, int socketType,
             CountDownLatch startSignal, BlockingQueue<ByteBuffer> blockingQueue) {
+        this(context, address, socketType, startSignal, blockingQueue, ZMQBatchPolicy.DISABLED);
+    }
+
+    /**
+     * Client Constructor.
+     *
+     * @param context - ZConext
+     * @param address - ZMQ Address
+     * @param socketType - ZMQ Socket Type
+     * @param startSignal - threadpool start signal
+     * @param blockingQueue - A byte buffer BlockingQueue assigned to the Client
+     * @param batchPolicy - Flush policy for per topic batching
+     */
+    public ZMQClientSocket(ZContext context, String address, int socketType,
+            CountDownLatch startSignal, BlockingQueue<ByteBuffer> blockingQueue, ZMQBatchPolicy batchPolicy) {
         super(context,address,socketType, startSignal);
         this.context = new ZContext();
         this.blockingQueue = blockingQueue;
+        this.bufferPool = new ByteBufferPool();
+        this.batchPolicy = batchPolicy;
+        this.batches = new TopicBatch[TOPICS];
+        this.framesSent = new LongAdder();
+        this.messagesSent = new LongAdder();
+    }
+
+    /**
+     * Number of ZMQ frames sent.
+     * @return frame count
+     */
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    /**
+     * Number of messages sent (a batched frame carries several messages).
+     * @return message count
+     */
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    /**
+     * Flush policy of the socket.  Producers may only queue batched frames for a topic while it
+     * is enabled for that topic, i.e. when the DPN of the topic announced that it accepts them.
+     * @return batch policy
+     */
+    public ZMQBatchPolicy getBatchPolicy() {
+        return batchPolicy;
+    }
+
+    /**
+     * Retrieves the Worker's buffer pool.  Buffers acquired from the pool and placed on the
+     * Worker's Queue are returned to the pool once they have been sent.
+     * @return ByteBufferPool owned by this Worker
+     */
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
     }
 
     /**
@@ -74,10 +141,134 @@ public class ZMQClientSocket extends ZMQBaseSocket {
             startSignal.await();
             while(run) {
                 ByteBuffer bb = blockingQueue.take();
-                socket.send(bb.array());
+                if (batchPolicy.isEnabled()) {
+                    drainBatches(bb);
+                } else {
+                    send(bb);
+                }
             }
         } catch (InterruptedException e) {
         	ErrorLog.logError(e.getStackTrace());
         }
     }
+
+    /**
+     * Sends a single message.
+     * @param bb - message
+     */
+    private void send(ByteBuffer bb) {
+        // The offset/length send copies into the outgoing frame, so the buffer may be reused
+        socket.send(bb.array(), 0, bb.capacity(), 0);
+        framesSent.increment();
+        messagesSent.increment();
+        bufferPool.release(bb);
+    }
+
+    /**
+     * Coalesces messages until the flush policy's delay has elapsed, flushing a topic early
+     * when its batch is full, and then flushes every pending batch.
+     * @param first - first message of the drain cycle
+     * @throws InterruptedException - if interrupted while waiting for messages
+     */
+    private void drainBatches(ByteBuffer first) throws InterruptedException {
+        long deadline = System.nanoTime() + batchPolicy.getMaxDelayNanos();
+        append(first);
+        ByteBuffer bb;
+        while ((bb = blockingQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+            append(bb);
+        }
+        for (TopicBatch batch : batches) {
+            if (batch != null) {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * Adds a message to the batch of its topic.
+     * @param bb - message
+     */
+    private void append(ByteBuffer bb) {
+        int length = bb.capacity();
+        int topic = bb.array()[0] & 0xFF;
+        if (ZMQBatchFrame.isBatch(bb.array())) {
+            // Batched by its producer, sent after the pending messages of its topic
+            if (batches[topic] != null) {
+                flush(batches[topic]);
+            }
+            messagesSent.add(ZMQBatchFrame.count(bb.array()) - 1);
+            send(bb);
+            return;
+        }
+        if (!batchPolicy.isEnabled(topic) || length > ZMQBatchFrame.MAX_MESSAGE_LENGTH ||
+                ZMQBatchFrame.HEADER_LENGTH + ZMQBatchFrame.LENGTH_PREFIX + length > batchPolicy.getMaxFrameBytes()) {
+            if (batches[topic] != null) {
+                flush(batches[topic]);
+            }
+            send(bb);
+            return;
+        }
+        TopicBatch batch = batches[topic];
+        if (batch == null) {
+            batch = new TopicBatch((byte) topic, batchPolicy.getMaxFrameBytes());
+            batches[topic] = batch;
+        }
+        if (batch.pos + ZMQBatchFrame.LENGTH_PREFIX + length > batch.buf.length) {
+            flush(batch);
+        }
+        batch.pos = ZMQBatchFrame.append(batch.buf, batch.pos, bb.array(), 0, length);
+        batch.count++;
+        bufferPool.release(bb);
+        if (batch.count >= batchPolicy.getMaxMessages()) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Sends the pending messages of a topic.  A single message is sent as a plain frame.
+     * @param batch - topic batch
+     */
+    private void flush(TopicBatch batch) {
+        if (batch.count == 0) {
+            return;
+        }
+        if (batch.count == 1) {
+            int offset = ZMQBatchFrame.HEADER_LENGTH + ZMQBatchFrame.LENGTH_PREFIX;
+            socket.send(batch.buf, offset, batch.pos - offset, 0);
+        } else {
+            ZMQBatchFrame.writeCount(batch.buf, batch.count);
+            socket.send(batch.buf, 0, batch.pos, 0);
+        }
+        framesSent.increment();
+        messagesSent.add(batch.count);
+        batch.reset();
+    }
+
+    /**
+     * Pending batch of a single topic.  Only accessed by the socket thread.
+     */
+    private static class TopicBatch {
+        final byte[] buf;
+        int pos;
+        int count;
+
+        /**
+         * Constructor.
+         * @param topic - ZMQ Topic
+         * @param maxFrameBytes - frame buffer size
+         */
+        TopicBatch(byte topic, int maxFrameBytes) {
+            this.buf = new byte[maxFrameBytes];
+            ZMQBatchFrame.writeHeader(buf, topic);
+            reset();
+        }
+
+        /**
+         * Empties the batch, keeping the frame header.
+         */
+        void reset() {
+            pos = ZMQBatchFrame.HEADER_LENGTH;
+            count = 0;
+        }
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Tenants;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.Tenant;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.TenantKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.FpcMobility;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.tenants.tenant.fpc.mobility.ContextsKey;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.EbiType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ImsiType;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+
+/**
+ * OffHeapContextStore tests - storage round trips, block reuse and iteration while the index is
+ * rehashed.  The smallest slab size is used so records span several slabs.
+ */
+public class OffHeapContextStoreTest {
+    private static final int SLAB_SIZE = 1 << 16;
+
+    private static FpcCodecUtils codecs;
+    private static InstanceIdentifier<FpcMobility> mobilityIid;
+
+    @BeforeClass
+    public static void setUpClass() {
+        codecs = FpcCodecUtils.get();
+        mobilityIid = InstanceIdentifier.builder(Tenants.class)
+                .child(Tenant.class, new TenantKey(new FpcIdentity("default")))
+                .child(FpcMobility.class).build();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        OffHeapContextStore store = new OffHeapContextStore(codecs, mobilityIid, SLAB_SIZE);
+        Contexts ctxt = context(1, 1);
+        MapEntryNode node = node(ctxt);
+        String key = OffHeapContextStore.keyOf(ctxt.getContextId());
+
+        assertTrue(store.put(key, node));
+        assertTrue(store.contains(key));
+        assertEquals(1, store.size());
+        assertEquals(node, store.getNode(key));
+        assertEquals(ctxt, store.getContext(ctxt.getContextId()));
+        assertEquals(key, store.keyOfPath(store.pathOf(node)));
+
+        assertTrue(store.remove(key));
+        assertFalse(store.remove(key));
+        assertFalse(store.contains(key));
+        assertNull(store.getNode(key));
+        assertEquals(0, store.size());
+        assertEquals(0L, store.getLiveBytes());
+    }
+
+    @Test
+    public void testUpdateAndBlockReuse() {
+        OffHeapContextStore store = new OffHeapContextStore(codecs, mobilityIid, SLAB_SIZE);
+        String key = key(7);
+        assertTrue(store.put(key, node(context(7, 1))));
+        long small = store.getLiveBytes();
+
+        // Same size class - updated in place
+        assertTrue(store.put(key, node(context(7, 1))));
+        assertEquals(small, store.getLiveBytes());
+
+        // Larger record - relocated, the old block is released
+        Contexts large = context(7, 40);
+        assertTrue(store.put(key, node(large)));
+        assertTrue(store.getLiveBytes() > small);
+        assertEquals(large, store.getContext(large.getContextId()));
+        assertEquals(1, store.size());
+
+        // The released block is reused by the next record of its size class
+        long reserved = store.getReservedBytes();
+        assertTrue(store.put(key(8), node(context(8, 1))));
+        assertEquals(reserved, store.getReservedBytes());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0L, store.getLiveBytes());
+        assertNull(store.getNode(key));
+    }
+
+    @Test
+    public void testIteration() {
+        OffHeapContextStore store = new OffHeapContextStore(codecs, mobilityIid, SLAB_SIZE);
+        Map<String, Contexts> expected = new HashMap<String, Contexts>();
+        for (int i = 0; i < 300; i++) {
+            Contexts ctxt = context(i, 1 + (i % 8));
+            expected.put(key(i), ctxt);
+            store.put(key(i), node(ctxt));
+        }
+        for (int i = 0; i < 300; i += 3) {
+            store.remove(key(i));
+            expected.remove(key(i));
+        }
+        Map<String, FpcContext> seen = new HashMap<String, FpcContext>();
+        for (Map.Entry<FpcIdentity, FpcContext> entry : store.getContexts().entrySet()) {
+            assertNull("duplicate", seen.put(OffHeapContextStore.keyOf(entry.getKey()), entry.getValue()));
+        }
+        assertEquals(expected, seen);
+        assertEquals(expected.size(), store.getContexts().size());
+    }
+
+    /**
+     * Contexts stored for the whole iteration are reported exactly once although records are added
+     * and removed while iterating and the index is rehashed twice (at 512 and 1024 used or deleted
+     * slots).
+     */
+    @Test
+    public void testIterationAcrossRehash() {
+        OffHeapContextStore store = new OffHeapContextStore(codecs, mobilityIid, SLAB_SIZE);
+        int stable = 400;
+        for (int i = 0; i < stable; i++) {
+            store.put(key(i), node(context(i, 1)));
+        }
+        List<String> seen = new ArrayList<String>();
+        Iterator<Map.Entry<FpcIdentity, FpcContext>> it = store.getContexts().entrySet().iterator();
+        for (int i = 0; i < stable / 2; i++) {
+            seen.add(OffHeapContextStore.keyOf(it.next().getKey()));
+        }
+
+        for (int i = 0; i < 1200; i++) {
+            store.put(key(10000 + i), node(context(10000 + i, 1)));
+            if ((i % 4) == 0) {
+                store.remove(key(10000 + i));
+            }
+        }
+        assertEquals(stable + 900, store.size());
+
+        while (it.hasNext()) {
+            seen.add(OffHeapContextStore.keyOf(it.next().getKey()));
+        }
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String key : seen) {
+            Integer count = counts.get(key);
+            counts.put(key, (count != null) ? count + 1 : 1);
+        }
+        for (int i = 0; i < stable; i++) {
+            assertEquals(key(i), Integer.valueOf(1), counts.get(key(i)));
+        }
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            assertEquals(count.getKey(), Integer.valueOf(1), count.getValue());
+        }
+    }
+
+    @Test
+    public void testClearEndsIteration() {
+        OffHeapContextStore store = new OffHeapContextStore(codecs, mobilityIid, SLAB_SIZE);
+        for (int i = 0; i < 10; i++) {
+            store.put(key(i), node(context(i, 1)));
+        }
+        Iterator<Map.Entry<FpcIdentity, FpcContext>> it = store.getContexts().entrySet().iterator();
+        it.next();
+        store.clear();
+        store.put(key(20), node(context(20, 1)));
+        assertFalse(it.hasNext());
+    }
+
+    private static String key(int i) {
+        return "ctx-" + i;
+    }
+
+    /**
+     * Builds a Context whose record size grows with the number of prefixes.
+     */
+    private static Contexts context(int i, int prefixes) {
+        List<IpPrefix> ipPrefixes = new ArrayList<IpPrefix>(prefixes);
+        for (int p = 0; p < prefixes; p++) {
+            ipPrefixes.add(new IpPrefix(new Ipv4Prefix("10." + p + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF) + "/32")));
+        }
+        FpcContextId id = new FpcContextId(key(i));
+        return new ContextsBuilder()
+                .setContextId(id)
+                .setKey(new ContextsKey(id))
+                .setImsi(new ImsiType(BigInteger.valueOf(310150000000000L + i)))
+                .setEbi(new EbiType((short) 5))
+                .setDelegatingIpPrefixes(ipPrefixes)
+                .build();
+    }
+
+    private static MapEntryNode node(Contexts ctxt) {
+        return (MapEntryNode) codecs.getCodecRegistry().toNormalizedNode(
+                mobilityIid.child(Contexts.class, ctxt.getKey()), ctxt).getValue();
+    }
+}
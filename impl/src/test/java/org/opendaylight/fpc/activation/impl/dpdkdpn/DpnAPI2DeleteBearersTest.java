@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Test;
+import org.opendaylight.fpc.utils.zeromq.ByteBufferPool;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchPolicy;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
+
+/**
+ * DpnAPI2.delete_bearers tests - deletes are packed into batched frames when the socket batches
+ * for a DPN that accepts them and sent one message per bearer otherwise.
+ */
+public class DpnAPI2DeleteBearersTest {
+    private static final short TOPIC = 7;
+
+    private BlockingQueue<ByteBuffer> queue;
+
+    private DpnAPI2 api(ZMQBatchPolicy policy) {
+        queue = new LinkedBlockingQueue<ByteBuffer>();
+        ZMQClientSocket sock = mock(ZMQClientSocket.class);
+        when(sock.getBlockingQueue()).thenReturn(queue);
+        when(sock.getBufferPool()).thenReturn(new ByteBufferPool());
+        when(sock.getBatchPolicy()).thenReturn(policy);
+        return new DpnAPI2(sock);
+    }
+
+    /**
+     * Policy of a socket whose DPN announced the batched frame capability.
+     */
+    private static ZMQBatchPolicy accepting(ZMQBatchPolicy policy) {
+        policy.setAccepted(TOPIC, true);
+        return policy;
+    }
+
+    private static long[] teids(int count) {
+        long[] teids = new long[count + 3];
+        for (int i = 0; i < teids.length; i++) {
+            teids[i] = 0xFFFFFF00L + i;
+        }
+        return teids;
+    }
+
+    private static byte[] deleteBearer(long teid) {
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.DELETE_BEARER_LENGTH);
+        DpnMessageEncoder.encodeDeleteBearer(bb, TOPIC, teid);
+        return bb.array();
+    }
+
+    @Test
+    public void testSingleFrame() {
+        long[] teids = teids(5);
+        api(accepting(new ZMQBatchPolicy(64, 100L, ZMQBatchPolicy.DEFAULT_MAX_FRAME_BYTES))).delete_bearers(TOPIC, teids, 5);
+
+        assertEquals(1, queue.size());
+        byte[] frame = queue.poll().array();
+        assertEquals(DpnMessageEncoder.deleteBearersLength(5), frame.length);
+        assertEquals(TOPIC, frame[0]);
+        assertTrue(ZMQBatchFrame.isBatch(frame));
+        assertEquals(5, ZMQBatchFrame.count(frame));
+
+        List<byte[]> messages = new ArrayList<byte[]>();
+        assertTrue(ZMQBatchFrame.unpack(frame, messages));
+        assertEquals(5, messages.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(deleteBearer(teids[i]), messages.get(i));
+        }
+    }
+
+    /**
+     * Frames are split at the policy's message limit and frame size.
+     */
+    @Test
+    public void testSplitFrames() {
+        long[] teids = teids(10);
+        api(accepting(new ZMQBatchPolicy(4, 100L, ZMQBatchPolicy.DEFAULT_MAX_FRAME_BYTES))).delete_bearers(TOPIC, teids, 10);
+        assertFrames(teids, 4, 4, 2);
+
+        // 4 + 3 * (2 + 7) bytes hold three messages
+        api(accepting(new ZMQBatchPolicy(64, 100L, DpnMessageEncoder.deleteBearersLength(3)))).delete_bearers(TOPIC, teids, 7);
+        assertFrames(teids, 3, 3, 1);
+    }
+
+    @Test
+    public void testUnbatched() {
+        long[] teids = teids(3);
+        api(ZMQBatchPolicy.DISABLED).delete_bearers(TOPIC, teids, 3);
+        assertFrames(teids, 1, 1, 1);
+
+        api(null).delete_bearers(TOPIC, teids, 2);
+        assertFrames(teids, 1, 1);
+    }
+
+    /**
+     * Batching enabled on the Agent is not used until the DPN announces it and stops on Bye.
+     */
+    @Test
+    public void testCapability() {
+        long[] teids = teids(3);
+        ZMQBatchPolicy policy = new ZMQBatchPolicy(64, 100L, ZMQBatchPolicy.DEFAULT_MAX_FRAME_BYTES);
+        api(policy).delete_bearers(TOPIC, teids, 3);
+        assertFrames(teids, 1, 1, 1);
+
+        policy.setAccepted(TOPIC, true);
+        api(policy).delete_bearers(TOPIC, teids, 3);
+        assertFrames(teids, 3);
+
+        policy.setAccepted(TOPIC, false);
+        api(policy).delete_bearers(TOPIC, teids, 3);
+        assertFrames(teids, 1, 1, 1);
+
+        // The broadcast topic is never batched
+        policy.setAccepted(0, true);
+        assertFalse(policy.isEnabled(0));
+    }
+
+    private void assertFrames(long[] teids, int... counts) {
+        assertEquals(counts.length, queue.size());
+        int next = 0;
+        for (int count : counts) {
+            byte[] frame = queue.poll().array();
+            if (count == 1) {
+                assertFalse(ZMQBatchFrame.isBatch(frame));
+                assertArrayEquals(deleteBearer(teids[next++]), frame);
+                continue;
+            }
+            List<byte[]> messages = new ArrayList<byte[]>();
+            assertTrue(ZMQBatchFrame.unpack(frame, messages));
+            assertEquals(count, messages.size());
+            for (byte[] message : messages) {
+                assertArrayEquals(deleteBearer(teids[next++]), message);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.fpc.utils.zeromq.ByteBufferPool;
+import org.opendaylight.fpc.utils.zeromq.ZMQClientSocket;
+
+/**
+ * DpnCommandWindow tests.
+ */
+public class DpnCommandWindowTest {
+    private static final AtomicLong clients = new AtomicLong(1000L);
+    private static final AtomicLong dpns = new AtomicLong();
+
+    private BlockingQueue<ByteBuffer> queue;
+    private DpnAPI2 api;
+    private long clientId;
+
+    @Before
+    public void setUp() {
+        queue = new LinkedBlockingQueue<ByteBuffer>();
+        ZMQClientSocket sock = mock(ZMQClientSocket.class);
+        when(sock.getBlockingQueue()).thenReturn(queue);
+        when(sock.getBufferPool()).thenReturn(new ByteBufferPool());
+        api = new DpnAPI2(sock);
+        clientId = clients.incrementAndGet();
+    }
+
+    @After
+    public void tearDown() {
+        DpnCommandWindow.close();
+        DpnCommandWindow.init(DpnCommandWindow.DEFAULT_SIZE, DpnCommandWindow.DEFAULT_RETRANSMIT_MS,
+                DpnCommandWindow.DEFAULT_MAX_RETRANSMITS);
+    }
+
+    private static DpnCommandWindow window(int size, long retransmitMs, int retransmits) {
+        DpnCommandWindow.init(size, retransmitMs, retransmits);
+        return DpnCommandWindow.forDpn("dpn-window-test-" + dpns.incrementAndGet());
+    }
+
+    private DpnCommandWindow.Command send(DpnCommandWindow window, long opId, long contextId, byte[] frame)
+            throws DpnCommandWindow.WindowFullException {
+        DpnCommandWindow.Command cmd = window.begin(api, clientId, opId, contextId);
+        cmd.add(ByteBuffer.wrap(frame));
+        window.end(cmd);
+        return cmd;
+    }
+
+    /**
+     * A full window rejects the sender until a command is acknowledged.
+     */
+    @Test
+    public void testWindowLimit() throws Exception {
+        DpnCommandWindow window = window(2, DpnCommandWindow.DEFAULT_RETRANSMIT_MS, 0);
+        send(window, 1L, 1L, new byte[] { 1 });
+        send(window, 2L, 2L, new byte[] { 2 });
+        assertEquals(2, window.getInFlight());
+        try {
+            window.begin(api, clientId, 3L, 3L);
+            fail("A full window must reject the command");
+        } catch (DpnCommandWindow.WindowFullException e) {
+            // expected
+        }
+        assertEquals(2, window.getInFlight());
+        assertEquals(1L, window.getRejected());
+
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertFalse(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(1, window.getInFlight());
+        send(window, 3L, 3L, new byte[] { 3 });
+        assertEquals(2, window.getInFlight());
+        assertEquals(3L, window.getSequence());
+    }
+
+    /**
+     * A command that sent nothing gives its slot back.
+     */
+    @Test
+    public void testEmptyCommand() throws Exception {
+        DpnCommandWindow window = window(1, DpnCommandWindow.DEFAULT_RETRANSMIT_MS, 0);
+        DpnCommandWindow.Command cmd = window.begin(api, clientId, 1L, 1L);
+        window.end(cmd);
+        assertEquals(0, window.getInFlight());
+        assertNotNull(window.begin(api, clientId, 2L, 2L));
+    }
+
+    /**
+     * A reply sent for a pair used by two commands acknowledges the oldest first.
+     */
+    @Test
+    public void testAckOldestOfPair() throws Exception {
+        DpnCommandWindow first = window(4, DpnCommandWindow.DEFAULT_RETRANSMIT_MS, 0);
+        DpnCommandWindow second = DpnCommandWindow.forDpn("dpn-window-test-" + dpns.incrementAndGet());
+        send(first, 1L, 1L, new byte[] { 1 });
+        send(second, 1L, 1L, new byte[] { 1 });
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(0, first.getInFlight());
+        assertEquals(1, second.getInFlight());
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(0, second.getInFlight());
+    }
+
+    /**
+     * A command of several frames is acknowledged by its last reply, even one received before the
+     * command was closed.
+     */
+    @Test
+    public void testAckEveryFrame() throws Exception {
+        DpnCommandWindow window = window(4, DpnCommandWindow.DEFAULT_RETRANSMIT_MS, 0);
+        DpnCommandWindow.Command cmd = window.begin(api, clientId, 1L, 1L);
+        cmd.add(ByteBuffer.wrap(new byte[] { 1 }));
+        cmd.add(ByteBuffer.wrap(new byte[] { 2 }));
+        window.end(cmd);
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(1, window.getInFlight());
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(0, window.getInFlight());
+        assertEquals(1L, window.getAcked());
+        assertFalse(DpnCommandWindow.ack(clientId, 1L));
+
+        cmd = window.begin(api, clientId, 2L, 2L);
+        cmd.add(ByteBuffer.wrap(new byte[] { 3 }));
+        assertTrue(DpnCommandWindow.ack(clientId, 2L));
+        // The command may still send frames
+        assertFalse(DpnCommandWindow.ack(clientId, 2L));
+        assertEquals(1, window.getInFlight());
+        window.end(cmd);
+        assertEquals(0, window.getInFlight());
+        assertEquals(2L, window.getAcked());
+    }
+
+    /**
+     * Cancelling a Context settles its commands; their replies are no longer matched.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        DpnCommandWindow window = window(4, DpnCommandWindow.DEFAULT_RETRANSMIT_MS, 0);
+        send(window, 1L, 7L, new byte[] { 1 });
+        send(window, 2L, 7L, new byte[] { 2 });
+        send(window, 3L, 8L, new byte[] { 3 });
+        assertEquals(2, window.cancel(7L));
+        assertEquals(0, window.cancel(7L));
+        assertEquals(0, window.cancel(DpnCommandWindow.NO_CONTEXT));
+        assertEquals(1, window.getInFlight());
+        assertEquals(2L, window.getCancelled());
+        assertFalse(DpnCommandWindow.ack(clientId, 1L));
+        assertTrue(DpnCommandWindow.ack(clientId, 3L));
+        assertEquals(0, window.getInFlight());
+    }
+
+    /**
+     * Unacknowledged frames are queued again on the socket they were sent on.
+     */
+    @Test
+    public void testRetransmitOnSameSocket() throws Exception {
+        DpnCommandWindow window = window(4, 10L, 1);
+        byte[] frame = new byte[] { 1, 2, 3, 4 };
+        send(window, 1L, 1L, frame);
+        ByteBuffer resent = queue.poll(2, TimeUnit.SECONDS);
+        assertNotNull(resent);
+        assertArrayEquals(frame, resent.array());
+        assertEquals(1L, window.getRetransmitted());
+        assertTrue(DpnCommandWindow.ack(clientId, 1L));
+        assertEquals(0, window.getInFlight());
+    }
+
+    /**
+     * A cancelled command is not retransmitted after the delete that cancelled it.
+     */
+    @Test
+    public void testCancelledIsNotRetransmitted() throws Exception {
+        DpnCommandWindow window = window(4, 10L, 3);
+        send(window, 1L, 5L, new byte[] { 1 });
+        window.cancel(5L);
+        assertNull(queue.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0L, window.getRetransmitted());
+        assertEquals(0L, window.getExpired());
+    }
+
+    /**
+     * Without retransmissions nothing is queued again before the command expires.
+     */
+    @Test
+    public void testNoRetransmitByDefault() throws Exception {
+        DpnCommandWindow window = window(4, 10L, 0);
+        send(window, 1L, 1L, new byte[] { 1 });
+        assertNull(queue.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0L, window.getRetransmitted());
+        assertEquals(1, window.getInFlight());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * DpnKeyIndex tests - frame slices resolve to the interned key until it is released.
+ */
+public class DpnKeyIndexTest {
+
+    @Test
+    public void testInternAndLookup() {
+        DpnKeyIndex index = new DpnKeyIndex();
+        String key = index.intern("node1/network1");
+        assertSame(key, index.intern(new String("node1/network1")));
+        assertSame(key, lookup(index, "node1", "network1"));
+        assertNull(lookup(index, "node1", "network2"));
+        assertNull(lookup(index, "node1/", "network1"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testRelease() {
+        DpnKeyIndex index = new DpnKeyIndex();
+        for (int i = 0; i < 100; i++) {
+            index.intern("node" + i + "/network");
+        }
+        assertTrue(index.release("node7/network"));
+        assertFalse(index.release("node7/network"));
+        assertNull(lookup(index, "node7", "network"));
+        assertEquals(99, index.size());
+        for (int i = 0; i < 100; i++) {
+            if (i != 7) {
+                assertEquals("node" + i + "/network", lookup(index, "node" + i, "network"));
+            }
+        }
+
+        // A released key can be interned again
+        String key = index.intern("node7/network");
+        assertSame(key, lookup(index, "node7", "network"));
+        assertEquals(100, index.size());
+    }
+
+    /**
+     * Builds a frame holding the network id ahead of the node id and looks the key up.
+     */
+    private static String lookup(DpnKeyIndex index, String nodeId, String networkId) {
+        byte[] node = nodeId.getBytes(StandardCharsets.UTF_8);
+        byte[] network = networkId.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[3 + network.length + node.length];
+        System.arraycopy(network, 0, frame, 3, network.length);
+        System.arraycopy(node, 0, frame, 3 + network.length, node.length);
+        return index.lookup(frame, 3 + network.length, node.length, 3, network.length);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.activation.impl.dpdkdpn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.opendaylight.fpc.utils.zeromq.ZMQBatchFrame;
+
+/**
+ * DpnMessageEncoder tests - every message fills exactly its length with the DPN wire layout;
+ * unsigned values are written as their low order bytes in network byte order.
+ */
+public class DpnMessageEncoderTest {
+    private static final short DPN = 3;
+    private static final short CONTROLLER = 4;
+    private static final long CLIENT_ID = 0xFFFFFFFEL;
+    private static final long OP_ID = 0x01020304L;
+
+    @Test
+    public void testCreateSession() {
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.CREATE_SESSION_LENGTH);
+        DpnMessageEncoder.encodeCreateSession(bb, DPN, 0xF123456789ABCDEFL, 0xC0A80102L, (short) 5,
+                0xFFFFFFFFL, 0x0A000001L, 0x1122334455667788L, CONTROLLER, CLIENT_ID, OP_ID);
+        assertEquals(DpnMessageEncoder.CREATE_SESSION_LENGTH, bb.position());
+        assertArrayEquals(bytes(3, DpnAPI2.CREATE_SESSION_TYPE,
+                0xF1, 0x23, 0x45, 0x67, 0x89, 0xAB, 0xCD, 0xEF,
+                5,
+                0xC0, 0xA8, 0x01, 0x02,
+                0xFF, 0xFF, 0xFF, 0xFF,
+                0x0A, 0x00, 0x00, 0x01,
+                0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, 0x88,
+                4,
+                0xFF, 0xFF, 0xFF, 0xFE,
+                0x01, 0x02, 0x03, 0x04,
+                0), bb.array());
+    }
+
+    @Test
+    public void testModifyBearerDl() {
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.MODIFY_BEARER_DL_LENGTH);
+        DpnMessageEncoder.encodeModifyBearerDl(bb, DPN, 0x0A000002L, 0x80000001L, 0x7FFFFFFFL, CLIENT_ID, OP_ID);
+        assertEquals(DpnMessageEncoder.MODIFY_BEARER_DL_LENGTH, bb.position());
+        assertArrayEquals(bytes(3, DpnAPI2.MODIFY_DL_BEARER_TYPE,
+                0x0A, 0x00, 0x00, 0x02,
+                0x80, 0x00, 0x00, 0x01,
+                0x7F, 0xFF, 0xFF, 0xFF,
+                0xFF, 0xFF, 0xFF, 0xFE,
+                0x01, 0x02, 0x03, 0x04,
+                0), bb.array());
+
+        bb = ByteBuffer.allocate(DpnMessageEncoder.MODIFY_BEARER_DL_SESSION_LENGTH);
+        DpnMessageEncoder.encodeModifyBearerDl(bb, DPN, 0x0A000001L, 0x80000001L, 0x0A000002L, 7L,
+                CONTROLLER, CLIENT_ID, OP_ID);
+        assertEquals(DpnMessageEncoder.MODIFY_BEARER_DL_SESSION_LENGTH, bb.position());
+        assertArrayEquals(bytes(3, DpnAPI2.MODIFY_DL_BEARER_TYPE,
+                0x0A, 0x00, 0x00, 0x01,
+                0x80, 0x00, 0x00, 0x01,
+                0x0A, 0x00, 0x00, 0x02,
+                0, 0, 0, 0, 0, 0, 0, 7,
+                4,
+                0xFF, 0xFF, 0xFF, 0xFE,
+                0x01, 0x02, 0x03, 0x04,
+                0), bb.array());
+    }
+
+    @Test
+    public void testDeleteSession() {
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.DELETE_SESSION_LENGTH);
+        DpnMessageEncoder.encodeDeleteSession(bb, DPN, -1L, CONTROLLER, CLIENT_ID, OP_ID);
+        assertEquals(DpnMessageEncoder.DELETE_SESSION_LENGTH, bb.position());
+        assertArrayEquals(bytes(3, DpnAPI2.DELETE_SESSION_TYPE,
+                0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF,
+                4,
+                0xFF, 0xFF, 0xFF, 0xFE,
+                0x01, 0x02, 0x03, 0x04), bb.array());
+    }
+
+    /**
+     * A pooled buffer is reused as is, so the pad bytes must be overwritten.
+     */
+    @Test
+    public void testPadOverwritten() {
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.CREATE_SESSION_LENGTH);
+        for (int i = 0; i < bb.capacity(); i++) {
+            bb.put(i, (byte) 0x5A);
+        }
+        DpnMessageEncoder.encodeCreateSession(bb, DPN, 1L, 2L, (short) 5, 3L, 4L, 6L, CONTROLLER, CLIENT_ID, OP_ID);
+        assertEquals(0, bb.get(DpnMessageEncoder.CREATE_SESSION_LENGTH - 1));
+
+        bb = ByteBuffer.allocate(DpnMessageEncoder.MODIFY_BEARER_DL_LENGTH);
+        for (int i = 0; i < bb.capacity(); i++) {
+            bb.put(i, (byte) 0x5A);
+        }
+        DpnMessageEncoder.encodeModifyBearerDl(bb, DPN, 1L, 2L, 3L, CLIENT_ID, OP_ID);
+        assertEquals(0, bb.get(DpnMessageEncoder.MODIFY_BEARER_DL_LENGTH - 1));
+
+        bb = ByteBuffer.allocate(DpnMessageEncoder.MODIFY_BEARER_DL_SESSION_LENGTH);
+        for (int i = 0; i < bb.capacity(); i++) {
+            bb.put(i, (byte) 0x5A);
+        }
+        DpnMessageEncoder.encodeModifyBearerDl(bb, DPN, 1L, 2L, 3L, 4L, CONTROLLER, CLIENT_ID, OP_ID);
+        assertEquals(0, bb.get(DpnMessageEncoder.MODIFY_BEARER_DL_SESSION_LENGTH - 1));
+    }
+
+    @Test
+    public void testDeleteBearers() {
+        long[] teids = { 1L, 0xFFFFFFFFL, 3L };
+        ByteBuffer bb = ByteBuffer.allocate(DpnMessageEncoder.deleteBearersLength(2));
+        DpnMessageEncoder.encodeDeleteBearers(bb, DPN, teids, 1, 2);
+        assertEquals(bb.capacity(), bb.position());
+        assertArrayEquals(bytes(3, ZMQBatchFrame.BATCH_TYPE, 0, 2,
+                0, DpnMessageEncoder.DELETE_BEARER_LENGTH,
+                3, DpnAPI2.DELETE_BEARER_TYPE, 0xFF, 0xFF, 0xFF, 0xFF, 0,
+                0, DpnMessageEncoder.DELETE_BEARER_LENGTH,
+                3, DpnAPI2.DELETE_BEARER_TYPE, 0, 0, 0, 3, 0), bb.array());
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] retVal = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            retVal[i] = (byte) values[i];
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.assignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.opendaylight.fpc.utils.Counter;
+
+/**
+ * IPv4RangeManager tests - only the host addresses of a prefix are allocated, once each, and an
+ * exhausted pool returns null.
+ */
+public class IPv4RangeManagerTest {
+    private static final long BASE = (10L << 24) | (1L << 8); // 10.0.1.0
+
+    @Test
+    public void testExcludesNetworkAndBroadcast() {
+        IPv4RangeManager pool = IPv4RangeManager.createIPv4RangeManager(BASE, 8); // /29
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 6; i++) {
+            values.add(pool.nextValue() & 0xFFFFFFFFL);
+        }
+        for (long host = 1; host <= 6; host++) {
+            assertTrue(values.contains(BASE + host));
+        }
+        assertNull(pool.getNextAddrAsPrefix());
+    }
+
+    /**
+     * Threads sharing a /24 pool get its 254 host addresses once each.
+     */
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final IPv4RangeManager pool = IPv4RangeManager.createIPv4RangeManager(BASE, 256);
+        final Set<Long> values = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            values.add(pool.nextValue() & 0xFFFFFFFFL);
+                        }
+                    } catch (Counter.OutOfRangeException e) {
+                        // Exhausted
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(254, values.size());
+        // Every address was issued once: a duplicate would leave the set short of the 254 hosts
+        assertFalse(values.contains(BASE));
+        assertFalse(values.contains(BASE + 255));
+        assertNull(pool.getNextAddrAsPrefix());
+    }
+}
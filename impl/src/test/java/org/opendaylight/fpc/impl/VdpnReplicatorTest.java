@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opendaylight.fpc.activation.Activator;
+import org.opendaylight.fpc.activation.cache.Cache;
+import org.opendaylight.fpc.activation.cache.transaction.ContextInfoHolder;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnAPI2;
+import org.opendaylight.fpc.activation.impl.dpdkdpn.DpnCommandWindow;
+import org.opendaylight.fpc.dpn.DpnHolder;
+import org.opendaylight.fpc.tenant.TenantManager;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.DpnOperation;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.Instructions;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.Targets;
+
+/**
+ * VdpnReplicator tests.
+ */
+public class VdpnReplicatorTest {
+    private static final long CLIENT = 7L;
+    private static final long OP = 42L;
+    private static final long WAIT_MS = 10000L;
+
+    private final FpcDpnId vdpnId = new FpcDpnId("vdpn-test");
+    private final FpcDpnId dpnId = new FpcDpnId("dpn-test");
+    private final ClientIdentifier clientId = new ClientIdentifier(CLIENT);
+    private final OpIdentifier opId = new OpIdentifier(BigInteger.valueOf(OP));
+    private Map<Contexts, ContextInfoHolder> contexts;
+    private Activator activator;
+    private TenantManager tenantManager;
+    private OpInput input;
+    private VdpnReplicator replicator;
+
+    @Before
+    public void setUp() {
+        activator = mock(Activator.class);
+        DpnHolder holder = new DpnHolder(null);
+        holder.activator = activator;
+        Map<String, DpnHolder> dpnInfo = new HashMap<String, DpnHolder>();
+        dpnInfo.put(dpnId.toString(), holder);
+        tenantManager = mock(TenantManager.class);
+        when(tenantManager.getDpnInfo()).thenReturn(dpnInfo);
+        input = mock(OpInput.class);
+        when(input.getClientId()).thenReturn(clientId);
+        when(input.getOpId()).thenReturn(opId);
+        contexts = new ConcurrentHashMap<Contexts, ContextInfoHolder>();
+        TenantManager.vdpnContextsMap.put(vdpnId, contexts);
+        replicator = new VdpnReplicator(1, 0L) {
+            @Override
+            protected DpnAPI2 newApi() {
+                return new DpnAPI2(null);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        replicator.close();
+        TenantManager.vdpnContextsMap.remove(vdpnId);
+    }
+
+    private List<Contexts> addContexts(int count) {
+        List<Contexts> retVal = new ArrayList<Contexts>(count);
+        for (int i = 0; i < count; i++) {
+            Contexts context = mock(Contexts.class);
+            contexts.put(context, new ContextInfoHolder(tenantManager, null, input));
+            retVal.add(context);
+        }
+        return retVal;
+    }
+
+    private static void awaitState(VdpnReplicator.Job job, VdpnReplicator.JobState state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (job.getState() != state && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(job.toString(), state, job.getState());
+    }
+
+    private void activated(int count) throws Exception {
+        verify(activator, times(count)).activate(any(DpnAPI2.class), eq(clientId), reserved(), any(OpType.class),
+                any(Instructions.class), any(Contexts.class), any(Cache.class));
+    }
+
+    private void deleted(int count) throws Exception {
+        verify(activator, times(count)).delete(any(DpnAPI2.class), eq(clientId), reserved(), any(Instructions.class),
+                any(Targets.class), any(FpcContext.class));
+    }
+
+    /**
+     * Matches an Operation Identifier of the range reserved for replication commands.
+     */
+    private static OpIdentifier reserved() {
+        return argThat(new ArgumentMatcher<OpIdentifier>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument instanceof OpIdentifier
+                        && VdpnReplicator.isReserved(((OpIdentifier) argument).getValue().longValue());
+            }
+        });
+    }
+
+    /**
+     * Records the Operation Identifiers the activator is called with.
+     */
+    private Set<Long> recordOpIds() throws Exception {
+        final Set<Long> retVal = new ConcurrentSkipListSet<Long>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                retVal.add(((OpIdentifier) invocation.getArguments()[2]).getValue().longValue());
+                return null;
+            }
+        }).when(activator).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class), any(Cache.class));
+        return retVal;
+    }
+
+    /**
+     * Contexts are copied with the Client Identifier of their owning operation and a reserved
+     * Operation Identifier.
+     */
+    @Test
+    public void testAddUsesOwningClient() throws Exception {
+        addContexts(10);
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        assertNotNull(job);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        activated(10);
+        deleted(0);
+        assertEquals(10L, job.getSent());
+        assertEquals(0L, job.getRemaining());
+        assertTrue(replicator.getJobs().isEmpty());
+    }
+
+    /**
+     * Replies to the pairs sent are counted once per command, replies outside the reserved range
+     * are left to Transactions.
+     */
+    @Test
+    public void testAck() throws Exception {
+        addContexts(3);
+        Set<Long> opIds = recordOpIds();
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        assertEquals(3, opIds.size());
+        assertEquals(3, replicator.getPendingAcks());
+        assertFalse(replicator.ack(CLIENT, OP));
+        long first = opIds.iterator().next();
+        assertTrue(replicator.ack(CLIENT + 1, first));
+        assertEquals(0L, job.getAcked());
+        for (long id : opIds) {
+            assertTrue(replicator.ack(CLIENT, id));
+        }
+        assertEquals(3L, job.getAcked());
+        assertEquals(0, replicator.getPendingAcks());
+        // A further reply is consumed without being counted
+        assertTrue(replicator.ack(CLIENT, first));
+        assertEquals(3L, job.getAcked());
+    }
+
+    /**
+     * Operation Identifiers below RESERVED_OP_ID_BASE are left to Transactions.
+     */
+    @Test
+    public void testReservedRange() {
+        assertFalse(VdpnReplicator.isReserved(OP));
+        assertFalse(VdpnReplicator.isReserved(VdpnReplicator.RESERVED_OP_ID_BASE - 1));
+        assertTrue(VdpnReplicator.isReserved(VdpnReplicator.RESERVED_OP_ID_BASE));
+        assertTrue(VdpnReplicator.isReserved(0xFFFFFFFFL));
+    }
+
+    /**
+     * A Context deleted from the VDPN before its copy is skipped.
+     */
+    @Test
+    public void testDeletedBeforeCopyIsSkipped() throws Exception {
+        final List<Contexts> added = addContexts(2);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Contexts copied = (Contexts) invocation.getArguments()[5];
+                contexts.remove(added.get(0) == copied ? added.get(1) : added.get(0));
+                return null;
+            }
+        }).when(activator).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class),
+                any(Cache.class));
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        activated(1);
+        deleted(0);
+        assertEquals(1L, job.getSkipped());
+    }
+
+    /**
+     * A Context deleted from the VDPN while it is copied is deleted from the DPN again.
+     */
+    @Test
+    public void testDeletedDuringCopyIsDeleted() throws Exception {
+        final Contexts context = addContexts(1).get(0);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                contexts.remove(context);
+                return null;
+            }
+        }).when(activator).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class),
+                any(Cache.class));
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        activated(1);
+        verify(activator).delete(any(DpnAPI2.class), eq(clientId), reserved(), any(Instructions.class),
+                any(Targets.class), eq(context));
+    }
+
+    /**
+     * An interrupted Job stops at the end of its batch and resumes from its cursor.
+     */
+    @Test
+    public void testInterruptAndResume() throws Exception {
+        int total = VdpnReplicator.BATCH_SIZE + 44;
+        addContexts(total);
+        final boolean[] interrupted = new boolean[1];
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if (!interrupted[0]) {
+                    interrupted[0] = true;
+                    replicator.interrupt(dpnId);
+                }
+                return null;
+            }
+        }).when(activator).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class),
+                any(Cache.class));
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        awaitState(job, VdpnReplicator.JobState.INTERRUPTED);
+        assertEquals(44L, job.getRemaining());
+        activated(VdpnReplicator.BATCH_SIZE);
+
+        replicator.resume(dpnId);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        activated(total);
+        assertEquals((long) total, job.getSent());
+    }
+
+    /**
+     * A Context rejected by a full DPN command window is sent again.
+     */
+    @Test
+    public void testWindowFullIsRetried() throws Exception {
+        addContexts(3);
+        final boolean[] rejected = new boolean[1];
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if (!rejected[0]) {
+                    rejected[0] = true;
+                    throw new DpnCommandWindow.WindowFullException("dpn-test", 1);
+                }
+                return null;
+            }
+        }).when(activator).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class), any(Cache.class));
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Add, false);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        activated(4);
+        assertEquals(3L, job.getSent());
+        assertEquals(0L, job.getFailed());
+        // The rejected command took its expected reply back
+        assertEquals(3, replicator.getPendingAcks());
+    }
+
+    /**
+     * Removing a DPN deletes every Context from it and keeps them in the VDPN.
+     */
+    @Test
+    public void testRemove() throws Exception {
+        addContexts(5);
+        VdpnReplicator.Job job = replicator.replicate(vdpnId, dpnId, DpnOperation.Remove, false);
+        awaitState(job, VdpnReplicator.JobState.DONE);
+        deleted(5);
+        verify(activator, never()).activate(any(DpnAPI2.class), any(ClientIdentifier.class), any(OpIdentifier.class),
+                any(OpType.class), any(Instructions.class), any(Contexts.class),
+                any(Cache.class));
+        assertEquals(5, contexts.size());
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.impl.zeromq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureBundlesInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ErrorTypeId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.RefScope;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ResultBody;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.configure.bundles.input.Bundles;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.instructions.instructions.instr.type.Instr3gppMob;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.CreateOrUpdate;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.op.input.op_body.DeleteOrQuery;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.Contexts;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.ErrBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDirection;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ThreeGPPTunnel;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.threegpp.rev160803.ThreegppInstr;
+
+/**
+ * ZMQNBICodec tests - request frames are built by hand following the layout documented on the
+ * codec, so a change of the wire format breaks these tests.
+ */
+public class ZMQNBICodecTest {
+    private static final long CLIENT_ID = 2L;
+    private static final long MAX_U64 = -1L;
+
+    @Test
+    public void testConfigureCreateRoundTrip() {
+        ByteBuffer bb = header(ZMQNBICodec.CONFIGURE, CLIENT_ID);
+        op(bb, MAX_U64, OpType.Create, RefScope.Op.getIntValue(), 0x19); // assign-ip, session, uplink
+        bb.putShort((short) 1);
+        bb.putLong(7L)                                   // context-id
+          .putLong(0x8000000000000001L)                  // imsi, high bit set
+          .put((byte) 5).put((byte) 6);                  // ebi, lbi
+        string(bb, "dpn1");
+        bb.put((byte) FpcDirection.Uplink.getIntValue())
+          .putInt(0x0A000001).put((byte) 32)              // 10.0.0.1/32
+          .put((byte) (ZMQNBICodec.FLAG_UL | ZMQNBICodec.FLAG_DL | ZMQNBICodec.FLAG_DL_LIFETIME))
+          .putInt(0xC0A80001).putInt(0).putInt(0xFFFFFFFF) // UL 192.168.0.1, no remote, teid
+          .putInt(0xC0A80001).putInt(0xC0A80002).putInt(100) // DL
+          .putInt(0xFFFFFFFE);                              // DL lifetime
+        byte[] frame = frame(bb);
+
+        assertTrue(ZMQNBICodec.isBinary(frame));
+        assertEquals(ZMQNBICodec.CONFIGURE, ZMQNBICodec.getType(frame));
+        assertEquals(MAX_U64, ZMQNBICodec.peekOpId(frame));
+
+        ConfigureInput input = ZMQNBICodec.decodeConfigure(frame);
+        assertEquals(Long.valueOf(CLIENT_ID), input.getClientId().getInt64());
+        assertEquals(new BigInteger("18446744073709551615"), input.getOpId().getValue());
+        assertEquals(OpType.Create, input.getOpType());
+        assertEquals(RefScope.Op, input.getOpRefScope());
+
+        ThreegppInstr instr = ((Instr3gppMob) input.getInstructions().getInstrType()).getInstr3gppMob();
+        assertTrue(instr.isAssignIp());
+        assertTrue(instr.isSession());
+        assertTrue(instr.isUplink());
+        assertFalse(instr.isDownlink());
+        assertFalse(instr.isAssignDpn());
+
+        List<Contexts> contexts = ((CreateOrUpdate) input.getOpBody()).getContexts();
+        assertEquals(1, contexts.size());
+        Contexts ctx = contexts.get(0);
+        assertEquals(Long.valueOf(7L), ctx.getContextId().getInt64());
+        assertEquals(new BigInteger("9223372036854775809"), ctx.getImsi().getValue());
+        assertEquals(Short.valueOf((short) 5), ctx.getEbi().getValue());
+        assertEquals(Short.valueOf((short) 6), ctx.getLbi().getValue());
+        assertEquals("dpn1", ctx.getDpns().get(0).getDpnId().getString());
+        assertEquals(FpcDirection.Uplink, ctx.getDpns().get(0).getDirection());
+        assertEquals("10.0.0.1/32", ctx.getDelegatingIpPrefixes().get(0).getIpv4Prefix().getValue());
+
+        assertEquals("192.168.0.1", ctx.getUl().getTunnelLocalAddress().getIpv4Address().getValue());
+        assertNull(ctx.getUl().getTunnelRemoteAddress());
+        assertEquals(Long.valueOf(0xFFFFFFFFL), ((ThreeGPPTunnel) ctx.getUl().getMobilityTunnelParameters()
+                .getMobprofileParameters()).getTunnelIdentifier());
+        assertEquals("192.168.0.2", ctx.getDl().getTunnelRemoteAddress().getIpv4Address().getValue());
+        assertEquals(Long.valueOf(100L), ((ThreeGPPTunnel) ctx.getDl().getMobilityTunnelParameters()
+                .getMobprofileParameters()).getTunnelIdentifier());
+        assertEquals(Long.valueOf(0xFFFFFFFEL), ctx.getDl().getLifetime());
+    }
+
+    @Test
+    public void testConfigureMinimalContext() {
+        ByteBuffer bb = header(ZMQNBICodec.CONFIGURE, CLIENT_ID);
+        op(bb, 1L, OpType.Update, ZMQNBICodec.NONE & 0xFF, 0);
+        bb.putShort((short) 1);
+        bb.putLong(8L).putLong(1L).put((byte) 5).put((byte) 0);
+        string(bb, "");
+        bb.put((byte) 0).putInt(0).put((byte) 0).put((byte) 0);
+
+        ConfigureInput input = ZMQNBICodec.decodeConfigure(frame(bb));
+        assertNull(input.getOpRefScope());
+        assertNull(input.getInstructions());
+        Contexts ctx = ((CreateOrUpdate) input.getOpBody()).getContexts().get(0);
+        assertNull(ctx.getLbi());
+        assertNull(ctx.getDpns());
+        assertNull(ctx.getDelegatingIpPrefixes());
+        assertNull(ctx.getUl());
+        assertNull(ctx.getDl());
+    }
+
+    /**
+     * Each bit position of threegpp-instr must set exactly the flag of that position, although the
+     * generated constructor takes its flags in alphabetical order.
+     */
+    @Test
+    public void testInstructionBitOrdering() {
+        String[] expected = { "assign-ip", "assign-fteid-ip", "assign-fteid-teid", "session", "uplink",
+                "downlink", "assign-dpn", "indirect-forward", "create_new_tft", "delete_existing_tft",
+                "add_filters_to_existing_tft", "replace_filters_in_existing_tft",
+                "delete_filters_from_existing_tft", "no_tft_op" };
+        for (int position = 0; position < expected.length; position++) {
+            ByteBuffer bb = header(ZMQNBICodec.CONFIGURE, CLIENT_ID);
+            op(bb, 1L, OpType.Delete, ZMQNBICodec.NONE & 0xFF, 1 << position);
+            bb.putShort((short) 0);
+            ThreegppInstr instr = ((Instr3gppMob) ZMQNBICodec.decodeConfigure(frame(bb)).getInstructions()
+                    .getInstrType()).getInstr3gppMob();
+            assertEquals("bit " + position, Arrays.asList(expected[position]), flags(instr));
+        }
+    }
+
+    @Test
+    public void testConfigureBundlesRoundTrip() {
+        ByteBuffer bb = header(ZMQNBICodec.CONFIGURE_BUNDLES, CLIENT_ID);
+        bb.put((byte) RefScope.Bundle.getIntValue()).putShort((short) 2);
+        op(bb, 10L, OpType.Delete, ZMQNBICodec.NONE & 0xFF, 0);
+        bb.putShort((short) 2);
+        string(bb, "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/1");
+        string(bb, "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/2");
+        op(bb, 0x8000000000000000L, OpType.Create, RefScope.Op.getIntValue(), 0);
+        bb.putShort((short) 0);
+        byte[] frame = frame(bb);
+
+        assertEquals(ZMQNBICodec.CONFIGURE_BUNDLES, ZMQNBICodec.getType(frame));
+        assertEquals(0L, ZMQNBICodec.peekOpId(frame));
+        ConfigureBundlesInput input = ZMQNBICodec.decodeConfigureBundles(frame);
+        assertEquals(RefScope.Bundle, input.getHighestOpRefScope());
+        assertEquals(2, input.getBundles().size());
+
+        Bundles first = input.getBundles().get(0);
+        assertEquals(Long.valueOf(CLIENT_ID), first.getClientId().getInt64());
+        assertEquals(BigInteger.TEN, first.getOpId().getValue());
+        List<?> targets = ((DeleteOrQuery) first.getOpBody()).getTargets();
+        assertEquals(2, targets.size());
+        assertEquals("/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/2",
+                ((DeleteOrQuery) first.getOpBody()).getTargets().get(1).getTarget().getString());
+
+        Bundles second = input.getBundles().get(1);
+        assertEquals(BigInteger.ONE.shiftLeft(63), second.getOpId().getValue());
+        assertEquals(OpType.Create, second.getOpType());
+    }
+
+    @Test
+    public void testMalformedFrames() {
+        ByteBuffer bb = header(ZMQNBICodec.CONFIGURE, CLIENT_ID);
+        op(bb, 1L, OpType.Delete, ZMQNBICodec.NONE & 0xFF, 0);
+        bb.putShort((short) 1).putShort((short) 100); // target longer than the frame
+        assertRejected(frame(bb));
+
+        byte[] truncated = Arrays.copyOf(frame(header(ZMQNBICodec.CONFIGURE, CLIENT_ID)), 7);
+        assertRejected(truncated);
+
+        bb = header(ZMQNBICodec.CONFIGURE, CLIENT_ID);
+        op(bb, 1L, OpType.Delete, 0x7F, 0);
+        bb.putShort((short) 0);
+        assertRejected(frame(bb));
+
+        byte[] version = frame(header(ZMQNBICodec.CONFIGURE, CLIENT_ID));
+        version[1] = 2;
+        try {
+            ZMQNBICodec.getType(version);
+            fail("version accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(ZMQNBICodec.isBinary("configure {}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReplyEncoding() {
+        List<ResultBody> results = Arrays.<ResultBody>asList(
+                new ConfigureOutputBuilder()
+                        .setOpId(new OpIdentifier(new BigInteger("18446744073709551615")))
+                        .setResult(Result.Ok)
+                        .build(),
+                new ConfigureOutputBuilder()
+                        .setOpId(new OpIdentifier(BigInteger.valueOf(3L)))
+                        .setResult(Result.Err)
+                        .setResultType(new ErrBuilder()
+                                .setErrorTypeId(new ErrorTypeId(16L))
+                                .setErrorInfo("DPN timeout")
+                                .build())
+                        .build());
+        ByteBuffer bb = ByteBuffer.wrap(ZMQNBICodec.encodeReply(ZMQNBICodec.CONFIGURE_BUNDLES, results));
+        assertEquals(ZMQNBICodec.MAGIC, bb.get());
+        assertEquals(ZMQNBICodec.VERSION, bb.get());
+        assertEquals((byte) (ZMQNBICodec.CONFIGURE_BUNDLES | ZMQNBICodec.REPLY), bb.get());
+        assertEquals(2, bb.getShort());
+        assertEquals(MAX_U64, bb.getLong());
+        assertEquals(Result.Ok.getIntValue(), bb.get());
+        assertEquals(3L, bb.getLong());
+        assertEquals(Result.Err.getIntValue(), bb.get());
+        assertEquals(16, bb.getInt());
+        assertEquals("DPN timeout", readString(bb));
+        assertFalse(bb.hasRemaining());
+
+        bb = ByteBuffer.wrap(ZMQNBICodec.encodeError(ZMQNBICodec.CONFIGURE, MAX_U64, 4L, null));
+        bb.position(3);
+        assertEquals(1, bb.getShort());
+        assertEquals(MAX_U64, bb.getLong());
+        assertEquals(Result.Err.getIntValue(), bb.get());
+        assertEquals(4, bb.getInt());
+        assertEquals("", readString(bb));
+        assertFalse(bb.hasRemaining());
+    }
+
+    private static void assertRejected(byte[] frame) {
+        try {
+            ZMQNBICodec.decodeConfigure(frame);
+            fail("malformed frame accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static List<String> flags(ThreegppInstr instr) {
+        List<String> retVal = new ArrayList<String>();
+        addIf(retVal, instr.isAssignIp(), "assign-ip");
+        addIf(retVal, instr.isAssignFteidIp(), "assign-fteid-ip");
+        addIf(retVal, instr.isAssignFteidTeid(), "assign-fteid-teid");
+        addIf(retVal, instr.isSession(), "session");
+        addIf(retVal, instr.isUplink(), "uplink");
+        addIf(retVal, instr.isDownlink(), "downlink");
+        addIf(retVal, instr.isAssignDpn(), "assign-dpn");
+        addIf(retVal, instr.isIndirectForward(), "indirect-forward");
+        addIf(retVal, instr.isCreateNewTft(), "create_new_tft");
+        addIf(retVal, instr.isDeleteExistingTft(), "delete_existing_tft");
+        addIf(retVal, instr.isAddFiltersToExistingTft(), "add_filters_to_existing_tft");
+        addIf(retVal, instr.isReplaceFiltersInExistingTft(), "replace_filters_in_existing_tft");
+        addIf(retVal, instr.isDeleteFiltersFromExistingTft(), "delete_filters_from_existing_tft");
+        addIf(retVal, instr.isNoTftOp(), "no_tft_op");
+        return retVal;
+    }
+
+    private static void addIf(List<String> list, Boolean flag, String name) {
+        if (Boolean.TRUE.equals(flag)) {
+            list.add(name);
+        }
+    }
+
+    private static ByteBuffer header(byte type, long clientId) {
+        return ByteBuffer.allocate(1024).put(ZMQNBICodec.MAGIC).put(ZMQNBICodec.VERSION).put(type)
+                .putLong(clientId);
+    }
+
+    private static void op(ByteBuffer bb, long opId, OpType opType, int refScope, int instructionBits) {
+        bb.putLong(opId).put((byte) opType.getIntValue()).put((byte) refScope).putInt(instructionBits);
+    }
+
+    private static void string(ByteBuffer bb, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        bb.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer bb) {
+        byte[] bytes = new byte[bb.getShort() & 0xFFFF];
+        bb.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] frame(ByteBuffer bb) {
+        return Arrays.copyOf(bb.array(), bb.position());
+    }
+}
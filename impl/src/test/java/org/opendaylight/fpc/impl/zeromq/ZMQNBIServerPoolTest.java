@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.impl.zeromq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opendaylight.fpc.impl.FpcAssignmentPhaseImpl;
+import org.opendaylight.fpc.impl.FpcAssignmentPhaseNoassignImpl;
+import org.opendaylight.fpc.impl.FpcagentDispatcher;
+import org.opendaylight.fpc.utils.ErrorTypeIndex;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureInput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigureOutput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.IetfDmmFpcagentService;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpHeader.OpType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.fpc.config.rev160927.FpcConfig;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * ZMQNBIServerPool tests - a binary CONFIGURE frame is decoded, dispatched and answered the way
+ * the NBI worker does it, so every strategy outcome produces a reply frame.
+ */
+public class ZMQNBIServerPoolTest {
+    private static final long CLIENT_ID = 9001L;
+    private static final long OP_ID = 42L;
+
+    @After
+    public void tearDown() {
+        FpcagentDispatcher.removeStrategy(new ClientIdentifier(CLIENT_ID));
+    }
+
+    @Test
+    public void testAssignmentPhaseStrategy() {
+        FpcagentDispatcher.addStrategy(new ClientIdentifier(CLIENT_ID),
+                new FpcAssignmentPhaseImpl(null, null, null, null, config()));
+        // The client has no tenant, so the strategy answers with its own Err
+        assertErr(roundTrip(new FpcagentDispatcher()), ErrorTypeIndex.CLIENT_ID_NOT_REGISTERED);
+    }
+
+    @Test
+    public void testNoassignStrategy() {
+        FpcagentDispatcher.addStrategy(new ClientIdentifier(CLIENT_ID),
+                new FpcAssignmentPhaseNoassignImpl(null, null, null, null, config()));
+        assertErr(roundTrip(new FpcagentDispatcher()), ErrorTypeIndex.CLIENT_ID_NOT_REGISTERED);
+    }
+
+    @Test
+    public void testNoResult() {
+        IetfDmmFpcagentService service = mock(IetfDmmFpcagentService.class);
+        when(service.configure(any(ConfigureInput.class))).thenReturn(null);
+        assertAccepted(roundTrip(service));
+    }
+
+    @Test
+    public void testNoOutput() {
+        IetfDmmFpcagentService service = mock(IetfDmmFpcagentService.class);
+        Future<RpcResult<ConfigureOutput>> empty =
+                Futures.immediateFuture(RpcResultBuilder.<ConfigureOutput>success().build());
+        when(service.configure(any(ConfigureInput.class))).thenReturn(empty);
+        assertAccepted(roundTrip(service));
+    }
+
+    @Test
+    public void testStrategyFailure() {
+        IetfDmmFpcagentService service = mock(IetfDmmFpcagentService.class);
+        when(service.configure(any(ConfigureInput.class))).thenThrow(new IllegalStateException("boom"));
+        ByteBuffer bb = roundTrip(service);
+        assertEquals(OP_ID, bb.getLong());
+        assertEquals(Result.Err.getIntValue(), bb.get());
+        assertEquals(ErrorTypeIndex.MESSAGE_WITH_NO_BODY.intValue(), bb.getInt());
+        assertTrue(readString(bb).contains("boom"));
+        assertFalse(bb.hasRemaining());
+    }
+
+    /**
+     * Drives a CONFIGURE Delete frame through the worker steps and returns the reply positioned
+     * at its first result.
+     */
+    private static ByteBuffer roundTrip(IetfDmmFpcagentService service) {
+        ByteBuffer bb = ByteBuffer.allocate(256).put(ZMQNBICodec.MAGIC).put(ZMQNBICodec.VERSION)
+                .put(ZMQNBICodec.CONFIGURE).putLong(CLIENT_ID);
+        bb.putLong(OP_ID).put((byte) OpType.Delete.getIntValue()).put(ZMQNBICodec.NONE).putInt(0);
+        bb.putShort((short) 1);
+        byte[] target = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/1"
+                .getBytes(StandardCharsets.UTF_8);
+        bb.putShort((short) target.length).put(target);
+        byte[] frame = Arrays.copyOf(bb.array(), bb.position());
+
+        DataObject input = ZMQNBIServerPool.decodeBinary(ZMQNBICodec.CONFIGURE, frame);
+        byte[] reply = ZMQNBIServerPool.binaryReply(ZMQNBICodec.CONFIGURE, input,
+                ZMQNBIServerPool.dispatchBinary(service, input));
+
+        ByteBuffer retVal = ByteBuffer.wrap(reply);
+        assertEquals(ZMQNBICodec.MAGIC, retVal.get());
+        assertEquals(ZMQNBICodec.VERSION, retVal.get());
+        assertEquals((byte) (ZMQNBICodec.CONFIGURE | ZMQNBICodec.REPLY), retVal.get());
+        assertEquals(1, retVal.getShort());
+        return retVal;
+    }
+
+    private static void assertAccepted(ByteBuffer bb) {
+        assertEquals(OP_ID, bb.getLong());
+        assertEquals(Result.OkNotifyFollows.getIntValue(), bb.get());
+        assertFalse(bb.hasRemaining());
+    }
+
+    private static void assertErr(ByteBuffer bb, Long errorTypeId) {
+        assertEquals(OP_ID, bb.getLong());
+        assertEquals(Result.Err.getIntValue(), bb.get());
+        assertEquals(errorTypeId.intValue(), bb.getInt());
+        assertTrue(readString(bb).contains(Long.toString(CLIENT_ID)));
+        assertFalse(bb.hasRemaining());
+    }
+
+    private static String readString(ByteBuffer bb) {
+        byte[] bytes = new byte[bb.getShort() & 0xFFFF];
+        bb.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static FpcConfig config() {
+        FpcConfig conf = mock(FpcConfig.class);
+        when(conf.getTargetReadLimit()).thenReturn(10);
+        return conf;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.monitor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
+
+/**
+ * SubscriptionIndex tests - reference counting, tenant isolation and lookups racing subscription
+ * changes.
+ */
+public class SubscriptionIndexTest {
+    private static final String TENANT = "default";
+    private static final List<Long> EVENTS = Arrays.asList(Events.DPN_UP, Events.DPN_DOWN);
+
+    @Test
+    public void testReferenceCounting() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        Uri a = uri(1);
+        Uri b = uri(2);
+
+        index.subscribe(TENANT, EVENTS, a);
+        index.subscribe(TENANT, EVENTS, a);
+        index.subscribe(TENANT, Collections.singletonList(Events.DPN_UP), b);
+        assertArrayEquals(new Uri[] { a, b }, index.get(TENANT, Events.DPN_UP));
+        assertArrayEquals(new Uri[] { a }, index.get(TENANT, Events.DPN_DOWN));
+
+        index.unsubscribe(TENANT, EVENTS, a);
+        assertArrayEquals(new Uri[] { a, b }, index.get(TENANT, Events.DPN_UP));
+        index.unsubscribe(TENANT, EVENTS, a);
+        assertArrayEquals(new Uri[] { b }, index.get(TENANT, Events.DPN_UP));
+        assertSame(SubscriptionIndex.NONE, index.get(TENANT, Events.DPN_DOWN));
+
+        // Unknown subscriptions are ignored
+        index.unsubscribe(TENANT, EVENTS, a);
+        index.unsubscribe("other", EVENTS, b);
+        assertArrayEquals(new Uri[] { b }, index.get(TENANT, Events.DPN_UP));
+
+        index.unsubscribe(TENANT, Collections.singletonList(Events.DPN_UP), b);
+        assertSame(SubscriptionIndex.NONE, index.get(TENANT, Events.DPN_UP));
+        assertEquals(0, index.tenants());
+    }
+
+    @Test
+    public void testTenantIsolation() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        index.subscribe("t1", EVENTS, uri(1));
+        index.subscribe("t2", EVENTS, uri(2));
+        assertEquals(2, index.tenants());
+
+        index.unsubscribe("t1", EVENTS, uri(1));
+        assertSame(SubscriptionIndex.NONE, index.get("t1", Events.DPN_UP));
+        assertArrayEquals(new Uri[] { uri(2) }, index.get("t2", Events.DPN_UP));
+        assertEquals(1, index.tenants());
+    }
+
+    /**
+     * Writers churn their own Uris while readers look events up.  Every lookup must return a
+     * complete array of distinct Uris that always holds the permanent subscriber, and no
+     * subscription may be lost once the writers are done.
+     */
+    @Test
+    public void testConcurrentChurn() throws InterruptedException {
+        final SubscriptionIndex index = new SubscriptionIndex();
+        final Uri permanent = uri(0);
+        index.subscribe(TENANT, EVENTS, permanent);
+
+        final int writers = 4;
+        final int readers = 4;
+        final int rounds = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[writers + readers];
+
+        for (int w = 0; w < writers; w++) {
+            final int id = w;
+            threads[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Uri churn = uri(100 + id);
+                        Uri kept = uri(200 + id);
+                        for (int i = 0; i < rounds; i++) {
+                            index.subscribe(TENANT, EVENTS, churn);
+                            index.unsubscribe(TENANT, EVENTS, churn);
+                        }
+                        index.subscribe(TENANT, EVENTS, kept);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < readers; r++) {
+            threads[writers + r] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        while (!done.get()) {
+                            for (Long eventId : EVENTS) {
+                                Uri[] uris = index.get(TENANT, eventId);
+                                Set<Uri> seen = new HashSet<Uri>();
+                                for (Uri u : uris) {
+                                    assertNotNull(u);
+                                    assertTrue("duplicate " + u, seen.add(u));
+                                }
+                                assertTrue(seen.contains(permanent));
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        start.countDown();
+        for (int w = 0; w < writers; w++) {
+            threads[w].join(TimeUnit.SECONDS.toMillis(30));
+        }
+        done.set(true);
+        for (int r = 0; r < readers; r++) {
+            threads[writers + r].join(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertNull(failure.get());
+
+        for (Long eventId : EVENTS) {
+            Set<Uri> expected = new HashSet<Uri>();
+            expected.add(permanent);
+            for (int w = 0; w < writers; w++) {
+                expected.add(uri(200 + w));
+            }
+            assertEquals(expected, new HashSet<Uri>(Arrays.asList(index.get(TENANT, eventId))));
+        }
+    }
+
+    private static Uri uri(int id) {
+        return new Uri("http://127.0.0.1:" + (9000 + id) + "/notify");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.fpc.utils.ErrorTypeIndex;
+import org.opendaylight.fpc.utils.FpcCodecUtils;
+import org.opendaylight.fpc.utils.JsonOutput;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ClientIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ConfigResultNotificationBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.DpnStatusValue.DpnStatus;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.ErrorTypeId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotificationId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Notify;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.NotifyBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpIdentifier;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.OpStatusValue.OpStatus;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.Result;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.config.result.notification.value.ConfigResultBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.Value;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DownlinkDataNotificationBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.notify.value.DpnAvailabilityBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.payload.ContextsBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.ResultType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.CommonSuccessBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.DeleteSuccessBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcagent.rev160803.result.body.result.type.ErrBuilder;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcContextId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnGroupId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcDpnId;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.FpcIdentity;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.fpcbase.rev160803.targets.value.TargetsBuilder;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * NotificationJsonWriter tests - the precompiled writers produce the same JSON document as the
+ * YANG JSON codec, and shapes they do not cover are left to the codec.
+ */
+public class NotificationJsonWriterTest {
+    private static FpcCodecUtils codecs;
+
+    @BeforeClass
+    public static void setUpClass() {
+        codecs = FpcCodecUtils.get();
+    }
+
+    @Test
+    public void testConfigResultOk() throws IOException {
+        assertEquivalent(configResult(OpStatus.Ok, Result.Ok, null));
+        assertEquivalent(configResult(OpStatus.Ok, Result.OkNotifyFollows, new CommonSuccessBuilder().build()));
+    }
+
+    @Test
+    public void testConfigResultErr() throws IOException {
+        assertEquivalent(configResult(OpStatus.Err, Result.Err, new ErrBuilder()
+                .setErrorTypeId(new ErrorTypeId(ErrorTypeIndex.TRANSACTION_EXPIRED))
+                .setErrorInfo("PROTOCOL - operation failed - ERROR - Transaction expired \"quoted\"")
+                .build()));
+    }
+
+    @Test
+    public void testConfigResultDeleteSuccess() throws IOException {
+        assertEquivalent(configResult(OpStatus.Ok, Result.Ok, new DeleteSuccessBuilder()
+                .setTargets(Arrays.asList(
+                        new TargetsBuilder()
+                            .setTarget(new FpcIdentity("/ietf-dmm-fpcagent:tenants/tenant/default/contexts/1"))
+                            .build(),
+                        new TargetsBuilder()
+                            .setTarget(new FpcIdentity(2L))
+                            .setDpnId(Arrays.asList(new FpcDpnId("dpn1"), new FpcDpnId(new FpcIdentity(7L))))
+                            .build()))
+                .build()));
+    }
+
+    @Test
+    public void testDownlinkDataNotification() throws IOException {
+        assertEquivalent(notify(new DownlinkDataNotificationBuilder()
+                .setMessageType("Downlink-Data-Notification")
+                .setDpnId(new FpcDpnId("dpn1"))
+                .setSessionId(new BigInteger("18446744073709551615"))
+                .setClientId(new ClientIdentifier(4294967295L))
+                .setOpId(new OpIdentifier(BigInteger.valueOf(42L)))
+                .build()));
+    }
+
+    @Test
+    public void testDpnAvailability() throws IOException {
+        assertEquivalent(notify(new DpnAvailabilityBuilder()
+                .setMessageType("Dpn-Availability")
+                .setDpnStatus(DpnStatus.Available)
+                .setLoad((byte) 12)
+                .setDpnId(new FpcDpnId("dpn1"))
+                .setDpnName("site1-l3")
+                .setDpnGroups(Collections.singletonList(new FpcDpnGroupId("site1-anchors")))
+                .setAbstract(Boolean.FALSE)
+                .setNodeId("node1")
+                .setNetworkId("network1")
+                .build()));
+        assertEquivalent(notify(new DpnAvailabilityBuilder()
+                .setDpnStatus(DpnStatus.Unavailable)
+                .setDpnId(new FpcDpnId("dpn1"))
+                .build()));
+    }
+
+    /**
+     * Config Results carrying a payload are not compiled; write() must still produce the codec's
+     * document with no partial output left in front of it.
+     */
+    @Test
+    public void testFallback() throws IOException {
+        ConfigResultNotification notification = configResult(OpStatus.Ok, Result.Ok, new CommonSuccessBuilder()
+                .setContexts(Collections.singletonList(new ContextsBuilder()
+                        .setContextId(new FpcContextId(new FpcIdentity(1L)))
+                        .build()))
+                .build());
+        assertFalse(NotificationJsonWriter.writeCompiled(notification, new JsonOutput(256)));
+
+        JsonOutput out = new JsonOutput(256);
+        NotificationJsonWriter.write(codecs, notification, out);
+        assertEquals(parse(codecJson(notification)), parse(new String(out.toByteArray(), StandardCharsets.UTF_8)));
+    }
+
+    private static ConfigResultNotification configResult(OpStatus status, Result result, ResultType rt) {
+        return new ConfigResultNotificationBuilder()
+                .setNotificationId(new NotificationId(17L))
+                .setTimestamp(BigInteger.valueOf(1500000000000L))
+                .setValue(new ConfigResultBuilder()
+                        .setOpId(new OpIdentifier(BigInteger.valueOf(3L)))
+                        .setOpStatus(status)
+                        .setResult(result)
+                        .setResultType(rt)
+                        .setCauseValue(16L)
+                        .build())
+                .build();
+    }
+
+    private static Notify notify(Value value) {
+        return new NotifyBuilder()
+                .setNotificationId(new NotificationId(18L))
+                .setTimestamp(BigInteger.valueOf(1500000000001L))
+                .setValue(value)
+                .build();
+    }
+
+    private static void assertEquivalent(DataObject notification) throws IOException {
+        JsonOutput out = new JsonOutput(256);
+        assertTrue(NotificationJsonWriter.writeCompiled(notification, out));
+        String compiled = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        String codec = codecJson(notification);
+        assertEquals(codec + " / " + compiled, parse(codec), parse(compiled));
+    }
+
+    private static String codecJson(DataObject notification) {
+        return codecs.notificationToJsonString(null, notification, false);
+    }
+
+    /**
+     * Parses a document so member order and whitespace are ignored while strings and numbers
+     * stay distinct.
+     */
+    private static JsonElement parse(String json) {
+        return new JsonParser().parse(json);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * BoundedLongMap tests - map semantics, oldest-put eviction, growth and the capacity bounds.
+ */
+public class BoundedLongMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        BoundedLongMap map = new BoundedLongMap(16);
+        assertEquals(BoundedLongMap.MISSING, map.get(1L));
+        map.put(1L, 10L);
+        map.put(-1L, 20L);
+        map.put(0L, 30L);
+        map.put(1L, 11L);
+        assertEquals(3, map.size());
+        assertEquals(11L, map.get(1L));
+        assertEquals(20L, map.get(-1L));
+        assertEquals(30L, map.get(0L));
+
+        assertEquals(20L, map.remove(-1L));
+        assertEquals(BoundedLongMap.MISSING, map.remove(-1L));
+        assertEquals(BoundedLongMap.MISSING, map.get(-1L));
+        assertEquals(2, map.size());
+        assertEquals(0L, map.getEvictions());
+    }
+
+    @Test
+    public void testEvictsOldestPut() {
+        BoundedLongMap map = new BoundedLongMap(3);
+        map.put(1L, 1L);
+        map.put(2L, 2L);
+        map.put(3L, 3L);
+        // Updating a key makes it the newest put
+        map.put(1L, 4L);
+        map.put(4L, 5L);
+        assertEquals(BoundedLongMap.MISSING, map.get(2L));
+        assertEquals(4L, map.get(1L));
+        assertEquals(3, map.size());
+        assertEquals(1L, map.getEvictions());
+
+        // A removed key is not evicted again
+        map.remove(3L);
+        map.put(5L, 6L);
+        map.put(6L, 7L);
+        assertEquals(BoundedLongMap.MISSING, map.get(1L));
+        assertEquals(5L, map.get(4L));
+        assertEquals(2L, map.getEvictions());
+    }
+
+    /**
+     * Repeating the same put fills the insertion order ring with records of one key; it must be
+     * compacted rather than overrun.
+     */
+    @Test
+    public void testRepeatedPuts() {
+        BoundedLongMap map = new BoundedLongMap(4);
+        for (int i = 0; i < 1000; i++) {
+            map.put(7L, 70L);
+        }
+        for (long k = 1; k <= 4; k++) {
+            map.put(k, k);
+        }
+        assertEquals(BoundedLongMap.MISSING, map.get(7L));
+        for (long k = 1; k <= 4; k++) {
+            assertEquals(k, map.get(k));
+        }
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void testCapacity() {
+        // The table starts small and doubles up to a load factor of 0.5 at maxEntries
+        BoundedLongMap map = new BoundedLongMap(1 << 20);
+        assertEquals(2048, map.capacity());
+        for (long k = 0; k < 5000; k++) {
+            map.put(k, k);
+        }
+        assertEquals(16384, map.capacity());
+        for (long k = 0; k < 5000; k++) {
+            assertEquals(k, map.get(k));
+        }
+
+        assertEquals(2, new BoundedLongMap(0).capacity());
+        assertEquals(8, new BoundedLongMap(3).capacity());
+        assertEquals(8, new BoundedLongMap(4).capacity());
+
+        // Bounds at or above 2^29 are clamped instead of overflowing the table size
+        BoundedLongMap large = new BoundedLongMap(Integer.MAX_VALUE);
+        assertEquals(2048, large.capacity());
+        large.put(1L, 1L);
+        assertEquals(1L, large.get(1L));
+    }
+
+    /**
+     * Random puts and removes against a LinkedHashMap in insertion order (an update moves the key
+     * to the end) that evicts its first entry.
+     */
+    @Test
+    public void testAgainstReference() {
+        final int max = 300;
+        BoundedLongMap map = new BoundedLongMap(max);
+        LinkedHashMap<Long, Long> reference = new LinkedHashMap<Long, Long>();
+        Random random = new Random(17L);
+        long evictions = 0L;
+        for (int n = 0; n < 200000; n++) {
+            long key = random.nextInt(1000) - 500;
+            if (random.nextInt(4) == 0) {
+                Long expected = reference.remove(key);
+                assertEquals((expected == null) ? BoundedLongMap.MISSING : expected.longValue(), map.remove(key));
+            } else {
+                long value = random.nextInt(3);
+                if (reference.remove(key) == null && reference.size() == max) {
+                    Long oldest = reference.keySet().iterator().next();
+                    reference.remove(oldest);
+                    evictions++;
+                }
+                reference.put(key, value);
+                map.put(key, value);
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.get(entry.getKey()));
+        }
+        assertEquals(evictions, map.getEvictions());
+        assertTrue(map.capacity() <= 1024);
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        BoundedLongMap map = new BoundedLongMap(64);
+        Map<Long, Long> reference = new HashMap<Long, Long>();
+        // Keys differing only above the hashed bits still spread over the table
+        for (long k = 0; k < 64; k++) {
+            map.put(k << 40, k);
+            reference.put(k << 40, k);
+        }
+        for (long k = 0; k < 64; k += 2) {
+            assertEquals(k, map.remove(k << 40));
+            reference.remove(k << 40);
+        }
+        for (Map.Entry<Long, Long> entry : reference.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.get(entry.getKey()));
+        }
+        assertEquals(32, map.size());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.AugmentationIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeWithValue;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.impl.schema.Builders;
+import org.opendaylight.yangtools.yang.data.impl.schema.ImmutableNodes;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * CompactNodeCodec tests - every node and value type survives an encode / decode round trip.
+ */
+public class CompactNodeCodecTest {
+    private static final String NS = "urn:opendaylight:fpc:test";
+    private static final String REV = "2017-01-01";
+
+    private static QName q(String name) {
+        return QName.create(NS, REV, name);
+    }
+
+    @Test
+    public void testValueTypes() {
+        ContainerNode node = Builders.containerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(q("values")))
+                .withChild(ImmutableNodes.leafNode(q("string"), "héllo"))
+                .withChild(ImmutableNodes.leafNode(q("empty-string"), ""))
+                .withChild(ImmutableNodes.leafNode(q("true"), Boolean.TRUE))
+                .withChild(ImmutableNodes.leafNode(q("false"), Boolean.FALSE))
+                .withChild(ImmutableNodes.leafNode(q("byte"), (byte) -7))
+                .withChild(ImmutableNodes.leafNode(q("short"), Short.MIN_VALUE))
+                .withChild(ImmutableNodes.leafNode(q("int"), -1))
+                .withChild(ImmutableNodes.leafNode(q("long"), Long.MIN_VALUE))
+                .withChild(ImmutableNodes.leafNode(q("long-max"), Long.MAX_VALUE))
+                .withChild(ImmutableNodes.leafNode(q("uint64"), new BigInteger("18446744073709551615")))
+                .withChild(ImmutableNodes.leafNode(q("decimal"), new BigDecimal("-12.3400")))
+                .withChild(ImmutableNodes.leafNode(q("identityref"), q("some-identity")))
+                .withChild(ImmutableNodes.leafNode(q("bits"), ImmutableSet.of("session", "uplink")))
+                .build();
+        assertEquals(node, roundTrip(new CompactNodeCodec(), node));
+    }
+
+    @Test
+    public void testBinaryValue() {
+        byte[] value = { 0, 1, -1, 127, -128 };
+        LeafNode<byte[]> node = ImmutableNodes.leafNode(q("binary"), value);
+        @SuppressWarnings("unchecked")
+        LeafNode<byte[]> decoded = (LeafNode<byte[]>) roundTrip(new CompactNodeCodec(), node);
+        assertEquals(node.getNodeType(), decoded.getNodeType());
+        assertArrayEquals(value, decoded.getValue());
+    }
+
+    @Test
+    public void testNodeTypes() {
+        QName list = q("list");
+        QName k1 = q("k1");
+        QName k2 = q("k2");
+        ContainerNode node = Builders.containerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(q("top")))
+                .withChild(Builders.mapBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(list))
+                        .withChild(Builders.mapEntryBuilder()
+                                .withNodeIdentifier(new NodeIdentifierWithPredicates(list,
+                                        ImmutableMap.<QName, Object>of(k1, "a", k2, 2L)))
+                                .withChild(ImmutableNodes.leafNode(k1, "a"))
+                                .withChild(ImmutableNodes.leafNode(k2, 2L))
+                                .withChild(Builders.choiceBuilder()
+                                        .withNodeIdentifier(new NodeIdentifier(q("choice")))
+                                        .withChild(ImmutableNodes.leafNode(q("case-leaf"), 3))
+                                        .build())
+                                .build())
+                        .build())
+                .withChild(Builders.orderedMapBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(q("ordered")))
+                        .withChild(ImmutableNodes.mapEntry(q("ordered"), k1, "x"))
+                        .withChild(ImmutableNodes.mapEntry(q("ordered"), k1, "y"))
+                        .build())
+                .withChild(Builders.<String>leafSetBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(q("leaf-set")))
+                        .withChild(Builders.<String>leafSetEntryBuilder()
+                                .withNodeIdentifier(new NodeWithValue<String>(q("leaf-set"), "v1"))
+                                .withValue("v1")
+                                .build())
+                        .build())
+                .withChild(Builders.<Long>orderedLeafSetBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(q("ordered-leaf-set")))
+                        .withChild(Builders.<Long>leafSetEntryBuilder()
+                                .withNodeIdentifier(new NodeWithValue<Long>(q("ordered-leaf-set"), 9L))
+                                .withValue(9L)
+                                .build())
+                        .build())
+                .withChild(Builders.unkeyedListBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(q("unkeyed")))
+                        .withChild(Builders.unkeyedListEntryBuilder()
+                                .withNodeIdentifier(new NodeIdentifier(q("unkeyed")))
+                                .withChild(ImmutableNodes.leafNode(q("entry-leaf"), "e"))
+                                .build())
+                        .build())
+                .withChild(Builders.augmentationBuilder()
+                        .withNodeIdentifier(new AugmentationIdentifier(ImmutableSet.of(q("aug-leaf"))))
+                        .withChild(ImmutableNodes.leafNode(q("aug-leaf"), "aug"))
+                        .build())
+                .withChild(Builders.containerBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(q("empty-container")))
+                        .build())
+                .build();
+        assertEquals(node, roundTrip(new CompactNodeCodec(), node));
+    }
+
+    /**
+     * Nodes are appended to the output and decoded at their offset; the QName dictionary is
+     * shared by all of them.
+     */
+    @Test
+    public void testAppendAndDictionary() {
+        CompactNodeCodec codec = new CompactNodeCodec();
+        NormalizedNode<?, ?> first = ImmutableNodes.leafNode(q("a"), "first");
+        NormalizedNode<?, ?> second = ImmutableNodes.leafNode(q("b"), 2L);
+        CompactNodeCodec.Output out = new CompactNodeCodec.Output(0);
+        codec.encode(first, out);
+        int offset = out.length();
+        codec.encode(second, out);
+        codec.encode(first, out);
+
+        byte[] buf = Arrays.copyOf(out.array(), out.length());
+        assertEquals(first, codec.decode(buf, 0));
+        assertEquals(second, codec.decode(buf, offset));
+        assertEquals(2, codec.getDictionarySize());
+
+        // Known QNames reuse their dictionary id
+        out.reset();
+        codec.encode(first, out);
+        assertArrayEquals(Arrays.copyOf(buf, offset), Arrays.copyOf(out.array(), out.length()));
+        assertEquals(2, codec.getDictionarySize());
+    }
+
+    @Test
+    public void testUnsupportedValues() {
+        assertUnsupported(ImmutableNodes.leafNode(q("object"), new Object()));
+        assertUnsupported(ImmutableNodes.leafNode(q("bits"), ImmutableSet.of(1, 2)));
+    }
+
+    /**
+     * Encoders racing on new QNames must never produce an id a decoder cannot resolve.
+     */
+    @Test
+    public void testConcurrentDictionary() throws InterruptedException {
+        final CompactNodeCodec codec = new CompactNodeCodec();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CompactNodeCodec.Output out = new CompactNodeCodec.Output(64);
+                        for (int i = 0; i < 500; i++) {
+                            NormalizedNode<?, ?> node = ImmutableNodes.leafNode(q("leaf-" + (i % 250) + "-" + (id % 2)),
+                                    (long) i);
+                            out.reset();
+                            codec.encode(node, out);
+                            assertEquals(node, codec.decode(Arrays.copyOf(out.array(), out.length()), 0));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(500, codec.getDictionarySize());
+    }
+
+    private static NormalizedNode<?, ?> roundTrip(CompactNodeCodec codec, NormalizedNode<?, ?> node) {
+        CompactNodeCodec.Output out = new CompactNodeCodec.Output(16);
+        codec.encode(node, out);
+        return codec.decode(Arrays.copyOf(out.array(), out.length()), 0);
+    }
+
+    private static void assertUnsupported(NormalizedNode<?, ?> node) {
+        try {
+            new CompactNodeCodec().encode(node, new CompactNodeCodec.Output(16));
+            fail("encoded " + node);
+        } catch (CompactNodeCodec.UnsupportedNodeException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Counter tests - values are unique across threads, the range is bounded and recycled values
+ * are issued again.
+ */
+public class CounterTest {
+    private static final int THREADS = 8;
+
+    @Test
+    public void testRange() {
+        Counter counter = new Counter(100, 110);
+        Set<Integer> values = new HashSet<Integer>();
+        for (int i = 0; i < 10; i++) {
+            int value = counter.nextValue();
+            assertTrue(value > 100 && value <= 110);
+            assertTrue(values.add(value));
+        }
+        assertExhausted(counter);
+
+        counter.recycle(105);
+        assertEquals(105, counter.nextValue());
+        // Values outside of the range and values not in use are ignored
+        counter.recycle(100);
+        counter.recycle(111);
+        assertExhausted(counter);
+    }
+
+    /**
+     * Values above 2^31 are issued as negative ints.
+     */
+    @Test
+    public void testUnsignedRange() {
+        Counter counter = new Counter(0xFFFFFFF0, 0xFFFFFFFF);
+        for (int i = 0; i < 15; i++) {
+            int value = counter.nextValue();
+            assertTrue((value & 0xFFFFFFFFL) > 0xFFFFFFF0L);
+        }
+        assertExhausted(counter);
+    }
+
+    /**
+     * Threads allocating until the Counter is exhausted share every value exactly once.
+     */
+    @Test
+    public void testConcurrentUniqueness() throws Exception {
+        final int size = 64 * 100 + 13;
+        final Counter counter = new Counter(0, size);
+        final Set<Integer> values = ConcurrentHashMap.newKeySet();
+        final AtomicInteger duplicates = new AtomicInteger();
+        runThreads(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        if (!values.add(counter.nextValue())) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (Counter.OutOfRangeException e) {
+                    // Exhausted
+                }
+            }
+        });
+        assertEquals(0, duplicates.get());
+        assertEquals(size, values.size());
+        for (int value : values) {
+            assertTrue(value > 0 && value <= size);
+        }
+    }
+
+    /**
+     * Values recycled by other threads are issued again.
+     */
+    @Test
+    public void testConcurrentRecycle() throws Exception {
+        final Counter counter = new Counter(0, 1000);
+        final List<Integer> first = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            first.add(counter.nextValue());
+        }
+        counter.releaseCache();
+        final AtomicInteger next = new AtomicInteger();
+        runThreads(new Runnable() {
+            @Override
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < first.size()) {
+                    counter.recycle(first.get(i));
+                }
+            }
+        });
+        Set<Integer> values = new HashSet<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(values.add(counter.nextValue()));
+        }
+        assertExhausted(counter);
+    }
+
+    /**
+     * Values reserved by a thread are only issued to others once the thread releases its cache.
+     */
+    @Test
+    public void testReleaseCache() throws Exception {
+        final Counter counter = new Counter(0, 64);
+        final int[] taken = new int[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                taken[0] = counter.nextValue();
+                counter.releaseCache();
+            }
+        });
+        thread.start();
+        thread.join();
+        for (int i = 0; i < 63; i++) {
+            assertTrue(counter.nextValue() != taken[0]);
+        }
+        assertExhausted(counter);
+    }
+
+    private static void assertExhausted(Counter counter) {
+        try {
+            counter.nextValue();
+            fail("The Counter must be exhausted");
+        } catch (Counter.OutOfRangeException e) {
+            // expected
+        }
+    }
+
+    private static void runThreads(final Runnable task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task.run();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
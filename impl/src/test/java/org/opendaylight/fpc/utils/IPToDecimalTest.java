@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * IPToDecimal tests - dotted quads parse in place and malformed addresses are rejected.
+ */
+public class IPToDecimalTest {
+
+    @Test
+    public void testIpv4ToLong() {
+        assertEquals(0L, IPToDecimal.ipv4ToLong("0.0.0.0"));
+        assertEquals(0xC0A80102L, IPToDecimal.ipv4ToLong("192.168.1.2"));
+        assertEquals(0xFFFFFFFFL, IPToDecimal.ipv4ToLong("255.255.255.255"));
+        assertEquals(0x0A000001L, IPToDecimal.ipv4ToLong("010.000.000.001"));
+        for (long ip : new long[] { 1L, 0x7F000001L, 0x80000000L, 0xDEADBEEFL }) {
+            assertEquals(ip, IPToDecimal.ipv4ToLong(IPToDecimal.longToIpv4(ip)));
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalid = { "", "1.2.3", "1.2.3.4.5", "1..3.4", ".1.2.3", "1.2.3.", "256.0.0.1",
+                "1.2.3.0004", "1.2.3.a", "1.2.3.-4", " 1.2.3.4", "1.2.3.4/24" };
+        for (String ip : invalid) {
+            try {
+                IPToDecimal.ipv4ToLong(ip);
+                fail(ip + " parsed");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+}
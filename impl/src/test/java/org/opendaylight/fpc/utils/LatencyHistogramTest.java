@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogram tests - bucket boundaries, the 1/128 precision bound and the summary values.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram h = new LatencyHistogram(1000000L);
+        assertEquals(0L, h.getCount());
+        assertEquals(0L, h.getValueAtPercentile(50.0));
+        assertEquals(0.0, h.getMean(), 0.0);
+    }
+
+    /**
+     * Values below 256 have a bucket each, so percentiles are exact.
+     */
+    @Test
+    public void testExactBuckets() {
+        LatencyHistogram h = new LatencyHistogram(1000000L);
+        for (long v = 0; v < 256; v++) {
+            h.record(v);
+        }
+        assertEquals(256L, h.getCount());
+        assertEquals(255L * 256 / 2, h.getSum());
+        assertEquals(127.5, h.getMean(), 0.0);
+        assertEquals(0L, h.getValueAtPercentile(0.0));
+        assertEquals(127L, h.getValueAtPercentile(50.0));
+        assertEquals(128L, h.getValueAtPercentile(50.2));
+        assertEquals(255L, h.getValueAtPercentile(100.0));
+    }
+
+    /**
+     * From 256 on a bucket covers 2^(n-7) values of the range [2^n, 2^(n+1)).
+     */
+    @Test
+    public void testBucketBoundaries() {
+        assertEquals(257L, lowerValueReport(256L));
+        assertEquals(257L, lowerValueReport(257L));
+        assertEquals(259L, lowerValueReport(258L));
+        assertEquals(511L, lowerValueReport(510L));
+        assertEquals(515L, lowerValueReport(512L));
+        assertEquals(515L, lowerValueReport(515L));
+        assertEquals(519L, lowerValueReport(516L));
+    }
+
+    /**
+     * The reported value is never below the recorded value and never more than 1/128 above it.
+     */
+    @Test
+    public void testPrecision() {
+        Random random = new Random(11L);
+        for (int n = 0; n < 10000; n++) {
+            long v = random.nextLong() & ((1L << (1 + random.nextInt(40))) - 1);
+            long reported = lowerValueReport(v);
+            assertTrue(v + " reported as " + reported, reported >= v);
+            assertTrue(v + " reported as " + reported, reported - v <= v / 128);
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        LatencyHistogram h = new LatencyHistogram(1000L);
+        h.record(-5L);
+        h.record(5000000L);
+        h.record(6000000L);
+        assertEquals(3L, h.getCount());
+        assertEquals(0L, h.getValueAtPercentile(10.0));
+        // Values above the highest trackable value share the last bucket and report the max
+        assertEquals(6000000L, h.getValueAtPercentile(50.0));
+        assertEquals(6000000L, h.getValueAtPercentile(150.0));
+        assertEquals(6000000L, h.getMax());
+        assertEquals(11000000L, h.getSum());
+
+        h.reset();
+        assertEquals(0L, h.getCount());
+        assertEquals(0L, h.getMax());
+        assertEquals(0L, h.getValueAtPercentile(100.0));
+    }
+
+    /**
+     * Records a value below a much larger one and returns what the lower half percentile reports
+     * for it, i.e. the highest value of its bucket.
+     */
+    private static long lowerValueReport(long value) {
+        LatencyHistogram h = new LatencyHistogram(1L << 42);
+        h.record(value);
+        h.record(1L << 41);
+        return h.getValueAtPercentile(50.0);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.fpc.utils.NameResolver.FixedType;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+
+/**
+ * NameResolver tests - paths resolve over the compiled path templates, resolved paths are cached
+ * until the Schema Context changes and entity ids are extracted without the entity patterns.
+ */
+public class NameResolverTest {
+    private static final String CONTEXT = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts/";
+    private static final String PORT = "/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/ports/";
+
+    private static NameResolver resolver;
+
+    @BeforeClass
+    public static void setUpClass() {
+        resolver = NameResolver.get();
+    }
+
+    @Test
+    public void testResolve() {
+        YangInstanceIdentifier iid = resolver.toInstanceIdentifier(CONTEXT + "1");
+        assertNotNull(iid);
+        // tenants, tenant, tenant[default], fpc-mobility, contexts, contexts[1]
+        List<PathArgument> args = iid.getPathArguments();
+        assertEquals(6, args.size());
+        assertKey(args.get(2), "default");
+        assertKey(args.get(5), "1");
+
+        // A second path of the same shape reuses the compiled steps
+        YangInstanceIdentifier other = resolver.toInstanceIdentifier(CONTEXT + "2");
+        assertEquals(6, other.getPathArguments().size());
+        assertKey(other.getPathArguments().get(5), "2");
+        assertEquals(args.get(4), other.getPathArguments().get(4));
+
+        YangInstanceIdentifier port = resolver.toInstanceIdentifier(PORT + "1");
+        assertEquals(6, port.getPathArguments().size());
+        assertFalse(port.equals(iid));
+
+        // Percent encoded key values are decoded
+        assertKey(resolver.toInstanceIdentifier(CONTEXT + "a%2Fb").getPathArguments().get(5), "a/b");
+    }
+
+    @Test
+    public void testUnresolved() {
+        assertNull(resolver.toInstanceIdentifier(null));
+        assertNull(resolver.toInstanceIdentifier("/"));
+        assertNull(resolver.toInstanceIdentifier("/ietf-dmm-fpcagent:tenants/tenant/default/unknown"));
+        assertNull(resolver.toInstanceIdentifier("/unknown-module:tenants"));
+        // A list without its key value or with a null key value
+        assertNull(resolver.toInstanceIdentifier("/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/contexts"));
+        assertNull(resolver.toInstanceIdentifier(CONTEXT + "null"));
+    }
+
+    @Test
+    public void testCache() {
+        YangInstanceIdentifier iid = resolver.toInstanceIdentifier(CONTEXT + "10");
+        assertSame(iid, resolver.toInstanceIdentifier(CONTEXT + "10"));
+        // Trailing slashes are trimmed but the cache is keyed by the path as given
+        YangInstanceIdentifier trailing = resolver.toInstanceIdentifier(CONTEXT + "10/");
+        assertEquals(iid, trailing);
+        assertSame(trailing, resolver.toInstanceIdentifier(CONTEXT + "10/"));
+
+        // A new Schema Context drops the compiled templates and resolved paths
+        resolver.setSchemas(resolver.getGlobalSchema());
+        YangInstanceIdentifier recompiled = resolver.toInstanceIdentifier(CONTEXT + "10");
+        assertNotSame(iid, recompiled);
+        assertEquals(iid, recompiled);
+    }
+
+    @Test
+    public void testExtractTypeAndId() {
+        assertEntry(FixedType.CONTEXT, "1", NameResolver.extractTypeAndId(CONTEXT + "1"));
+        assertEntry(FixedType.PORT, "p-1", NameResolver.extractTypeAndId(PORT + "p-1"));
+        assertNull(NameResolver.extractTypeAndId(null));
+        assertNull(NameResolver.extractTypeAndId(CONTEXT));
+        assertNull(NameResolver.extractTypeAndId(CONTEXT + "1/"));
+        assertNull(NameResolver.extractTypeAndId(CONTEXT + "1 2"));
+        assertNull(NameResolver.extractTypeAndId("/ietf-dmm-fpcagent:tenants/tenant//fpc-mobility/contexts/1"));
+        assertNull(NameResolver.extractTypeAndId("/ietf-dmm-fpcagent:tenants/tenant/default/fpc-mobility/other/1"));
+
+        // Agrees with the entity patterns
+        String[] paths = { CONTEXT + "1", PORT + "2", CONTEXT, CONTEXT + "1/", "/ietf-dmm-fpcagent:tenants" };
+        for (String path : paths) {
+            assertEquals(path, resolver.extractTypeAndKey(path), NameResolver.extractTypeAndId(path));
+        }
+    }
+
+    private static void assertKey(PathArgument arg, String expected) {
+        assertTrue(arg instanceof NodeIdentifierWithPredicates);
+        Map<?, Object> keys = ((NodeIdentifierWithPredicates) arg).getKeyValues();
+        assertEquals(1, keys.size());
+        assertEquals(expected, String.valueOf(keys.values().iterator().next()));
+    }
+
+    private static void assertEntry(FixedType type, String id, Map.Entry<FixedType, String> entry) {
+        assertNotNull(entry);
+        assertEquals(type, entry.getKey());
+        assertEquals(id, entry.getValue());
+    }
+}
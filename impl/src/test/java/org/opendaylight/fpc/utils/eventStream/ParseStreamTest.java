@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.eventStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ParseStream tests - event-data pairs are recognized however the stream is split into reads,
+ * other lines are ignored and a full worker queue drops pairs instead of blocking.
+ */
+public class ParseStreamTest {
+    private static final String CLIENT_URI = "http://127.0.0.1:9997/request";
+    private static final String REQUEST = "event:application/json;/restconf/operations/ietf-dmm-fpcagent:configure\r\n"
+            + "data: {\"input\":{\"op-id\":\"1\"}}\r\n\r\n";
+
+    private BlockingQueue<Map.Entry<String, Map.Entry<String, String>>> queue;
+
+    @Before
+    public void setUp() {
+        queue = new ArrayBlockingQueue<Map.Entry<String, Map.Entry<String, String>>>(16);
+    }
+
+    @Test
+    public void testPair() {
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        feed(parser, REQUEST);
+        assertPair("application/json;/restconf/operations/ietf-dmm-fpcagent:configure",
+                "{\"input\":{\"op-id\":\"1\"}}");
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Only a single space after the colon is dropped from a value.
+     */
+    @Test
+    public void testLeadingSpace() {
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        feed(parser, "event:a\ndata:b\nevent: a\ndata: b\nevent:  a\ndata:  b\nevent:\ndata:\n");
+        assertPair("a", "b");
+        assertPair("a", "b");
+        assertPair(" a", " b");
+        assertPair("", "");
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Every split of the stream into two reads, including inside a field name, right after the
+     * colon (ahead of the optional space) and between the CR and LF of a line end.
+     */
+    @Test
+    public void testSplitReads() {
+        byte[] bytes = REQUEST.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= bytes.length; split++) {
+            ParseStream parser = new ParseStream(CLIENT_URI, queue);
+            parser.feed(ByteBuffer.wrap(bytes, 0, split));
+            parser.feed(ByteBuffer.wrap(bytes, split, bytes.length - split));
+            assertPair("application/json;/restconf/operations/ietf-dmm-fpcagent:configure",
+                    "{\"input\":{\"op-id\":\"1\"}}");
+            assertTrue(queue.isEmpty());
+        }
+
+        // One byte per read
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        for (byte b : (REQUEST + REQUEST).getBytes(StandardCharsets.UTF_8)) {
+            parser.feed(ByteBuffer.wrap(new byte[] { b }));
+        }
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testLineEnds() {
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        feed(parser, "event:a\rdata:b\revent:c\r\ndata:d\r\nevent:e\ndata:f\n");
+        assertPair("a", "b");
+        assertPair("c", "d");
+        assertPair("e", "f");
+    }
+
+    @Test
+    public void testIgnoredLines() {
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        // Comments, other fields, near misses of the field names and lines without a colon
+        feed(parser, ": keep-alive\nid: 5\nevents:x\nevent:a\ndat:y\ndatas:y\nretry:10\ndata\nevent\ndata:b\n");
+        assertPair("a", "b");
+        // Data without a preceding event
+        feed(parser, "data:c\n\n");
+        assertTrue(queue.isEmpty());
+        // The latest event applies
+        feed(parser, "event:d\nevent:e\ndata:f\n");
+        assertPair("e", "f");
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testLongValue() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            value.append((char) ('a' + (i % 26)));
+        }
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        feed(parser, "event:" + value + "\ndata:" + value + "\n");
+        assertPair(value.toString(), value.toString());
+        assertEquals(0L, parser.getOverflows());
+    }
+
+    @Test
+    public void testQueueFull() {
+        queue = new ArrayBlockingQueue<Map.Entry<String, Map.Entry<String, String>>>(1);
+        ParseStream parser = new ParseStream(CLIENT_URI, queue);
+        feed(parser, "event:a\ndata:b\nevent:c\ndata:d\n");
+        assertEquals(1L, parser.getDropped());
+        assertPair("a", "b");
+        feed(parser, "event:e\ndata:f\n");
+        assertPair("e", "f");
+        assertEquals(1L, parser.getDropped());
+    }
+
+    private static void feed(ParseStream parser, String stream) {
+        parser.feed(ByteBuffer.wrap(stream.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertPair(String event, String data) {
+        Map.Entry<String, Map.Entry<String, String>> pair = queue.poll();
+        assertEquals(CLIENT_URI, pair.getKey());
+        assertEquals(event, pair.getValue().getKey());
+        assertEquals(data, pair.getValue().getValue());
+    }
+}
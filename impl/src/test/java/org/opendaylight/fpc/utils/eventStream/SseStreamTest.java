@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.eventStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opendaylight.fpc.activation.cache.transaction.Transaction;
+
+/**
+ * SseStream tests - every Transaction handed to a stream is marked as responded, whether its event
+ * is written, rejected, dropped on close or lost in a failed write.
+ */
+public class SseStreamTest {
+    private static final byte[] FRAME = "data:x\r\n".getBytes();
+
+    private AsyncContext asyncContext;
+    private ServletResponse response;
+    private ServletOutputStream out;
+
+    @Before
+    public void setUp() throws IOException {
+        asyncContext = mock(AsyncContext.class);
+        response = mock(ServletResponse.class);
+        out = mock(ServletOutputStream.class);
+        when(asyncContext.getResponse()).thenReturn(response);
+        when(response.getOutputStream()).thenReturn(out);
+    }
+
+    @Test
+    public void testDrainMarksResponded() throws IOException {
+        SseStream stream = new SseStream("c1", asyncContext, 8, 4);
+        Transaction[] txs = offer(stream, 6);
+
+        assertTrue(stream.schedule());
+        assertFalse(stream.drain());
+        for (Transaction tx : txs) {
+            verify(tx).setResponseSent();
+        }
+        assertEquals(6L, stream.getSent());
+        assertEquals(2L, stream.getFlushes());
+        assertEquals(0L, stream.getDropped());
+    }
+
+    @Test
+    public void testCloseReleasesQueued() {
+        SseStream stream = new SseStream("c1", asyncContext, 8, 4);
+        Transaction[] txs = offer(stream, 5);
+
+        assertTrue(stream.close());
+        assertFalse(stream.close());
+        for (Transaction tx : txs) {
+            verify(tx).setResponseSent();
+        }
+        verify(asyncContext).complete();
+        assertEquals(0, stream.getBacklog());
+        assertEquals(5L, stream.getDropped());
+    }
+
+    @Test
+    public void testRejectedOfferReleased() {
+        SseStream stream = new SseStream("c1", asyncContext, 2, 4);
+        offer(stream, 2);
+
+        Transaction full = mock(Transaction.class);
+        assertFalse(stream.offer(new SseStream.Event(FRAME, full)));
+        verify(full).setResponseSent();
+
+        stream.close();
+        Transaction late = mock(Transaction.class);
+        assertFalse(stream.offer(new SseStream.Event(FRAME, late)));
+        verify(late).setResponseSent();
+        assertEquals(4L, stream.getDropped());
+    }
+
+    @Test
+    public void testFailedWriteReleasesBatch() throws IOException {
+        SseStream stream = new SseStream("c1", asyncContext, 8, 4);
+        Transaction[] txs = offer(stream, 6);
+        doThrow(new IOException("reset")).when(out).flush();
+
+        assertTrue(stream.schedule());
+        try {
+            stream.drain();
+        } catch (IOException e) {
+            // expected
+        }
+        // The failed batch is released, the remaining events stay queued until the stream is closed
+        for (int i = 0; i < 4; i++) {
+            verify(txs[i]).setResponseSent();
+        }
+        verify(txs[4], never()).setResponseSent();
+        assertEquals(2, stream.getBacklog());
+
+        stream.close();
+        verify(txs[4], times(1)).setResponseSent();
+        verify(txs[5], times(1)).setResponseSent();
+        assertEquals(6L, stream.getDropped());
+    }
+
+    @Test
+    public void testCloseDuringDrainReleasesQueued() throws IOException {
+        final SseStream stream = new SseStream("c1", asyncContext, 8, 1);
+        final Transaction[] txs = offer(stream, 3);
+        // The stream is closed while the first event is being written
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                stream.close();
+                return null;
+            }
+        }).when(out).flush();
+
+        assertTrue(stream.schedule());
+        assertFalse(stream.drain());
+        for (Transaction tx : txs) {
+            verify(tx).setResponseSent();
+        }
+        assertEquals(1L, stream.getSent());
+        assertEquals(2L, stream.getDropped());
+    }
+
+    private static Transaction[] offer(SseStream stream, int count) {
+        Transaction[] txs = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            txs[i] = mock(Transaction.class);
+            assertTrue(stream.offer(new SseStream.Event(FRAME, txs[i])));
+        }
+        return txs;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2016 - 2017 Copyright (c) Sprint, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.fpc.utils.zeromq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * ByteBufferPool tests - buffers are exact-size, reused per size class and bounded per size.
+ */
+public class ByteBufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        ByteBufferPool pool = new ByteBufferPool(2);
+        ByteBuffer bb = pool.acquire(19);
+        assertEquals(19, bb.capacity());
+        assertEquals(19, bb.array().length);
+        bb.put((byte) 1);
+        pool.release(bb);
+
+        // A released buffer is handed out cleared for its own size only
+        ByteBuffer other = pool.acquire(23);
+        assertNotSame(bb, other);
+        assertSame(bb, pool.acquire(19));
+        assertEquals(0, bb.position());
+        assertEquals(19, bb.limit());
+        assertEquals(2L, pool.getAllocations());
+    }
+
+    @Test
+    public void testBounds() {
+        ByteBufferPool pool = new ByteBufferPool(2);
+        ByteBuffer[] buffers = { pool.acquire(8), pool.acquire(8), pool.acquire(8) };
+        for (ByteBuffer bb : buffers) {
+            pool.release(bb);
+        }
+        // Only two buffers are retained
+        pool.acquire(8);
+        pool.acquire(8);
+        assertEquals(3L, pool.getAllocations());
+        pool.acquire(8);
+        assertEquals(4L, pool.getAllocations());
+
+        // Sizes outside of the pooled range are never retained
+        ByteBuffer large = pool.acquire(ByteBufferPool.MAX_POOLED_SIZE + 1);
+        pool.release(large);
+        assertNotSame(large, pool.acquire(ByteBufferPool.MAX_POOLED_SIZE + 1));
+        ByteBuffer empty = pool.acquire(0);
+        assertEquals(0, empty.capacity());
+        pool.release(empty);
+        assertEquals(7L, pool.getAllocations());
+    }
+}